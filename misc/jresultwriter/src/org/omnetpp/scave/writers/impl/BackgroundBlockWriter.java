@@ -0,0 +1,157 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.omnetpp.scave.writers.ResultRecordingException;
+
+/**
+ * Writes blocks of buffered result data on a dedicated background thread,
+ * so that output vector managers don't have to stall the simulation on
+ * file I/O. Blocks are passed to the writer thread through a bounded queue;
+ * when the queue is full, submit() blocks until there is room (back-pressure).
+ *
+ * Errors that occur on the writer thread are reported to the producer side
+ * on the next submit(), flush() or shutdown() call.
+ */
+public abstract class BackgroundBlockWriter<T> {
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private static final Object STOP = new Object();
+
+    private BlockingQueue<Object> queue;
+    private Thread thread;
+    private volatile RuntimeException error = null;
+
+    public BackgroundBlockWriter(String threadName) {
+        this(threadName, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public BackgroundBlockWriter(String threadName, int queueCapacity) {
+        queue = new ArrayBlockingQueue<Object>(queueCapacity);
+        thread = new Thread(threadName) {
+            @Override
+            public void run() {
+                processQueue();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Writes the given block. Called on the writer thread.
+     */
+    protected abstract void writeBlock(T block);
+
+    /**
+     * Flushes the underlying files. Called on the writer thread, when all
+     * blocks submitted before the flush() call have been written.
+     */
+    protected abstract void flushOutput();
+
+    /**
+     * Hands over the block to the writer thread. Blocks while the queue is full.
+     * After this call, the block must not be accessed by the caller.
+     */
+    public void submit(T block) {
+        checkError();
+        if (!thread.isAlive())
+            throw new IllegalStateException("Background writer thread already stopped");
+        put(block);
+    }
+
+    /**
+     * Waits until all blocks submitted so far have been written and flushed.
+     */
+    public void flush() {
+        checkError();
+        if (!thread.isAlive())
+            return;
+        CountDownLatch done = new CountDownLatch(1);
+        put(done);
+        try {
+            done.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResultRecordingException("Interrupted while waiting for output to be written", e);
+        }
+        checkError();
+    }
+
+    /**
+     * Writes out all submitted blocks, and stops the writer thread.
+     */
+    public void shutdown() {
+        if (thread.isAlive()) {
+            put(STOP);
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ResultRecordingException("Interrupted while waiting for output to be written", e);
+            }
+        }
+        checkError();
+    }
+
+    protected void checkError() {
+        if (error != null)
+            throw new ResultRecordingException("Error writing results in the background: " + error.getMessage(), error);
+    }
+
+    private void put(Object item) {
+        try {
+            queue.put(item);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResultRecordingException("Interrupted while waiting for output queue", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void processQueue() {
+        while (true) {
+            Object item;
+            try {
+                item = queue.take();
+            }
+            catch (InterruptedException e) {
+                continue; // only shutdown() may stop us
+            }
+
+            if (item == STOP) {
+                if (error == null)
+                    flushSafely();
+                return;
+            }
+            else if (item instanceof CountDownLatch) {
+                if (error == null)
+                    flushSafely();
+                ((CountDownLatch)item).countDown();
+            }
+            else if (error == null) {
+                // after an error, keep draining the queue so that producers don't block forever
+                try {
+                    writeBlock((T)item);
+                }
+                catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flushOutput();
+        }
+        catch (RuntimeException e) {
+            error = e;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.omnetpp.scave.writers.ResultRecordingException;
+
+/**
+ * An output vector manager that writes vector data in a compact, block-structured
+ * binary format instead of the textual ".vec" format. It inherits buffering,
+ * thread safety and asynchronous writing from FileOutputVectorManager; only
+ * the file format differs. Files can be read with BinaryVectorFileReader, and
+ * converted to/from ".vec" with VectorFileConverter.
+ *
+ * The data file starts with the 4-byte magic "VECB" and the format version,
+ * followed by blocks. Each block holds samples of one vector, stored as columns:
+ * <pre>
+ *   int vectorId, int n, byte timeEncoding, byte valueEncoding,
+ *   int timesLength, byte[timesLength] times,
+ *   int valuesLength, byte[valuesLength] values
+ * </pre>
+ * Times are stored as zigzag varint-encoded deltas, either of the long values
+ * (TIME_ENCODING_LONG) or of the raw bits of the double values (TIME_ENCODING_DOUBLE);
+ * the latter is lossless, and compact because the bit patterns of nearby positive
+ * doubles are close to each other. Values are stored as raw big-endian doubles
+ * (VALUE_ENCODING_RAW), or XORed with the previous value and deflated
+ * (VALUE_ENCODING_DEFLATE).
+ *
+ * The index file (".vbi") starts with the magic "VBI1" and contains records:
+ * the run ('r'), vector declarations ('v'), block descriptors with the offset,
+ * size, time range and statistics of every block ('b'), and finally the size
+ * and modification time of the data file ('e'), written on close.
+ *
+ * Blocks whose timestamps are not all integers (Integer or Long) are stored with
+ * double timestamps; timestamps of other Number types are converted to double.
+ */
+public class BinaryFileOutputVectorManager extends FileOutputVectorManager {
+    public static final int BINARY_FILE_VERSION = 1;
+    public static final int DATA_FILE_MAGIC = 0x56454342; // "VECB"
+    public static final int INDEX_FILE_MAGIC = 0x56424931; // "VBI1"
+
+    public static final byte RECORD_RUN = 'r';
+    public static final byte RECORD_VECTOR = 'v';
+    public static final byte RECORD_BLOCK = 'b';
+    public static final byte RECORD_END = 'e';
+
+    public static final byte TIME_ENCODING_LONG = 0;
+    public static final byte TIME_ENCODING_DOUBLE = 1;
+    public static final byte VALUE_ENCODING_RAW = 0;
+    public static final byte VALUE_ENCODING_DEFLATE = 1;
+
+    protected boolean compressValues = true;
+
+    protected FileChannel dataChannel;
+    protected DataOutputStream indexStream;
+
+    // scratch buffers, reused across blocks
+    protected ByteBuffer blockBuffer = ByteBuffer.allocate(64*1024);
+    protected ByteBuffer valueBuffer = ByteBuffer.allocate(8*1024);
+    protected byte[] deflateBuffer = new byte[8*1024];
+    protected Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    public BinaryFileOutputVectorManager(String fileName) {
+        super(fileName, ".vbi");
+    }
+
+    public boolean getCompressValues() {
+        return compressValues;
+    }
+
+    /**
+     * Sets whether values should be stored compressed (the default) or as raw doubles.
+     */
+    public void setCompressValues(boolean compressValues) {
+        this.compressValues = compressValues;
+    }
+
+    @Override
+    protected byte[] createVectorHeader(int id, String componentPath, String vectorName, Map<String, String> attributes) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream tmp = new DataOutputStream(bos);
+            tmp.writeByte(RECORD_VECTOR);
+            tmp.writeInt(id);
+            tmp.writeUTF(componentPath);
+            tmp.writeUTF(vectorName);
+            writeAttributes(tmp, attributes);
+            tmp.close();
+            return bos.toByteArray();
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException(e); // cannot happen with ByteArrayOutputStream
+        }
+    }
+
+    protected static void writeAttributes(DataOutputStream out, Map<String, String> attributes) throws IOException {
+        out.writeInt(attributes == null ? 0 : attributes.size());
+        if (attributes != null) {
+            for (String attr : attributes.keySet()) {
+                out.writeUTF(attr);
+                out.writeUTF(attributes.get(attr));
+            }
+        }
+    }
+
+    @Override
+    protected void open() {
+        try {
+            dataChannel = new FileOutputStream(file).getChannel();
+        }
+        catch (FileNotFoundException e) {
+            throw new ResultRecordingException("Cannot open output vector file " + file.getPath(), e);
+        }
+        try {
+            indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+        }
+        catch (FileNotFoundException e) {
+            throw new ResultRecordingException("Cannot open output vector index file " + indexFile.getPath(), e);
+        }
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(DATA_FILE_MAGIC).putInt(BINARY_FILE_VERSION).flip();
+            writeFully(dataChannel, header);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write output vector file " + file.getPath(), e);
+        }
+        try {
+            indexStream.writeInt(INDEX_FILE_MAGIC);
+            indexStream.writeInt(BINARY_FILE_VERSION);
+            indexStream.writeByte(RECORD_RUN);
+            indexStream.writeUTF(runID == null ? "" : runID);
+            writeAttributes(indexStream, runAttributes);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath(), e);
+        }
+
+        flushAndCheck();
+    }
+
+    @Override
+    protected synchronized void writeBlock(Block block) {
+        try {
+            // write out vector declaration if not yet done
+            if (block.header != null) {
+                if (dataChannel == null)
+                    open();
+                indexStream.write(block.header);
+            }
+
+            // unlike the text format, empty blocks are not recorded
+            int n = block.n;
+            if (n == 0)
+                return;
+
+            boolean longTimes = true;
+            for (int i=0; i<n && longTimes; i++)
+                if (block.timeTypes[i] != TIME_LONG)
+                    longTimes = false;
+
+            // block header and times
+            ByteBuffer buf = ensureCapacity(blockBuffer, 18 + 10*n);
+            buf.clear();
+            buf.putInt(block.vectorId);
+            buf.putInt(n);
+            buf.put(longTimes ? TIME_ENCODING_LONG : TIME_ENCODING_DOUBLE);
+            buf.put(compressValues ? VALUE_ENCODING_DEFLATE : VALUE_ENCODING_RAW);
+            int timesLengthPos = buf.position();
+            buf.putInt(0);
+            long prev = 0;
+            for (int i=0; i<n; i++) {
+                long t = longTimes ? block.timeBits[i] : Double.doubleToRawLongBits(getTimeAsDouble(block, i));
+                putVarLong(buf, zigzag(t - prev));
+                prev = t;
+            }
+            buf.putInt(timesLengthPos, buf.position() - timesLengthPos - 4);
+
+            // values
+            ByteBuffer values = ensureCapacity(valueBuffer, 8*n);
+            values.clear();
+            long prevBits = 0;
+            for (int i=0; i<n; i++) {
+                long bits = Double.doubleToRawLongBits(block.values[i]);
+                values.putLong(compressValues ? bits ^ prevBits : bits);
+                prevBits = bits;
+            }
+            values.flip();
+            if (!compressValues) {
+                buf = ensureCapacity(buf, buf.position() + 4 + values.remaining());
+                buf.putInt(values.remaining());
+                buf.put(values);
+            }
+            else {
+                deflater.reset();
+                deflater.setInput(values.array(), 0, values.limit());
+                deflater.finish();
+                int valuesLengthPos = buf.position();
+                buf.putInt(0);
+                while (!deflater.finished()) {
+                    int len = deflater.deflate(deflateBuffer);
+                    buf = ensureCapacity(buf, buf.position() + len);
+                    buf.put(deflateBuffer, 0, len);
+                }
+                buf.putInt(valuesLengthPos, buf.position() - valuesLengthPos - 4);
+            }
+            blockBuffer = buf;
+            valueBuffer = values;
+
+            // write data
+            buf.flip();
+            long blockOffset = dataChannel.position();
+            int blockSize = buf.remaining();
+            writeFully(dataChannel, buf);
+
+            // write index; the data it refers to is already in the file
+            indexStream.writeByte(RECORD_BLOCK);
+            indexStream.writeInt(block.vectorId);
+            indexStream.writeLong(blockOffset);
+            indexStream.writeInt(blockSize);
+            indexStream.writeInt(n);
+            indexStream.writeByte(longTimes ? TIME_ENCODING_LONG : TIME_ENCODING_DOUBLE);
+            if (longTimes) {
+                indexStream.writeLong(block.timeBits[0]);
+                indexStream.writeLong(block.timeBits[n-1]);
+            }
+            else {
+                indexStream.writeDouble(getTimeAsDouble(block, 0));
+                indexStream.writeDouble(getTimeAsDouble(block, n-1));
+            }
+            indexStream.writeDouble(block.min);
+            indexStream.writeDouble(block.max);
+            indexStream.writeDouble(block.sum);
+            indexStream.writeDouble(block.sqrSum);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Error recording vector results:" + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected synchronized void flushAndCheck() {
+        if (indexStream == null)
+            return;
+        try {
+            indexStream.flush();
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath(), e);
+        }
+    }
+
+    @Override
+    protected synchronized void closeFiles() {
+        if (dataChannel != null) {
+            try {
+                dataChannel.close();
+            }
+            catch (IOException e) {
+                throw new ResultRecordingException("Cannot write output vector file " + file.getPath(), e);
+            }
+
+            // record size and timestamp of the vector file, for up-to-date checks
+            try {
+                indexStream.writeByte(RECORD_END);
+                indexStream.writeLong(file.length());
+                indexStream.writeLong(file.lastModified()/1000);
+                indexStream.close();
+            }
+            catch (IOException e) {
+                throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath(), e);
+            }
+            deflater.end();
+        }
+    }
+
+    protected static double getTimeAsDouble(Block block, int i) {
+        switch (block.timeTypes[i]) {
+            case TIME_DOUBLE: return Double.longBitsToDouble(block.timeBits[i]);
+            case TIME_LONG: return block.timeBits[i];
+            default: return block.otherTimes[i].doubleValue();
+        }
+    }
+
+    protected static ByteBuffer ensureCapacity(ByteBuffer buf, int capacity) {
+        if (buf.capacity() >= capacity)
+            return buf;
+        ByteBuffer newBuf = ByteBuffer.allocate(Math.max(capacity, buf.capacity()*2));
+        buf.flip();
+        newBuf.put(buf);
+        return newBuf;
+    }
+
+    protected static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    protected static void putVarLong(ByteBuffer buf, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte)v);
+    }
+
+    protected static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            channel.write(buf);
+    }
+}
@@ -0,0 +1,275 @@
+package org.omnetpp.scave.writers.impl;
+
+import static org.omnetpp.scave.writers.impl.BinaryFileOutputVectorManager.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads vector files written by BinaryFileOutputVectorManager. The index file
+ * is loaded when the reader is created; data blocks are read on demand.
+ */
+public class BinaryVectorFileReader {
+    protected File file;
+    protected File indexFile;
+    protected RandomAccessFile dataFile;
+    protected FileChannel dataChannel;
+
+    protected String runID;
+    protected Map<String,String> runAttributes;
+    protected Map<Integer,VectorInfo> vectors = new LinkedHashMap<Integer, VectorInfo>();
+    protected boolean complete = false;
+
+    public static class VectorInfo {
+        public int id;
+        public String componentPath;
+        public String vectorName;
+        public Map<String,String> attributes;
+        public List<BlockInfo> blocks = new ArrayList<BlockInfo>();
+    }
+
+    /**
+     * Index entry of a block. Start and end times are in the block's time
+     * encoding: raw long values for TIME_ENCODING_LONG, otherwise double bits.
+     */
+    public static class BlockInfo {
+        public int vectorId;
+        public long offset;
+        public int size;
+        public int count;
+        public byte timeEncoding;
+        public long startTimeBits;
+        public long endTimeBits;
+        public double min;
+        public double max;
+        public double sum;
+        public double sqrSum;
+
+        public double getStartTime() {
+            return timeEncoding == TIME_ENCODING_LONG ? startTimeBits : Double.longBitsToDouble(startTimeBits);
+        }
+
+        public double getEndTime() {
+            return timeEncoding == TIME_ENCODING_LONG ? endTimeBits : Double.longBitsToDouble(endTimeBits);
+        }
+    }
+
+    /**
+     * Data of a block. Times are in the block's time encoding, see BlockInfo.
+     */
+    public static class BlockData {
+        public int vectorId;
+        public int count;
+        public byte timeEncoding;
+        public long[] timeBits;
+        public double[] values;
+
+        public boolean hasLongTimes() {
+            return timeEncoding == TIME_ENCODING_LONG;
+        }
+
+        public double getTime(int i) {
+            return timeEncoding == TIME_ENCODING_LONG ? timeBits[i] : Double.longBitsToDouble(timeBits[i]);
+        }
+    }
+
+    public BinaryVectorFileReader(String fileName) throws IOException {
+        file = new File(fileName);
+        indexFile = new File(fileName.replaceFirst("\\.[^./\\:]*$", "") + ".vbi");
+        readIndex();
+        dataFile = new RandomAccessFile(file, "r");
+        dataChannel = dataFile.getChannel();
+        if (dataFile.readInt() != DATA_FILE_MAGIC || dataFile.readInt() != BINARY_FILE_VERSION)
+            throw new IOException("Not a binary vector file, or unsupported version: " + file.getPath());
+    }
+
+    public void close() throws IOException {
+        dataFile.close();
+    }
+
+    public String getRunID() {
+        return runID;
+    }
+
+    public Map<String, String> getRunAttributes() {
+        return runAttributes;
+    }
+
+    public List<VectorInfo> getVectors() {
+        return new ArrayList<VectorInfo>(vectors.values());
+    }
+
+    public VectorInfo getVector(int id) {
+        return vectors.get(id);
+    }
+
+    /**
+     * Returns false if the index file has no end record, i.e. the data file
+     * was still being written (or the simulation crashed) when the index was read.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    protected void readIndex() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            if (in.readInt() != INDEX_FILE_MAGIC || in.readInt() != BINARY_FILE_VERSION)
+                throw new IOException("Not a binary vector index file, or unsupported version: " + indexFile.getPath());
+            while (true) {
+                int recordType;
+                try {
+                    recordType = in.readByte();
+                }
+                catch (EOFException e) {
+                    break;
+                }
+                switch (recordType) {
+                    case RECORD_RUN:
+                        runID = in.readUTF();
+                        runAttributes = readAttributes(in);
+                        break;
+                    case RECORD_VECTOR: {
+                        VectorInfo vector = new VectorInfo();
+                        vector.id = in.readInt();
+                        vector.componentPath = in.readUTF();
+                        vector.vectorName = in.readUTF();
+                        vector.attributes = readAttributes(in);
+                        vectors.put(vector.id, vector);
+                        break;
+                    }
+                    case RECORD_BLOCK: {
+                        BlockInfo block = new BlockInfo();
+                        block.vectorId = in.readInt();
+                        block.offset = in.readLong();
+                        block.size = in.readInt();
+                        block.count = in.readInt();
+                        block.timeEncoding = in.readByte();
+                        block.startTimeBits = in.readLong();
+                        block.endTimeBits = in.readLong();
+                        block.min = in.readDouble();
+                        block.max = in.readDouble();
+                        block.sum = in.readDouble();
+                        block.sqrSum = in.readDouble();
+                        VectorInfo vector = vectors.get(block.vectorId);
+                        if (vector == null)
+                            throw new IOException("Block of undeclared vector " + block.vectorId + " in " + indexFile.getPath());
+                        vector.blocks.add(block);
+                        break;
+                    }
+                    case RECORD_END:
+                        in.readLong(); // file size
+                        in.readLong(); // modification time
+                        complete = true;
+                        break;
+                    default:
+                        throw new IOException("Invalid record type " + recordType + " in " + indexFile.getPath());
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    protected static Map<String,String> readAttributes(DataInputStream in) throws IOException {
+        Map<String,String> attributes = new LinkedHashMap<String, String>();
+        int n = in.readInt();
+        for (int i=0; i<n; i++) {
+            String key = in.readUTF();
+            attributes.put(key, in.readUTF());
+        }
+        return attributes;
+    }
+
+    /**
+     * Reads and decodes the given block from the data file.
+     */
+    public BlockData readBlock(BlockInfo blockInfo) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(blockInfo.size);
+        while (buf.hasRemaining())
+            if (dataChannel.read(buf, blockInfo.offset + buf.position()) < 0)
+                throw new EOFException("Unexpected end of file " + file.getPath());
+        buf.flip();
+
+        BlockData data = new BlockData();
+        data.vectorId = buf.getInt();
+        int n = data.count = buf.getInt();
+        data.timeEncoding = buf.get();
+        byte valueEncoding = buf.get();
+        if (data.vectorId != blockInfo.vectorId || n != blockInfo.count)
+            throw new IOException("Index does not match data file " + file.getPath() + " at offset " + blockInfo.offset);
+
+        // times
+        int timesLength = buf.getInt();
+        int timesEnd = buf.position() + timesLength;
+        data.timeBits = new long[n];
+        long prev = 0;
+        for (int i=0; i<n; i++) {
+            long zz = getVarLong(buf);
+            prev += (zz >>> 1) ^ -(zz & 1);
+            data.timeBits[i] = prev;
+        }
+        if (buf.position() != timesEnd)
+            throw new IOException("Corrupt time column in " + file.getPath() + " at offset " + blockInfo.offset);
+
+        // values
+        int valuesLength = buf.getInt();
+        data.values = new double[n];
+        if (valueEncoding == VALUE_ENCODING_RAW) {
+            for (int i=0; i<n; i++)
+                data.values[i] = buf.getDouble();
+        }
+        else if (valueEncoding == VALUE_ENCODING_DEFLATE) {
+            byte[] raw = new byte[8*n];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(buf.array(), buf.arrayOffset() + buf.position(), valuesLength);
+                int len = 0;
+                while (len < raw.length && !inflater.finished())
+                    len += inflater.inflate(raw, len, raw.length - len);
+                if (len != raw.length)
+                    throw new IOException("Corrupt value column in " + file.getPath() + " at offset " + blockInfo.offset);
+            }
+            catch (DataFormatException e) {
+                throw new IOException("Corrupt value column in " + file.getPath() + " at offset " + blockInfo.offset, e);
+            }
+            finally {
+                inflater.end();
+            }
+            ByteBuffer rawBuf = ByteBuffer.wrap(raw);
+            long prevBits = 0;
+            for (int i=0; i<n; i++) {
+                prevBits ^= rawBuf.getLong();
+                data.values[i] = Double.longBitsToDouble(prevBits);
+            }
+        }
+        else {
+            throw new IOException("Unknown value encoding " + valueEncoding + " in " + file.getPath() + " at offset " + blockInfo.offset);
+        }
+        return data;
+    }
+
+    protected static long getVarLong(ByteBuffer buf) {
+        long result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf.get();
+            result |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return result;
+        }
+    }
+}
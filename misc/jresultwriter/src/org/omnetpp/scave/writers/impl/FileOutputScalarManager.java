@@ -1,7 +1,9 @@
 package org.omnetpp.scave.writers.impl;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Map;
 
@@ -17,6 +19,10 @@ import org.omnetpp.scave.writers.ResultRecordingException;
  * This class does not support filtering (of scalars or recorded data),
  * this functionality may be added via subclasses.
  *
+ * Results may be recorded from several threads concurrently. Each result is
+ * formatted into a per-thread buffer first, then appended to the file as a
+ * whole, so lines of concurrently recorded results never get interleaved.
+ *
  * @author Andras
  */
 public class FileOutputScalarManager extends OutputFileManager implements IOutputScalarManager {
@@ -27,6 +33,21 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
     protected File file;
     protected PrintStream out;
 
+    /**
+     * Per-thread buffer for formatting one result.
+     */
+    protected static class RecordBuffer {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+    }
+
+    protected ThreadLocal<RecordBuffer> recordBuffer = new ThreadLocal<RecordBuffer>() {
+        @Override
+        protected RecordBuffer initialValue() {
+            return new RecordBuffer();
+        }
+    };
+
     public FileOutputScalarManager(String fileName) {
         file = new File(fileName);
         if (file.exists() && !file.delete())
@@ -52,14 +73,14 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
         flushAndCheck();
     }
 
-    public void close() {
+    public synchronized void close() {
         if (out != null) {
             flushAndCheck();
             out.close();
         }
     }
 
-    public void flush() {
+    public synchronized void flush() {
         if (out != null)
             flushAndCheck();
     }
@@ -74,39 +95,39 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
     }
 
     public void recordScalar(String componentPath, String name, double value, Map<String, String> attributes) {
-        if (out == null)
-            open();
-        out.println("scalar " + q(componentPath) + " " + q(name) + " " + value);
-        writeAttributes(out, attributes);
+        RecordBuffer buf = recordBuffer.get();
+        buf.out.println("scalar " + q(componentPath) + " " + q(name) + " " + value);
+        writeAttributes(buf.out, attributes);
+        append(buf);
     }
 
     public void recordScalar(String componentPath, String name, Number value, Map<String, String> attributes) {
-        if (out == null)
-            open();
-        out.println("scalar " + q(componentPath) + " " + q(name) + " " + value.toString());
-        writeAttributes(out, attributes);
+        RecordBuffer buf = recordBuffer.get();
+        buf.out.println("scalar " + q(componentPath) + " " + q(name) + " " + value.toString());
+        writeAttributes(buf.out, attributes);
+        append(buf);
     }
 
     public void recordStatistic(String componentPath, String name, IStatisticalSummary statistic, Map<String, String> attributes) {
-        if (out == null)
-            open();
+        RecordBuffer buf = recordBuffer.get();
+        PrintStream out = buf.out;
         out.println("statistic " + q(componentPath) + " " + q(name));
-        writeField("count", statistic.getN());
-        writeField("mean", statistic.getMean());
-        writeField("stddev", statistic.getStandardDeviation());
-        writeField("sum", statistic.getSum());
-        writeField("sqrsum", statistic.getSqrSum());
-        writeField("min", statistic.getMin());
-        writeField("max", statistic.getMax());
+        writeField(out, "count", statistic.getN());
+        writeField(out, "mean", statistic.getMean());
+        writeField(out, "stddev", statistic.getStandardDeviation());
+        writeField(out, "sum", statistic.getSum());
+        writeField(out, "sqrsum", statistic.getSqrSum());
+        writeField(out, "min", statistic.getMin());
+        writeField(out, "max", statistic.getMax());
 
         if (statistic instanceof IStatisticalSummary2) {
             IStatisticalSummary2 statistic2 = (IStatisticalSummary2)statistic;
             if (statistic2.isWeighted())
             {
-                writeField("weights", statistic2.getWeights());
-                writeField("weightedSum", statistic2.getWeightedSum());
-                writeField("sqrSumWeights", statistic2.getSqrSumWeights());
-                writeField("weightedSqrSum", statistic2.getWeightedSqrSum());
+                writeField(out, "weights", statistic2.getWeights());
+                writeField(out, "weightedSum", statistic2.getWeightedSum());
+                writeField(out, "sqrSumWeights", statistic2.getSqrSumWeights());
+                writeField(out, "weightedSqrSum", statistic2.getWeightedSqrSum());
             }
         }
 
@@ -122,10 +143,33 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
                 out.println("bin " + histogram.getCellBoundary(n) + histogram.getOverflowCell());
             }
         }
+        append(buf);
     }
 
     protected void writeField(String name, double value) {
+        writeField(out, name, value);
+    }
+
+    protected void writeField(PrintStream out, String name, double value) {
         if (!Double.isNaN(value))
             out.println("field " + q(name) + " " + value);
     }
+
+    /**
+     * Appends the formatted result to the file, and clears the buffer.
+     */
+    protected synchronized void append(RecordBuffer buf) {
+        buf.out.flush();
+        try {
+            if (out == null)
+                open();
+            buf.bytes.writeTo(out);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write output scalar file " + file.getPath(), e);
+        }
+        finally {
+            buf.bytes.reset();
+        }
+    }
 }
@@ -6,9 +6,16 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.omnetpp.scave.writers.IOutputVector;
 import org.omnetpp.scave.writers.IOutputVectorManager;
@@ -23,69 +30,168 @@ import org.omnetpp.scave.writers.ResultRecordingException;
  * This class does not support filtering (of vectors or recorded data)
  * at all -- this functionality may be added via subclasses.
  *
+ * Vectors may be created and recorded from several threads concurrently,
+ * provided that each vector is recorded in increasing timestamp order.
+ *
  * @author Andras
  */
 public class FileOutputVectorManager extends OutputFileManager implements IOutputVectorManager {
     public static final int FILE_VERSION = 2;
 
+    // how a buffered timestamp is stored (see Block.timeBits)
+    protected static final byte TIME_DOUBLE = 0;  // raw bits of a double; printed like Double
+    protected static final byte TIME_LONG = 1;    // long value; printed like Long or Integer
+    protected static final byte TIME_OTHER = 2;   // other Number subclass, kept in otherTimes[]; printed via toString()
+
     protected String runID;
     protected Map<String, String> runAttributes;
     protected File file;
-    protected FileOutputStream stream;
-    protected PrintStream out;
+    protected TextChannelWriter out;
     protected File indexFile;
-    protected FileOutputStream indexStream;
-    protected PrintStream indexOut;
+    protected TextChannelWriter indexOut;
 
     protected ISimulationTimeProvider simtimeProvider;
 
     protected int perVectorLimit = 1000;
     protected int totalLimit = 1000000;
 
-    protected int lastId = 0;
-    protected int nbuffered = 0;
+    protected AtomicInteger lastId = new AtomicInteger();
+    protected LongAdder nbuffered = new LongAdder(); // striped, so that concurrent recording threads don't contend on it
+    protected Lock totalFlushLock = new ReentrantLock();
+    protected volatile boolean anyBlockWritten = false; // i.e. whether the files have been (or are being) opened
 
-    protected Set<OutputVector> vectors = new HashSet<OutputVector>();
+    protected Map<Integer,OutputVector> vectors = new ConcurrentSkipListMap<Integer,OutputVector>(); // ordered by id, so that output is deterministic
 
-    class OutputVector implements IOutputVector {
-        int id;
-        byte[] header;
+    protected boolean asyncWriting = false;
+    protected int asyncQueueCapacity = BackgroundBlockWriter.DEFAULT_QUEUE_CAPACITY;
+    protected BackgroundBlockWriter<Block> asyncWriter;
+    protected Queue<Block> freeBlocks = new ConcurrentLinkedQueue<Block>();
+
+    /**
+     * Buffered data of one output vector. Arrays are reused across blocks,
+     * and only grow. In asynchronous mode, full blocks are handed over to the
+     * writer thread, and recycled via freeBlocks after they have been written.
+     */
+    protected static class Block {
+        int vectorId;
+        byte[] header; // vector declaration, if not yet written
 
         int n = 0;
-        Number[] times = new Number[10];
+        long[] timeBits = new long[10];
+        byte[] timeTypes = new byte[10];
+        Number[] otherTimes = null; // only allocated if needed
         double[] values = new double[10];
 
-        Number blockStartTime = 0;
-        Number blockEndTime = 0;
+        byte blockStartTimeType = TIME_LONG;
+        long blockStartTimeBits = 0;
+        Number blockStartOtherTime = null;
+        byte blockEndTimeType = TIME_LONG;
+        long blockEndTimeBits = 0;
+        Number blockEndOtherTime = null;
         double min = Double.NaN;
         double max = Double.NaN;
         double sum = 0;
         double sqrSum = 0;
 
+        void add(byte timeType, long timeBits, Number otherTime, double value) {
+            if (n == values.length)
+                grow();
+
+            this.timeTypes[n] = timeType;
+            this.timeBits[n] = timeBits;
+            if (otherTime != null) {
+                if (otherTimes == null)
+                    otherTimes = new Number[values.length];
+                otherTimes[n] = otherTime;
+            }
+            values[n] = value;
+            if (n == 0) {
+                blockStartTimeType = timeType;
+                blockStartTimeBits = timeBits;
+                blockStartOtherTime = otherTime;
+            }
+            blockEndTimeType = timeType;
+            blockEndTimeBits = timeBits;
+            blockEndOtherTime = otherTime;
+            n++;
+
+            // update statistics
+            if (min > value || Double.isNaN(min))
+                min = value;
+            if (max < value || Double.isNaN(max))
+                max = value;
+            sum += value;
+            sqrSum += value*value;
+        }
+
+        void grow() {
+            int newSize = (n * 3) / 2;
+            long[] newTimeBits = new long[newSize];
+            byte[] newTimeTypes = new byte[newSize];
+            double[] newValues = new double[newSize];
+            System.arraycopy(timeBits, 0, newTimeBits, 0, n);
+            System.arraycopy(timeTypes, 0, newTimeTypes, 0, n);
+            System.arraycopy(values, 0, newValues, 0, n);
+            timeBits = newTimeBits;
+            timeTypes = newTimeTypes;
+            values = newValues;
+            if (otherTimes != null) {
+                Number[] newOtherTimes = new Number[newSize];
+                System.arraycopy(otherTimes, 0, newOtherTimes, 0, n);
+                otherTimes = newOtherTimes;
+            }
+        }
+
+        void reset() {
+            // note: block start/end times are kept, they are written out for empty blocks as well
+            if (otherTimes != null)
+                Arrays.fill(otherTimes, 0, n, null);
+            header = null;
+            n = 0;
+            min = Double.NaN;
+            max = Double.NaN;
+            sum = 0;
+            sqrSum = 0;
+        }
+
+        void continueFrom(Block prev) {
+            vectorId = prev.vectorId;
+            blockStartTimeType = prev.blockStartTimeType;
+            blockStartTimeBits = prev.blockStartTimeBits;
+            blockStartOtherTime = prev.blockStartOtherTime;
+            blockEndTimeType = prev.blockEndTimeType;
+            blockEndTimeBits = prev.blockEndTimeBits;
+            blockEndOtherTime = prev.blockEndOtherTime;
+        }
+    }
+
+    /**
+     * Output vectors may be recorded from multiple threads. Every vector has its
+     * own buffer and lock, so threads only contend when writing the same vector
+     * or when writing blocks to the file.
+     *
+     * Public so that callers can use the unboxed recordDouble()/recordLong() methods.
+     */
+    public class OutputVector implements IOutputVector {
+        int id;
+        byte[] header;
+        Block block = new Block();
+        double lastTime = 0;  // for checking increasing timestamp order
+
         public OutputVector(int id, String componentPath, String vectorName, Map<String, String> attributes) {
             this.id = id;
+            block.vectorId = id;
 
             // postpone writing out vector declaration until there's actually something to record
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            PrintStream tmp = new PrintStream(bos);
-            tmp.println("vector " + id + " " + q(componentPath) + " " + q(vectorName) + " TV");
-            writeAttributes(tmp, attributes);
-            tmp.close();
-            header = bos.toByteArray();
-        }
-
-        protected void writeVectorHeader() throws IOException {
-            if (out == null)
-                open();
-            out.write(header);
-            indexOut.write(header);
-            header = null;
+            header = createVectorHeader(id, componentPath, vectorName, attributes);
         }
 
         public void close() {
             flush();
-            vectors.remove(this);
-            id = -1; // i.e. dead object
+            synchronized (this) {
+                vectors.remove(id);
+                id = -1; // i.e. dead object
+            }
         }
 
         public void flush() {
@@ -93,6 +199,8 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
                 throw new IllegalStateException("Output vector already closed");
 
             writeBlock();  // implies file flushing as well
+            if (asyncWriter != null)
+                asyncWriter.flush();
         }
 
         public boolean record(double value) {
@@ -103,39 +211,43 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
         }
 
         public boolean record(Number time, double value) {
-            if (id == -1)
-                throw new IllegalStateException("Attempt to write to an output vector that's already closed");
-
-            if (time.doubleValue() < blockEndTime.doubleValue())
-                throw new IllegalStateException("Vector data must be recorded in increasing timestamp order (t="+time+ "tprev="+blockEndTime+")");
-
-            if (n == times.length) {
-                int newSize = (n * 3) / 2;
-                Number[] newTimes = new Number[newSize];
-                double[] newValues = new double[newSize];
-                System.arraycopy(times, 0, newTimes, 0, n);
-                System.arraycopy(values, 0, newValues, 0, n);
-                times = newTimes;
-                values = newValues;
-            }
+            if (time instanceof Double)
+                return recordDouble(time.doubleValue(), value);
+            else if (time instanceof Integer || time instanceof Long || time instanceof Short || time instanceof Byte)
+                return recordLong(time.longValue(), value);
+            else
+                return store(TIME_OTHER, 0, time, time.doubleValue(), value);
+        }
 
-            // store
-            times[n] = time;
-            values[n] = value;
-            if (n == 0)
-                blockStartTime = time;
-            blockEndTime = time;
-            n++;
+        /**
+         * Same as record(Number, double) with a Double timestamp, but without boxing.
+         * Deliberately not an IOutputVector overload of record(), as that would change
+         * overload resolution (and thus the output) for e.g. float timestamps.
+         */
+        public boolean recordDouble(double time, double value) {
+            return store(TIME_DOUBLE, Double.doubleToRawLongBits(time), null, time, value);
+        }
 
-            // update statistics
-            if (min > value || Double.isNaN(min))
-                min = value;
-            if (max < value || Double.isNaN(max))
-                max = value;
-            sum += value;
-            sqrSum += value*value;
+        /**
+         * Same as record(Number, double) with a Long timestamp, but without boxing.
+         */
+        public boolean recordLong(long time, double value) {
+            return store(TIME_LONG, time, null, time, value);
+        }
 
-            ++nbuffered;
+        protected boolean store(byte timeType, long timeBits, Number otherTime, double time, double value) {
+            synchronized (this) {
+                if (id == -1)
+                    throw new IllegalStateException("Attempt to write to an output vector that's already closed");
+
+                if (time < lastTime)
+                    throw new IllegalStateException("Vector data must be recorded in increasing timestamp order (t="+time+ "tprev="+lastTime+")");
+
+                block.add(timeType, timeBits, otherTime, value);
+                lastTime = time;
+            }
+
+            nbuffered.increment();
 
             // flush if needed
             changed(this);
@@ -143,52 +255,105 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
             return false;
         }
 
-        protected void writeBlock() {
-            try {
-                // write out vector declaration if not yet done
-                if (header != null)
-                    writeVectorHeader();
-
-                // write data
-                long blockOffset = stream.getChannel().position();
-                for (int i=0; i<n; i++)
-                    out.println(id + " " + times[i] + " " + values[i]);
-                long blockSize = stream.getChannel().position() - blockOffset;
-
-                // make sure that the offsets referred to by the index file are exists in the vector file
-                // so the index can be used to access the vector file while it is being written
-                out.flush();
-                if (out.checkError())
-                    throw new ResultRecordingException("Cannot write output vector file " + file.getPath());
-
-                // write index
-                indexOut.println(id + " " + blockOffset + " " + blockSize + " " +
-                        blockStartTime + " " + blockEndTime + " " +
-                        n + " " + min + " " + max + " " + sum + " " + sqrSum);
-
-
-                // reset block
-                nbuffered -= n;
-                n = 0;
-                min = Double.NaN;
-                max = Double.NaN;
-                sum = 0;
-                sqrSum = 0;
-                times = new Number[10];
-                values = new double[10];
+        /**
+         * Writes out the buffered data, or in asynchronous mode, hands it
+         * over to the writer thread.
+         */
+        protected synchronized void writeBlock() {
+            // write out vector declaration if not yet done
+            if (header != null) {
+                block.header = header;
+                header = null;
             }
-            catch (IOException e) {
-                throw new ResultRecordingException("Error recording vector results:" + e.getMessage(), e);
+
+            nbuffered.add(-block.n);
+            anyBlockWritten = true;
+            if (asyncWriter == null) {
+                FileOutputVectorManager.this.writeBlock(block);
+                block.reset();
+            }
+            else {
+                Block newBlock = freeBlocks.poll();
+                if (newBlock == null)
+                    newBlock = new Block();
+                newBlock.continueFrom(block);
+                asyncWriter.submit(block);
+                block = newBlock;
+            }
+        }
+    }
+
+    /**
+     * Returns the vector declaration, to be written out with the first block of the vector.
+     */
+    protected byte[] createVectorHeader(int id, String componentPath, String vectorName, Map<String, String> attributes) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintStream tmp = new PrintStream(bos);
+        tmp.println("vector " + id + " " + q(componentPath) + " " + q(vectorName) + " TV");
+        writeAttributes(tmp, attributes);
+        tmp.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Writes the given block to the vector file, and the corresponding entry
+     * to the index file. In asynchronous mode, it is called on the writer thread.
+     * Synchronized, as blocks of different vectors may be written concurrently.
+     */
+    protected synchronized void writeBlock(Block block) {
+        try {
+            // write out vector declaration if not yet done
+            if (block.header != null) {
+                if (out == null)
+                    open();
+                out.write(block.header);
+                indexOut.write(block.header);
+            }
+
+            // write data
+            int id = block.vectorId;
+            long blockOffset = out.position();
+            for (int i=0; i<block.n; i++) {
+                out.write(id).write(' ');
+                writeTime(out, block.timeTypes[i], block.timeBits[i], block.otherTimes == null ? null : block.otherTimes[i]);
+                out.write(' ').write(block.values[i]).newLine();
             }
+            long blockSize = out.position() - blockOffset;
+
+            // make sure that the offsets referred to by the index file are exists in the vector file
+            // so the index can be used to access the vector file while it is being written
+            out.flush();
+
+            // write index
+            indexOut.write(id).write(' ').write(blockOffset).write(' ').write(blockSize).write(' ');
+            writeTime(indexOut, block.blockStartTimeType, block.blockStartTimeBits, block.blockStartOtherTime);
+            indexOut.write(' ');
+            writeTime(indexOut, block.blockEndTimeType, block.blockEndTimeBits, block.blockEndOtherTime);
+            indexOut.write(' ').write(block.n).write(' ').write(block.min).write(' ').write(block.max).write(' ').write(block.sum).write(' ').write(block.sqrSum).newLine();
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Error recording vector results:" + e.getMessage(), e);
+        }
+    }
+
+    protected static void writeTime(TextChannelWriter writer, byte timeType, long timeBits, Number otherTime) throws IOException {
+        switch (timeType) {
+            case TIME_DOUBLE: writer.write(Double.longBitsToDouble(timeBits)); break;
+            case TIME_LONG: writer.write(timeBits); break;
+            default: writer.write(String.valueOf(otherTime));
         }
     }
 
     public FileOutputVectorManager(String fileName) {
+        this(fileName, ".vci");
+    }
+
+    protected FileOutputVectorManager(String fileName, String indexFileExtension) {
         file = new File(fileName);
         if (file.exists() && !file.delete())
             throw new ResultRecordingException("Cannot delete old output vector file " + file.getPath());
 
-        String indexFileName = fileName.replaceFirst("\\.[^./\\:]*$", "") + ".vci";
+        String indexFileName = fileName.replaceFirst("\\.[^./\\:]*$", "") + indexFileExtension;
         indexFile = new File(indexFileName);
         if (indexFile.exists() && !indexFile.delete())
             throw new ResultRecordingException("Cannot delete old output vector index file " + indexFile.getPath());
@@ -218,12 +383,59 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
         this.totalLimit = count;
     }
 
+    public boolean isAsyncWriting() {
+        return asyncWriting;
+    }
+
+    /**
+     * Turns on asynchronous mode, in which blocks are formatted and written out
+     * by a background thread, so that record() does not block on file I/O
+     * (unless the writer thread falls behind by more than the queue capacity).
+     * Must be called before open().
+     */
+    public void setAsyncWriting(boolean asyncWriting) {
+        if (asyncWriter != null)
+            throw new IllegalStateException("Cannot change asynchronous mode after open()");
+        this.asyncWriting = asyncWriting;
+    }
+
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of blocks that may be waiting for the writer
+     * thread in asynchronous mode. Must be called before open().
+     */
+    public void setAsyncQueueCapacity(int blocks) {
+        if (asyncWriter != null)
+            throw new IllegalStateException("Cannot change queue capacity after open()");
+        this.asyncQueueCapacity = blocks;
+    }
+
     public void open(String runID, Map<String, String> runAttributes) {
         this.runID = runID;
         this.runAttributes = runAttributes;
+
+        if (asyncWriting) {
+            asyncWriter = new BackgroundBlockWriter<Block>("Vector writer for " + file.getName(), asyncQueueCapacity) {
+                @Override
+                protected void writeBlock(Block block) {
+                    FileOutputVectorManager.this.writeBlock(block);
+                    block.reset();
+                    freeBlocks.offer(block);
+                }
+
+                @Override
+                protected void flushOutput() {
+                    flushAndCheck();
+                }
+            };
+        }
     }
 
     protected void open() {
+        FileOutputStream stream, indexStream;
         try {
             stream = new FileOutputStream(file);
         }
@@ -237,53 +449,92 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
             throw new ResultRecordingException("Cannot open output vector index file " + indexFile.getPath(), e);
         }
 
-        out = new PrintStream(stream);
-        out.println("version " + FILE_VERSION);
-        out.println();
-        writeRunHeader(out, runID, runAttributes);
+        out = new TextChannelWriter(stream.getChannel());
+        indexOut = new TextChannelWriter(indexStream.getChannel());
 
-        indexOut = new PrintStream(indexStream);
-        indexOut.format("%64s\n", " "); // room for "file ...." line
-        indexOut.println("version " + FILE_VERSION);
-        indexOut.println();
-        writeRunHeader(indexOut, runID, runAttributes);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintStream tmp = new PrintStream(bos);
+        tmp.println("version " + FILE_VERSION);
+        tmp.println();
+        writeRunHeader(tmp, runID, runAttributes);
+        tmp.close();
+        byte[] fileHeader = bos.toByteArray();
+
+        try {
+            out.write(fileHeader);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write output vector file " + file.getPath(), e);
+        }
+        try {
+            indexOut.write(String.format("%64s\n", " ")); // room for "file ...." line
+            indexOut.write(fileHeader);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath(), e);
+        }
 
         flushAndCheck();
     }
 
     public void close() {
-        if (out != null) {
+        if (anyBlockWritten)
             flush();
-            out.close();
+        if (asyncWriter != null) {
+            asyncWriter.shutdown();
+            asyncWriter = null;
+        }
+        closeFiles();
+        vectors.clear();
+    }
+
+    protected synchronized void closeFiles() {
+        if (out != null) {
+            try {
+                out.close();
+            }
+            catch (IOException e) {
+                throw new ResultRecordingException("Cannot write output vector file " + file.getPath(), e);
+            }
 
             // record size and timestamp of the vector file, for up-to-date checks
             try {
-                indexStream.getChannel().position(0);
+                byte[] fileLine = ("file " + file.length() + " " + file.lastModified()/1000).getBytes();
+                indexOut.getChannel().write(ByteBuffer.wrap(fileLine), 0);
+                indexOut.close();
             }
             catch (IOException e) {
-                throw new ResultRecordingException("Cannot rewind output vector index file " + indexFile.getPath(), e);
+                throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath(), e);
             }
-            indexOut.print("file " + file.length() + " " + file.lastModified()/1000);
-            if (indexOut.checkError())
-                throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath());
-            indexOut.close();
         }
-        vectors.clear();
     }
 
     public void flush() {
-        for (OutputVector v : vectors)
+        for (OutputVector v : vectors.values())
             v.writeBlock();
 
-        if (out != null)
+        if (asyncWriter != null)
+            asyncWriter.flush();
+        else
             flushAndCheck();
     }
 
-    protected void flushAndCheck() {
-        if (out.checkError()) // implies flush()
-            throw new ResultRecordingException("Cannot write output vector file " + file.getPath());
-        if (indexOut.checkError())
-            throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath());
+    protected synchronized void flushAndCheck() {
+        if (out == null)
+            return;
+        // vector file first, so that the index never refers to data not yet in the file
+        try {
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write output vector file " + file.getPath(), e);
+        }
+        try {
+            indexOut.flush();
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath(), e);
+        }
     }
 
     public String getFileName() {
@@ -291,18 +542,28 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
     }
 
     public IOutputVector createVector(String componentPath, String vectorName, Map<String, String> attributes) {
-        int id = ++lastId;
+        int id = lastId.incrementAndGet();
         OutputVector vector = new OutputVector(id, componentPath, vectorName, attributes);
-        vectors.add(vector);
+        vectors.put(id, vector);
         return vector;
     }
 
+    /**
+     * Called after a value was recorded into the given vector, outside the
+     * vector's lock. Only one thread at a time performs a full flush; others
+     * just carry on recording.
+     */
     protected void changed(OutputVector vector) {
-        if (vector.n > perVectorLimit)
+        if (vector.block.n > perVectorLimit)
             vector.writeBlock();
-        else if (nbuffered > totalLimit) {
-            for (OutputVector v : vectors)
-                v.writeBlock();
+        else if (nbuffered.sum() > totalLimit && totalFlushLock.tryLock()) {
+            try {
+                for (OutputVector v : vectors.values())
+                    v.writeBlock();
+            }
+            finally {
+                totalFlushLock.unlock();
+            }
         }
     }
 }
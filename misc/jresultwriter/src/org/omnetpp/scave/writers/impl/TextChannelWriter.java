@@ -0,0 +1,157 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered writer for ASCII text files, used by FileOutputVectorManager.
+ * Text is accumulated in a direct ByteBuffer and written to the underlying
+ * FileChannel when the buffer fills up or on flush(). Numbers are formatted
+ * straight into the buffer, so writing a vector data line does not allocate.
+ *
+ * Numbers are formatted exactly as String.valueOf() would format them, so
+ * the output is byte-for-byte identical to what PrintStream produces.
+ */
+public class TextChannelWriter {
+    public static final int DEFAULT_BUFFER_SIZE = 64*1024;
+
+    private static final byte[] NEWLINE = System.getProperty("line.separator").getBytes();
+    private static final byte[] LONG_MIN_VALUE = String.valueOf(Long.MIN_VALUE).getBytes();
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private byte[] digits = new byte[20];
+    private StringBuilder scratch = new StringBuilder(32);
+
+    public TextChannelWriter(FileChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public TextChannelWriter(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the file offset the next byte will be written at, i.e. the
+     * channel position plus the number of bytes currently buffered.
+     */
+    public long position() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    public TextChannelWriter write(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            flush();
+            if (bytes.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes));
+                return this;
+            }
+        }
+        buffer.put(bytes);
+        return this;
+    }
+
+    /**
+     * Writes the given string, which must contain only ASCII characters.
+     */
+    public TextChannelWriter write(CharSequence s) throws IOException {
+        int n = s.length();
+        for (int i=0; i<n; i++) {
+            if (!buffer.hasRemaining())
+                flush();
+            buffer.put((byte)s.charAt(i));
+        }
+        return this;
+    }
+
+    public TextChannelWriter write(char ch) throws IOException {
+        ensureRoom(1);
+        buffer.put((byte)ch);
+        return this;
+    }
+
+    public TextChannelWriter newLine() throws IOException {
+        ensureRoom(NEWLINE.length);
+        buffer.put(NEWLINE);
+        return this;
+    }
+
+    /**
+     * Writes the decimal representation of the given number, same as Long.toString().
+     */
+    public TextChannelWriter write(long value) throws IOException {
+        if (value == Long.MIN_VALUE)
+            return write(LONG_MIN_VALUE);
+
+        ensureRoom(20);
+        if (value < 0) {
+            buffer.put((byte)'-');
+            value = -value;
+        }
+        int k = digits.length;
+        do {
+            digits[--k] = (byte)('0' + (int)(value % 10));
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, k, digits.length - k);
+        return this;
+    }
+
+    /**
+     * Writes the given number in the same format as Double.toString().
+     * Integral values below 10^7 (which Double.toString() prints as "<integer>.0")
+     * are written directly; other values are formatted via a reused StringBuilder.
+     */
+    public TextChannelWriter write(double value) throws IOException {
+        if (value > -1e7 && value < 1e7 && value == (long)value && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS) {
+            write((long)value);
+            ensureRoom(2);
+            buffer.put((byte)'.');
+            buffer.put((byte)'0');
+        }
+        else {
+            scratch.setLength(0);
+            scratch.append(value);
+            write(scratch);
+        }
+        return this;
+    }
+
+    /**
+     * Writes out buffered data to the channel.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Flushes buffered data, and closes the channel.
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    private void ensureRoom(int n) throws IOException {
+        if (buffer.remaining() < n)
+            flush();
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            channel.write(buf);
+    }
+}
@@ -0,0 +1,272 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.IOutputVectorManager;
+import org.omnetpp.scave.writers.impl.BinaryVectorFileReader.BlockData;
+import org.omnetpp.scave.writers.impl.BinaryVectorFileReader.BlockInfo;
+import org.omnetpp.scave.writers.impl.BinaryVectorFileReader.VectorInfo;
+
+/**
+ * Converts between textual OMNeT++ vector files (".vec") and the binary
+ * format written by BinaryFileOutputVectorManager. The input file is read,
+ * and its contents are recorded into an IOutputVectorManager. Integer
+ * timestamps stay integers, so the textual output reproduces the same
+ * data lines (though blocks may be split differently).
+ *
+ * Usage: VectorFileConverter &lt;inputfile&gt; &lt;outputfile&gt;
+ * The direction of the conversion is determined from the input file.
+ */
+public class VectorFileConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: VectorFileConverter <inputfile> <outputfile>");
+            System.err.println("Converts a .vec file to binary format, or a binary vector file to .vec.");
+            System.exit(1);
+        }
+        boolean binaryInput = isBinaryVectorFile(args[0]);
+        IOutputVectorManager manager = binaryInput ? new FileOutputVectorManager(args[1]) : new BinaryFileOutputVectorManager(args[1]);
+        convert(args[0], manager);
+    }
+
+    /**
+     * Reads the given vector file (either format), and records its contents
+     * into the given output vector manager, which is opened and closed.
+     */
+    public static void convert(String inputFileName, IOutputVectorManager manager) throws IOException {
+        if (isBinaryVectorFile(inputFileName))
+            convertBinary(inputFileName, manager);
+        else
+            convertText(inputFileName, manager);
+    }
+
+    public static boolean isBinaryVectorFile(String fileName) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+        try {
+            return in.available() >= 4 && in.readInt() == BinaryFileOutputVectorManager.DATA_FILE_MAGIC;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    protected static void convertBinary(String inputFileName, IOutputVectorManager manager) throws IOException {
+        BinaryVectorFileReader reader = new BinaryVectorFileReader(inputFileName);
+        try {
+            manager.open(reader.getRunID(), reader.getRunAttributes());
+
+            // create vectors in id order, so that they keep their ids if those were contiguous
+            List<VectorInfo> vectors = reader.getVectors();
+            Collections.sort(vectors, new Comparator<VectorInfo>() {
+                public int compare(VectorInfo a, VectorInfo b) {
+                    return Integer.compare(a.id, b.id);
+                }
+            });
+            Map<Integer,IOutputVector> outputVectors = new HashMap<Integer, IOutputVector>();
+            List<BlockInfo> blocks = new ArrayList<BlockInfo>();
+            for (VectorInfo vector : vectors) {
+                outputVectors.put(vector.id, manager.createVector(vector.componentPath, vector.vectorName, vector.attributes.isEmpty() ? null : vector.attributes));
+                blocks.addAll(vector.blocks);
+            }
+
+            // replay blocks in file order
+            Collections.sort(blocks, new Comparator<BlockInfo>() {
+                public int compare(BlockInfo a, BlockInfo b) {
+                    return Long.compare(a.offset, b.offset);
+                }
+            });
+            for (BlockInfo blockInfo : blocks) {
+                BlockData data = reader.readBlock(blockInfo);
+                IOutputVector vector = outputVectors.get(data.vectorId);
+                if (data.hasLongTimes())
+                    for (int i=0; i<data.count; i++)
+                        vector.record(data.timeBits[i], data.values[i]);
+                else
+                    for (int i=0; i<data.count; i++)
+                        vector.record(data.getTime(i), data.values[i]);
+            }
+            manager.close();
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Vector declaration read from a .vec file.
+     */
+    protected static class VectorDeclaration {
+        String componentPath;
+        String vectorName;
+        String columns;
+        Map<String,String> attributes = new LinkedHashMap<String, String>();
+    }
+
+    protected static void convertText(String inputFileName, IOutputVectorManager manager) throws IOException {
+        // first pass: read run and vector declarations, so that vectors can be created in id order
+        String runID = null;
+        Map<String,String> runAttributes = new LinkedHashMap<String, String>();
+        Map<Integer,VectorDeclaration> declarations = new TreeMap<Integer, VectorDeclaration>();
+        BufferedReader reader = new BufferedReader(new FileReader(inputFileName));
+        try {
+            Map<String,String> currentAttributes = null;
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || Character.isDigit(line.charAt(0)))
+                    continue;
+
+                List<String> tokens = tokenize(line);
+                String keyword = tokens.get(0);
+                if (keyword.equals("attr")) {
+                    if (tokens.size() != 3)
+                        throw new IOException(inputFileName + ":" + lineNumber + ": invalid attr line");
+                    if (currentAttributes != null)
+                        currentAttributes.put(tokens.get(1), tokens.get(2));
+                }
+                else if (keyword.equals("run")) {
+                    if (runID != null)
+                        throw new IOException(inputFileName + ":" + lineNumber + ": files with multiple runs are not supported");
+                    runID = tokens.get(1);
+                    currentAttributes = runAttributes;
+                }
+                else if (keyword.equals("vector")) {
+                    // vector <id> <module> <name> [<columns>]
+                    if (tokens.size() < 4)
+                        throw new IOException(inputFileName + ":" + lineNumber + ": invalid vector declaration");
+                    VectorDeclaration declaration = new VectorDeclaration();
+                    declaration.componentPath = tokens.get(2);
+                    declaration.vectorName = tokens.get(3);
+                    declaration.columns = tokens.size() > 4 ? tokens.get(4) : "TV";
+                    if (declaration.columns.indexOf('T') == -1 || declaration.columns.indexOf('V') == -1)
+                        throw new IOException(inputFileName + ":" + lineNumber + ": unsupported vector columns " + declaration.columns);
+                    declarations.put(Integer.parseInt(tokens.get(1)), declaration);
+                    currentAttributes = declaration.attributes;
+                }
+                else {
+                    // other lines ("version", "param", "itervar", etc.) are ignored
+                    currentAttributes = null;
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        manager.open(runID, runAttributes);
+        Map<Integer,IOutputVector> outputVectors = new HashMap<Integer, IOutputVector>();
+        for (Map.Entry<Integer,VectorDeclaration> entry : declarations.entrySet()) {
+            VectorDeclaration declaration = entry.getValue();
+            outputVectors.put(entry.getKey(), manager.createVector(declaration.componentPath, declaration.vectorName, declaration.attributes.isEmpty() ? null : declaration.attributes));
+        }
+
+        // second pass: data lines
+        reader = new BufferedReader(new FileReader(inputFileName));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || !Character.isDigit(line.charAt(0)))
+                    continue;
+
+                // <vectorId> <columns...>
+                String[] fields = line.split(" ");
+                int id = Integer.parseInt(fields[0]);
+                VectorDeclaration declaration = declarations.get(id);
+                if (declaration == null)
+                    throw new IOException(inputFileName + ":" + lineNumber + ": data for undeclared vector " + id);
+                if (fields.length != declaration.columns.length() + 1)
+                    throw new IOException(inputFileName + ":" + lineNumber + ": wrong number of columns");
+                String time = fields[declaration.columns.indexOf('T') + 1];
+                double value = Double.parseDouble(fields[declaration.columns.indexOf('V') + 1]);
+                IOutputVector vector = outputVectors.get(id);
+                if (isInteger(time))
+                    vector.record(Long.parseLong(time), value);
+                else
+                    vector.record(Double.parseDouble(time), value);
+            }
+        }
+        finally {
+            reader.close();
+        }
+        manager.close();
+    }
+
+    protected static boolean isInteger(String s) {
+        for (int i=0; i<s.length(); i++) {
+            char ch = s.charAt(i);
+            if (!Character.isDigit(ch) && !(i == 0 && ch == '-'))
+                return false;
+        }
+        return s.length() > 0;
+    }
+
+    /**
+     * Splits the line into tokens, undoing the quoting done by OutputFileManager.q().
+     */
+    protected static List<String> tokenize(String line) throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        int i = 0;
+        int n = line.length();
+        while (i < n) {
+            char ch = line.charAt(i);
+            if (ch == ' ' || ch == '\t') {
+                i++;
+            }
+            else if (ch != '"') {
+                int start = i;
+                while (i < n && line.charAt(i) != ' ' && line.charAt(i) != '\t')
+                    i++;
+                tokens.add(line.substring(start, i));
+            }
+            else {
+                StringBuilder buf = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= n)
+                        throw new IOException("Unterminated string constant: " + line);
+                    ch = line.charAt(i++);
+                    if (ch == '"')
+                        break;
+                    if (ch != '\\') {
+                        buf.append(ch);
+                        continue;
+                    }
+                    if (i >= n)
+                        throw new IOException("Unterminated string constant: " + line);
+                    ch = line.charAt(i++);
+                    switch (ch) {
+                        case 'b': buf.append('\b'); break;
+                        case 'f': buf.append('\f'); break;
+                        case 'n': buf.append('\n'); break;
+                        case 'r': buf.append('\r'); break;
+                        case 't': buf.append('\t'); break;
+                        case 'x':
+                            buf.append((char)Integer.parseInt(line.substring(i, Math.min(i+2, n)), 16));
+                            i += 2;
+                            break;
+                        default: buf.append(ch); // '"', '\\', etc.
+                    }
+                }
+                tokens.add(buf.toString());
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,127 @@
+package org.omnetpp.scave.writers.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.IOutputVectorManager;
+import org.omnetpp.scave.writers.impl.BinaryFileOutputVectorManager;
+import org.omnetpp.scave.writers.impl.BinaryVectorFileReader;
+import org.omnetpp.scave.writers.impl.BinaryVectorFileReader.BlockData;
+import org.omnetpp.scave.writers.impl.BinaryVectorFileReader.BlockInfo;
+import org.omnetpp.scave.writers.impl.BinaryVectorFileReader.VectorInfo;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
+import org.omnetpp.scave.writers.impl.VectorFileConverter;
+
+/**
+ * Converts a .vec file to the binary format and back (with compressed and
+ * with raw values), and checks that the data survive the round trip, and
+ * that the block statistics in the binary index match the data.
+ */
+public class BinaryVectorFileTest {
+    public static void main(String[] args) throws IOException {
+        Map<String,String> runAttributes = new HashMap<String, String>();
+        runAttributes.put(IOutputVectorManager.ATTR_NETWORK, "Test");
+        recordData(new FileOutputVectorManager("original.vec"), FileOutputVectorManager.generateRunID("binary"), runAttributes);
+
+        for (boolean compress : new boolean[] {true, false}) {
+            BinaryFileOutputVectorManager binaryManager = new BinaryFileOutputVectorManager("converted.vecb");
+            binaryManager.setCompressValues(compress);
+            VectorFileConverter.convert("original.vec", binaryManager);
+            checkIndex("converted.vecb");
+
+            VectorFileConverter.convert("converted.vecb", new FileOutputVectorManager("roundtrip.vec"));
+            check(readVectorFile("original.vec").equals(readVectorFile("roundtrip.vec")), "round trip changed the data");
+
+            System.out.println((compress ? "compressed" : "raw") + ": .vec size: " + new File("original.vec").length() + ", binary size: " + new File("converted.vecb").length());
+        }
+        System.out.println("PASS");
+    }
+
+    protected static void recordData(IOutputVectorManager manager, String runID, Map<String,String> runAttributes) {
+        Random random = new Random(7);
+        Map<String,String> attributes = new HashMap<String, String>();
+        attributes.put(IOutputVectorManager.ATTR_UNIT, "packets");
+
+        manager.open(runID, runAttributes);
+        List<IOutputVector> vectors = new ArrayList<IOutputVector>();
+        for (int i=0; i<10; i++)
+            vectors.add(manager.createVector("net.host[" + i + "]", i%2==0 ? "queue length" : "end-to-end \"delay\"", i%3==0 ? attributes : null));
+        double t = 0;
+        for (int i=0; i<100000; i++) {
+            t += random.nextDouble() * 0.01;
+            int k = random.nextInt(vectors.size());
+            if (k % 2 == 0)
+                vectors.get(k).record(i, random.nextInt(50));
+            else
+                vectors.get(k).record(t, random.nextGaussian());
+        }
+        manager.close();
+    }
+
+    protected static void checkIndex(String fileName) throws IOException {
+        BinaryVectorFileReader reader = new BinaryVectorFileReader(fileName);
+        try {
+            check(reader.isComplete(), "index is incomplete");
+            for (VectorInfo vector : reader.getVectors()) {
+                for (BlockInfo blockInfo : vector.blocks) {
+                    BlockData data = reader.readBlock(blockInfo);
+                    double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                    for (int i=0; i<data.count; i++) {
+                        sum += data.values[i];
+                        min = Math.min(min, data.values[i]);
+                        max = Math.max(max, data.values[i]);
+                    }
+                    check(sum == blockInfo.sum && min == blockInfo.min && max == blockInfo.max, "block statistics mismatch");
+                    check(data.getTime(0) == blockInfo.getStartTime() && data.getTime(data.count-1) == blockInfo.getEndTime(), "block time range mismatch");
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the vector declarations and the data lines of the file, grouped by vector.
+     */
+    protected static Map<String,List<String>> readVectorFile(String fileName) throws IOException {
+        Map<String,List<String>> result = new HashMap<String, List<String>>();
+        BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        try {
+            String line;
+            List<String> current = null;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("vector ")) {
+                    String id = line.split(" ")[1];
+                    current = new ArrayList<String>();
+                    current.add(line);
+                    result.put(id, current);
+                }
+                else if (line.startsWith("attr ") && current != null) {
+                    current.add(line);
+                }
+                else if (!line.isEmpty() && Character.isDigit(line.charAt(0))) {
+                    String id = line.substring(0, line.indexOf(' '));
+                    result.get(id).add(line);
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    protected static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,168 @@
+package org.omnetpp.scave.writers.test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.omnetpp.scave.writers.IOutputScalarManager;
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.IOutputVectorManager;
+import org.omnetpp.scave.writers.impl.FileOutputScalarManager;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
+
+/**
+ * Stress test for recording results from multiple threads into the same
+ * FileOutputVectorManager and FileOutputScalarManager, in both synchronous
+ * and asynchronous mode. Every index entry is checked against the data in
+ * the vector file, and every scalar must be followed by its own attributes.
+ */
+public class ConcurrentRecordingTest {
+    static final int NUM_THREADS = 8;
+    static final int VECTORS_PER_THREAD = 5;
+    static final int SAMPLES_PER_THREAD = 200000;
+    static final int SCALARS_PER_THREAD = 2000;
+
+    public static void main(String[] args) throws Exception {
+        runTest("concurrent", false);
+        runTest("concurrent-async", true);
+        System.out.println("PASS");
+    }
+
+    protected static void runTest(String baseName, boolean async) throws Exception {
+        String runID = FileOutputVectorManager.generateRunID("concurrent");
+
+        final FileOutputVectorManager vectorManager = new FileOutputVectorManager(baseName + ".vec");
+        vectorManager.setTotalBufferLimit(5000); // exercise the flush-all path as well
+        vectorManager.setAsyncWriting(async);
+        vectorManager.open(runID, null);
+        final IOutputScalarManager scalarManager = new FileOutputScalarManager(baseName + ".sca");
+        scalarManager.open(runID, null);
+
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t=0; t<NUM_THREADS; t++) {
+            final int threadIndex = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        record(vectorManager, scalarManager, threadIndex);
+                    }
+                    catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        if (!errors.isEmpty())
+            throw new AssertionError(errors.get(0));
+
+        vectorManager.close();
+        scalarManager.close();
+
+        checkVectorFile(baseName);
+        checkScalarFile(baseName);
+    }
+
+    protected static void record(IOutputVectorManager vectorManager, IOutputScalarManager scalarManager, int threadIndex) {
+        IOutputVector[] vectors = new IOutputVector[VECTORS_PER_THREAD];
+        for (int i=0; i<VECTORS_PER_THREAD; i++)
+            vectors[i] = vectorManager.createVector("net.partition" + threadIndex, "vector" + i, null);
+        for (int i=0; i<SAMPLES_PER_THREAD; i++) {
+            vectors[i % VECTORS_PER_THREAD].record((long)i, i);
+            if (i % (SAMPLES_PER_THREAD / SCALARS_PER_THREAD) == 0) {
+                Map<String,String> attributes = new HashMap<String, String>();
+                attributes.put("thread", String.valueOf(threadIndex));
+                attributes.put("sample", String.valueOf(i));
+                scalarManager.recordScalar("net.partition" + threadIndex, "scalar" + i, i, attributes);
+            }
+        }
+        vectors[0].close();
+    }
+
+    protected static void checkVectorFile(String baseName) throws IOException {
+        Map<Integer,Integer> counts = new HashMap<Integer, Integer>();
+        Map<Integer,Long> lastTimes = new HashMap<Integer, Long>();
+        RandomAccessFile vecFile = new RandomAccessFile(baseName + ".vec", "r");
+        BufferedReader index = new BufferedReader(new FileReader(baseName + ".vci"));
+        try {
+            String line;
+            while ((line = index.readLine()) != null) {
+                if (line.isEmpty() || !Character.isDigit(line.charAt(0)))
+                    continue;
+                String[] fields = line.split(" ");
+                int id = Integer.parseInt(fields[0]);
+                long offset = Long.parseLong(fields[1]);
+                int size = Integer.parseInt(fields[2]);
+                int n = Integer.parseInt(fields[5]);
+                double sum = Double.parseDouble(fields[8]);
+
+                byte[] block = new byte[size];
+                vecFile.seek(offset);
+                vecFile.readFully(block);
+                String[] dataLines = n == 0 ? new String[0] : new String(block).split("\n");
+                check(dataLines.length == n, "block size mismatch in vector " + id);
+                double actualSum = 0;
+                for (String dataLine : dataLines) {
+                    String[] dataFields = dataLine.split(" ");
+                    check(Integer.parseInt(dataFields[0]) == id, "foreign data in block of vector " + id);
+                    long time = Long.parseLong(dataFields[1]);
+                    Long lastTime = lastTimes.get(id);
+                    check(lastTime == null || lastTime < time, "data out of order in vector " + id);
+                    lastTimes.put(id, time);
+                    actualSum += Double.parseDouble(dataFields[2]);
+                }
+                check(actualSum == sum, "sum mismatch in vector " + id);
+                counts.put(id, (counts.containsKey(id) ? counts.get(id) : 0) + n);
+            }
+        }
+        finally {
+            index.close();
+            vecFile.close();
+        }
+
+        check(counts.size() == NUM_THREADS * VECTORS_PER_THREAD, "wrong number of vectors");
+        for (int count : counts.values())
+            check(count == SAMPLES_PER_THREAD / VECTORS_PER_THREAD, "wrong number of samples in vector");
+    }
+
+    protected static void checkScalarFile(String baseName) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(baseName + ".sca"));
+        try {
+            int numScalars = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("scalar "))
+                    continue;
+                numScalars++;
+                String[] fields = line.split(" ");
+                String thread = fields[1].substring("net.partition".length());
+                String sample = fields[2].substring("scalar".length());
+                for (int i=0; i<2; i++) {
+                    String attrLine = reader.readLine();
+                    check(attrLine.equals("attr thread " + thread) || attrLine.equals("attr sample " + sample), "attributes of scalar interleaved: " + attrLine);
+                }
+            }
+            check(numScalars == NUM_THREADS * SCALARS_PER_THREAD, "wrong number of scalars");
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    protected static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,111 @@
+package org.omnetpp.scave.writers.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.IOutputVectorManager;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
+
+/**
+ * Checks that FileOutputVectorManager writes byte-identical .vec and .vci files
+ * to the original PrintStream-based implementation (ReferenceFileOutputVectorManager),
+ * both in synchronous and asynchronous mode.
+ */
+public class VectorOutputTest {
+    public static void main(String[] args) throws IOException {
+        String runID = FileOutputVectorManager.generateRunID("test2");
+        Map<String,String> runAttributes = new HashMap<String, String>();
+        runAttributes.put(IOutputVectorManager.ATTR_NETWORK, "Test");
+
+        recordData(new ReferenceFileOutputVectorManager("expected.vec"), runID, runAttributes);
+
+        recordData(new FileOutputVectorManager("actual.vec"), runID, runAttributes);
+        compareFiles("expected", "actual");
+        // float timestamps must be printed as Floats, not widened to double
+        check(new String(readFile("actual.vec")).contains(" 448.1 "), "float timestamp not printed as float");
+
+        FileOutputVectorManager asyncManager = new FileOutputVectorManager("actual-async.vec");
+        asyncManager.setAsyncWriting(true);
+        asyncManager.setAsyncQueueCapacity(4);
+        recordData(asyncManager, runID, runAttributes);
+        compareFiles("expected", "actual-async");
+
+        System.out.println("PASS");
+    }
+
+    protected static void compareFiles(String expectedBase, String actualBase) throws IOException {
+        check(Arrays.equals(readFile(expectedBase + ".vec"), readFile(actualBase + ".vec")), actualBase + ".vec differs");
+
+        // the first line of the index contains the file modification time, skip it
+        byte[] expectedIndex = readFile(expectedBase + ".vci");
+        byte[] actualIndex = readFile(actualBase + ".vci");
+        check(expectedIndex.length == actualIndex.length, actualBase + ".vci size differs");
+        check(Arrays.equals(Arrays.copyOfRange(expectedIndex, 65, expectedIndex.length), Arrays.copyOfRange(actualIndex, 65, actualIndex.length)), actualBase + ".vci differs");
+        check(new String(expectedIndex, 0, 64).split(" ")[1].equals(new String(actualIndex, 0, 64).split(" ")[1]), actualBase + ".vci file line differs");
+    }
+
+    protected static void recordData(IOutputVectorManager manager, String runID, Map<String,String> runAttributes) {
+        Random random = new Random(42);
+        Map<String,String> attributes = new HashMap<String, String>();
+        attributes.put(IOutputVectorManager.ATTR_UNIT, "s");
+        attributes.put(IOutputVectorManager.ATTR_INTERPOLATIONMODE, "sample-hold");
+
+        manager.open(runID, runAttributes);
+        List<IOutputVector> vectors = new ArrayList<IOutputVector>();
+        for (int i=0; i<20; i++)
+            vectors.add(manager.createVector("top.node"+i, "vector with \"spaces\" "+i, i%2==0 ? attributes : null));
+
+        for (int i=0; i<200000; i++) {
+            IOutputVector v = vectors.get(random.nextInt(vectors.size()));
+            double value = random.nextGaussian() * Math.pow(10, random.nextInt(20)-10);
+            switch (i % 11) {
+                case 0: v.record(i, value); break;
+                case 1: v.record(i+0.001, value); break;
+                case 2: v.record(Integer.valueOf(i), Math.floor(value)); break;
+                case 3: v.record(Double.valueOf(i+0.5), -value); break;
+                case 4: v.record((long)i, i%3==0 ? Double.NaN : -0.0); break;
+                case 5: v.record(Float.valueOf(i), value); break;
+                case 6: v.record(new BigDecimal(i).add(new BigDecimal("0.25")), value); break;
+                case 7: v.record(i, i%5==0 ? Double.POSITIVE_INFINITY : 1e7); break;
+                // primitive float, int and boxed Long timestamps must be written the same way as before
+                case 8: v.record(i + 0.1f, value); break;
+                case 9: v.record(i, value); break;
+                case 10: v.record(Long.valueOf(i), value); break;
+            }
+            if (i == 100000)
+                manager.flush();
+            if (i == 150000)
+                vectors.remove(0).close();
+        }
+        manager.close();
+    }
+
+    protected static byte[] readFile(String fileName) throws IOException {
+        File file = new File(fileName);
+        byte[] bytes = new byte[(int)file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int pos = 0;
+            while (pos < bytes.length)
+                pos += in.read(bytes, pos, bytes.length - pos);
+        }
+        finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    protected static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
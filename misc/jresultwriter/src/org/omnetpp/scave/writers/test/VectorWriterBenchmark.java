@@ -0,0 +1,88 @@
+package org.omnetpp.scave.writers.test;
+
+import java.util.Random;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.IOutputVectorManager;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
+
+/**
+ * Compares the recording throughput of FileOutputVectorManager with the
+ * original PrintStream-based implementation (ReferenceFileOutputVectorManager),
+ * in both synchronous and asynchronous mode, recording both through
+ * IOutputVector.record(Number,double) (which boxes the timestamp) and through
+ * the unboxed recordDouble(). Each run records the same data; the first few
+ * runs serve as JIT warmup.
+ *
+ * Usage: VectorWriterBenchmark [numSamples] [numVectors]
+ */
+public class VectorWriterBenchmark {
+    static final int WARMUP_RUNS = 3;
+    static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) {
+        int numSamples = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        int numVectors = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        double referenceTime = measure("reference", numSamples, numVectors);
+        double currentTime = measure("current", numSamples, numVectors);
+        double unboxedTime = measure("current-unboxed", numSamples, numVectors);
+        double asyncTime = measure("async", numSamples, numVectors);
+        double asyncUnboxedTime = measure("async-unboxed", numSamples, numVectors);
+        System.out.printf("speedup: %.2fx (unboxed: %.2fx, async: %.2fx, async unboxed: %.2fx)\n", referenceTime / currentTime,
+                referenceTime / unboxedTime, referenceTime / asyncTime, referenceTime / asyncUnboxedTime);
+    }
+
+    protected static IOutputVectorManager createManager(String kind) {
+        if (kind.equals("reference"))
+            return new ReferenceFileOutputVectorManager("bench-ref.vec");
+        FileOutputVectorManager manager = new FileOutputVectorManager("bench-" + kind + ".vec");
+        manager.setAsyncWriting(kind.startsWith("async"));
+        return manager;
+    }
+
+    protected static double measure(String kind, int numSamples, int numVectors) {
+        double total = 0;
+        long maxRecordNanos = 0;
+        for (int run=0; run<WARMUP_RUNS+MEASURED_RUNS; run++) {
+            IOutputVectorManager manager = createManager(kind);
+            long start = System.nanoTime();
+            long maxNanos = record(manager, numSamples, numVectors, kind.endsWith("-unboxed"));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (run >= WARMUP_RUNS) {
+                total += seconds;
+                maxRecordNanos = Math.max(maxRecordNanos, maxNanos);
+            }
+        }
+        double avg = total / MEASURED_RUNS;
+        System.out.printf("%s: %.3fs/run, %.0f samples/s, max record() latency %.3fms\n", kind, avg, numSamples / avg, maxRecordNanos / 1e6);
+        return avg;
+    }
+
+    /**
+     * Records the test data, and returns the longest time a record() call took.
+     * If unboxed is set, the data is recorded with FileOutputVectorManager's recordDouble().
+     */
+    protected static long record(IOutputVectorManager manager, int numSamples, int numVectors, boolean unboxed) {
+        Random random = new Random(1);
+        manager.open("bench", null);
+        IOutputVector[] vectors = new IOutputVector[numVectors];
+        for (int i=0; i<numVectors; i++)
+            vectors[i] = manager.createVector("net.host["+i+"]", "queueLength", null);
+        double t = 0;
+        long maxNanos = 0;
+        for (int i=0; i<numSamples; i++) {
+            t += random.nextDouble();
+            IOutputVector vector = vectors[random.nextInt(numVectors)];
+            double value = random.nextInt(100) * 0.25;
+            long start = System.nanoTime();
+            if (unboxed)
+                ((FileOutputVectorManager.OutputVector)vector).recordDouble(t, value);
+            else
+                vector.record(t, value);
+            maxNanos = Math.max(maxNanos, System.nanoTime() - start);
+        }
+        manager.close();
+        return maxNanos;
+    }
+}
@@ -0,0 +1,414 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.common.canvas;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.widgets.Display;
+import org.omnetpp.common.CommonPlugin;
+import org.omnetpp.common.Debug;
+
+/**
+ * Renders the missing tiles of a CachingCanvas on background threads, so that
+ * painting large drawings does not block the UI thread.
+ *
+ * Each requested area is rendered twice: first a preview at reduced resolution,
+ * which is displayed stretched until the second, full resolution rendering is
+ * done. Previews of all requests are rendered before full resolution images,
+ * so the whole viewport fills up quickly. Rendering is done into images that
+ * are not shown on the screen, and the results are handed over to the UI thread
+ * as ImageData, where they are put into the tile cache.
+ *
+ * Requests whose area has been scrolled out of the viewport are cancelled, and
+ * clear() discards the results of all outstanding requests.
+ *
+ * The canvas is notified via backgroundRenderingStarted() and backgroundRenderingFinished()
+ * when the first request is issued and when no more requests are outstanding,
+ * so that it can give feedback to the user (e.g. a busy cursor). These are
+ * called on the UI thread, like everything else that touches the canvas.
+ *
+ * All methods must be called on the UI thread. The worker threads are shared
+ * among all canvases.
+ */
+class BackgroundTileRenderer {
+    private static final double PREVIEW_SCALE = 0.5;
+
+    private static final int PRIORITY_PREVIEW = 0;
+    private static final int PRIORITY_FULL = 1;
+
+    private static final boolean debug = Debug.isChannelEnabled("backgroundtilerenderer");
+
+    private static ThreadPoolExecutor executor;
+    private static AtomicLong taskSerial = new AtomicLong();
+
+    private CachingCanvas canvas;
+    private Display display;
+    private volatile long generation = 0; // incremented by clear()
+    private List<Request> pendingRequests = new ArrayList<>();
+    private List<Request> requestsWithPreview = new ArrayList<>();
+    private int numRunning = 0; // number of renderings in progress; guarded by "this"
+    private boolean busy = false; // whether the canvas has been notified that rendering started
+
+    /**
+     * An area to be rendered.
+     */
+    private class Request {
+        final LargeRect rect; // virtual coordinates
+        final Rectangle canvasRect; // canvas coordinates at the time of the request
+        final ICachableLayerPainter painter;
+        final long generation;
+        volatile boolean cancelled = false;
+        Image preview = null;
+
+        Request(LargeRect rect, Rectangle canvasRect, ICachableLayerPainter painter, long generation) {
+            this.rect = new LargeRect(rect);
+            this.canvasRect = canvasRect;
+            this.painter = painter;
+            this.generation = generation;
+        }
+
+        boolean isObsolete() {
+            return cancelled || generation != BackgroundTileRenderer.this.generation;
+        }
+    }
+
+    /**
+     * A unit of work for the executor. Lower priority values are executed first,
+     * and tasks of the same priority in the order they were submitted.
+     */
+    private static class Task implements Runnable, Comparable<Task> {
+        final int priority;
+        final long serial = taskSerial.getAndIncrement();
+        final Runnable runnable;
+
+        Task(int priority, Runnable runnable) {
+            this.priority = priority;
+            this.runnable = runnable;
+        }
+
+        public void run() {
+            runnable.run();
+        }
+
+        public int compareTo(Task other) {
+            if (priority != other.priority)
+                return Integer.compare(priority, other.priority);
+            return Long.compare(serial, other.serial);
+        }
+    }
+
+    public BackgroundTileRenderer(CachingCanvas canvas) {
+        this.canvas = canvas;
+        this.display = canvas.getDisplay();
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            // leave one core for the UI thread
+            int numThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+            executor = new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), (Runnable r) -> {
+                Thread thread = new Thread(r, "Tile renderer");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Starts rendering the given areas (virtual coordinates) with the painter,
+     * except those that are already being rendered.
+     */
+    public void requestTiles(List<LargeRect> areas, ICachableLayerPainter painter) {
+        for (LargeRect area : areas) {
+            if (isBeingRendered(area))
+                continue;
+            Request request = new Request(area, canvas.virtualToCanvasRect(area), painter, generation);
+            pendingRequests.add(request);
+            if (debug)
+                Debug.println("BackgroundTileRenderer: requesting " + area);
+            getExecutor().execute(new Task(PRIORITY_PREVIEW, () -> renderPreview(request)));
+            getExecutor().execute(new Task(PRIORITY_FULL, () -> renderFull(request)));
+        }
+        updateBusy();
+    }
+
+    private boolean isBeingRendered(LargeRect area) {
+        for (Request request : pendingRequests)
+            if (request.rect.contains(area))
+                return true;
+        return false;
+    }
+
+    /**
+     * Cancels the requests that do not intersect with the given area
+     * (virtual coordinates), i.e. that have been scrolled out of view.
+     */
+    public void cancelRequestsOutside(LargeRect visibleArea) {
+        for (Iterator<Request> it = pendingRequests.iterator(); it.hasNext(); ) {
+            Request request = it.next();
+            if (!request.rect.intersects(visibleArea)) {
+                if (debug)
+                    Debug.println("BackgroundTileRenderer: cancelling " + request.rect);
+                request.cancelled = true;
+                disposePreview(request);
+                it.remove();
+            }
+        }
+        updateBusy();
+    }
+
+    /**
+     * Draws the previews that are available for the given areas (virtual coordinates),
+     * stretched to their full size.
+     */
+    public void drawPreviews(Graphics graphics, List<LargeRect> areas) {
+        for (LargeRect area : areas) {
+            for (Request request : requestsWithPreview) {
+                if (request.rect.intersects(area)) {
+                    Rectangle rect = canvas.virtualToCanvasRect(request.rect);
+                    org.eclipse.swt.graphics.Rectangle imageBounds = request.preview.getBounds();
+                    graphics.pushState();
+                    graphics.clipRect(canvas.virtualToCanvasRect(area));
+                    graphics.drawImage(request.preview, 0, 0, imageBounds.width, imageBounds.height, rect.x, rect.y, rect.width, rect.height);
+                    graphics.popState();
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards all outstanding requests and previews. To be called when the drawing changes.
+     */
+    public void clear() {
+        generation++;
+        for (Request request : pendingRequests)
+            request.cancelled = true;
+        pendingRequests.clear();
+        for (Request request : requestsWithPreview)
+            request.preview.dispose();
+        requestsWithPreview.clear();
+        updateBusy();
+    }
+
+    /**
+     * Like clear(), but also waits until renderings in progress finish. To be
+     * called before releasing resources the painters may be using (e.g. data
+     * mapped into memory).
+     */
+    public void clearAndWait() {
+        clear();
+        synchronized (this) {
+            while (numRunning > 0) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public void dispose() {
+        clear();
+    }
+
+    private void renderPreview(Request request) {
+        ImageData imageData = render(request, PREVIEW_SCALE);
+        if (imageData != null)
+            asyncExec(() -> previewDone(request, imageData));
+    }
+
+    private void renderFull(Request request) {
+        ImageData imageData = render(request, 1.0);
+        asyncExec(() -> renderingDone(request, imageData));
+    }
+
+    /**
+     * An off-screen image with a GC and Graphics to paint on it.
+     */
+    private static class Surface {
+        Image image;
+        GC gc;
+        Graphics graphics;
+    }
+
+    /**
+     * Renders the area of the request at the given scale. Runs in a worker thread.
+     * Returns null if the request was cancelled or rendering failed.
+     *
+     * The image, the GC and the Graphics are created, read back and disposed on the
+     * UI thread, because on GTK these go through GDK and Pango, which may only be used
+     * from the UI thread. The worker only issues drawing calls, which go to the cairo
+     * context of the image, which no other thread uses. The UI thread is not needed
+     * while numRunning is incremented, so clearAndWait() cannot deadlock with it.
+     */
+    private ImageData render(Request request, double scale) {
+        if (request.isObsolete())
+            return null;
+        Surface surface = createSurface(request, scale);
+        if (surface == null)
+            return null;
+        ImageData imageData = null;
+        boolean painted = false;
+        try {
+            painted = paint(request, surface);
+        }
+        finally {
+            imageData = disposeSurface(surface, painted);
+        }
+        return imageData;
+    }
+
+    private Surface createSurface(Request request, double scale) {
+        Rectangle rect = request.canvasRect;
+        Surface surface = new Surface();
+        syncExec(() -> {
+            surface.image = new Image(display, Math.max(1, (int)Math.ceil(rect.width * scale)), Math.max(1, (int)Math.ceil(rect.height * scale)));
+            surface.gc = new GC(surface.image);
+            surface.graphics = canvas.createGraphics(surface.gc);
+            if (scale != 1.0)
+                surface.graphics.scale(scale);
+            surface.graphics.translate(-rect.x, -rect.y);
+            surface.graphics.setClip(new Rectangle(rect.x, rect.y, rect.width, rect.height));
+        });
+        if (surface.graphics == null) {
+            disposeSurface(surface, false);
+            return null;
+        }
+        return surface;
+    }
+
+    /**
+     * Paints the request on the surface. Returns false if the request was
+     * cancelled meanwhile, or painting failed.
+     */
+    private boolean paint(Request request, Surface surface) {
+        synchronized (this) {
+            if (request.isObsolete())
+                return false;
+            numRunning++;
+        }
+        try {
+            request.painter.paint(surface.graphics);
+            return true;
+        }
+        catch (RuntimeException e) {
+            // the drawing may have been changed under our feet; only report errors that occurred with up-to-date data
+            if (!request.isObsolete())
+                CommonPlugin.logError("Error rendering canvas tile " + request.rect, e);
+            return false;
+        }
+        finally {
+            synchronized (this) {
+                numRunning--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Disposes the surface on the UI thread, and returns its contents if requested.
+     */
+    private ImageData disposeSurface(Surface surface, boolean getImageData) {
+        ImageData[] result = new ImageData[1];
+        syncExec(() -> {
+            if (surface.graphics != null)
+                surface.graphics.dispose();
+            if (surface.gc != null)
+                surface.gc.dispose();
+            if (surface.image != null) {
+                if (getImageData)
+                    result[0] = surface.image.getImageData();
+                surface.image.dispose();
+            }
+        });
+        return result[0];
+    }
+
+    private void syncExec(Runnable runnable) {
+        try {
+            if (!display.isDisposed())
+                display.syncExec(runnable);
+        }
+        catch (SWTException e) {
+            // display disposed meanwhile
+        }
+    }
+
+    private void asyncExec(Runnable runnable) {
+        if (!display.isDisposed())
+            display.asyncExec(runnable);
+    }
+
+    private void previewDone(Request request, ImageData imageData) {
+        if (request.isObsolete() || canvas.isDisposed())
+            return;
+        request.preview = new Image(display, imageData);
+        requestsWithPreview.add(request);
+        redraw(request);
+    }
+
+    private void renderingDone(Request request, ImageData imageData) {
+        pendingRequests.remove(request);
+        disposePreview(request);
+        if (canvas.isDisposed())
+            return;
+        updateBusy();
+        if (request.isObsolete())
+            return;
+        if (imageData != null) { // otherwise don't redraw, which would issue the same failing request again
+            canvas.addRenderedTile(request.rect, new Image(display, imageData));
+            redraw(request);
+        }
+    }
+
+    /**
+     * Notifies the canvas if rendering has started or finished since the last call.
+     */
+    private void updateBusy() {
+        boolean newBusy = !pendingRequests.isEmpty();
+        if (newBusy != busy) {
+            busy = newBusy;
+            if (busy)
+                canvas.backgroundRenderingStarted();
+            else
+                canvas.backgroundRenderingFinished();
+        }
+    }
+
+    private void disposePreview(Request request) {
+        if (request.preview != null) {
+            requestsWithPreview.remove(request);
+            request.preview.dispose();
+            request.preview = null;
+        }
+    }
+
+    private void redraw(Request request) {
+        Rectangle rect = canvas.virtualToCanvasRect(request.rect).intersect(new Rectangle(canvas.getViewportRectangle()));
+        if (!rect.isEmpty())
+            canvas.redraw(rect.x, rect.y, rect.width, rect.height, false);
+    }
+}
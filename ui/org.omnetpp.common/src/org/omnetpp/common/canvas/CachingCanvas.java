@@ -34,6 +34,8 @@ import org.eclipse.draw2d.SWTGraphics;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.gmf.runtime.draw2d.ui.render.awt.internal.svg.export.GraphicsSVG;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.graphics.Color;
@@ -59,6 +61,9 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
 
     private boolean doCaching = true;
     private ITileCache tileCache = new XYTileCache();
+    private boolean doBackgroundRendering = false;
+    private BackgroundTileRenderer backgroundRenderer = null; // created on demand
+    private boolean paintingOnScreen = false; // true inside the paint listener
     private boolean debug = Debug.isChannelEnabled("cachingcanvas");
 
     /**
@@ -71,11 +76,25 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
             public void paintControl(final PaintEvent e) {
                 if (debug)
                     Debug.println("actually painting chart");
-                paint(e.gc);
+                paintingOnScreen = true;
+                try {
+                    paint(e.gc);
+                }
+                finally {
+                    paintingOnScreen = false;
+                }
                 if (debug)
                     Debug.println("actual painting done");
             }
         });
+
+        addDisposeListener(new DisposeListener() {
+            public void widgetDisposed(DisposeEvent e) {
+                if (backgroundRenderer != null)
+                    backgroundRenderer.dispose();
+                tileCache.clear(); // return the images to the pool
+            }
+        });
     }
 
     /**
@@ -107,6 +126,35 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
         clearCanvasCache();
     }
 
+    /**
+     * Returns whether missing tiles are rendered in the background.
+     */
+    public boolean getBackgroundRendering() {
+        return doBackgroundRendering;
+    }
+
+    /**
+     * Turns on/off rendering missing tiles in background threads. When on,
+     * areas of the cachable layer that are not in the cache are left empty
+     * (or show a low-resolution preview) while they are being rendered,
+     * instead of blocking the UI thread. This has an effect only if caching
+     * is also on, and createCachableLayerPainter() returns a painter.
+     */
+    public void setBackgroundRendering(boolean doBackgroundRendering) {
+        this.doBackgroundRendering = doBackgroundRendering;
+        clearCanvasCache();
+    }
+
+    /**
+     * Discards the results of background renderings, and waits for the ones in
+     * progress to finish. Must be called before disposing of data that the
+     * painters returned by createCachableLayerPainter() may be accessing.
+     */
+    public void cancelBackgroundRendering() {
+        if (backgroundRenderer != null)
+            backgroundRenderer.clearAndWait();
+    }
+
     /**
      * Copies the image of the chart to the clipboard.
      * Uses AWT functionality, because SWT does not support ImageTransfer yet.
@@ -249,6 +297,21 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
                 debugDrawTile(graphics, tile.rect, new Color(null,0,255,0));
             }
 
+            // let missing tiles be rendered in the background if possible; show previews meanwhile
+            ICachableLayerPainter painter = (doBackgroundRendering && paintingOnScreen && !missingAreas.isEmpty()) ? createCachableLayerPainter() : null;
+            if (painter != null) {
+                if (backgroundRenderer == null)
+                    backgroundRenderer = new BackgroundTileRenderer(this);
+                backgroundRenderer.cancelRequestsOutside(canvasToVirtualRect(viewportRect));
+                backgroundRenderer.requestTiles(missingAreas, painter);
+                for (LargeRect lrect : missingAreas) {
+                    graphics.fillRectangle(virtualToCanvasRect(lrect));
+                    debugDrawTile(graphics, lrect, new Color(null,0,0,255));
+                }
+                backgroundRenderer.drawPreviews(graphics, missingAreas);
+                missingAreas.clear();
+            }
+
             // draw missing tiles
             for (LargeRect lrect : missingAreas) {
                 Rectangle rect = virtualToCanvasRect(lrect);
@@ -286,6 +349,35 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
         }
     }
 
+    /**
+     * Adds an image rendered in the background to the tile cache. Parts of it
+     * may have been added meanwhile (e.g. via an overlapping request); only the
+     * missing ones are copied into the cache.
+     */
+    void addRenderedTile(LargeRect lrect, Image image) {
+        ArrayList<Tile> cachedTiles = new ArrayList<Tile>();
+        ArrayList<LargeRect> missingAreas = new ArrayList<LargeRect>();
+        tileCache.getTiles(lrect, getVirtualWidth(), getVirtualHeight(), cachedTiles, missingAreas);
+        if (cachedTiles.isEmpty() && missingAreas.size() == 1 && missingAreas.get(0).equals(lrect)) {
+            tileCache.add(lrect, image);
+            return;
+        }
+        GC gc = new GC(image);
+        try {
+            for (LargeRect area : missingAreas) {
+                if (!lrect.contains(area))
+                    continue; // partial tiles at the edges of the request
+                Image areaImage = new Image(getDisplay(), (int)area.width, (int)area.height);
+                gc.copyArea(areaImage, (int)(area.x - lrect.x), (int)(area.y - lrect.y));
+                tileCache.add(area, areaImage);
+            }
+        }
+        finally {
+            gc.dispose();
+            image.dispose();
+        }
+    }
+
     /**
      * Paint directly on the graphics
      */
@@ -328,11 +420,41 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
      */
     protected abstract void paintNoncachableLayer(Graphics graphics);
 
+    /**
+     * Override this method to allow rendering the cachable layer in background
+     * threads (see setBackgroundRendering()). It is called on the UI thread, and
+     * should return a painter that is equivalent to paintCachableLayer() but
+     * does not access the widget. Returning null causes the missing tiles to be
+     * painted synchronously. This default implementation returns null.
+     */
+    protected ICachableLayerPainter createCachableLayerPainter() {
+        return null;
+    }
+
+    /**
+     * Called on the UI thread when rendering missing tiles in the background
+     * starts, i.e. tiles are requested while no other request is outstanding.
+     * Painters run on other threads, so they cannot give feedback to the user
+     * (e.g. a busy cursor); override this method and backgroundRenderingFinished()
+     * for that. This default implementation does nothing.
+     */
+    protected void backgroundRenderingStarted() {
+    }
+
+    /**
+     * Called on the UI thread when all outstanding background renderings
+     * have been finished or discarded. This default implementation does nothing.
+     */
+    protected void backgroundRenderingFinished() {
+    }
+
     /**
      * Clears the tile cache. To be called any time the drawing changes.
      */
     public void clearCanvasCache() {
         tileCache.clear();
+        if (backgroundRenderer != null)
+            backgroundRenderer.clear();
         if (debug)
             Debug.println("canvas cache cleared");
     }
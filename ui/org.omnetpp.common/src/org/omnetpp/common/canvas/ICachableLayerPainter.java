@@ -0,0 +1,31 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.common.canvas;
+
+import org.eclipse.draw2d.Graphics;
+
+/**
+ * Paints the cachable layer of a CachingCanvas from a background thread.
+ * Instances are created on the UI thread by CachingCanvas.createCachableLayerPainter(),
+ * and must capture everything they need from the widget (viewport position, zoom,
+ * coordinate mapping, etc.) at that time, because widget methods cannot be called
+ * from other threads.
+ *
+ * The painter may be invoked several times, concurrently, with different clip
+ * rectangles. Changes to the drawing made after the painter was created must be
+ * followed by CachingCanvas.clearCanvasCache(), which discards the tiles painted
+ * by it (so the painter may even fail with an exception in that case).
+ */
+public interface ICachableLayerPainter {
+
+    /**
+     * Paints the cachable layer, in canvas coordinates as they were when
+     * the painter was created. See CachingCanvas.paintCachableLayer().
+     */
+    public void paint(Graphics graphics);
+}
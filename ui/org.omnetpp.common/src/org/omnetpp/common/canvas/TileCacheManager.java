@@ -0,0 +1,237 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.common.canvas;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.omnetpp.common.Debug;
+import org.omnetpp.common.canvas.ITileCache.Tile;
+
+/**
+ * Workspace-wide bookkeeping for the tile caches of all caching canvases
+ * (charts, sequence charts, etc.). It enforces a single memory budget for
+ * all tiles: when it is exceeded, the least recently used tiles are evicted,
+ * no matter which canvas they belong to. The images of evicted or discarded
+ * tiles are returned to a pool, and reused for new tiles of the same size
+ * instead of allocating and disposing an image for every tile.
+ *
+ * It also counts cache hits, misses and evictions, which can be printed with
+ * the "tilecache" debug channel enabled.
+ *
+ * Should only be used from the UI thread.
+ */
+public class TileCacheManager {
+    public static final long DEFAULT_MEMORY_BUDGET = 128*1024*1024; // 128Meg, shared by all canvases
+    private static final long MAX_POOL_SIZE_BYTES = 8*1024*1024; // images kept for reuse
+    private static final int BYTES_PER_PIXEL = 4; // assumption: RGBA true color
+
+    public static boolean debug = Debug.isChannelEnabled("tilecache");
+
+    private static TileCacheManager instance;
+
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private long memoryUsage = 0;
+
+    // tiles of all caches, with their owners; in access order, for LRU eviction
+    private LinkedHashMap<Tile,XYTileCache> tiles = new LinkedHashMap<Tile,XYTileCache>(16, 0.75f, true);
+
+    // unused images, by size (see sizeKey())
+    private Map<Long,ArrayList<Image>> pool = new HashMap<Long,ArrayList<Image>>();
+    private long poolSize = 0;
+
+    // statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long allocations = 0;
+    private long reuses = 0;
+
+    public static synchronized TileCacheManager getInstance() {
+        if (instance == null)
+            instance = new TileCacheManager();
+        return instance;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the total number of bytes the tiles of all caches may occupy,
+     * and evicts tiles if needed.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        evictTiles();
+    }
+
+    /**
+     * Returns the number of bytes occupied by the tiles of all caches
+     * (excluding the pooled images).
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of images allocated, i.e. not taken from the pool.
+     */
+    public long getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * Returns the number of images taken from the pool.
+     */
+    public long getReuses() {
+        return reuses;
+    }
+
+    public void resetCounters() {
+        hits = misses = evictions = allocations = reuses = 0;
+    }
+
+    public String getStatistics() {
+        return String.format("%d tiles, %dk of %dk used, pool: %dk; hits: %d, misses: %d, evictions: %d, image allocations: %d, reuses: %d",
+                tiles.size(), memoryUsage/1024, memoryBudget/1024, poolSize/1024, hits, misses, evictions, allocations, reuses);
+    }
+
+    /**
+     * Returns an image of the given size, either from the pool or newly
+     * allocated. Its contents are undefined. It should be given back with
+     * releaseImage(), or via the tile it is stored in.
+     */
+    public Image acquireImage(int width, int height) {
+        ArrayList<Image> images = pool.get(sizeKey(width, height));
+        while (images != null && !images.isEmpty()) {
+            Image image = images.remove(images.size()-1);
+            poolSize -= imageSize(width, height);
+            if (!image.isDisposed()) {
+                reuses++;
+                return image;
+            }
+        }
+        allocations++;
+        return new Image(null, width, height);
+    }
+
+    /**
+     * Returns the image to the pool, or disposes of it if the pool is full.
+     */
+    public void releaseImage(Image image) {
+        if (image.isDisposed())
+            return;
+        Rectangle bounds = image.getBounds();
+        long size = imageSize(bounds.width, bounds.height);
+        if (poolSize + size > MAX_POOL_SIZE_BYTES) {
+            image.dispose();
+            return;
+        }
+        Long key = sizeKey(bounds.width, bounds.height);
+        ArrayList<Image> images = pool.get(key);
+        if (images == null)
+            pool.put(key, images = new ArrayList<Image>());
+        images.add(image);
+        poolSize += size;
+    }
+
+    /**
+     * Disposes of the pooled images.
+     */
+    public void clearPool() {
+        for (ArrayList<Image> images : pool.values())
+            for (Image image : images)
+                image.dispose();
+        pool.clear();
+        poolSize = 0;
+    }
+
+    /**
+     * To be called by the cache when it has stored a new tile. May evict tiles
+     * from any cache, including the caller.
+     */
+    void tileAdded(XYTileCache owner, Tile tile) {
+        tiles.put(tile, owner);
+        memoryUsage += tileSize(tile);
+        evictTiles();
+    }
+
+    /**
+     * To be called by the cache when a tile was found in it.
+     */
+    void tileHit(Tile tile) {
+        tiles.get(tile); // moves it to the end of the LRU order
+        hits++;
+    }
+
+    /**
+     * To be called by the cache when a tile was not found in it.
+     */
+    void tileMissed() {
+        misses++;
+    }
+
+    /**
+     * To be called by the cache when it removes a tile on its own (e.g. when
+     * it is cleared). The image of the tile is released.
+     */
+    void tileRemoved(Tile tile) {
+        if (tiles.remove(tile) != null)
+            memoryUsage -= tileSize(tile);
+        releaseImage(tile.image);
+        tile.image = null;
+    }
+
+    private void evictTiles() {
+        int count = 0;
+        Iterator<Map.Entry<Tile,XYTileCache>> it = tiles.entrySet().iterator();
+        while (memoryUsage > memoryBudget && it.hasNext()) {
+            Map.Entry<Tile,XYTileCache> entry = it.next();
+            Tile tile = entry.getKey();
+            it.remove();
+            memoryUsage -= tileSize(tile);
+            entry.getValue().tileEvicted(tile);
+            releaseImage(tile.image);
+            tile.image = null;
+            count++;
+        }
+        evictions += count;
+        if (debug && count > 0)
+            Debug.println("TileCacheManager: evicted " + count + " tiles; " + getStatistics());
+    }
+
+    private static long tileSize(Tile tile) {
+        return imageSize(tile.rect.width, tile.rect.height);
+    }
+
+    private static long imageSize(long width, long height) {
+        return width * height * BYTES_PER_PIXEL;
+    }
+
+    private static Long sizeKey(int width, int height) {
+        return ((long)width << 32) | height;
+    }
+}
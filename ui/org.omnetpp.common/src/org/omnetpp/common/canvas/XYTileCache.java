@@ -16,7 +16,10 @@ import org.eclipse.swt.graphics.Image;
 import org.omnetpp.common.Debug;
 
 /**
- * A tile cache for CachingCanvas that works with tiles of fixed size (100x100 pixels).
+ * A tile cache for CachingCanvas that works with tiles of fixed size (30x200 pixels).
+ * The memory used by all XYTileCache instances is limited by TileCacheManager,
+ * which may evict tiles from any of them; tile images are taken from and
+ * returned to its pool.
  *
  * @author andras
  */
@@ -28,7 +31,8 @@ public class XYTileCache implements ITileCache {
 
     private static final boolean debug = false;
 
-    private int memoryUsageLimit = 32*1024*1024; // 32Meg by default
+    private TileCacheManager manager = TileCacheManager.getInstance();
+    private int memoryUsageLimit = Integer.MAX_VALUE; // by default, only the manager's budget applies
     private int memoryUsage = 0;
 
     // use coords of tile's top-left corner as key into the hashmap; "linked" is used for LRU cache mgmt
@@ -63,11 +67,12 @@ public class XYTileCache implements ITileCache {
                         gc.drawLine((int)(x - rect.x), (int)(y - rect.y), (int)(x - rect.x)+10, (int)(y - rect.y)+10);
                         gc.drawText("tile ("+x+","+y+")", (int)(x - rect.x)+10, (int)(y - rect.y)+5);
                     }
-                    Image tileImage = new Image(null, TILE_WIDTH, TILE_HEIGHT);
+                    Image tileImage = manager.acquireImage(TILE_WIDTH, TILE_HEIGHT);
                     gc.copyArea(tileImage, (int)(x - rect.x), (int)(y - rect.y));
                     Tile tile = new Tile(new LargeRect(x, y, TILE_WIDTH, TILE_HEIGHT), tileImage);
                     cache.put(key, tile);
                     memoryUsage += TILE_SIZE_BYTES;
+                    manager.tileAdded(this, tile);
                     if (memoryUsage > memoryUsageLimit)
                         break;
                 }
@@ -94,19 +99,30 @@ public class XYTileCache implements ITileCache {
             Assert.isTrue(cache.size()>0);
             LargePoint key = cache.keySet().iterator().next(); // get first element's key
             Tile tile = cache.remove(key);
-            tile.image.dispose();
             memoryUsage -= TILE_SIZE_BYTES;
+            manager.tileRemoved(tile);
             count++;
         }
         if (debug && count>0)
             Debug.printf("cache: thrown out %d tiles, currently holding %d\n", count, cache.size());
     }
 
+    /**
+     * Called by the manager when it has evicted one of our tiles
+     * (it takes care of the image).
+     */
+    void tileEvicted(Tile tile) {
+        cache.remove(new LargePoint(tile.rect.x, tile.rect.y));
+        memoryUsage -= TILE_SIZE_BYTES;
+    }
+
     public void clear() {
         for (Tile tile : cache.values())
-            tile.image.dispose();
+            manager.tileRemoved(tile);
         cache.clear();
         memoryUsage = 0;
+        if (TileCacheManager.debug)
+            Debug.println("XYTileCache cleared; " + manager.getStatistics());
     }
 
     public void getTiles(LargeRect rect, long virtualWidth, long virtualHeight, List<Tile> outCachedTiles, List<LargeRect> outMissingAreas) {
@@ -119,12 +135,15 @@ public class XYTileCache implements ITileCache {
         for (long x = startX; x<rect.right(); x+=TILE_WIDTH) {
             for (long y = startY; y<rect.bottom(); y+=TILE_HEIGHT) {
                 lookupKey.set(x,y);
-                if (cache.containsKey(lookupKey)) {
-                    Assert.isTrue(cache.get(lookupKey).rect.x==lookupKey.x && cache.get(lookupKey).rect.y==lookupKey.y);
-                    outCachedTiles.add(cache.get(lookupKey));
+                Tile tile = cache.get(lookupKey);
+                if (tile != null) {
+                    Assert.isTrue(tile.rect.x==lookupKey.x && tile.rect.y==lookupKey.y);
+                    outCachedTiles.add(tile);
+                    manager.tileHit(tile);
                 }
                 else {
                     mergeOrAdd(outMissingAreas, new LargeRect(x, y, TILE_WIDTH, TILE_HEIGHT));
+                    manager.tileMissed();
                 }
             }
         }
@@ -594,6 +594,11 @@ namespace omnetpp { namespace scave {
 %include "scave/sqliteresultfileutils.h"
 
 /* ------------------ xyarray.h ----------------------- */
+namespace omnetpp { namespace scave {
+// getCPtr() is needed by copyXYArrayToBuffer()
+SWIG_JAVABODY_METHODS(public, public, XYArray)
+} } // namespaces
+
 %include "scave/xyarray.h"
 
 /* ------------------ vectorutils.h ----------------------- */
@@ -622,3 +627,6 @@ namespace omnetpp { namespace scave {
 %native(unmapSharedMemory) void unmapSharedMemory(jobject buf);
 
 %native(removeSharedMemory) void removeSharedMemory(jstring name);
+
+// copies the xs and then the ys of the XYArray into the direct buffer at the given byte offset, in native byte order
+%native(copyXYArrayToBuffer) void copyXYArrayToBuffer(jlong xyArrayPtr, jobject buf, jlong offset);
@@ -37,6 +37,10 @@
 
 #include <jni.h>
 
+#include "scave/xyarray.h"
+
+using omnetpp::scave::XYArray;
+
 extern "C" {
 
 #include <string.h>
@@ -210,4 +214,27 @@ JNIEXPORT void JNICALL Java_org_omnetpp_scave_engine_ScaveEngineJNI_removeShared
 #endif
 }
 
+JNIEXPORT void JNICALL Java_org_omnetpp_scave_engine_ScaveEngineJNI_copyXYArrayToBuffer(JNIEnv* env, jobject clazz, jlong xyArrayPtr, jobject directBuffer, jlong offset)
+{
+    const XYArray *array = (const XYArray *)xyArrayPtr;
+    char *buffer = (char *)env->GetDirectBufferAddress(directBuffer);
+    jlong capacity = env->GetDirectBufferCapacity(directBuffer);
+
+    if (array == nullptr || buffer == nullptr) {
+        throwRuntimeException(env, "copyXYArrayToBuffer: null array or not a direct buffer");
+        return;
+    }
+
+    size_t bytes = array->xs.size() * sizeof(double);
+    if (offset < 0 || offset + 2 * (jlong)bytes > capacity) {
+        throwRuntimeException(env, std::string("copyXYArrayToBuffer: ") + std::to_string(2 * bytes) + " bytes at offset " + std::to_string(offset) + " do not fit into buffer of size " + std::to_string(capacity));
+        return;
+    }
+
+    if (bytes != 0) {
+        memcpy(buffer + offset, array->xs.data(), bytes);
+        memcpy(buffer + offset + bytes, array->ys.data(), bytes);
+    }
+}
+
 } // extern "C"
@@ -1,7 +1,9 @@
 package org.omnetpp.inifile.editor.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
@@ -36,6 +38,9 @@ final class ImmutableInifileDocument implements IReadonlyInifileDocument {
     // included files, including indirectly referenced ones
     private ArrayList<IFile> includedFiles;
 
+    // key indices for InifileUtils.lookupParameter(), by section chain; created on demand
+    private Map<List<String>,InifileKeyIndex> keyIndices = new HashMap<List<String>, InifileKeyIndex>();
+
     /**
      * Copies the content of doc into this immutable document.
      */
@@ -101,6 +106,18 @@ final class ImmutableInifileDocument implements IReadonlyInifileDocument {
         return line;
     }
 
+    /**
+     * Returns the key index for the given section chain. Since the document
+     * is immutable, the index can be reused as long as the document is.
+     */
+    synchronized InifileKeyIndex getKeyIndex(String[] sectionChain) {
+        List<String> chain = Arrays.asList(sectionChain);
+        InifileKeyIndex keyIndex = keyIndices.get(chain);
+        if (keyIndex == null)
+            keyIndices.put(chain, keyIndex = new InifileKeyIndex(sectionChain, this));
+        return keyIndex;
+    }
+
     public Set<String> getKeys(String sectionName) {
         Section section = sections.get(sectionName);
         return section == null ? null : section.entries.keySet();
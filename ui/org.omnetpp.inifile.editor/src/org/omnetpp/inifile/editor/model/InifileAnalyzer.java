@@ -276,8 +276,10 @@ public final class InifileAnalyzer {
      */
     public synchronized void analyze(Timeout timeout) throws ParamResolutionTimeoutException {
         validate();
-        if (paramResolutionEnabled)
+        if (paramResolutionEnabled) {
+            paramResolutionJob.discardPreviousResults();
             executeParamResolution(timeout);
+        }
     }
 
     /**
@@ -0,0 +1,128 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.inifile.editor.model;
+
+import static org.omnetpp.inifile.editor.model.ConfigRegistry.DEFAULT;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.omnetpp.ned.core.ParamUtil;
+
+/**
+ * Index of the keys in a section chain, for finding the keys that match a
+ * parameter's full path without trying every key (see InifileUtils.lookupParameter()).
+ *
+ * Keys are bucketed by their last segment (normally the parameter name) if it
+ * is free of wildcards, because a key like "**.node[*].power" can only match
+ * paths that end in ".power". Keys whose last segment contains wildcards are
+ * tried for every path. Candidates are confirmed with the key's pattern matcher,
+ * so the result is exactly the same as that of a linear scan.
+ *
+ * Instances are immutable, and may be shared between threads.
+ */
+class InifileKeyIndex {
+    private static final int[] NO_ENTRIES = new int[0];
+    private static final String WILDCARD_CHARS = "*?{}[]\\";
+
+    private static class Entry {
+        final String section;
+        final String key;
+        final ParamUtil.KeyMatcher keyMatcher;
+        final boolean isDefault;  // whether the value is "default"
+
+        Entry(String section, String key, ParamUtil.KeyMatcher keyMatcher, boolean isDefault) {
+            this.section = section;
+            this.key = key;
+            this.keyMatcher = keyMatcher;
+            this.isDefault = isDefault;
+        }
+    }
+
+    // all keys in the section chain, in lookup order
+    private final Entry[] entries;
+
+    // indices into entries, in increasing order: per literal last segment, and for the rest
+    private final Map<String,int[]> entriesByLastSegment = new HashMap<String, int[]>();
+    private final int[] wildcardEntries;
+
+    public InifileKeyIndex(String[] sectionChain, IReadonlyInifileDocument doc) {
+        List<Entry> entryList = new ArrayList<Entry>();
+        for (String section : sectionChain)
+            for (String key : doc.getKeys(section))
+                entryList.add(new Entry(section, key, ParamUtil.getOrCreateKeyMatcher(key), doc.getValue(section, key).equals(DEFAULT)));
+        entries = entryList.toArray(new Entry[entryList.size()]);
+
+        Map<String,List<Integer>> buckets = new HashMap<String, List<Integer>>();
+        List<Integer> wildcardList = new ArrayList<Integer>();
+        for (int i = 0; i < entries.length; i++) {
+            String lastSegment = getLastSegment(entries[i].keyMatcher.generalizedKey);
+            if (containsWildcardChars(lastSegment))
+                wildcardList.add(i);
+            else {
+                List<Integer> bucket = buckets.get(lastSegment);
+                if (bucket == null)
+                    buckets.put(lastSegment, bucket = new ArrayList<Integer>());
+                bucket.add(i);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> bucket : buckets.entrySet())
+            entriesByLastSegment.put(bucket.getKey(), toIntArray(bucket.getValue()));
+        wildcardEntries = toIntArray(wildcardList);
+    }
+
+    private static String getLastSegment(String path) {
+        return path.substring(path.lastIndexOf('.') + 1);
+    }
+
+    private static boolean containsWildcardChars(String string) {
+        for (int i = 0; i < string.length(); i++)
+            if (WILDCARD_CHARS.indexOf(string.charAt(i)) != -1)
+                return true;
+        return false;
+    }
+
+    private static int[] toIntArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = list.get(i);
+        return result;
+    }
+
+    /**
+     * Same as InifileUtils.lookupParameter() for the section chain of this index.
+     */
+    public List<SectionKey> lookupParameter(String paramFullPath, boolean hasNedDefault) {
+        List<SectionKey> result = new ArrayList<SectionKey>();
+        int[] literalEntries = entriesByLastSegment.get(getLastSegment(paramFullPath));
+        if (literalEntries == null)
+            literalEntries = NO_ENTRIES;
+
+        // merge the two lists of candidates, so that keys are tried in lookup order
+        int i = 0, j = 0;
+        while (i < literalEntries.length || j < wildcardEntries.length) {
+            int index;
+            if (j == wildcardEntries.length || (i < literalEntries.length && literalEntries[i] < wildcardEntries[j]))
+                index = literalEntries[i++];
+            else
+                index = wildcardEntries[j++];
+
+            Entry entry = entries[index];
+            if (entry.keyMatcher.matcher.matches(paramFullPath)) {
+                if (hasNedDefault || !entry.isDefault) {
+                    result.add(new SectionKey(entry.section, entry.key));
+                    if (entry.keyMatcher.keyEqualsGeneralizedKey)
+                        return result;
+                }
+            }
+        }
+        return result;
+    }
+}
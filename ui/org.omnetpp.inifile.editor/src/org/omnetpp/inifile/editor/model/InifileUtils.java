@@ -142,8 +142,14 @@ public class InifileUtils {
      * "*.node[0].power=...", "*.node[1..5].power=...", and
      * "net.node[6..].power=..." etc. Scanning stops at "*.node[*].power="
      * because that eats all matching params (anything after that cannot match.)
+     *
+     * For immutable documents, the lookup uses a key index that is built on the
+     * first call for the given section chain; otherwise all keys are tried.
      */
     public static List<SectionKey> lookupParameter(String paramFullPath, boolean hasNedDefault, String[] sectionChain, IReadonlyInifileDocument doc) {
+        if (doc instanceof ImmutableInifileDocument)
+            return ((ImmutableInifileDocument)doc).getKeyIndex(sectionChain).lookupParameter(paramFullPath, hasNedDefault);
+
         List<SectionKey> result = new ArrayList<SectionKey>();
         for (String section : sectionChain) {
             for (String key : doc.getKeys(section)) {
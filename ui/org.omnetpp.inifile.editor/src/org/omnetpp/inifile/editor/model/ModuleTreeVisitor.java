@@ -2,10 +2,13 @@ package org.omnetpp.inifile.editor.model;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -17,6 +20,7 @@ import org.omnetpp.ned.core.ParamUtil;
 import org.omnetpp.ned.model.INedElement;
 import org.omnetpp.ned.model.ex.NedElementFactoryEx;
 import org.omnetpp.ned.model.ex.ParamElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
 import org.omnetpp.ned.model.interfaces.INedTypeInfo;
 import org.omnetpp.ned.model.interfaces.ISubmoduleOrConnection;
 
@@ -32,11 +36,16 @@ class ModuleTreeVisitor  implements IModuleTreeVisitor {
     private final boolean collectParameters;
     private final String[] propertiesToCollect;     // names of properties to be collected, null if none
     private final PatternMatcher moduleNamePattern;
+    private final ParamAssignmentCache paramAssignmentCache; // may be null
 
     private final List<ParamResolution> paramResolutions;
     private final List<PropertyResolution> propertyResolutions;
     private final Map<String,ISubmoduleOrConnection> modules;
 
+    // NED files and simple type names the result depends on (see ParamResolutionStatus.Entry)
+    private final Set<IFile> usedNedFiles = new HashSet<IFile>();
+    private final Set<String> usedNedTypeNames = new HashSet<String>();
+
     protected Stack<ISubmoduleOrConnection> elementPath = new Stack<ISubmoduleOrConnection>();
     protected Stack<INedTypeInfo> typeInfoPath = new Stack<INedTypeInfo>();
     protected Stack<String> fullPathStack = new Stack<String>();  //XXX performance: use cumulative names, so that StringUtils.join() can be eliminated (like: "Net", "Net.node[*]", "Net.node[*].ip" etc)
@@ -51,6 +60,7 @@ class ModuleTreeVisitor  implements IModuleTreeVisitor {
         this.collectParameters = collectParameters;
         this.propertiesToCollect = propertiesToCollect;
         this.moduleNamePattern = moduleNamePattern;
+        this.paramAssignmentCache = null;
 
         this.paramResolutions = collectParameters ? new ArrayList<ParamResolution>() : null;
         this.propertyResolutions = propertiesToCollect != null ? new ArrayList<PropertyResolution>() : null;
@@ -62,12 +72,23 @@ class ModuleTreeVisitor  implements IModuleTreeVisitor {
      */
     public ModuleTreeVisitor(IReadonlyInifileDocument doc, String activeSection,
             boolean collectParameters, String[] propertiesToCollect, PatternMatcher moduleNamePattern, IProgressMonitor monitor) {
+        this(doc, activeSection, collectParameters, propertiesToCollect, moduleNamePattern, null, monitor);
+    }
+
+    /**
+     * For traversing the configured network, sharing NED parameter assignment lookups
+     * with other traversals via the given cache (which may be null).
+     */
+    public ModuleTreeVisitor(IReadonlyInifileDocument doc, String activeSection,
+            boolean collectParameters, String[] propertiesToCollect, PatternMatcher moduleNamePattern,
+            ParamAssignmentCache paramAssignmentCache, IProgressMonitor monitor) {
         Assert.isTrue(collectParameters || propertiesToCollect != null || moduleNamePattern != null);
         this.doc = doc;
         this.sectionChain = doc.getSectionChain(activeSection);
         this.collectParameters = collectParameters;
         this.propertiesToCollect = propertiesToCollect;
         this.moduleNamePattern = moduleNamePattern;
+        this.paramAssignmentCache = paramAssignmentCache;
         this.monitor = monitor;
 
         this.paramResolutions = collectParameters ? new ArrayList<ParamResolution>() : null;
@@ -87,6 +108,33 @@ class ModuleTreeVisitor  implements IModuleTreeVisitor {
         return modules;
     }
 
+    /**
+     * Returns the NED files of the types visited so far, including their base types and interfaces.
+     */
+    public Set<IFile> getUsedNedFiles() {
+        return usedNedFiles;
+    }
+
+    /**
+     * Returns the simple names of the NED types visited or looked up so far.
+     */
+    public Set<String> getUsedNedTypeNames() {
+        return usedNedTypeNames;
+    }
+
+    protected void addUsedType(INedTypeElement typeElement) {
+        INedTypeInfo typeInfo = typeElement.getNedTypeInfo();
+        usedNedTypeNames.add(typeInfo.getName());
+        IFile file = typeInfo.getNedFile();
+        if (file != null)
+            usedNedFiles.add(file);
+    }
+
+    protected void addUsedTypeName(String typeName) {
+        if (!StringUtils.isEmpty(typeName))
+            usedNedTypeNames.add(StringUtils.substringAfterLast("." + typeName, "."));
+    }
+
     public boolean enter(ISubmoduleOrConnection element, INedTypeInfo typeInfo) {
         if (monitor != null && monitor.isCanceled())
             throw new OperationCanceledException();
@@ -94,6 +142,13 @@ class ModuleTreeVisitor  implements IModuleTreeVisitor {
         elementPath.push(element);
         typeInfoPath.push(typeInfo);
 
+        for (INedTypeInfo ancestor : typeInfo.getInheritanceChain())
+            addUsedType(ancestor.getNedElement());
+        for (INedTypeElement interfaceType : typeInfo.getInterfaces())
+            addUsedType(interfaceType);
+        if (element != null)
+            addUsedTypeName(element.getLikeType());
+
         fullPathStack.push(element == null ? typeInfo.getName() : ParamUtil.getParamPathElementName(element));
         String fullPath = StringUtils.join(fullPathStack, ".");
 
@@ -103,7 +158,7 @@ class ModuleTreeVisitor  implements IModuleTreeVisitor {
 
             // collect parameters
             if (collectParameters) {
-                ParamCollector.resolveModuleParameters(paramResolutions, fullPath, typeInfoPath, elementPath, sectionChain, doc);
+                ParamCollector.resolveModuleParameters(paramResolutions, fullPath, typeInfoPath, elementPath, sectionChain, doc, paramAssignmentCache);
             }
 
             // collect properties
@@ -124,6 +179,7 @@ class ModuleTreeVisitor  implements IModuleTreeVisitor {
     }
 
     public void unresolvedType(ISubmoduleOrConnection element, String typeName) {
+        addUsedTypeName(typeName); // a type with this name may appear later
     }
 
     public void recursiveType(ISubmoduleOrConnection element, INedTypeInfo typeInfo) {
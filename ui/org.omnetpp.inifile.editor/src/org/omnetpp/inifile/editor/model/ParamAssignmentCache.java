@@ -0,0 +1,69 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.inifile.editor.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.omnetpp.ned.core.ParamUtil;
+import org.omnetpp.ned.model.ex.ParamElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeInfo;
+import org.omnetpp.ned.model.interfaces.ISubmoduleOrConnection;
+
+/**
+ * Memoizes the results of ParamUtil.findParamAssignmentsForParamDeclaration().
+ * These only depend on NED, so sections whose networks contain the same
+ * submodule paths can share them. Thread-safe; meant to be used for one
+ * immutable NED resolver only.
+ */
+class ParamAssignmentCache {
+    private final ConcurrentHashMap<Key, ArrayList<ParamElementEx>> cache = new ConcurrentHashMap<Key, ArrayList<ParamElementEx>>();
+
+    // NED elements and type infos are compared by identity
+    private static class Key {
+        final Object[] path;
+        final int hashCode;
+
+        Key(Vector<INedTypeInfo> typeInfoPath, Vector<ISubmoduleOrConnection> elementPath, ParamElementEx paramDeclaration) {
+            int n = elementPath.size(), m = typeInfoPath.size();
+            path = new Object[n + m + 1];
+            for (int i = 0; i < n; i++)
+                path[i] = elementPath.get(i);
+            for (int i = 0; i < m; i++)
+                path[n + i] = typeInfoPath.get(i);
+            path[n + m] = paramDeclaration;
+            hashCode = Arrays.hashCode(path);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && hashCode == ((Key)obj).hashCode && Arrays.equals(path, ((Key)obj).path);
+        }
+    }
+
+    /**
+     * Same as ParamUtil.findParamAssignmentsForParamDeclaration(); the returned list
+     * must not be modified.
+     */
+    public ArrayList<ParamElementEx> findParamAssignmentsForParamDeclaration(Vector<INedTypeInfo> typeInfoPath, Vector<ISubmoduleOrConnection> elementPath, ParamElementEx paramDeclaration) {
+        Key key = new Key(typeInfoPath, elementPath, paramDeclaration);
+        ArrayList<ParamElementEx> result = cache.get(key);
+        if (result == null) {
+            result = ParamUtil.findParamAssignmentsForParamDeclaration(typeInfoPath, elementPath, paramDeclaration);
+            cache.putIfAbsent(key, result);
+        }
+        return result;
+    }
+}
@@ -29,11 +29,22 @@ public class ParamCollector {
      */
     public static ParamResolutionStatus.Entry collectParametersAndProperties(IReadonlyInifileDocument doc,
             INedTypeResolver nedResolver, String activeSection, IProgressMonitor monitor) {
+        return collectParametersAndProperties(doc, nedResolver, activeSection, null, monitor);
+    }
+
+    /**
+     * Like collectParametersAndProperties(), but NED parameter assignment lookups are
+     * shared with other sections via the given cache (which may be null). The cache
+     * must only be used with the given NED resolver. Safe to call from multiple
+     * threads in parallel if the document and the NED resolver are immutable copies.
+     */
+    static ParamResolutionStatus.Entry collectParametersAndProperties(IReadonlyInifileDocument doc,
+            INedTypeResolver nedResolver, String activeSection, ParamAssignmentCache paramAssignmentCache, IProgressMonitor monitor) {
 
         Assert.isNotNull(doc);
         Assert.isNotNull(activeSection);
 
-        ModuleTreeVisitor visitor = new ModuleTreeVisitor(doc, activeSection, true, new String[] {"signal", "statistic"}, null, monitor);
+        ModuleTreeVisitor visitor = new ModuleTreeVisitor(doc, activeSection, true, new String[] {"signal", "statistic"}, null, paramAssignmentCache, monitor);
         String networkName = InifileUtils.lookupNetwork(doc, activeSection);
         INedTypeInfo network = networkName != null ? resolveNetwork(doc, nedResolver, networkName) : null;
         if (network != null) {
@@ -46,6 +57,10 @@ public class ParamCollector {
         result.section = activeSection;
         result.paramResolutions = visitor.getParamResolutions();
         result.propertyResolutions = visitor.getPropertyResolutions();
+        result.usedNedFiles = visitor.getUsedNedFiles();
+        result.usedNedTypeNames = visitor.getUsedNedTypeNames();
+        if (networkName != null)
+            result.usedNedTypeNames.add(StringUtils.substringAfterLast("." + networkName, "."));
         return result;
     }
 
@@ -101,8 +116,13 @@ public class ParamCollector {
      */
     public static void resolveModuleParameters(List<ParamResolution> resultList, String fullPath, Vector<INedTypeInfo> typeInfoPath,
             Vector<ISubmoduleOrConnection> elementPath, String[] sectionChain, IReadonlyInifileDocument doc) {
+        resolveModuleParameters(resultList, fullPath, typeInfoPath, elementPath, sectionChain, doc, null);
+    }
+
+    static void resolveModuleParameters(List<ParamResolution> resultList, String fullPath, Vector<INedTypeInfo> typeInfoPath,
+            Vector<ISubmoduleOrConnection> elementPath, String[] sectionChain, IReadonlyInifileDocument doc, ParamAssignmentCache paramAssignmentCache) {
         for (ParamElementEx paramDeclaration : typeInfoPath.lastElement().getParamDeclarations().values())
-            resolveParameter(resultList, fullPath, typeInfoPath, elementPath, sectionChain, doc, paramDeclaration);
+            resolveParameter(resultList, fullPath, typeInfoPath, elementPath, sectionChain, doc, paramDeclaration, paramAssignmentCache);
     }
 
     /**
@@ -135,9 +155,16 @@ public class ParamCollector {
     //       and vector lower bound is always 0, while vector upper bound is either constant or unknown
     //       it is quite doable even if not so simple
     public static void resolveParameter(List<ParamResolution> resultList, String fullPath, Vector<INedTypeInfo> typeInfoPath, Vector<ISubmoduleOrConnection> elementPath, String[] sectionChain, IReadonlyInifileDocument doc, ParamElementEx paramDeclaration)
+    {
+        resolveParameter(resultList, fullPath, typeInfoPath, elementPath, sectionChain, doc, paramDeclaration, null);
+    }
+
+    static void resolveParameter(List<ParamResolution> resultList, String fullPath, Vector<INedTypeInfo> typeInfoPath, Vector<ISubmoduleOrConnection> elementPath, String[] sectionChain, IReadonlyInifileDocument doc, ParamElementEx paramDeclaration, ParamAssignmentCache paramAssignmentCache)
     {
         // look up parameter assignments in NED
-        ArrayList<ParamElementEx> paramAssignments = ParamUtil.findParamAssignmentsForParamDeclaration(typeInfoPath, elementPath, paramDeclaration);
+        ArrayList<ParamElementEx> paramAssignments = paramAssignmentCache != null ?
+                paramAssignmentCache.findParamAssignmentsForParamDeclaration(typeInfoPath, elementPath, paramDeclaration) :
+                ParamUtil.findParamAssignmentsForParamDeclaration(typeInfoPath, elementPath, paramDeclaration);
         boolean hasNedUnassigned = false;
         boolean hasNedTotalAssignment = false;
         boolean hasNedDefaultAssignment = false;
@@ -155,14 +182,15 @@ public class ParamCollector {
         if (doc != null) {
             activeSection = sectionChain[0];
 
-            // TODO: avoid calling lookupParameter twice
             String paramPath = fullPath + "." + paramDeclaration.getName();
             sectionKeys = InifileUtils.lookupParameter(paramPath, false, sectionChain, doc);
 
             for (SectionKey sectionKey : sectionKeys)
                 hasIniTotalAssignment |= ParamUtil.isTotalParamAssignment(sectionKey.key);
 
-            sectionKeys = InifileUtils.lookupParameter(paramPath, hasNedDefaultAssignment, sectionChain, doc);
+            // the result only differs if "=default" keys are also considered
+            if (hasNedDefaultAssignment)
+                sectionKeys = InifileUtils.lookupParameter(paramPath, true, sectionChain, doc);
         }
 
         // process non default parameter assignments from NED
@@ -1,19 +1,35 @@
 package org.omnetpp.inifile.editor.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.omnetpp.common.Debug;
 import org.omnetpp.inifile.editor.InifileEditorPlugin;
 import org.omnetpp.inifile.editor.model.ParamResolutionStatus.Entry;
 import org.omnetpp.ned.core.INedResources;
 import org.omnetpp.ned.core.NedResourcesPlugin;
+import org.omnetpp.ned.model.INedElement;
+import org.omnetpp.ned.model.ex.NedElementUtilEx;
+import org.omnetpp.ned.model.ex.NedFileElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
 import org.omnetpp.ned.model.interfaces.INedTypeResolver;
 
 /**
@@ -34,12 +50,22 @@ class ParamResolutionJob extends Job {
     private IInifileDocument doc;
     private int retryCount;
 
+    // result of the last successful run; sections not affected by changes since then are not resolved again
+    private volatile ParamResolutionStatus lastStatus;
+
     public ParamResolutionJob(IInifileDocument doc) {
         super("Ini file analysis");
         this.doc = doc;
         setPriority(SHORT);
     }
 
+    /**
+     * Makes the next run resolve all sections, instead of reusing earlier results.
+     */
+    public void discardPreviousResults() {
+        lastStatus = null;
+    }
+
     @Override
     protected IStatus run(IProgressMonitor monitor) {
         IStatus status = tryRun(monitor);
@@ -60,40 +86,67 @@ class ParamResolutionJob extends Job {
         return status;
     }
 
-    private IStatus tryRun(IProgressMonitor monitor) {
+    private IStatus tryRun(final IProgressMonitor monitor) {
         final IReadonlyInifileDocument docCopy = doc.getImmutableCopy();
         final INedResources nedResources = NedResourcesPlugin.getNedResources();
         final INedTypeResolver nedResolver = nedResources.getImmutableCopy();
 
         List<Entry> entries = new ArrayList<Entry>();
         String[] sections = docCopy.getSectionNames();
-        monitor.beginTask("Analyzing " + docCopy.getDocumentFile().getName(), sections.length * 100);
+        monitor.beginTask("Analyzing " + docCopy.getDocumentFile().getName(), sections.length * 100 + 1);
 
         long startTime = System.currentTimeMillis();
 
-        class SubMonitor extends SubProgressMonitor {
-            public SubMonitor(IProgressMonitor monitor, int ticks) {
-                super(monitor, ticks);
-            }
-
+        // progress monitors are not thread-safe, so the sections only get this one for checking cancellation
+        final IProgressMonitor cancellationMonitor = new NullProgressMonitor() {
             @Override
             public boolean isCanceled() {
-                return super.isCanceled() || !doc.isImmutableCopyUpToDate(docCopy) || !nedResources.isImmutableCopyUpToDate(nedResolver);
+                return monitor.isCanceled() || !doc.isImmutableCopyUpToDate(docCopy) || !nedResources.isImmutableCopyUpToDate(nedResolver);
             }
         };
 
+        List<Future<Entry>> futures = new ArrayList<Future<Entry>>();
+        int numReusedEntries = 0;
         try {
-            for (String activeSection : sections) {
-                if (monitor.isCanceled() || !doc.isImmutableCopyUpToDate(docCopy) || !nedResources.isImmutableCopyUpToDate(nedResolver))
-                    throw new OperationCanceledException();
-
-                monitor.subTask("Resolving module parameters and properties.");
-                Entry entry =
-                    ParamCollector.collectParametersAndProperties(docCopy, nedResolver, activeSection, new SubMonitor(monitor, 100));
-                entries.add(entry);
+            monitor.subTask("Resolving module parameters and properties.");
+            Map<String,Entry> reusableEntries;
+            try {
+                ParamResolutionStatus previousStatus = lastStatus;
+                reusableEntries = previousStatus == null ? new HashMap<String, Entry>() : findReusableEntries(previousStatus, docCopy, nedResolver);
+            }
+            catch (RuntimeException e) {
+                if (cancellationMonitor.isCanceled())
+                    throw new OperationCanceledException(); // an outdated NED snapshot may cause all sorts of exceptions
+                throw e;
+            }
+            monitor.worked(1);
+
+            // resolve sections in parallel (NED snapshots compute their type infos up front, so this is safe); NED parameter assignments are looked up only once for sections with the same network
+            final ParamAssignmentCache paramAssignmentCache = new ParamAssignmentCache();
+            numReusedEntries = reusableEntries.size();
+            for (final String activeSection : sections) {
+                if (reusableEntries.containsKey(activeSection)) {
+                    futures.add(CompletableFuture.completedFuture(reusableEntries.get(activeSection)));
+                    continue;
+                }
+                futures.add(ForkJoinPool.commonPool().submit(new Callable<Entry>() {
+                    public Entry call() {
+                        if (cancellationMonitor.isCanceled())
+                            throw new OperationCanceledException();
+                        return ParamCollector.collectParametersAndProperties(docCopy, nedResolver, activeSection, paramAssignmentCache, cancellationMonitor);
+                    }
+                }));
+            }
+
+            // collect results in section order
+            for (Future<Entry> future : futures) {
+                entries.add(getResult(future, cancellationMonitor));
+                monitor.worked(100);
             }
 
         } catch (OperationCanceledException e) {
+            for (Future<Entry> future : futures)
+                future.cancel(false);
             if (monitor.isCanceled()) {
                 Debug.println("ParamResolutionJob: canceled after "+(System.currentTimeMillis()-startTime)+"ms");
                 return new Status(IStatus.CANCEL, InifileEditorPlugin.PLUGIN_ID, USER_CANCELED, "", null);
@@ -106,7 +159,104 @@ class ParamResolutionJob extends Job {
             monitor.done();
         }
 
-        Debug.println("ParamResolutionJob: completed in "+(System.currentTimeMillis()-startTime)+"ms");
-        return new ParamResolutionStatus(entries, docCopy, nedResolver);
+        Debug.println("ParamResolutionJob: completed in "+(System.currentTimeMillis()-startTime)+"ms, reused results of "+numReusedEntries+" of "+sections.length+" sections");
+        lastStatus = new ParamResolutionStatus(entries, docCopy, nedResolver);
+        return lastStatus;
+    }
+
+    /**
+     * Returns the entries of the given earlier result that are still valid, by section.
+     * An entry is valid if the contents and the chain of the section did not change,
+     * and its network does not use NED files or type names affected by NED changes.
+     * NED changes are determined by comparing the trees of the two NED snapshots
+     * (unchanged files share trees).
+     */
+    private static Map<String,Entry> findReusableEntries(ParamResolutionStatus lastStatus, IReadonlyInifileDocument docCopy, INedTypeResolver nedResolver) {
+        Map<String,Entry> result = new HashMap<String, Entry>();
+        IReadonlyInifileDocument lastDocCopy = lastStatus.docCopy;
+        if (!docCopy.getDocumentFile().equals(lastDocCopy.getDocumentFile()))
+            return result;
+
+        // sections whose contents changed
+        Set<String> changedSections = new HashSet<String>();
+        for (String section : docCopy.getSectionNames())
+            if (!isSectionUnchanged(section, lastDocCopy, docCopy))
+                changedSections.add(section);
+        for (String section : lastDocCopy.getSectionNames())
+            if (!docCopy.containsSection(section))
+                changedSections.add(section);
+
+        // NED files whose trees differ, and the names of the types defined in them
+        Set<IFile> changedNedFiles = new HashSet<IFile>();
+        final Set<String> changedNedTypeNames = new HashSet<String>();
+        INedTypeResolver lastNedResolver = lastStatus.nedResolverCopy;
+        if (lastNedResolver != nedResolver) {
+            Set<IFile> files = new HashSet<IFile>(lastNedResolver.getNedFiles());
+            files.addAll(nedResolver.getNedFiles());
+            for (IFile file : files) {
+                NedFileElementEx lastTree = lastNedResolver.containsNedFileElement(file) ? lastNedResolver.getNedFileElement(file) : null;
+                NedFileElementEx tree = nedResolver.containsNedFileElement(file) ? nedResolver.getNedFileElement(file) : null;
+                if (lastTree != tree) {
+                    changedNedFiles.add(file);
+                    for (NedFileElementEx nedFileElement : new NedFileElementEx[] {lastTree, tree}) {
+                        if (nedFileElement != null) {
+                            NedElementUtilEx.visitNedTree(nedFileElement, new NedElementUtilEx.INedElementVisitor() {
+                                public void visit(INedElement element) {
+                                    if (element instanceof INedTypeElement)
+                                        changedNedTypeNames.add(((INedTypeElement)element).getName());
+                                }
+                            });
+                        }
+                    }
+                }
+            }
+        }
+
+        for (Entry entry : lastStatus.result) {
+            String section = entry.section;
+            if (!docCopy.containsSection(section))
+                continue;
+            String[] sectionChain = docCopy.getSectionChain(section);
+            if (!Arrays.equals(sectionChain, lastDocCopy.getSectionChain(section)))
+                continue;
+            if (!Collections.disjoint(Arrays.asList(sectionChain), changedSections))
+                continue;
+            if (!Collections.disjoint(entry.usedNedFiles, changedNedFiles) || !Collections.disjoint(entry.usedNedTypeNames, changedNedTypeNames))
+                continue;
+            result.put(section, entry);
+        }
+        return result;
+    }
+
+    private static boolean isSectionUnchanged(String section, IReadonlyInifileDocument lastDocCopy, IReadonlyInifileDocument docCopy) {
+        if (!lastDocCopy.containsSection(section))
+            return false;
+        // note: order of keys matters for parameter lookups
+        List<String> keys = new ArrayList<String>(docCopy.getKeys(section));
+        if (!keys.equals(new ArrayList<String>(lastDocCopy.getKeys(section))))
+            return false;
+        for (String key : keys)
+            if (!docCopy.getValue(section, key).equals(lastDocCopy.getValue(section, key)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Waits for the result of a section. Failures caused by the inputs changing
+     * meanwhile are turned into OperationCanceledException.
+     */
+    private static Entry getResult(Future<Entry> future, IProgressMonitor cancellationMonitor) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            throw new OperationCanceledException();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OperationCanceledException || cancellationMonitor.isCanceled())
+                throw new OperationCanceledException(); // note: an outdated NED snapshot may cause all sorts of exceptions
+            throw cause instanceof RuntimeException ? (RuntimeException)cause : new RuntimeException(cause);
+        }
     }
 }
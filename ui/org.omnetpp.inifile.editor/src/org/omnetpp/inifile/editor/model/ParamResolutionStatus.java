@@ -1,7 +1,9 @@
 package org.omnetpp.inifile.editor.model;
 
 import java.util.List;
+import java.util.Set;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.Status;
 import org.omnetpp.inifile.editor.InifileEditorPlugin;
 import org.omnetpp.ned.model.interfaces.INedTypeResolver;
@@ -18,6 +20,11 @@ public class ParamResolutionStatus extends Status {
         String section;
         List<ParamResolution> paramResolutions;
         List<PropertyResolution> propertyResolutions;
+
+        // what the result depends on besides the contents of the section chain; used for
+        // deciding whether the entry can be reused after a NED change
+        Set<IFile> usedNedFiles;
+        Set<String> usedNedTypeNames;  // simple names
     }
 
     public final IReadonlyInifileDocument docCopy;
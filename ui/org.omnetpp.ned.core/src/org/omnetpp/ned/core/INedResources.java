@@ -113,7 +113,10 @@ public interface INedResources extends INedTypeResolver {
      * to return a different, up-to-date instance. (Marker changes do not count.)
      *
      * Use isImmutableCopyUpToDate() to check whether an immutable copy you obtained
-     * earlier is still current.
+     * earlier is still current. Subsequent copies share the trees of files not
+     * affected by the changes; type lookups give the same results in all copies,
+     * but other queries made via an element's resolver may see newer types, so
+     * results computed from an outdated copy should be discarded.
      */
     public INedTypeResolver getImmutableCopy();
 
@@ -1,33 +1,188 @@
 package org.omnetpp.ned.core;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.Assert;
+import org.omnetpp.common.Debug;
+import org.omnetpp.ned.model.INedElement;
+import org.omnetpp.ned.model.ex.NedElementUtilEx;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
+import org.omnetpp.ned.model.ex.SubmoduleElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
+import org.omnetpp.ned.model.interfaces.INedTypeInfo;
+import org.omnetpp.ned.model.interfaces.INedTypeResolver;
 import org.omnetpp.ned.model.notification.INedChangeListener;
 import org.omnetpp.ned.model.notification.NedMarkerChangeEvent;
 import org.omnetpp.ned.model.notification.NedModelEvent;
 
 /**
- * Default implementation of INedTypeResolver
+ * An immutable snapshot of a NED type resolver, for background computations.
+ *
+ * A snapshot created from a previous one shares the NED trees of the files that
+ * are not affected by the changes since then, and copies the rest. A file is
+ * affected if it was changed, added or removed, or if it refers (directly or
+ * transitively) to a type name defined in such a file; the type infos of the
+ * other files are therefore the same in both snapshots, so shared trees and their
+ * type infos are never modified. The type infos of the copied trees are computed
+ * when the snapshot is created, so they are not filled in lazily from several
+ * threads later.
+ *
+ * Each tree has its own SnapshotTreeResolver, which forwards to the newest complete
+ * snapshot that contains the tree. Type lookups made from a shared tree return the
+ * same elements in all of those snapshots; other queries made via an element's
+ * resolver (e.g. listing all types) may reflect a newer snapshot, so users should
+ * check INedResources.isImmutableCopyUpToDate() and discard their results if the
+ * snapshot is outdated.
  *
  * @author Andras
  */
 public class ImmutableNedTypeResolver extends NedTypeResolver {
-    private INedChangeListener listener = new INedChangeListener() {
+    private static final INedChangeListener listener = new INedChangeListener() {
         public void modelChanged(NedModelEvent event) {
-            ImmutableNedTypeResolver.this.modelChanged(event);
+            ImmutableNedTypeResolver.modelChanged(event);
         }
     };
 
+    // the resolvers of our NED trees (including the built-in declarations)
+    private final Set<INedTypeResolver> treeResolvers = new HashSet<INedTypeResolver>();
+
+    /**
+     * Creates a snapshot with its own copy of all NED trees.
+     */
     protected ImmutableNedTypeResolver(NedTypeResolver other) {
-        super(other);
+        this(other, null, null);
+    }
+
+    /**
+     * Creates a snapshot of the given resolver. If previous is not null, trees of files
+     * not affected by changedFiles are shared with it; in that case, the projects table
+     * of the given resolver must be the same as it was when previous was created.
+     */
+    protected ImmutableNedTypeResolver(NedTypeResolver other, ImmutableNedTypeResolver previous, Set<IFile> changedFiles) {
+        long startMillis = System.currentTimeMillis();
+        Assert.isTrue(previous == null || changedFiles != null);
+
+        lastChangeSerial = other.lastChangeSerial;
+        cloneProjectsTable(other);
+
+        // files whose trees cannot be shared with the previous snapshot
+        Set<IFile> affectedFiles = previous == null ? null : previous.findAffectedFiles(other, changedFiles);
+
+        // share unaffected trees with the previous snapshot, copy the rest
+        List<NedFileElementEx> copiedTrees = new ArrayList<NedFileElementEx>();
+        for (IFile file : other.nedFiles.keySet()) {
+            NedFileElementEx nedFileElement = previous == null || affectedFiles.contains(file) ? null : previous.nedFiles.get(file);
+            if (nedFileElement == null) {
+                nedFileElement = copyTree(other.nedFiles.get(file), file);
+                copiedTrees.add(nedFileElement);
+            }
+            treeResolvers.add(nedFileElement.getResolver());
+            nedFiles.put(file, nedFileElement);
+            nedElementFiles.put(nedFileElement, file);
+        }
+        if (previous != null)
+            builtInDeclarationsFile = previous.builtInDeclarationsFile;
+        else
+            copiedTrees.add(builtInDeclarationsFile = copyTree(other.builtInDeclarationsFile, null));
+        treeResolvers.add(builtInDeclarationsFile.getResolver());
+
+        // new trees resolve against this snapshot; nobody else sees them until we are done
+        for (NedFileElementEx nedFileElement : copiedTrees)
+            ((SnapshotTreeResolver)nedFileElement.getResolver()).setTarget(this);
+
+        if (previous == null)
+            internalRehash();
+        else {
+            cloneTypeTables(previous);
+            internalRehash(affectedFiles);
+        }
+
+        // compute the type infos of the new trees, then switch the shared trees over to
+        // this snapshot; this way, other snapshots' trees never see an incomplete one
+        for (NedFileElementEx nedFileElement : copiedTrees)
+            prepareTypeInfos(nedFileElement);
+        for (INedTypeResolver treeResolver : treeResolvers)
+            ((SnapshotTreeResolver)treeResolver).setTarget(this);
+
+        if (debug)
+            Debug.println("immutable NED snapshot: " + (System.currentTimeMillis() - startMillis) + "ms, copied " + copiedTrees.size() + " of " + (nedFiles.size()+1) + " trees");
+    }
+
+    /**
+     * Returns the files whose trees must be copied when creating a new snapshot
+     * of the given resolver: the ones changed, added or removed since this
+     * snapshot, and the ones whose type infos depend on those.
+     */
+    protected Set<IFile> findAffectedFiles(NedTypeResolver other, Set<IFile> changedFiles) {
+        // files added or removed are also changed files, but let us not rely on that
+        Set<IFile> affectedFiles = new HashSet<IFile>(changedFiles);
+        for (IFile file : nedFiles.keySet())
+            if (!other.nedFiles.containsKey(file))
+                affectedFiles.add(file);
+        for (IFile file : other.nedFiles.keySet())
+            if (!nedFiles.containsKey(file))
+                affectedFiles.add(file);
+
+        // names defined in those files, before and after the change
+        Set<String> affectedNames = new HashSet<String>();
+        for (IFile file : affectedFiles) {
+            FileData data = fileData.get(file);
+            if (data != null)
+                affectedNames.addAll(data.definedNames);
+            NedFileElementEx nedFileElement = other.nedFiles.get(file);
+            if (nedFileElement != null)
+                collectTypeNames(nedFileElement, affectedNames, new HashSet<String>());
+        }
+
+        affectedFiles.addAll(findDependentFiles(affectedFiles, affectedNames));
+        return affectedFiles;
+    }
+
+    @Override
+    protected int invalidateDependentTypeInfos(Set<IFile> changedFiles, Set<String> affectedNames) {
+        // the dependent files were copied as well (see findAffectedFiles()), so shared trees are left alone
+        Assert.isTrue(findDependentFiles(changedFiles, affectedNames).isEmpty(), "type infos of shared NED trees would be invalidated");
+        return 0;
+    }
+
+    protected NedFileElementEx copyTree(NedFileElementEx nedFileElement, IFile file) {
+        NedFileElementEx copy = (NedFileElementEx)nedFileElement.deepDup(new SnapshotTreeResolver(file, lastChangeSerial), true, true);
+        copy.addNedChangeListener(listener);
+        return copy;
+    }
+
+    /**
+     * Fills in the type infos under the given tree, so that they are not modified
+     * while the snapshot is being used.
+     */
+    protected static void prepareTypeInfos(NedFileElementEx nedFileElement) {
+        NedElementUtilEx.visitNedTree(nedFileElement, new NedElementUtilEx.INedElementVisitor() {
+            public void visit(INedElement element) {
+                if (element instanceof INedTypeElement) {
+                    INedTypeInfo typeInfo = ((INedTypeElement)element).getNedTypeInfo();
+                    typeInfo.getFullyQualifiedName();
+                    typeInfo.getMembers();
+                    typeInfo.getInterfaces();
+                    typeInfo.getUsedTypes();
+                }
+                else if (element instanceof SubmoduleElementEx)
+                    ((SubmoduleElementEx)element).getNedTypeInfo();
+            }
+        });
+    }
 
-        // add change listeners
-        for (NedFileElementEx fileElement : nedElementFiles.keySet())
-            fileElement.addNedChangeListener(listener);
+    @Override
+    protected boolean isOwnResolver(INedTypeResolver resolver) {
+        return resolver == this || treeResolvers.contains(resolver);
     }
 
-    protected void modelChanged(NedModelEvent event) {
+    protected static void modelChanged(NedModelEvent event) {
         if (event instanceof NedMarkerChangeEvent)
             return; // that's OK
         throw new RuntimeException("Attempt to modify element in an immutable type resolver: " + event.toString());
     }
-}
\ No newline at end of file
+}
@@ -194,7 +194,19 @@ public class MsgResources implements IMsgTypeResolver, IResourceChangeListener {
 
     private void readMsgFile(IFile file) throws IOException, CoreException {
         String source = FileUtils.readTextFile(file.getContents(), file.getCharset());
-        MsgFileElementEx element = NedTreeUtil.parseMsgSource(source, new SysoutNedErrorStore(), file.toString());
+        MsgFileElementEx element = null;
+
+        // use the tree from the previous session if the file has not changed since
+        NedAstCache cache = NedResourcesPlugin.getNedAstCache();
+        NedAstCache.Key key = cache == null || file.getLocation() == null ? null : cache.computeKey(file.getLocation().toFile(), source.getBytes(file.getCharset()));
+        if (key != null)
+            element = (MsgFileElementEx)cache.lookup(key, new SysoutNedErrorStore(), null);
+        if (element == null) {
+            NedAstCache.RecordingErrorStore errorStore = new NedAstCache.RecordingErrorStore(new SysoutNedErrorStore());
+            element = NedTreeUtil.parseMsgSource(source, errorStore, file.toString());
+            if (key != null)
+                cache.store(key, element, errorStore);
+        }
         msgFiles.put(file, element);
         msgElementFiles.put(element, file);
 
@@ -217,6 +229,8 @@ public class MsgResources implements IMsgTypeResolver, IResourceChangeListener {
                         // printDelta(delta);
                         if (isMsgFile(resource)) {
                             IFile file = (IFile)resource;
+                            if (delta.getKind() == IResourceDelta.REMOVED || (delta.getFlags() & IResourceDelta.CONTENT) != 0)
+                                NedResources.invalidateAstCache(file);
                             switch (delta.getKind()) {
                             case IResourceDelta.REMOVED:
                                 forgetMsgFile(file);
@@ -0,0 +1,483 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.ned.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.omnetpp.common.Debug;
+import org.omnetpp.ned.model.AbstractNedErrorStore;
+import org.omnetpp.ned.model.INedElement;
+import org.omnetpp.ned.model.INedErrorStore;
+import org.omnetpp.ned.model.NedSourceRegion;
+import org.omnetpp.ned.model.ex.NedElementFactoryEx;
+import org.omnetpp.ned.model.interfaces.INedTypeResolver;
+
+/**
+ * Persistent cache of parsed NED and MSG files, so that unchanged files do not
+ * need to be parsed again in the next IDE session. Entries are keyed by the file
+ * path, and are only used if the size, modification time and content hash of the
+ * file are the same as when the entry was stored. An entry contains the element
+ * tree in a compact binary form, plus the syntax problems reported during parsing;
+ * the latter are replayed into the error store when the entry is used.
+ *
+ * The cache file is memory-mapped on startup, and only its index is read; entries
+ * are decoded on demand. Entries added during the session are written out together
+ * with the still valid old ones by save(), which is called when the plugin stops.
+ * As the old file is still mapped at that point (and a mapped file cannot be
+ * replaced on Windows), each save writes a new generation of the file, named
+ * "<cache file>.<generation>"; older generations are deleted when possible, at
+ * the latest when the cache is loaded in the next session.
+ *
+ * Methods may be called from several threads at once.
+ */
+public class NedAstCache {
+    public static final String CACHE_FILENAME = "nedast.cache"; // in the plugin state location
+    private static final int MAGIC = 0x4e414331; // "NAC1"
+    private static final int FORMAT_VERSION = 1;
+    private static final String HASH_ALGORITHM = "SHA-1";
+
+    public static boolean debug = Debug.isChannelEnabled("nedastcache");
+
+    private final File cacheFile; // base name of the generation files
+    private int generation = 0; // generation of the loaded file, or 0 if none
+    private final String formatId; // format version plus the version of the plugin that wrote the file
+
+    private Map<String,Entry> entries = new HashMap<String, Entry>(); // entries of the mapped file, and new ones
+    private boolean dirty = false;
+
+    // statistics
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * Identifies the contents of a file.
+     */
+    public static class Key {
+        final String path;
+        final long size;
+        final long lastModified;
+        final byte[] hash;
+
+        Key(String path, long size, long lastModified, byte[] hash) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        boolean matches(Key other) {
+            return size == other.size && lastModified == other.lastModified && Arrays.equals(hash, other.hash);
+        }
+    }
+
+    /**
+     * A cached file. Data is either a slice of the mapped file, or (for entries
+     * added during this session) a byte array.
+     */
+    private static class Entry {
+        final Key key;
+        final ByteBuffer mappedData; // keeps the mapping alive
+        final byte[] data;
+
+        Entry(Key key, ByteBuffer mappedData, byte[] data) {
+            this.key = key;
+            this.mappedData = mappedData;
+            this.data = data;
+        }
+
+        ByteBuffer getData() {
+            return mappedData != null ? mappedData.duplicate() : ByteBuffer.wrap(data);
+        }
+
+        int getLength() {
+            return mappedData != null ? mappedData.capacity() : data.length;
+        }
+    }
+
+    /**
+     * A problem reported during parsing.
+     */
+    private static class Problem {
+        final int severity;
+        final INedElement context;
+        final int line;
+        final String message;
+
+        Problem(int severity, INedElement context, int line, String message) {
+            this.severity = severity;
+            this.context = context;
+            this.line = line;
+            this.message = message;
+        }
+    }
+
+    /**
+     * An error store that forwards problems to another error store,
+     * and also records them so that they can be stored in the cache.
+     */
+    public static class RecordingErrorStore extends AbstractNedErrorStore {
+        private INedErrorStore delegate;
+        private List<Problem> problems = new ArrayList<Problem>();
+
+        public RecordingErrorStore(INedErrorStore delegate) {
+            this.delegate = delegate;
+        }
+
+        public void setFile(IFile file) {
+            delegate.setFile(file);
+        }
+
+        public void add(int severity, INedElement context, int line, String message) {
+            problems.add(new Problem(severity, context, line, message));
+            delegate.add(severity, context, line, message);
+        }
+
+        public int getNumProblems() {
+            return problems.size();
+        }
+    }
+
+    public NedAstCache(File cacheFile, String pluginVersion) {
+        this.cacheFile = cacheFile;
+        this.formatId = FORMAT_VERSION + "/" + pluginVersion;
+    }
+
+    /**
+     * Maps the cache file into memory, and reads its index. A missing, outdated
+     * or corrupt cache file is ignored.
+     */
+    public synchronized void load() {
+        int latestGeneration = 0;
+        for (int g : getGenerationsOnDisk())
+            latestGeneration = Math.max(latestGeneration, g);
+        deleteGenerationsExcept(latestGeneration);
+        if (latestGeneration == 0)
+            return;
+        generation = latestGeneration;
+        File file = getGenerationFile(generation);
+        long startTime = System.currentTimeMillis();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || !formatId.equals(readString(buffer))) {
+                if (debug)
+                    Debug.println("NedAstCache: ignoring cache file written by a different version");
+                return;
+            }
+            int numEntries = buffer.getInt();
+            Map<String,Entry> loadedEntries = new HashMap<String, Entry>(2 * numEntries);
+            for (int i = 0; i < numEntries; i++) {
+                String path = readString(buffer);
+                long size = buffer.getLong();
+                long lastModified = buffer.getLong();
+                byte[] hash = new byte[buffer.get()];
+                buffer.get(hash);
+                int offset = buffer.getInt();
+                int length = buffer.getInt();
+                ByteBuffer data = ((ByteBuffer)buffer.duplicate().position(offset).limit(offset + length)).slice();
+                loadedEntries.put(path, new Entry(new Key(path, size, lastModified, hash), data, null));
+            }
+            entries = loadedEntries;
+            if (debug)
+                Debug.println("NedAstCache: loaded index of " + numEntries + " entries in " + (System.currentTimeMillis() - startTime) + "ms");
+        }
+        catch (IOException | RuntimeException e) {
+            NedResourcesPlugin.logError("Cannot load NED AST cache " + file + ", ignoring it", e);
+            entries = new HashMap<String, Entry>();
+        }
+    }
+
+    /**
+     * Computes the key for the given file from its current state on the disk.
+     * The file contents (if available) may be passed in to avoid reading the file
+     * again. Returns null if the file cannot be read.
+     */
+    public Key computeKey(File file, byte[] contents) {
+        try {
+            long size = file.length();
+            long lastModified = file.lastModified();
+            if (contents == null)
+                contents = Files.readAllBytes(file.toPath());
+            return new Key(file.getPath(), size, lastModified, MessageDigest.getInstance(HASH_ALGORITHM).digest(contents));
+        }
+        catch (IOException e) {
+            return null;
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns a new element tree built from the cache entry that matches the
+     * key, or null if there is no such entry. Problems stored with the entry
+     * are added to the error store.
+     */
+    public INedElement lookup(Key key, INedErrorStore errors, INedTypeResolver resolver) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key.path);
+            if (entry == null || !entry.key.matches(key)) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        try {
+            return decode(entry.getData(), errors, resolver);
+        }
+        catch (RuntimeException e) {
+            NedResourcesPlugin.logError("Corrupt NED AST cache entry for " + key.path + ", ignoring it", e);
+            invalidate(key.path);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the element tree parsed from the file with the given key, together with
+     * the problems recorded by the error store during parsing.
+     */
+    public void store(Key key, INedElement tree, RecordingErrorStore errors) {
+        byte[] data = encode(tree, errors.problems);
+        synchronized (this) {
+            entries.put(key.path, new Entry(key, null, data));
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forgets the entry of the file with the given path.
+     */
+    public synchronized void invalidate(String path) {
+        if (entries.remove(path) != null)
+            dirty = true;
+    }
+
+    /**
+     * Writes all valid entries to the cache file, if there was any change.
+     * Entries of files that no longer exist are dropped.
+     */
+    public synchronized void save() {
+        if (!dirty)
+            return;
+        long startTime = System.currentTimeMillis();
+        List<Entry> validEntries = new ArrayList<Entry>();
+        for (Entry entry : entries.values())
+            if (new File(entry.key.path).isFile())
+                validEntries.add(entry);
+
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+        try {
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(indexBytes);
+            int headerLength = 4 + stringLength(formatId) + 4;
+            for (Entry entry : validEntries)
+                headerLength += stringLength(entry.key.path) + 8 + 8 + 1 + entry.key.hash.length + 4 + 4;
+            int offset = headerLength;
+            for (Entry entry : validEntries) {
+                writeString(index, entry.key.path);
+                index.writeLong(entry.key.size);
+                index.writeLong(entry.key.lastModified);
+                index.writeByte(entry.key.hash.length);
+                index.write(entry.key.hash);
+                index.writeInt(offset);
+                index.writeInt(entry.getLength());
+                offset += entry.getLength();
+            }
+
+            cacheFile.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                writeString(out, formatId);
+                out.writeInt(validEntries.size());
+                indexBytes.writeTo(out);
+                for (Entry entry : validEntries) {
+                    ByteBuffer data = entry.getData();
+                    byte[] bytes = new byte[data.remaining()];
+                    data.get(bytes);
+                    out.write(bytes);
+                }
+            }
+            // write a new generation instead of replacing the file we have mapped
+            Files.move(tmpFile.toPath(), getGenerationFile(generation + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            generation++;
+            dirty = false;
+            deleteGenerationsExcept(generation); // fails for the mapped one on Windows; it will be deleted next time
+            if (debug)
+                Debug.println("NedAstCache: saved " + validEntries.size() + " entries in " + (System.currentTimeMillis() - startTime) + "ms; " + getStatistics());
+        }
+        catch (IOException e) {
+            NedResourcesPlugin.logError("Cannot save NED AST cache " + cacheFile, e);
+            tmpFile.delete();
+        }
+    }
+
+    private File getGenerationFile(int generation) {
+        return new File(cacheFile.getPath() + "." + generation);
+    }
+
+    /**
+     * Returns the generation numbers of the cache files that exist on the disk.
+     */
+    private List<Integer> getGenerationsOnDisk() {
+        List<Integer> result = new ArrayList<Integer>();
+        String prefix = cacheFile.getName() + ".";
+        String[] names = cacheFile.getParentFile() == null ? null : cacheFile.getParentFile().list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix) && name.length() > prefix.length() && name.substring(prefix.length()).matches("[0-9]{1,9}"))
+                    result.add(Integer.parseInt(name.substring(prefix.length())));
+            }
+        }
+        return result;
+    }
+
+    private void deleteGenerationsExcept(int generationToKeep) {
+        for (int g : getGenerationsOnDisk())
+            if (g != generationToKeep)
+                getGenerationFile(g).delete();
+    }
+
+    public synchronized String getStatistics() {
+        return entries.size() + " entries, " + hits + " hits, " + misses + " misses";
+    }
+
+    /*
+     * Entry layout: string table; element tree in preorder, where each element is
+     * the tag code, source location, source region, attributes and number of children;
+     * problems, each referring to its element by preorder index. Strings are referred
+     * to by their index in the string table; 0 stands for null.
+     */
+    protected static byte[] encode(INedElement tree, List<Problem> problems) {
+        Map<String,Integer> strings = new LinkedHashMap<String, Integer>();
+        IdentityHashMap<INedElement,Integer> elementIndices = new IdentityHashMap<INedElement, Integer>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(body);
+            encodeElement(out, tree, strings, elementIndices);
+            out.writeInt(problems.size());
+            for (Problem problem : problems) {
+                Integer index = elementIndices.get(problem.context);
+                out.writeInt(problem.severity);
+                out.writeInt(index == null ? 0 : index); // context outside the tree: attach to root
+                out.writeInt(problem.line);
+                out.writeInt(stringIndex(problem.message, strings));
+            }
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream(body.size() + 16 * strings.size());
+            DataOutputStream resultOut = new DataOutputStream(result);
+            resultOut.writeInt(strings.size());
+            for (String string : strings.keySet())
+                writeString(resultOut, string);
+            body.writeTo(resultOut);
+            return result.toByteArray();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e); // cannot happen with byte array streams
+        }
+    }
+
+    private static void encodeElement(DataOutputStream out, INedElement element, Map<String,Integer> strings, IdentityHashMap<INedElement,Integer> elementIndices) throws IOException {
+        elementIndices.put(element, elementIndices.size());
+        out.writeShort(element.getTagCode());
+        out.writeInt(stringIndex(element.getSourceLocation(), strings));
+        NedSourceRegion region = element.getSourceRegion();
+        out.writeBoolean(region != null);
+        if (region != null) {
+            out.writeInt(region.getStartLine());
+            out.writeInt(region.getStartColumn());
+            out.writeInt(region.getEndLine());
+            out.writeInt(region.getEndColumn());
+        }
+        int numAttributes = element.getNumAttributes();
+        out.writeShort(numAttributes);
+        for (int i = 0; i < numAttributes; i++)
+            out.writeInt(stringIndex(element.getAttribute(i), strings));
+        out.writeInt(element.getNumChildren());
+        for (INedElement child = element.getFirstChild(); child != null; child = child.getNextSibling())
+            encodeElement(out, child, strings, elementIndices);
+    }
+
+    private static int stringIndex(String string, Map<String,Integer> strings) {
+        if (string == null)
+            return 0;
+        Integer index = strings.get(string);
+        if (index == null)
+            strings.put(string, index = strings.size() + 1);
+        return index;
+    }
+
+    protected static INedElement decode(ByteBuffer data, INedErrorStore errors, INedTypeResolver resolver) {
+        int numStrings = data.getInt();
+        String[] strings = new String[numStrings + 1];
+        for (int i = 1; i <= numStrings; i++)
+            strings[i] = readString(data);
+        List<INedElement> elements = new ArrayList<INedElement>();
+        INedElement tree = decodeElement(data, null, strings, elements, resolver);
+        int numProblems = data.getInt();
+        for (int i = 0; i < numProblems; i++) {
+            int severity = data.getInt();
+            INedElement context = elements.get(data.getInt());
+            int line = data.getInt();
+            errors.add(severity, context, line, strings[data.getInt()]);
+        }
+        return tree;
+    }
+
+    private static INedElement decodeElement(ByteBuffer data, INedElement parent, String[] strings, List<INedElement> elements, INedTypeResolver resolver) {
+        INedElement element = NedElementFactoryEx.getInstance().createElement(resolver, data.getShort(), parent);
+        elements.add(element);
+        element.setSourceLocation(strings[data.getInt()]);
+        if (data.get() != 0)
+            element.setSourceRegion(new NedSourceRegion(data.getInt(), data.getInt(), data.getInt(), data.getInt()));
+        int numAttributes = data.getShort();
+        for (int i = 0; i < numAttributes; i++)
+            element.setAttribute(i, strings[data.getInt()]);
+        int numChildren = data.getInt();
+        for (int i = 0; i < numChildren; i++)
+            decodeElement(data, element, strings, elements, resolver);
+        return element;
+    }
+
+    private static int stringLength(String string) {
+        return 4 + string.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
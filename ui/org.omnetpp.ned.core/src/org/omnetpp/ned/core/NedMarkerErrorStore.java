@@ -50,7 +50,9 @@ public class NedMarkerErrorStore extends AbstractNedErrorStore {
 
     public void setFile(IFile file) {
         this.file = file;
-        markerSync.register(file);
+        synchronized (markerSync) { // the same synchronizer may be shared by stores used from parallel threads
+            markerSync.register(file);
+        }
     }
 
     public void add(int severity, INedElement context, int line, String message) {
@@ -64,7 +66,9 @@ public class NedMarkerErrorStore extends AbstractNedErrorStore {
         markerAttrs.put(IMarker.SEVERITY, severity);
         markerAttrs.put(IMarker.LINE_NUMBER, line);
         markerAttrs.put(NEDELEMENT_ID, context.getId());
-        markerSync.addMarker(file, markerType, markerAttrs);
+        synchronized (markerSync) {
+            markerSync.addMarker(file, markerType, markerAttrs);
+        }
 
         if (markerType.equals(INedTypeResolver.NEDSYNTAXPROBLEM_MARKERID))
             context.syntaxProblemMarkerAdded(severity);
@@ -7,10 +7,19 @@
 
 package org.omnetpp.ned.core;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.internal.events.ResourceDelta;
 import org.eclipse.core.resources.IFile;
@@ -42,7 +51,6 @@ import org.omnetpp.ned.model.INedElement;
 import org.omnetpp.ned.model.NedElement;
 import org.omnetpp.ned.model.NedTreeDifferenceUtils;
 import org.omnetpp.ned.model.NedTreeUtil;
-import org.omnetpp.ned.model.ex.CompoundModuleElementEx;
 import org.omnetpp.ned.model.ex.NedElementFactoryEx;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
 import org.omnetpp.ned.model.interfaces.INedTypeElement;
@@ -80,16 +88,28 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
     // DO NOT SET THIS DIRECTLY! Use invalidate().
     private boolean needsRehash = false;
 
+    // files changed since the last rehash, if only those need to be rehashed; see invalidate(IFile)
+    private final Set<IFile> changedFiles = new HashSet<IFile>();
+    private static final int MAX_INCREMENTALLY_REHASHED_FILES = 16;
+
     // For debugging: We increment this counter whenever a rehash occurs. Checks can be made
     // to assert that the function is not called unnecessarily
     private int debugRehashCounter = 0;
 
+    // below this number of files per thread, parallel parsing in readMissingNedFiles() is not worth it
+    private static final int MIN_FILES_PER_PARSER_THREAD = 8;
+
     private boolean nedModelChangeNotificationDisabled = false;
     private boolean refactoringInProgress = false;
 
     // can be used for computations in a background thread without locking NedResources
     private ImmutableNedTypeResolver immutableCopy = null;
 
+    // the last immutable copy made, and the files changed since then; the next copy
+    // will share the NED trees of the other files with it (see getImmutableCopy())
+    private ImmutableNedTypeResolver lastImmutableCopy = null;
+    private final Set<IFile> filesChangedSinceImmutableCopy = new HashSet<IFile>();
+
     // caches the result of expression parsing
     private Map<String,INedElement> expressionCache = new HashMap<String, INedElement>();
     private static final INedElement BOGUS_EXPRESSION = NedElementFactoryEx.getInstance().createElement(INedElement.NED_UNKNOWN); // special value to signal syntax error
@@ -179,7 +199,8 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
                 markerSync.runAsWorkspaceJob();
 
                 // force rehash now, so that validation errors appear soon
-                rehash();
+                invalidate(file);
+                rehashIfNeeded();
             }
 
             long dt = System.currentTimeMillis() - startTime;
@@ -236,25 +257,54 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         ProblemMarkerSynchronizer markerSync = new ProblemMarkerSynchronizer();
         doReadNedFile(file, markerSync);
         markerSync.runAsWorkspaceJob();
-        rehash();
+        rehashIfNeeded();
     }
 
     /**
      * Internal: reads the given NED file from the disk.
      */
     protected synchronized void doReadNedFile(IFile file, ProblemMarkerSynchronizer markerSync) {
-        Assert.isTrue(!hasConnectedEditor(file));
+        NedFileElementEx tree = parseNedFile(file, markerSync);
+        doStoreNedFile(file, tree);
+    }
+
+    /**
+     * Internal: parses the given NED file from the disk, without storing the result.
+     * Does not access our tables, so it may be called from several threads at once.
+     */
+    protected NedFileElementEx parseNedFile(IFile file, ProblemMarkerSynchronizer markerSync) {
         //Note: the following is a bad idea, because of undefined startup order: the editor calling us might run sooner than readAllNedFiles()
         //Assert.isTrue(isNEDFile(file), "file is outside the NED source folders, or not a NED file at all");
 
         if (debug)
             Debug.println("reading from disk: " + file.toString());
 
-        // parse the NED file and put it into the hash table
         NedMarkerErrorStore errorStore = new NedMarkerErrorStore(markerSync, NEDSYNTAXPROBLEM_MARKERID);
         errorStore.setFile(file);
-        NedFileElementEx tree = NedTreeUtil.parseNedFile(file.getLocation().toOSString(), errorStore, file.getFullPath().toString(), this);
+
+        // use the tree from the previous session if the file has not changed since
+        String location = file.getLocation().toOSString();
+        NedAstCache cache = NedResourcesPlugin.getNedAstCache();
+        NedAstCache.Key key = cache == null ? null : cache.computeKey(new File(location), null);
+        if (key != null) {
+            NedFileElementEx tree = (NedFileElementEx)cache.lookup(key, errorStore, this);
+            if (tree != null)
+                return tree;
+        }
+
+        NedAstCache.RecordingErrorStore recordingErrorStore = new NedAstCache.RecordingErrorStore(errorStore);
+        NedFileElementEx tree = NedTreeUtil.parseNedFile(location, recordingErrorStore, file.getFullPath().toString(), this);
         Assert.isNotNull(tree);
+        if (key != null)
+            cache.store(key, tree, recordingErrorStore);
+        return tree;
+    }
+
+    /**
+     * Internal: puts the tree parsed from the given NED file into the hash table.
+     */
+    protected synchronized void doStoreNedFile(IFile file, NedFileElementEx tree) {
+        Assert.isTrue(!hasConnectedEditor(file));
 
         // only store the file if its declared package is not excluded -- that would lead to thrashing, see bug #518
         // (this can only happen to top package.ned files that *define* their own package, for other files
@@ -277,8 +327,6 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         // if this is a package.ned, expected package names might have changed
         if (isSourceFolderPackageNedFile(file))
             rebuildProjectsTable();
-
-        invalidate();
     }
 
     /**
@@ -299,7 +347,7 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
             // unregister
             nedFiles.remove(file);
             nedElementFiles.remove(nedFileElement);
-            invalidate();
+            invalidate(file);
 
             // if this was a package.ned, expected package names might have changed
             if (isSourceFolderPackageNedFile(file))
@@ -319,10 +367,10 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         Assert.isTrue(!connectCount.containsKey(file), "cannot replace the tree while an editor is open");
 
         NedFileElementEx oldTree = nedFiles.get(file);
-        // if the new tree has changed, we have to rehash everything
+        // if the new tree has changed, we have to rehash
         if (oldTree == null || !NedTreeUtil.isNedTreeEqual(oldTree, tree)) {
-            invalidate();
             nedFiles.put(file, tree);
+            invalidate(file);
             nedElementFiles.put(tree, file);
             // add ourselves to the tree root as a listener
             tree.addNedChangeListener(nedModelChangeListener);
@@ -339,21 +387,41 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
      * duplicate names only get detected when this gets run!
      */
     public synchronized void rehashIfNeeded() {
-        if (!needsRehash)
+        if (!needsRehash && changedFiles.isEmpty())
             return;
 
-        needsRehash = false;
         debugRehashCounter++;
 
-        internalRehash();
+        if (needsRehash)
+            internalRehash();
+        else
+            internalRehash(changedFiles);
+        needsRehash = false;
+        changedFiles.clear();
 
         // schedule a validation
         nedValidationStarterJob.restartTimer();
     }
 
+    /**
+     * Marks all tables and type infos as out of date; the next rehash will
+     * rebuild everything.
+     */
     public synchronized void invalidate() {
+        // anything might have changed, so the next immutable copy cannot share trees with the last one
+        lastImmutableCopy = null;
+        filesChangedSinceImmutableCopy.clear();
+        invalidateTables();
+    }
+
+    /**
+     * Does the work of invalidate(), except that the next immutable copy may still
+     * share trees with the last one.
+     */
+    protected void invalidateTables() {
         lastChangeSerial++;
         needsRehash = true;
+        changedFiles.clear();
         nedTypeLookupCache.clear();
         nedLikeTypeLookupCache.clear();
 
@@ -362,27 +430,44 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
             invalidateTypeInfo(file);
     }
 
+    /**
+     * Like invalidate(), but only the given file was changed, added or removed,
+     * so the next rehash may be incremental. Only the type infos that may depend
+     * on the types in the file are invalidated.
+     */
+    public synchronized void invalidate(IFile file) {
+        filesChangedSinceImmutableCopy.add(file);
+        lastChangeSerial++;
+        nedTypeLookupCache.clear();
+        nedLikeTypeLookupCache.clear();
+        if (needsRehash)
+            return; // everything is invalidated anyway
+        if (changedFiles.size() >= MAX_INCREMENTALLY_REHASHED_FILES) {
+            invalidateTables(); // e.g. during startup; a full rehash is cheaper then
+            return;
+        }
+
+        changedFiles.add(file);
+
+        // invalidate dependents of both the previous and the current types of the file
+        // (rehash will do it again, but until then nobody should see stale data)
+        Set<String> names = new HashSet<String>();
+        FileData oldData = fileData.get(file);
+        if (oldData != null)
+            names.addAll(oldData.definedNames);
+        NedFileElementEx nedFileElement = nedFiles.get(file);
+        if (nedFileElement != null) {
+            collectTypeNames(nedFileElement, names, new HashSet<String>());
+            invalidateTypeInfo(nedFileElement);
+        }
+        invalidateDependentTypeInfos(Collections.singleton(file), names);
+    }
+
     protected void rehash() {
         invalidate();
         rehashIfNeeded();
     }
 
-    protected void invalidateTypeInfo(INedElement parent) {
-        for (INedElement element : parent) {
-            if (element instanceof INedTypeElement) {
-                // invalidate
-                ((INedTypeElement)element).getNedTypeInfo().invalidateInherited();
-
-                // do inner types too
-                if (element instanceof CompoundModuleElementEx) {
-                    INedElement typesSection = ((CompoundModuleElementEx)element).getFirstTypesChild();
-                    if (typesSection != null)
-                        invalidateTypeInfo(typesSection);
-                }
-            }
-        }
-    }
-
     public synchronized void fireBeginChangeEvent() {
         nedModelChanged(new NedBeginModelChangeEvent(null));
     }
@@ -505,16 +590,26 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
             nedModelChangeNotificationDisabled = true;
             debugRehashCounter = 0;
 
-            // read NED files that are not yet loaded
-            final ProblemMarkerSynchronizer sync = new ProblemMarkerSynchronizer();
+            // collect NED files that are not yet loaded
+            final List<IFile> missingFiles = new ArrayList<IFile>();
             IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
             workspaceRoot.accept(new IResourceVisitor() {
                 public boolean visit(IResource resource) {
                     if (!nedFiles.containsKey(resource) && isNedFile(resource))
-                        doReadNedFile((IFile)resource, sync);
+                        missingFiles.add((IFile)resource);
                     return true;
                 }
             });
+
+            // parse them in parallel, then store them in the original order
+            final ProblemMarkerSynchronizer sync = new ProblemMarkerSynchronizer();
+            List<NedFileElementEx> trees = parseNedFiles(missingFiles, sync);
+            for (int i = 0; i < missingFiles.size(); i++) {
+                IFile file = missingFiles.get(i);
+                // a package.ned stored earlier may have changed the projects table
+                if (!nedFiles.containsKey(file) && isNedFile(file))
+                    doStoreNedFile(file, trees.get(i));
+            }
             sync.runAsWorkspaceJob();
             rehashIfNeeded();
         }
@@ -527,9 +622,60 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         }
     }
 
+    /**
+     * Parses the given NED files on a pool of worker threads, and returns the
+     * trees in the same order. Falls back to parsing on the calling thread
+     * for a few files.
+     */
+    protected List<NedFileElementEx> parseNedFiles(List<IFile> files, final ProblemMarkerSynchronizer sync) {
+        long startTime = System.currentTimeMillis();
+        List<NedFileElementEx> result = new ArrayList<NedFileElementEx>(files.size());
+        int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), files.size() / MIN_FILES_PER_PARSER_THREAD);
+        if (numThreads <= 1) {
+            for (IFile file : files)
+                result.add(parseNedFile(file, sync));
+        }
+        else {
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            try {
+                List<Future<NedFileElementEx>> futures = new ArrayList<Future<NedFileElementEx>>(files.size());
+                for (final IFile file : files) {
+                    futures.add(executor.submit(new Callable<NedFileElementEx>() {
+                        public NedFileElementEx call() {
+                            return parseNedFile(file, sync);
+                        }
+                    }));
+                }
+                for (Future<NedFileElementEx> future : futures)
+                    result.add(future.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while parsing NED files", e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException)cause : new RuntimeException(cause);
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+        if (debug)
+            Debug.println("parsed " + files.size() + " NED files using " + Math.max(1, numThreads) + " threads in " + (System.currentTimeMillis() - startTime) + "ms");
+        return result;
+    }
+
     public synchronized INedTypeResolver getImmutableCopy() {
-        if (immutableCopy == null)
-            immutableCopy = new ImmutableNedTypeResolver(this);
+        if (immutableCopy == null) {
+            // only copy the trees of files affected by the changes since the last copy
+            if (lastImmutableCopy == null)
+                immutableCopy = new ImmutableNedTypeResolver(this);
+            else
+                immutableCopy = new ImmutableNedTypeResolver(this, lastImmutableCopy, filesChangedSinceImmutableCopy);
+            lastImmutableCopy = immutableCopy;
+            filesChangedSinceImmutableCopy.clear();
+        }
         return immutableCopy;
     }
 
@@ -563,7 +709,12 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         if (event instanceof NedModelChangeEvent) {
             INedElement source = ((NedModelChangeEvent)event).getSource();
             Assert.isTrue(source==null || refactoringInProgress || source instanceof NedFileElementEx || hasConnectedEditor(getNedFile(source.getContainingNedFileElement())), "NED trees not opened in any editor must NOT be changed");
-            invalidate();
+            NedFileElementEx nedFileElement = source == null ? null : source.getContainingNedFileElement();
+            IFile file = nedFileElement == null ? null : nedElementFiles.get(nedFileElement);
+            if (file != null)
+                invalidate(file);
+            else
+                invalidate();
             nedValidationStarterJob.restartTimer(); //FIXME obey begin/end notifications too!
         }
 
@@ -593,6 +744,8 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
                     // printDelta(delta);
                     if (isNedFile(resource)) {
                         IFile file = (IFile)resource;
+                        if (delta.getKind() == IResourceDelta.REMOVED || (delta.getFlags() & IResourceDelta.CONTENT) != 0)
+                            invalidateAstCache(file);
                         switch (delta.getKind()) {
                         case IResourceDelta.REMOVED:
                             doForgetNedFile(file, sync); // includes rebuildProjectsTable() if needed
@@ -640,6 +793,12 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
 
     }
 
+    protected static void invalidateAstCache(IFile file) {
+        NedAstCache cache = NedResourcesPlugin.getNedAstCache();
+        if (cache != null && file.getLocation() != null)
+            cache.invalidate(file.getLocation().toOSString());
+    }
+
     // Utility functions for debugging
     public static void printResourceChangeEvent(IResourceChangeEvent event) {
         Debug.println("event type: "+event.getType());
@@ -36,6 +36,8 @@ public class NedResourcesPlugin extends AbstractUIPlugin {
 
     private NedSourceFoldersEditingManager nedSourceFoldersEditingManager = new NedSourceFoldersEditingManager();
 
+    private NedAstCache nedAstCache;
+
     /**
      * The constructor.
      */
@@ -50,6 +52,8 @@ public class NedResourcesPlugin extends AbstractUIPlugin {
     public void start(BundleContext context) throws Exception {
         super.start(context);
         PLUGIN_ID = getBundle().getSymbolicName();
+        nedAstCache = new NedAstCache(getStateLocation().append(NedAstCache.CACHE_FILENAME).toFile(), getBundle().getVersion().toString());
+        nedAstCache.load();
     }
 
     /**
@@ -59,6 +63,7 @@ public class NedResourcesPlugin extends AbstractUIPlugin {
     public void stop(BundleContext context) throws Exception {
         NedResources.getInstance().dispose();
         MsgResources.getInstance().dispose();
+        nedAstCache.save();
 
         plugin = null;
         super.stop(context);
@@ -85,6 +90,14 @@ public class NedResourcesPlugin extends AbstractUIPlugin {
         return MsgResources.getInstance();
     }
 
+    /**
+     * Returns the persistent cache of parsed NED and MSG files, or null if the
+     * plugin is not active.
+     */
+    public static NedAstCache getNedAstCache() {
+        return plugin == null ? null : plugin.nedAstCache;
+    }
+
     /**
      * When more than one property pages edit the ".nedfolders" file, they can
      * communicate via NedSourceFoldersEditingManager, i.e. can edit the same
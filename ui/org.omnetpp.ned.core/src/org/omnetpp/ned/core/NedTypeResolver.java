@@ -48,6 +48,8 @@ public class NedTypeResolver implements INedTypeResolver {
     protected final Map<IFile, NedFileElementEx> nedFiles = new HashMap<IFile, NedFileElementEx>();
     protected final Map<NedFileElementEx, IFile> nedElementFiles = new HashMap<NedFileElementEx,IFile>();
     protected final Map<IProject,ProjectData> projects = new HashMap<IProject, ProjectData>();
+    protected final Map<IFile,FileData> fileData = new HashMap<IFile, FileData>();
+    protected final Map<String,Set<IFile>> referringFiles = new HashMap<String, Set<IFile>>(); // reverse index of FileData.referencedNames
     protected long lastChangeSerial = 1;
     protected Map<INedTypeLookupContext, Map<String, INedTypeInfo>> nedTypeLookupCache = new HashMap<INedTypeLookupContext, Map<String,INedTypeInfo>>();
     protected Map<IProject, Map<INedTypeInfo, Map<String, INedTypeInfo>>> nedLikeTypeLookupCache = new HashMap<IProject, Map<INedTypeInfo,Map<String,INedTypeInfo>>>();
@@ -78,6 +80,10 @@ public class NedTypeResolver implements INedTypeResolver {
         // reserved (used) fully qualified names (contains all names including duplicates)
         final Set<String> reservedNames = new HashSet<String>();
 
+        // all toplevel types (including built-in ones) by fully qualified name, in the
+        // order they were registered; the above tables are derived from this one
+        final Map<String, List<INedTypeElement>> definitions = new HashMap<String, List<INedTypeElement>>();
+
         @Override
         public String toString() {
             return "references: " + StringUtils.join(referencedProjects, ",") +
@@ -87,6 +93,22 @@ public class NedTypeResolver implements INedTypeResolver {
         }
     }
 
+    /**
+     * What we registered from a NED file during the last rehash, and the type names
+     * it refers to. Used for incremental rehashing.
+     */
+    protected static class FileData {
+        // toplevel types, and the fully qualified names they were registered with
+        final List<INedTypeElement> toplevelTypes = new ArrayList<INedTypeElement>();
+        final List<String> qualifiedNames = new ArrayList<String>();
+
+        // simple names of the toplevel and inner types defined in the file
+        final Set<String> definedNames = new HashSet<String>();
+
+        // simple names of the types the file refers to (base types, interfaces, submodule and channel types)
+        final Set<String> referencedNames = new HashSet<String>();
+    }
+
     /**
      * Empty constructor, for subclasses
      */
@@ -94,7 +116,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     /**
-     * Cloning constructor, for getImmutableCopy()
+     * Cloning constructor: creates a copy of the other resolver with its own copy of all NED trees
      */
     protected NedTypeResolver(NedTypeResolver other) {
         // clone NED file parse trees
@@ -109,7 +131,17 @@ public class NedTypeResolver implements INedTypeResolver {
         builtInDeclarationsFile = (NedFileElementEx) other.builtInDeclarationsFile.deepDup(this, true, true);
         lastChangeSerial = other.lastChangeSerial;
 
-        // clone projects table
+        cloneProjectsTable(other);
+
+        internalRehash();
+    }
+
+    /**
+     * Copies the projects table (NED source folders, project references, etc.)
+     * of the given resolver, without the type tables.
+     */
+    protected void cloneProjectsTable(NedTypeResolver other) {
+        projects.clear();
         for (IProject project : other.projects.keySet()) {
             ProjectData projectData = other.projects.get(project);
             ProjectData newProjectData = new ProjectData();
@@ -119,77 +151,320 @@ public class NedTypeResolver implements INedTypeResolver {
             newProjectData.referencedProjects = projectData.referencedProjects.clone();
             projects.put(project, newProjectData);
         }
+    }
 
-        internalRehash();
+    /**
+     * Copies the type tables and the per-file data of the given resolver, which
+     * must have the same projects table as this one. The copied tables refer to
+     * the other resolver's NED elements; this is useful if the two resolvers
+     * share NED trees, and internalRehash(Set) is called afterwards with the files
+     * whose trees are not shared.
+     */
+    protected void cloneTypeTables(NedTypeResolver other) {
+        fileData.clear();
+        fileData.putAll(other.fileData); // FileData objects are not modified after creation
+        referringFiles.clear();
+        for (Map.Entry<String, Set<IFile>> entry : other.referringFiles.entrySet())
+            referringFiles.put(entry.getKey(), new HashSet<IFile>(entry.getValue()));
+        for (IProject project : projects.keySet()) {
+            ProjectData projectData = projects.get(project);
+            ProjectData otherProjectData = other.projects.get(project);
+            Assert.isTrue(otherProjectData != null, "projects table differs");
+            projectData.definitions.clear();
+            for (Map.Entry<String, List<INedTypeElement>> entry : otherProjectData.definitions.entrySet())
+                projectData.definitions.put(entry.getKey(), new ArrayList<INedTypeElement>(entry.getValue()));
+            projectData.components.clear();
+            projectData.components.putAll(otherProjectData.components);
+            projectData.duplicates.clear();
+            projectData.duplicates.putAll(otherProjectData.duplicates); // lists are replaced, not modified, by updateTables()
+            projectData.reservedNames.clear();
+            projectData.reservedNames.addAll(otherProjectData.reservedNames);
+        }
+    }
+
+    /**
+     * Returns true if elements created with the given resolver may be used
+     * with this one (i.e. passed as lookup context, etc.)
+     */
+    protected boolean isOwnResolver(INedTypeResolver resolver) {
+        return resolver == this;
     }
 
+    /**
+     * Rebuilds the type tables of all projects from scratch.
+     */
     protected void internalRehash() {
         long startMillis = System.currentTimeMillis();
 
+        // collect the toplevel types of all files
+        fileData.clear();
+        referringFiles.clear();
+        for (IFile file : nedFiles.keySet()) {
+            FileData data = createFileData(nedFiles.get(file));
+            fileData.put(file, data);
+            addReferringFile(file, data);
+        }
+
         // clear tables and re-register built-in declarations for all projects
         for (ProjectData projectData : projects.values()) {
+            projectData.definitions.clear();
+            registerBuiltInTypes(projectData);
+        }
+
+        // register NED types in all projects; file must be in the project or a referenced project
+        for (IFile file : nedFiles.keySet())
+            for (ProjectData projectData : getProjectsSeeing(file))
+                registerTypes(projectData, fileData.get(file));
+
+        // derive the components, duplicates and reservedNames tables
+        for (IProject project : projects.keySet()) {
+            ProjectData projectData = projects.get(project);
             projectData.components.clear();
             projectData.duplicates.clear();
             projectData.reservedNames.clear();
-            for (INedElement child : builtInDeclarationsFile) {
-                if (child instanceof INedTypeElement) {
-                    INedTypeInfo typeInfo = ((INedTypeElement)child).getNedTypeInfo();
-                    projectData.components.put(typeInfo.getFullyQualifiedName(), typeInfo);
+            for (String qualifiedName : projectData.definitions.keySet())
+                updateTables(projectData, qualifiedName);
+
+            if (debug)
+                Debug.println("types in project " + project.getName() + ": " + StringUtils.join(projectData.components.keySet(), ", ", " and "));
+        }
+
+        if (debug) {
+            long dt = System.currentTimeMillis() - startMillis;
+            Debug.println("rehash(): " + dt + "ms, " + nedFiles.size() + " files, " + projects.size() + " projects");
+        }
+    }
+
+    /**
+     * Updates the type tables after the given files have been changed, added or
+     * removed, assuming the tables were up to date before that, and the projects
+     * table did not change. Type infos of the changed files, and of files that
+     * (directly or transitively) refer to types with the same simple name as the
+     * ones defined in the changed files are invalidated; other type infos are left alone.
+     */
+    protected void internalRehash(Set<IFile> changedFiles) {
+        long startMillis = System.currentTimeMillis();
+
+        Set<String> affectedQualifiedNames = new HashSet<String>();
+        Set<String> affectedNames = new HashSet<String>();
+        for (IFile file : changedFiles) {
+            // unregister types registered from the old contents
+            FileData oldData = fileData.remove(file);
+            if (oldData != null) {
+                removeReferringFile(file, oldData);
+                for (ProjectData projectData : getProjectsSeeing(file))
+                    unregisterTypes(projectData, oldData);
+                affectedQualifiedNames.addAll(oldData.qualifiedNames);
+                affectedNames.addAll(oldData.definedNames);
+            }
+
+            // register the current ones; names and packages may have changed, so invalidate first
+            NedFileElementEx nedFileElement = nedFiles.get(file);
+            if (nedFileElement != null) {
+                invalidateTypeInfo(nedFileElement);
+                FileData newData = createFileData(nedFileElement);
+                fileData.put(file, newData);
+                addReferringFile(file, newData);
+                for (ProjectData projectData : getProjectsSeeing(file))
+                    registerTypes(projectData, newData);
+                affectedQualifiedNames.addAll(newData.qualifiedNames);
+                affectedNames.addAll(newData.definedNames);
+            }
+        }
+
+        for (ProjectData projectData : projects.values())
+            for (String qualifiedName : affectedQualifiedNames)
+                updateTables(projectData, qualifiedName);
+
+        int numInvalidatedFiles = invalidateDependentTypeInfos(changedFiles, affectedNames);
+
+        if (debug) {
+            long dt = System.currentTimeMillis() - startMillis;
+            Debug.println("incremental rehash(): " + dt + "ms, " + changedFiles.size() + " changed files, invalidated types in " + numInvalidatedFiles + " other files");
+        }
+    }
+
+    /**
+     * Invalidates the inherited members of the types in files that refer to any of
+     * the given names, and transitively, in files that refer to types of those files.
+     * Returns the number of files affected.
+     */
+    protected int invalidateDependentTypeInfos(Set<IFile> changedFiles, Set<String> affectedNames) {
+        Set<IFile> dependentFiles = findDependentFiles(changedFiles, affectedNames);
+        for (IFile file : dependentFiles)
+            invalidateTypeInfo(nedFiles.get(file));
+        return dependentFiles.size();
+    }
+
+    /**
+     * Returns the files (other than the changed ones) that refer to any of the given
+     * names, and transitively, the files that refer to types of those files.
+     */
+    protected Set<IFile> findDependentFiles(Set<IFile> changedFiles, Set<String> affectedNames) {
+        Set<IFile> result = new HashSet<IFile>();
+        List<String> remainingNames = new ArrayList<String>(affectedNames);
+        Set<String> seenNames = new HashSet<String>(affectedNames);
+        while (!remainingNames.isEmpty()) {
+            Set<IFile> files = referringFiles.get(remainingNames.remove(remainingNames.size()-1));
+            if (files == null)
+                continue;
+            for (IFile file : files) {
+                if (!changedFiles.contains(file) && result.add(file)) {
+                    for (String definedName : fileData.get(file).definedNames)
+                        if (seenNames.add(definedName))
+                            remainingNames.add(definedName);
                 }
             }
-            projectData.reservedNames.addAll(projectData.components.keySet());
         }
+        return result;
+    }
 
-        // register NED types in all projects
-        for (IProject project : projects.keySet()) {
-            ProjectData projectData = projects.get(project);
+    protected void addReferringFile(IFile file, FileData data) {
+        for (String name : data.referencedNames) {
+            Set<IFile> files = referringFiles.get(name);
+            if (files == null)
+                referringFiles.put(name, files = new HashSet<IFile>());
+            files.add(file);
+        }
+    }
 
-            // find NED types in each file, and register them
-            for (IFile file : nedFiles.keySet()) {
-                // file must be in this project or a referenced project
-                if (file.getProject().equals(project) || ArrayUtils.contains(projectData.referencedProjects, file.getProject())) {
-
-                    // collect toplevel types from the NED file, and process them one by one
-                    for (INedElement child : nedFiles.get(file)) {
-                        if (child instanceof INedTypeElement) {
-                            INedTypeElement typeElement = (INedTypeElement) child;
-                            Assert.isTrue(typeElement.getResolver() == this);
-                            INedTypeInfo typeInfo = typeElement.getNedTypeInfo();
-                            String qualifiedName = typeInfo.getFullyQualifiedName();
-
-                            if (projectData.reservedNames.contains(qualifiedName)) {
-                                if (!projectData.duplicates.containsKey(qualifiedName))
-                                    projectData.duplicates.put(qualifiedName, new ArrayList<INedTypeElement>());
-                                projectData.duplicates.get(qualifiedName).add(typeElement);
-                            }
-                            else {
-                                // normal case: not duplicate. Add the type info to our tables.
-                                projectData.components.put(qualifiedName, typeInfo);
-                            }
-
-                            // add to the name list even if it was duplicate
-                            projectData.reservedNames.add(qualifiedName);
-                        }
-                    }
+    protected void removeReferringFile(IFile file, FileData data) {
+        for (String name : data.referencedNames) {
+            Set<IFile> files = referringFiles.get(name);
+            if (files != null && files.remove(file) && files.isEmpty())
+                referringFiles.remove(name);
+        }
+    }
+
+    /**
+     * Invalidates the inherited members of the types (including inner types) under the given element.
+     */
+    protected void invalidateTypeInfo(INedElement parent) {
+        for (INedElement element : parent) {
+            if (element instanceof INedTypeElement) {
+                // invalidate
+                ((INedTypeElement)element).getNedTypeInfo().invalidateInherited();
+
+                // do inner types too
+                if (element instanceof CompoundModuleElementEx) {
+                    INedElement typesSection = ((CompoundModuleElementEx)element).getFirstTypesChild();
+                    if (typesSection != null)
+                        invalidateTypeInfo(typesSection);
                 }
             }
+        }
+    }
 
-            // now we should remove all types that were duplicates
-            for (String name : projectData.duplicates.keySet()) {
-                projectData.duplicates.get(name).add(projectData.components.get(name).getNedElement());
-                projectData.components.remove(name);
+    protected FileData createFileData(NedFileElementEx nedFileElement) {
+        final FileData data = new FileData();
+        for (INedElement child : nedFileElement) {
+            if (child instanceof INedTypeElement) {
+                INedTypeElement typeElement = (INedTypeElement) child;
+                Assert.isTrue(isOwnResolver(typeElement.getResolver()));
+                data.toplevelTypes.add(typeElement);
+                data.qualifiedNames.add(typeElement.getNedTypeInfo().getFullyQualifiedName());
             }
+        }
+        collectTypeNames(nedFileElement, data.definedNames, data.referencedNames);
+        return data;
+    }
 
-            if (debug)
-                Debug.println("types in project " + project.getName() + ": " + StringUtils.join(projectData.components.keySet(), ", ", " and "));
+    /**
+     * Collects the simple names of the types defined in the given NED file
+     * (including inner types), and the ones it refers to.
+     */
+    protected static void collectTypeNames(NedFileElementEx nedFileElement, final Set<String> definedNames, final Set<String> referencedNames) {
+        NedElementUtilEx.visitNedTree(nedFileElement, new NedElementUtilEx.INedElementVisitor() {
+            public void visit(INedElement element) {
+                if (element instanceof INedTypeElement)
+                    definedNames.add(((INedTypeElement)element).getName());
+                int tagCode = element.getTagCode();
+                if (tagCode == NedElementTags.NED_EXTENDS || tagCode == NedElementTags.NED_INTERFACE_NAME)
+                    addSimpleName(referencedNames, element.getAttribute("name"));
+                else if (tagCode == NedElementTags.NED_SUBMODULE || tagCode == NedElementTags.NED_CONNECTION) {
+                    addSimpleName(referencedNames, element.getAttribute("type"));
+                    addSimpleName(referencedNames, element.getAttribute("like-type"));
+                }
+            }
+        });
+    }
+
+    private static void addSimpleName(Set<String> names, String typeName) {
+        if (StringUtils.isNotEmpty(typeName))
+            names.add(StringUtils.substringAfterLast("." + typeName, "."));
+    }
 
+    /**
+     * Returns the projects in which the types of the given file are visible,
+     * i.e. the file's project and the ones referencing it.
+     */
+    protected List<ProjectData> getProjectsSeeing(IFile file) {
+        List<ProjectData> result = new ArrayList<ProjectData>();
+        for (IProject project : projects.keySet()) {
+            ProjectData projectData = projects.get(project);
+            if (file.getProject().equals(project) || ArrayUtils.contains(projectData.referencedProjects, file.getProject()))
+                result.add(projectData);
         }
+        return result;
+    }
 
-        if (debug) {
-            long dt = System.currentTimeMillis() - startMillis;
-            Debug.println("rehash(): " + dt + "ms, " + nedFiles.size() + " files, " + projects.size() + " projects");
+    protected void registerBuiltInTypes(ProjectData projectData) {
+        for (INedElement child : builtInDeclarationsFile) {
+            if (child instanceof INedTypeElement) {
+                INedTypeElement typeElement = (INedTypeElement)child;
+                addDefinition(projectData, typeElement.getNedTypeInfo().getFullyQualifiedName(), typeElement);
+            }
         }
+    }
 
+    protected void registerTypes(ProjectData projectData, FileData data) {
+        for (int i = 0; i < data.toplevelTypes.size(); i++)
+            addDefinition(projectData, data.qualifiedNames.get(i), data.toplevelTypes.get(i));
+    }
+
+    protected void unregisterTypes(ProjectData projectData, FileData data) {
+        for (int i = 0; i < data.toplevelTypes.size(); i++) {
+            String qualifiedName = data.qualifiedNames.get(i);
+            List<INedTypeElement> list = projectData.definitions.get(qualifiedName);
+            if (list != null) {
+                list.remove(data.toplevelTypes.get(i));
+                if (list.isEmpty())
+                    projectData.definitions.remove(qualifiedName);
+            }
+        }
+    }
+
+    private static void addDefinition(ProjectData projectData, String qualifiedName, INedTypeElement typeElement) {
+        List<INedTypeElement> list = projectData.definitions.get(qualifiedName);
+        if (list == null)
+            projectData.definitions.put(qualifiedName, list = new ArrayList<INedTypeElement>(1));
+        list.add(typeElement);
+    }
+
+    /**
+     * Updates the components, duplicates and reservedNames tables of the project for
+     * the given name, from the definitions table. A name defined more than once is
+     * a duplicate, and none of its definitions are used.
+     */
+    protected void updateTables(ProjectData projectData, String qualifiedName) {
+        List<INedTypeElement> list = projectData.definitions.get(qualifiedName);
+        projectData.components.remove(qualifiedName);
+        projectData.duplicates.remove(qualifiedName);
+        if (list == null) {
+            projectData.reservedNames.remove(qualifiedName);
+        }
+        else {
+            projectData.reservedNames.add(qualifiedName);
+            if (list.size() == 1) {
+                projectData.components.put(qualifiedName, list.get(0).getNedTypeInfo());
+            }
+            else {
+                // the first registered one comes last, like it was always done
+                List<INedTypeElement> duplicateList = new ArrayList<INedTypeElement>(list.subList(1, list.size()));
+                duplicateList.add(list.get(0));
+                projectData.duplicates.put(qualifiedName, duplicateList);
+            }
+        }
     }
 
     /**
@@ -203,7 +478,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public boolean isBuiltInDeclaration(INedTypeInfo typeInfo) {
-        Assert.isTrue(typeInfo.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnResolver(typeInfo.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         return typeInfo.getNedElement().getContainingNedFileElement() == builtInDeclarationsFile;
     }
 
@@ -248,7 +523,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized IFile getNedFile(NedFileElementEx nedFileElement) {
-        Assert.isTrue(nedFileElement.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnResolver(nedFileElement.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         Assert.isTrue(nedElementFiles.containsKey(nedFileElement) || nedFileElement==builtInDeclarationsFile, "NedFileElement is not in the resolver");
         return nedElementFiles.get(nedFileElement);
     }
@@ -351,7 +626,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized Collection<INedTypeInfo> getToplevelNedTypesThatImplement(INedTypeInfo interfaceType, IProject context) {
-        Assert.isTrue(interfaceType.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnResolver(interfaceType.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         Collection<INedTypeInfo> result = new ArrayList<INedTypeInfo>();
         for (INedTypeInfo type : getToplevelNedTypesInternal(context))
             if (type.getInterfaces().contains(interfaceType.getNedElement()))
@@ -487,7 +762,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized INedTypeInfo lookupNedType(String name, INedTypeLookupContext lookupContext) {
-        Assert.isTrue(lookupContext.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnResolver(lookupContext.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         // return cached value if exists, otherwise call doLookupNedType()
         Map<String, INedTypeInfo> map = nedTypeLookupCache.get(lookupContext);
         if (map == null)
@@ -578,8 +853,8 @@ public class NedTypeResolver implements INedTypeResolver {
         return null;
     }
 
-    public INedTypeInfo lookupLikeType(String name, INedTypeInfo interfaceType, IProject context) {
-        Assert.isTrue(interfaceType.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+    public synchronized INedTypeInfo lookupLikeType(String name, INedTypeInfo interfaceType, IProject context) {
+        Assert.isTrue(isOwnResolver(interfaceType.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         // return cached value if exists, otherwise call doLookupLikeType()
         Map<INedTypeInfo, Map<String, INedTypeInfo>> map = nedLikeTypeLookupCache.get(context);
         if (map == null)
@@ -615,7 +890,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized Set<String> getLocalTypeNames(INedTypeLookupContext lookupContext, IPredicate predicate) {
-        Assert.isTrue(lookupContext.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnResolver(lookupContext.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         Set<String> result = new HashSet<String>();
         if (lookupContext instanceof NedFileElement) {
             List<INedTypeElement> topLevelTypeNodes = lookupContext.getContainingNedFileElement().getTopLevelTypeNodes();
@@ -6,6 +6,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.core.resources.IProject;
 import org.omnetpp.common.engine.Common;
@@ -29,7 +31,7 @@ public class ParamUtil {
         public boolean keyEqualsGeneralizedKey;  // if key.equals(generalizedKey)
         public PatternMatcher matcher;  // pattern is generalizedKey
     }
-    private static Map<String,KeyMatcher> keyMatcherCache = new HashMap<String, KeyMatcher>();
+    private static ConcurrentMap<String,KeyMatcher> keyMatcherCache = new ConcurrentHashMap<String, KeyMatcher>(); // accessed from parallel ini file analysis
 
     public static KeyMatcher getOrCreateKeyMatcher(String key) {
         KeyMatcher keyMatcher = keyMatcherCache.get(key);
@@ -44,7 +46,9 @@ public class ParamUtil {
                 // bogus key (contains unmatched "{" or something); create matcher that does not match anything
                 keyMatcher.matcher = new PatternMatcher("", true, true, true);
             }
-            keyMatcherCache.put(key, keyMatcher);
+            KeyMatcher existing = keyMatcherCache.putIfAbsent(key, keyMatcher);
+            if (existing != null)
+                keyMatcher = existing; // another thread was faster
         }
         return keyMatcher;
     }
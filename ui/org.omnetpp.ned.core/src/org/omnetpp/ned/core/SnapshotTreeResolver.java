@@ -0,0 +1,245 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.ned.core;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.omnetpp.ned.model.INedElement;
+import org.omnetpp.ned.model.INedErrorStore;
+import org.omnetpp.ned.model.ex.NedFileElementEx;
+import org.omnetpp.ned.model.ex.PropertyElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
+import org.omnetpp.ned.model.interfaces.INedTypeInfo;
+import org.omnetpp.ned.model.interfaces.INedTypeLookupContext;
+import org.omnetpp.ned.model.interfaces.INedTypeResolver;
+
+/**
+ * The resolver of a NED tree in immutable snapshots (ImmutableNedTypeResolver).
+ * Each tree has its own instance. Snapshots share the trees of files that were
+ * not affected by the changes between them, so the tree cannot refer to any
+ * particular snapshot; instead, it refers to this object which forwards all calls
+ * to the newest complete snapshot that contains the tree. For the lookups made
+ * from the tree, all of those snapshots give the same results.
+ */
+class SnapshotTreeResolver implements INedTypeResolver {
+    private final IFile file; // null for the built-in declarations
+    private final long lastChangeSerial;
+    private volatile NedTypeResolver target;
+
+    public SnapshotTreeResolver(IFile file, long lastChangeSerial) {
+        this.file = file;
+        this.lastChangeSerial = lastChangeSerial;
+    }
+
+    public NedTypeResolver getTarget() {
+        return target;
+    }
+
+    public void setTarget(NedTypeResolver target) {
+        this.target = target;
+    }
+
+    public INedTypeInfo createTypeInfoFor(INedTypeElement node) {
+        return new NedTypeInfo(node);
+    }
+
+    public IFile getNedFile(NedFileElementEx nedFileElement) {
+        return file;
+    }
+
+    public long getLastChangeSerial() {
+        // the tree and the results of lookups from it do not change, so cached values stay valid
+        return lastChangeSerial;
+    }
+
+    public Set<IFile> getNedFiles() {
+        return target.getNedFiles();
+    }
+
+    public Set<IFile> getNedFiles(IProject project) {
+        return target.getNedFiles(project);
+    }
+
+    public NedFileElementEx getNedFileElement(IFile file) {
+        return target.getNedFileElement(file);
+    }
+
+    public boolean containsNedFileElement(IFile file) {
+        return target.containsNedFileElement(file);
+    }
+
+    public boolean isNedFile(IResource resource) {
+        return target.isNedFile(resource);
+    }
+
+    public IContainer[] getNedSourceFolders(IProject project) {
+        return target.getNedSourceFolders(project);
+    }
+
+    public IContainer getNedSourceFolderFor(IFile file) {
+        return target.getNedSourceFolderFor(file);
+    }
+
+    public IContainer getNedSourceFolderFor(IContainer folder) {
+        return target.getNedSourceFolderFor(folder);
+    }
+
+    public String getPackageFor(IContainer folder) {
+        return target.getPackageFor(folder);
+    }
+
+    public String getExpectedPackageFor(IFile file) {
+        return target.getExpectedPackageFor(file);
+    }
+
+    public String[] getExcludedPackageRoots(IProject project) {
+        return target.getExcludedPackageRoots(project);
+    }
+
+    public boolean isPackageEnabled(IProject project, String packageName) {
+        return target.isPackageEnabled(project, packageName);
+    }
+
+    public IContainer[] getFoldersForPackage(IProject project, String packageName) {
+        return target.getFoldersForPackage(project, packageName);
+    }
+
+    public IMarker[] getMarkersForElement(INedElement node, boolean recursive, int limit) {
+        return target.getMarkersForElement(node, recursive, limit);
+    }
+
+    public INedElement getNedElementAt(IFile file, int line, int column) {
+        return target.getNedElementAt(file, line, column);
+    }
+
+    public INedElement getNedElementAt(INedElement parent, int line, int column) {
+        return target.getNedElementAt(parent, line, column);
+    }
+
+    public Collection<INedTypeInfo> getToplevelNedTypesFromAllProjects() {
+        return target.getToplevelNedTypesFromAllProjects();
+    }
+
+    public Collection<INedTypeInfo> getToplevelNedTypesFromAllProjects(IPredicate predicate) {
+        return target.getToplevelNedTypesFromAllProjects(predicate);
+    }
+
+    public Set<String> getToplevelNedTypeQNamesFromAllProjects() {
+        return target.getToplevelNedTypeQNamesFromAllProjects();
+    }
+
+    public Set<INedTypeInfo> getToplevelNedTypesFromAllProjects(String qualifiedName) {
+        return target.getToplevelNedTypesFromAllProjects(qualifiedName);
+    }
+
+    public Collection<INedTypeInfo> getToplevelNedTypes(IProject context) {
+        return target.getToplevelNedTypes(context);
+    }
+
+    public Collection<INedTypeInfo> getToplevelNedTypes(IPredicate predicate, IProject context) {
+        return target.getToplevelNedTypes(predicate, context);
+    }
+
+    public Collection<INedTypeInfo> getToplevelNedTypesThatImplement(INedTypeInfo interfaceType, IProject context) {
+        return target.getToplevelNedTypesThatImplement(interfaceType, context);
+    }
+
+    public Collection<INedTypeInfo> getToplevelNedTypesBySimpleName(String simpleName, IProject context) {
+        return target.getToplevelNedTypesBySimpleName(simpleName, context);
+    }
+
+    public Set<String> getToplevelNedTypeQNames(IProject context) {
+        return target.getToplevelNedTypeQNames(context);
+    }
+
+    public Set<String> getToplevelNedTypeQNames(IPredicate predicate, IProject context) {
+        return target.getToplevelNedTypeQNames(predicate, context);
+    }
+
+    public Set<String> getReservedQNames(IProject context) {
+        return target.getReservedQNames(context);
+    }
+
+    public Set<String> getReservedNames(IProject context, String packageName) {
+        return target.getReservedNames(context, packageName);
+    }
+
+    public INedTypeInfo getToplevelNedType(String qualifiedName, IProject context) {
+        return target.getToplevelNedType(qualifiedName, context);
+    }
+
+    public INedTypeInfo getToplevelOrInnerNedType(String qualifiedName, IProject context) {
+        return target.getToplevelOrInnerNedType(qualifiedName, context);
+    }
+
+    public INedTypeInfo lookupNedType(String name, INedTypeLookupContext context) {
+        return target.lookupNedType(name, context);
+    }
+
+    public INedTypeInfo lookupLikeType(String name, INedTypeInfo interfaceType, IProject context) {
+        return target.lookupLikeType(name, interfaceType, context);
+    }
+
+    public Set<String> getLocalTypeNames(INedTypeLookupContext context, IPredicate predicate) {
+        return target.getLocalTypeNames(context, predicate);
+    }
+
+    public Set<String> getModuleQNames(IProject context) {
+        return target.getModuleQNames(context);
+    }
+
+    public Set<String> getNetworkQNames(IProject context) {
+        return target.getNetworkQNames(context);
+    }
+
+    public Set<String> getChannelQNames(IProject context) {
+        return target.getChannelQNames(context);
+    }
+
+    public Set<String> getModuleInterfaceQNames(IProject context) {
+        return target.getModuleInterfaceQNames(context);
+    }
+
+    public Set<String> getChannelInterfaceQNames(IProject context) {
+        return target.getChannelInterfaceQNames(context);
+    }
+
+    public String getSimplePropertyFor(NedFileElementEx nedFileElement, String propertyName) {
+        return target.getSimplePropertyFor(nedFileElement, propertyName);
+    }
+
+    public String getSimplePropertyFor(IContainer folder, String propertyName) {
+        return target.getSimplePropertyFor(folder, propertyName);
+    }
+
+    public PropertyElementEx getPropertyFor(NedFileElementEx nedFileElement, String propertyName) {
+        return target.getPropertyFor(nedFileElement, propertyName);
+    }
+
+    public PropertyElementEx getPropertyFor(IContainer folder, String propertyName) {
+        return target.getPropertyFor(folder, propertyName);
+    }
+
+    public Collection<INedTypeInfo> getBuiltInDeclarations() {
+        return target.getBuiltInDeclarations();
+    }
+
+    public boolean isBuiltInDeclaration(INedTypeInfo typeInfo) {
+        return target.isBuiltInDeclaration(typeInfo);
+    }
+
+    public void addErrorsForDuplicates(INedErrorStore errorStore) {
+        target.addErrorsForDuplicates(errorStore);
+    }
+}
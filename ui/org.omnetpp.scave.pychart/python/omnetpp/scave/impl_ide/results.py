@@ -14,22 +14,11 @@ from omnetpp.internal import Gateway
 import functools
 print = functools.partial(print, flush=True)
 
-def _get_array_from_shm(name_and_size):
+def _map_shm(name, size, dtype):
     """
     Internal. Opens a shared memory object (region, file, content) in a platform-specific
-    way, and returns the whole contents of it as a np.array of doubles.
-    `name_and_size` should be a space-separated pair of an object name and an integer,
-    which is the size of the named SHM object in bytes.
+    way, and returns the whole contents of it as a np.array of the given dtype.
     """
-    if not name_and_size:
-        return None
-
-    name, size = name_and_size.split(" ")
-    size = int(size)
-
-    if name == "<EMPTY>" and size == 0:
-        return np.array([])
-
     system = platform.system()
     if system in ['Linux', 'Darwin']:
         mem = posix_ipc.SharedMemory(name)
@@ -38,24 +27,57 @@ def _get_array_from_shm(name_and_size):
             # for some reason we can't directly np.memmap the shm file, because it is "unseekable"
             # but the mmap module works with it, so we just copy the data into np, and release the shared memory
             with mmap.mmap(mem.fd, length=mem.size) as mf:
-                arr = np.frombuffer(mf.read(), dtype=np.dtype('>f8'))
+                arr = np.frombuffer(mf.read(), dtype=dtype)
         else:
             # on Linux, we can just continue to use the existing shm memory without copying
             with open(mem.fd, 'wb') as mf:
-                arr = np.memmap(mf, dtype=np.dtype('>f8'))
+                arr = np.memmap(mf, dtype=dtype)
 
         # on Mac we are done with shm (data is copied), on Linux we can delete the name even though the mapping is still in use
         mem.unlink()
     elif system == 'Windows':
         # on Windows, the mmap module in itself provides shared memory functionality. and we copy the data here as well.
         with mmap.mmap(-1, size, tagname=name) as mf:
-            arr = np.frombuffer(mf.read(), dtype=np.dtype('>f8'))
+            arr = np.frombuffer(mf.read(), dtype=dtype)
     else:
         raise RuntimeError("unsupported platform")
 
     return arr
 
 
+def _get_array_from_shm(name_and_size, arenas=None):
+    """
+    Internal. Returns the contents of a shared memory object as a np.array of doubles.
+    `name_and_size` should be a space-separated pair of an object name and an integer,
+    which is the size of the named SHM object in bytes; such objects hold big-endian doubles.
+    Alternatively, it can be "<name> <size> <offset> <count>", referring to `count`
+    doubles at byte `offset` in a SHM object holding many arrays in native byte order
+    (see SharedMemoryArena.java). Such objects are only mapped once, and are cached
+    in the `arenas` dict, which should be shared among all arrays of a query.
+    """
+    if not name_and_size:
+        return None
+
+    parts = name_and_size.split(" ")
+
+    if len(parts) == 4:
+        name, size, offset, count = parts
+        if arenas is None:
+            arenas = dict()
+        if name not in arenas:
+            arenas[name] = _map_shm(name, int(size), np.dtype('=f8'))
+        start = int(offset) // 8
+        return arenas[name][start:start + int(count)]
+
+    name, size = parts
+    size = int(size)
+
+    if name == "<EMPTY>" and size == 0:
+        return np.array([])
+
+    return _map_shm(name, size, np.dtype('>f8'))
+
+
 def get_results(filter_expression="", row_types=['runattr', 'itervar', 'config', 'scalar', 'vector', 'statistic', 'histogram', 'param', 'attr'], omit_unused_columns=True, start_time=-inf, end_time=inf):
     pk = Gateway.results_provider.getResultsPickle(filter_expression, list(row_types), bool(omit_unused_columns), float(start_time), float(end_time))
 
@@ -67,8 +89,9 @@ def get_results(filter_expression="", row_types=['runattr', 'itervar', 'config',
     df["binedges"] = df["binedges"].map(lambda v: np.frombuffer(v, dtype=np.dtype('>f8')), na_action='ignore')
     df["binvalues"] = df["binvalues"].map(lambda v: np.frombuffer(v, dtype=np.dtype('>f8')), na_action='ignore')
 
-    df["vectime"] = df["vectime"].map(_get_array_from_shm)
-    df["vecvalue"] = df["vecvalue"].map(_get_array_from_shm)
+    arenas = dict()
+    df["vectime"] = df["vectime"].map(lambda v: _get_array_from_shm(v, arenas))
+    df["vecvalue"] = df["vecvalue"].map(lambda v: _get_array_from_shm(v, arenas))
 
     if omit_unused_columns:  # maybe do this in Java?
         df.dropna(axis='columns', how='all', inplace=True)
@@ -172,8 +195,9 @@ def get_vectors(filter_expression="", include_attrs=False, include_runattrs=Fals
     scalars, attrs = pickle.loads(pk)
     df = pd.DataFrame(scalars, columns=["runID", "module", "name", "vectime", "vecvalue"])
 
-    df["vectime"] = df["vectime"].map(_get_array_from_shm)
-    df["vecvalue"] = df["vecvalue"].map(_get_array_from_shm)
+    arenas = dict()
+    df["vectime"] = df["vectime"].map(lambda v: _get_array_from_shm(v, arenas))
+    df["vecvalue"] = df["vecvalue"].map(lambda v: _get_array_from_shm(v, arenas))
 
     df = _append_additional_data(df, attrs, include_runattrs, include_itervars, include_param_assignments, include_config_entries)
     if merge_module_and_name:
@@ -3,6 +3,9 @@ package org.omnetpp.scave.pychart;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import org.omnetpp.common.Debug;
@@ -11,49 +14,166 @@ import org.omnetpp.common.util.StringUtils;
 
 import py4j.ClientServer;
 
+/**
+ * Keeps a supply of started Python processes, so that charts don't have to wait
+ * for the interpreter to start up and import the analysis modules.
+ *
+ * Processes are handed out by getProcess() and are never returned to the pool
+ * (they are killed by their users), but the pool starts new ones in the
+ * background. minSize is the number of processes kept ready even if nobody
+ * is waiting; maxSize limits the number of ready and starting processes
+ * together. Processes are started in parallel, and they are only made
+ * available after they connected back to us and imported the preloaded
+ * modules.
+ */
 public class PythonProcessPool {
     private boolean shouldSetOmnetppMplBackend = true;
-    private ArrayList<PythonProcess> availableProcesses = new ArrayList<PythonProcess>();
+    private List<String> preloadedModules = new ArrayList<String>();
+    private int minSize;
+    private int maxSize;
+
+    // all guarded by "this"
+    private LinkedList<PythonProcess> availableProcesses = new LinkedList<PythonProcess>();
+    private int numStartingProcesses = 0;
+    private int numWaitingCallers = 0;
+    private int numFailedStarts = 0;
+    private boolean lastStartFailed = false;
     private String errorMessage = null;
-    private boolean threadExit = false;
-    private Thread launcherThread;
+    private boolean disposed = false;
+
+    // statistics, also guarded by "this"
+    private int numStartedProcesses = 0;
+    private long totalStartupMillis = 0;
+    private int numDiscardedProcesses = 0;
+    private int numRequests = 0;
+    private long totalWaitMillis = 0;
+    private long maxWaitMillis = 0;
 
     public PythonProcessPool() {
         this(1);
     }
 
     public PythonProcessPool(int N) {
+        this(N, N);
+    }
 
-        launcherThread = new Thread(() -> {
-            while (!threadExit) {
-                if (availableProcesses.size() < N) {
-                    try {
-                        availableProcesses.add(createProcess());
-                    }
-                    catch (IOException e) {
-                        errorMessage = e.getMessage();
-                        threadExit = true;
-                    }
-                    if (PythonProcess.debug)
-                        Debug.println("We have " + availableProcesses.size() + " processes.");
-                }
-                try {
-                    Thread.sleep(1000);
-                }
-                catch (InterruptedException e) {
-                    // need to create a process right away - most likely
-                }
-            }
-        });
-
-        launcherThread.setDaemon(true);
-        launcherThread.start();
+    public PythonProcessPool(int minSize, int maxSize) {
+        setSize(minSize, maxSize);
     }
 
     public void setShouldSetOmnetppMplBackend(boolean value) {
         this.shouldSetOmnetppMplBackend = value;
     }
 
+    /**
+     * Sets the Python modules the processes import before they are made available,
+     * in addition to the ones the entry point imports anyway. Modules that cannot
+     * be imported are ignored.
+     */
+    public synchronized void setPreloadedModules(String... modules) {
+        preloadedModules = new ArrayList<String>(Arrays.asList(modules));
+    }
+
+    /**
+     * Sets the number of processes to keep ready even if nobody is waiting for one,
+     * and the maximum number of ready and starting processes. Ready processes above
+     * the new minimum are killed, so that a pool with minSize=0 keeps no processes
+     * alive while not in use.
+     */
+    public synchronized void setSize(int minSize, int maxSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+            throw new IllegalArgumentException("invalid pool size: min=" + minSize + ", max=" + maxSize);
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        while (availableProcesses.size() > minSize)
+            availableProcesses.removeLast().kill();
+        replenish();
+    }
+
+    public synchronized int getMinSize() {
+        return minSize;
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Starts new processes in the background if needed. After a failed start,
+     * processes are only started for callers who are actually waiting,
+     * so that a broken Python installation is not retried endlessly.
+     */
+    private synchronized void replenish() {
+        if (disposed)
+            return;
+        int target = Math.min(maxSize, lastStartFailed ? numWaitingCallers : Math.max(minSize, numWaitingCallers));
+        while (availableProcesses.size() + numStartingProcesses < target) {
+            numStartingProcesses++;
+            Thread starterThread = new Thread(() -> startProcess(), "Python process starter");
+            starterThread.setDaemon(true);
+            starterThread.start();
+        }
+    }
+
+    private void startProcess() {
+        long startMillis = System.currentTimeMillis();
+        PythonProcess process = null;
+        String error = null;
+        try {
+            process = createProcess();
+            warmUp(process);
+        }
+        catch (IOException | RuntimeException e) {
+            error = e.getMessage();
+            if (process != null)
+                process.kill();
+            process = null;
+        }
+        long startupMillis = System.currentTimeMillis() - startMillis;
+
+        synchronized (this) {
+            numStartingProcesses--;
+            if (process != null && disposed)
+                process.kill();
+            else if (process != null) {
+                // the pool may have been shrunk while the process was starting
+                if (availableProcesses.size() < Math.max(minSize, numWaitingCallers))
+                    availableProcesses.add(process);
+                else
+                    process.kill();
+                numStartedProcesses++;
+                totalStartupMillis += startupMillis;
+                lastStartFailed = false;
+            }
+            else {
+                numFailedStarts++;
+                lastStartFailed = true;
+                errorMessage = error;
+            }
+            if (PythonProcess.debug)
+                Debug.println((process != null ? "Python process started in " : "Python process failed to start in ") + startupMillis + "ms, we have " + availableProcesses.size() + " processes.");
+            notifyAll();
+            replenish();
+        }
+    }
+
+    /**
+     * Waits until the process connects back to us, and makes it import the preloaded modules.
+     */
+    private void warmUp(PythonProcess process) {
+        IPythonEntryPoint entryPoint = process.getEntryPoint();
+        List<String> modules;
+        synchronized (this) {
+            modules = preloadedModules;
+        }
+        if (!modules.isEmpty()) {
+            StringBuilder command = new StringBuilder();
+            for (String module : modules)
+                command.append("try:\n    import " + module + "\nexcept ImportError:\n    pass\n");
+            entryPoint.execute(command.toString());
+        }
+    }
+
     private PythonProcess createProcess() throws IOException {
         if (PythonProcess.debug)
             Debug.println("connecting...");
@@ -78,7 +198,14 @@ public class PythonProcessPool {
         if (PythonProcess.debug)
             Debug.println("starting python process... with path " + env.get("PYTHONPATH"));
 
-        Process process = pb.start();
+        Process process;
+        try {
+            process = pb.start();
+        }
+        catch (IOException e) {
+            clientServer.shutdown();
+            throw e;
+        }
 
         return new PythonProcess(process, clientServer);
     }
@@ -93,28 +220,100 @@ public class PythonProcessPool {
         return oldPythonPath == null ? locationsToPrepend : locationsToPrepend + File.pathSeparator + oldPythonPath;
     }
 
-    public void dispose() {
-        threadExit = true;
-        launcherThread.interrupt();
+    /**
+     * Kills the ready processes; processes still starting are killed when they are done.
+     * Callers waiting in getProcess() get an exception.
+     */
+    public synchronized void dispose() {
+        if (PythonProcess.debug)
+            Debug.println("Disposing Python process pool: " + getStatistics());
+        disposed = true;
         for (PythonProcess pr : availableProcesses)
             pr.kill();
         availableProcesses.clear();
+        notifyAll();
     }
 
-    public PythonProcess getProcess() {
+    /**
+     * Returns a started Python process, waiting for one if necessary. The caller
+     * becomes the owner of the process, and should kill it when no longer needed.
+     * Throws RuntimeException if the process could not be started, or the pool is
+     * disposed while waiting.
+     */
+    public synchronized PythonProcess getProcess() {
+        long startMillis = System.currentTimeMillis();
+        int failuresBefore = numFailedStarts;
+        numWaitingCallers++;
+        try {
+            while (true) {
+                if (disposed)
+                    throw new RuntimeException("Python process pool has been disposed");
 
-        while (availableProcesses.isEmpty()) {
-            launcherThread.interrupt();
-            // TODO: make sure to wait for a process to become available
+                // health check: skip processes that died while sitting in the pool
+                while (!availableProcesses.isEmpty()) {
+                    PythonProcess pr = availableProcesses.removeFirst();
+                    if (pr.isAlive()) {
+                        long waitMillis = System.currentTimeMillis() - startMillis;
+                        numRequests++;
+                        totalWaitMillis += waitMillis;
+                        maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+                        if (PythonProcess.debug)
+                            Debug.println("Got Python process after waiting " + waitMillis + "ms");
+                        return pr;
+                    }
+                    if (PythonProcess.debug)
+                        Debug.println("Discarding dead Python process: " + pr);
+                    pr.kill();
+                    numDiscardedProcesses++;
+                }
 
-            if (errorMessage != null)
-                throw new RuntimeException(errorMessage);
+                if (numFailedStarts > failuresBefore)
+                    throw new RuntimeException(errorMessage);
+
+                // make sure a process is being started for us, then wait for it
+                replenish();
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for a Python process");
+                }
+            }
+        }
+        finally {
+            numWaitingCallers--;
+            // waking up the starters to replenish the supply of processes
+            replenish();
         }
+    }
+
+    /**
+     * Returns a one-line summary of the startup and wait times, for diagnostics.
+     */
+    public synchronized String getStatistics() {
+        return "started " + numStartedProcesses + " processes (avg startup " + (numStartedProcesses == 0 ? 0 : totalStartupMillis / numStartedProcesses) + "ms)"
+                + ", " + numFailedStarts + " failed to start, " + numDiscardedProcesses + " discarded as dead"
+                + "; served " + numRequests + " requests (avg wait " + (numRequests == 0 ? 0 : totalWaitMillis / numRequests) + "ms, max wait " + maxWaitMillis + "ms)";
+    }
 
-        PythonProcess pr = availableProcesses.remove(0);
-        // waking up the launcher to replenish the supply of processes
-        launcherThread.interrupt();
+    public synchronized int getNumStartedProcesses() {
+        return numStartedProcesses;
+    }
+
+    public synchronized long getTotalStartupMillis() {
+        return totalStartupMillis;
+    }
+
+    public synchronized int getNumRequests() {
+        return numRequests;
+    }
+
+    public synchronized long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
 
-        return pr;
+    public synchronized long getMaxWaitMillis() {
+        return maxWaitMillis;
     }
 }
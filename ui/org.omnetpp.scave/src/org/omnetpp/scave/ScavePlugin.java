@@ -25,6 +25,7 @@ import org.eclipse.ui.ISharedImages;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.omnetpp.common.Debug;
+import org.omnetpp.scave.jobs.ChartExport;
 import org.omnetpp.scave.pychart.PythonProcessPool;
 import org.osgi.framework.BundleContext;
 import org.python.pydev.ast.interpreter_managers.InterpreterInfo;
@@ -166,6 +167,7 @@ public class ScavePlugin extends AbstractUIPlugin {
      * @see org.eclipse.ui.plugin.AbstractUIPlugin#stop(org.osgi.framework.BundleContext)
      */
     public void stop(BundleContext context) throws Exception {
+        ChartExport.disposeProcessPool();
         plugin = null;
         super.stop(context);
     }
@@ -8,9 +8,9 @@
 package org.omnetpp.scave.assist;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.contentassist.ContentProposalEx;
@@ -40,8 +40,10 @@ public class FilterContentProposalProvider extends MatchExpressionContentProposa
     private ContentProposalEx[] fieldProposals;
     // Proposals for prefixed field names
     private ContentProposalEx[] prefixedFieldProposals;
-    // Maps fields names to patterns
-    private Map<String,ContentProposalEx[]> patternProposals = new HashMap<String,ContentProposalEx[]>();
+    // The hints for the field patterns; queried lazily, by prefix
+    private FilterHints hints;
+    // Full names of the fields in hints; null if not yet computed
+    private Set<String> hintFieldNames;
 
     public FilterContentProposalProvider() {
         String[] filterFields = ResultItemFields.getFieldNames().toArray();
@@ -55,33 +57,58 @@ public class FilterContentProposalProvider extends MatchExpressionContentProposa
     /**
      * The proposals for pattern fields depends on the content of the analysis file,
      * and this method is used to pass the offered proposals for each field as a
-     * FilterHints object.
+     * FilterHints object. The hints are only queried when proposals are requested,
+     * and only for the field and prefix at hand. Content assist runs in the UI thread,
+     * so hints that are not computed yet are not waited for: they are computed in
+     * the background, and offered on a later invocation.
      * @param hints the hints for field patterns
      */
     public void setFilterHints(FilterHints hints) {
-        // add pattern proposals for the filter hints
-        FilterField[] fields = hints.getFields();
+        this.hints = hints;
+        this.hintFieldNames = null;
+    }
+
+    /**
+     * Computes the field name proposals from the filter hints, if not done yet
+     * and the fields are available without waiting.
+     */
+    protected void ensureFieldProposals() {
+        if (hints == null || hintFieldNames != null)
+            return;
+        FilterField[] fields = hints.getFieldsIfReady();
+        if (fields == null)
+            return; // not computed yet; the default field proposals are used meanwhile
         List<ContentProposalEx> fieldProposals = new ArrayList<ContentProposalEx>();
         List<ContentProposalEx> prefixedFieldProposals = new ArrayList<ContentProposalEx>();
+        Set<String> fieldNames = new HashSet<String>();
         for (FilterField field : fields) {
             String fieldName = field.getFullName();
+            fieldNames.add(fieldName);
             if (field.getKind() == Kind.ItemField)
                 fieldProposals.add(new ContentProposalEx(fieldName, fieldName+"()"));
             else
                 prefixedFieldProposals.add(new ContentProposalEx(fieldName, fieldName+"()"));
         }
         this.fieldProposals = fieldProposals.toArray(new ContentProposalEx[fieldProposals.size()]);
-        this.prefixedFieldProposals = prefixedFieldProposals.toArray(new ContentProposalEx[fieldProposals.size()]);
-        patternProposals.clear();
-        for (FilterField field : fields) {
-            String[] patterns = hints.getHints(field);
-            if (patterns != null) {
-                ContentProposalEx[] proposals = new ContentProposalEx[patterns.length];
-                for (int i = 0; i < patterns.length; ++i)
-                    proposals[i] = new ContentProposalEx(patterns[i]);
-                patternProposals.put(field.getFullName(), proposals);
-            }
-        }
+        this.prefixedFieldProposals = prefixedFieldProposals.toArray(new ContentProposalEx[prefixedFieldProposals.size()]);
+        this.hintFieldNames = fieldNames;
+    }
+
+    /**
+     * Returns proposals for the patterns of the given field that start with the prefix,
+     * or null if there are none, or the hints of the field are not computed yet.
+     */
+    protected ContentProposalEx[] getPatternProposals(String fieldName, String prefix) {
+        ensureFieldProposals();
+        if (hints == null || fieldName == null || hintFieldNames == null || !hintFieldNames.contains(fieldName))
+            return null;
+        String[] patterns = hints.getHintsIfReady(FilterField.fromFullName(fieldName), prefix);
+        if (patterns == null)
+            return null;
+        ContentProposalEx[] proposals = new ContentProposalEx[patterns.length];
+        for (int i = 0; i < patterns.length; ++i)
+            proposals[i] = new ContentProposalEx(patterns[i]);
+        return proposals;
     }
 
     /**
@@ -98,6 +125,7 @@ public class FilterContentProposalProvider extends MatchExpressionContentProposa
     public void addProposalsForToken(String contents, int position, Token token, List<IContentProposalEx> proposals) {
         Node parent = token.getParent();
         if (parent != null) {
+            ensureFieldProposals();
             int type = parent.getType();
             String prefix;
             int startIndex, endIndex, decorators;
@@ -126,7 +154,7 @@ public class FilterContentProposalProvider extends MatchExpressionContentProposa
                 startIndex = parent.getPattern().getStartPos();
                 endIndex = parent.getPattern().getEndPos();
                 decorators = ContentProposalEx.DEC_QUOTE | (parent.getClosingParen().isEmpty() ? ContentProposalEx.DEC_CP : ContentProposalEx.DEC_NONE);
-                collectFilteredProposals(proposals, patternProposals.get(parent.getFieldName()), "", startIndex, endIndex,
+                collectFilteredProposals(proposals, getPatternProposals(parent.getFieldName(), ""), "", startIndex, endIndex,
                         decorators);
             }
             // after the '(' of a field pattern: complete the pattern with hints of the field
@@ -135,7 +163,7 @@ public class FilterContentProposalProvider extends MatchExpressionContentProposa
                 startIndex = parent.getPattern().getStartPos();
                 endIndex = parent.getPattern().getEndPos();
                 decorators = ContentProposalEx.DEC_QUOTE | (parent.getClosingParen().isEmpty() ? ContentProposalEx.DEC_CP : ContentProposalEx.DEC_NONE);
-                collectFilteredProposals(proposals, patternProposals.get(parent.getFieldName()), prefix, startIndex, endIndex,
+                collectFilteredProposals(proposals, getPatternProposals(parent.getFieldName(), prefix), prefix, startIndex, endIndex,
                         decorators);
             }
             // after a ')' of a field pattern or parenthesized expression: insert binary operator
@@ -154,7 +182,7 @@ public class FilterContentProposalProvider extends MatchExpressionContentProposa
                 collectFilteredProposals(proposals, fieldPrefixProposals, prefix, startIndex, endIndex, ContentProposalEx.DEC_NONE);
                 if (endIndex > startIndex)
                     collectFilteredProposals(proposals, prefixedFieldProposals, prefix, startIndex, endIndex, ContentProposalEx.DEC_QUOTE | ContentProposalEx.DEC_OP | ContentProposalEx.DEC_CP);
-                collectFilteredProposals(proposals, patternProposals.get(field), prefix, startIndex, endIndex, ContentProposalEx.DEC_QUOTE);
+                collectFilteredProposals(proposals, getPatternProposals(field, prefix), prefix, startIndex, endIndex, ContentProposalEx.DEC_QUOTE);
             }
             // inside unary operator: replace unary operator
             else if (type == Node.UNARY_OPERATOR_EXPR && !atEnd) {
@@ -177,7 +205,7 @@ public class FilterContentProposalProvider extends MatchExpressionContentProposa
                 collectFilteredProposals(proposals, unaryOperatorProposals, "", position, position, spaceBefore);
                 collectFilteredProposals(proposals, fieldProposals, "", position, position, spaceBefore | ContentProposalEx.DEC_QUOTE | ContentProposalEx.DEC_OP | ContentProposalEx.DEC_CP);
                 collectFilteredProposals(proposals, fieldPrefixProposals, "", position, position, spaceBefore);
-                collectFilteredProposals(proposals, patternProposals.get(FilterUtil.getDefaultField()), "", position, position, spaceBefore | ContentProposalEx.DEC_QUOTE);
+                collectFilteredProposals(proposals, getPatternProposals(FilterUtil.getDefaultField(), ""), "", position, position, spaceBefore | ContentProposalEx.DEC_QUOTE);
             }
         }
         Debug.println(proposals.toString());
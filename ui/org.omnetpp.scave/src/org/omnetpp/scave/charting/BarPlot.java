@@ -41,6 +41,7 @@ import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.graphics.TextLayout;
 import org.eclipse.swt.widgets.Composite;
+import org.omnetpp.common.canvas.ICachableLayerPainter;
 import org.omnetpp.common.canvas.ICoordsMapping;
 import org.omnetpp.common.canvas.RectangularArea;
 import org.omnetpp.common.util.Converter;
@@ -455,10 +456,17 @@ public class BarPlot extends PlotBase {
     }
 
     @Override
-    protected void doPaintCachableLayer(Graphics graphics, ICoordsMapping coordsMapping) {
-        graphics.fillRectangle(GraphicsUtils.getClip(graphics));
-        valueAxis.drawGrid(graphics, coordsMapping);
-        bars.draw(graphics, coordsMapping);
+    protected ICachableLayerPainter doCreateCachableLayerPainter(ICoordsMapping coordsMapping) {
+        final LinearAxis valueGrid = valueAxis.getCopy();
+        final Bars.Snapshot snapshot = bars.createSnapshot();
+        return new ICachableLayerPainter() {
+            @Override
+            public void paint(Graphics graphics) {
+                graphics.fillRectangle(GraphicsUtils.getClip(graphics));
+                valueGrid.drawGrid(graphics, coordsMapping);
+                Bars.draw(graphics, coordsMapping, snapshot);
+            }
+        };
     }
 
     @Override
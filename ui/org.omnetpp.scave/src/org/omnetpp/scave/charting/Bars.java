@@ -48,18 +48,51 @@ class Bars {
         return rect;
     }
 
-    public void draw(Graphics graphics, ICoordsMapping coordsMapping) {
+    /**
+     * Everything draw() needs, captured on the UI thread, so that the bars can be drawn
+     * on background threads while the plot is being changed. The bar array is not
+     * modified after calculatePlotArea() has filled it, only replaced.
+     */
+    static class Snapshot {
+        private final RectangularArea[][] bars;
+        private final RGB[] colors;
+        private final RGB[] outlineColors;
+        private final double minY, maxY; // of the chart area, for infinite bar ends
+
+        private Snapshot(Bars bars) {
+            this.bars = bars.bars;
+            int numSeries = bars.bars != null && bars.bars.length > 0 ? bars.bars[0].length : 0;
+            colors = new RGB[numSeries];
+            outlineColors = new RGB[numSeries];
+            for (int series = 0; series < numSeries; ++series) {
+                String key = bars.parent.getKeyFor(series);
+                colors[series] = bars.parent.getEffectiveBarColor(key);
+                outlineColors[series] = bars.parent.getEffectiveBarOutlineColor(key);
+            }
+            RectangularArea chartArea = bars.parent.chartArea;
+            minY = chartArea != null ? chartArea.minY : 0;
+            maxY = chartArea != null ? chartArea.maxY : 0;
+        }
+    }
 
+    Snapshot createSnapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Draws the bars of the snapshot. May be called on a background thread.
+     */
+    static void draw(Graphics graphics, ICoordsMapping coordsMapping, Snapshot snapshot) {
+        RectangularArea[][] bars = snapshot.bars;
         if (bars != null && bars.length > 0 && bars[0].length > 0) {
             graphics.pushState();
 
-            Rectangle clip = graphics.getClip(new Rectangle());
             int numSeries = bars[0].length;
-            int[] indices = getGroupSeriessInRectangle(clip);
-            for (int i = indices[1]; i >= indices[0]; --i) {
+            int numGroupSeries = bars.length * numSeries;
+            for (int i = numGroupSeries - 1; i >= 0; --i) {
                 int group = i / numSeries;
                 int series = i % numSeries;
-                drawBar(graphics, group, series, coordsMapping);
+                drawBar(graphics, group, series, coordsMapping, snapshot);
             }
             graphics.popState();
         }
@@ -78,31 +111,18 @@ class Bars {
         }
     }
 
-    protected void drawBar(Graphics graphics, int group, int series, ICoordsMapping coordsMapping) {
-        LargeRect rect = getBarRectangle(group, series, coordsMapping);
+    protected static void drawBar(Graphics graphics, int group, int series, ICoordsMapping coordsMapping, Snapshot snapshot) {
+        LargeRect rect = getBarRectangle(snapshot.bars[group][series], snapshot.minY, snapshot.maxY, coordsMapping);
         rect.width = Math.max(rect.width, 1);
         rect.height = Math.max(rect.height, 1);
-        graphics.setBackgroundColor(getBarColor(series));
-        graphics.setForegroundColor(getBarOutlineColor(series));
+        graphics.setBackgroundColor(new Color(null, snapshot.colors[series]));
+        graphics.setForegroundColor(new Color(null, snapshot.outlineColors[series]));
         LargeGraphics.fillRectangle(graphics, rect.x, rect.y, rect.width, rect.height);
         if (rect.width >= 4 && rect.height >= 3) {
             LargeGraphics.drawRectangle(graphics, rect.x, rect.y, rect.width, rect.height);
         }
     }
 
-    protected int[] getGroupSeriessInRectangle(org.eclipse.draw2d.geometry.Rectangle rect) {
-        int[] result = new int[2];
-        result[0] = getGroupSeries(rect.x, true);
-        result[1] = getGroupSeries(rect.x + rect.width, false);
-        return result;
-    }
-
-    private int getGroupSeries(double x, boolean before) {
-        int numGroups = parent.getDataset().getGroupCount();
-        int numSeries = parent.getDataset().getSeriesCount();
-        return before ? 0 : (numGroups*numSeries-1);
-    }
-
     public int findGroupSeries(double x, double y) {
         IGroupsSeriesDataset dataset = parent.getDataset();
         if (dataset == null || bars == null)
@@ -124,22 +144,20 @@ class Bars {
         return new Color(null, color);
     }
 
-    protected Color getBarOutlineColor(int series) {
-        RGB color = parent.getEffectiveBarOutlineColor(parent.getKeyFor(series));
-        return new Color(null, color);
+    protected LargeRect getBarRectangle(int group, int series, ICoordsMapping coordsMapping) {
+        return getBarRectangle(bars[group][series], parent.chartArea.minY, parent.chartArea.maxY, coordsMapping);
     }
 
-    protected LargeRect getBarRectangle(int group, int series, ICoordsMapping coordsMapping) {
-        RectangularArea bar = bars[group][series];
+    protected static LargeRect getBarRectangle(RectangularArea bar, double chartMinY, double chartMaxY, ICoordsMapping coordsMapping) {
         double top =  bar.maxY;
         double bottom = bar.minY;
         double left = bar.minX;
         double right = bar.maxX;
 
         if (Double.isInfinite(top))
-            top = top < 0.0 ? parent.chartArea.minY : parent.chartArea.maxY;
+            top = top < 0.0 ? chartMinY : chartMaxY;
         if (Double.isInfinite(bottom))
-            bottom = bottom < 0.0 ? parent.chartArea.minY : parent.chartArea.maxY;
+            bottom = bottom < 0.0 ? chartMinY : chartMaxY;
 
         long x = coordsMapping.toCanvasX(left);
         long y = coordsMapping.toCanvasY(top);
@@ -40,6 +40,7 @@ import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
+import org.omnetpp.common.canvas.ICachableLayerPainter;
 import org.omnetpp.common.canvas.ICoordsMapping;
 import org.omnetpp.common.canvas.RectangularArea;
 import org.omnetpp.common.util.Converter;
@@ -347,6 +348,16 @@ public class HistogramPlot extends PlotBase {
         return color;
     }
 
+    public boolean getHistogramCumulative(String key) {
+        HistogramProperties histProps = histogramProperties.get(key);
+        return histProps == null ? defaultHistogramCumulative : histProps.getEffectiveCumulative();
+    }
+
+    public boolean getHistogramDensity(String key) {
+        HistogramProperties histProps = histogramProperties.get(key);
+        return histProps == null ? defaultHistogramDensity : histProps.getEffectiveDensity();
+    }
+
     public PlotProperty.HistogramBar getBarType(String key) {
         HistogramProperties histProps = histogramProperties.get(key);
         PlotProperty.HistogramBar barType = (histProps == null || histProps.drawStyle == null) ? defaultBarType: histProps.drawStyle;
@@ -439,10 +450,17 @@ public class HistogramPlot extends PlotBase {
     }
 
     @Override
-    protected void doPaintCachableLayer(Graphics graphics, ICoordsMapping coordsMapping) {
-        graphics.fillRectangle(GraphicsUtils.getClip(graphics));
-        yAxis.drawGrid(graphics, coordsMapping);
-        histograms.draw(graphics, coordsMapping);
+    protected ICachableLayerPainter doCreateCachableLayerPainter(ICoordsMapping coordsMapping) {
+        final LinearAxis yGrid = yAxis.getCopy();
+        final Histograms.Snapshot snapshot = histograms.createSnapshot();
+        return new ICachableLayerPainter() {
+            @Override
+            public void paint(Graphics graphics) {
+                graphics.fillRectangle(GraphicsUtils.getClip(graphics));
+                yGrid.drawGrid(graphics, coordsMapping);
+                Histograms.draw(graphics, coordsMapping, snapshot);
+            }
+        };
     }
 
     @Override
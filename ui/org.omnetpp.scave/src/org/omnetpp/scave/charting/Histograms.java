@@ -18,6 +18,7 @@ import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.RGB;
 import org.omnetpp.common.canvas.ICoordsMapping;
 import org.omnetpp.common.canvas.LargeGraphics;
 import org.omnetpp.common.canvas.RectangularArea;
@@ -145,8 +146,8 @@ class Histograms {
 
     private ICellValueTransform getEffectiveValueTransform(int series) {
         String key = parent.getDataset().getSeriesKey(series);
-        boolean cumulative = parent.getOrCreateHistogramProperties(key).getEffectiveCumulative();
-        boolean density = parent.getOrCreateHistogramProperties(key).getEffectiveDensity();
+        boolean cumulative = parent.getHistogramCumulative(key);
+        boolean density = parent.getHistogramDensity(key);
 
         if (cumulative && density)
             return new CdfTransform();
@@ -192,7 +193,7 @@ class Histograms {
     }
 
     // utility method for the Solid draw style
-    protected void drawRect(Graphics graphics, ICoordsMapping coordsMapping, RectangularArea area) {
+    protected static void drawRect(Graphics graphics, ICoordsMapping coordsMapping, RectangularArea area) {
         double xl = area.minX;
         double xr = area.maxX;
         double yt = area.maxY;
@@ -213,17 +214,57 @@ class Histograms {
         }
     }
 
-    void draw(Graphics graphics, ICoordsMapping coordsMapping) {
+    /**
+     * Everything draw() needs, captured on the UI thread, so that the histograms can be
+     * drawn on background threads while the plot is being changed. The bar arrays are
+     * not modified after calculatePlotArea() has filled them, only replaced.
+     */
+    static class Snapshot {
+        private final RectangularArea underflowBars[];
+        private final RectangularArea binBars[][];
+        private final RectangularArea overflowBars[];
+        private final double transformedBaseline;
+        private final PlotProperty.HistogramBar[] barTypes;
+        private final RGB[] colors;
+
+        private Snapshot(Histograms histograms) {
+            underflowBars = histograms.underflowBars;
+            binBars = histograms.binBars;
+            overflowBars = histograms.overflowBars;
+            transformedBaseline = histograms.transformedBaseline;
+            barTypes = new PlotProperty.HistogramBar[binBars.length];
+            colors = new RGB[binBars.length];
+            for (int series = 0; series < binBars.length; ++series) {
+                String key = histograms.parent.getDataset().getSeriesKey(series);
+                barTypes[series] = histograms.parent.getBarType(key);
+                colors[series] = histograms.parent.getHistogramColor(key);
+            }
+        }
+    }
+
+    Snapshot createSnapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Draws the histograms of the snapshot. May be called on a background thread.
+     */
+    static void draw(Graphics graphics, ICoordsMapping coordsMapping, Snapshot snapshot) {
+        RectangularArea underflowBars[] = snapshot.underflowBars;
+        RectangularArea binBars[][] = snapshot.binBars;
+        RectangularArea overflowBars[] = snapshot.overflowBars;
+        double transformedBaseline = snapshot.transformedBaseline;
+
         graphics.setLineStyle(SWT.LINE_SOLID);
 
         for (int series = 0; series < binBars.length; ++series) {
-            String key = parent.getDataset().getSeriesKey(series);
-            PlotProperty.HistogramBar barType = parent.getBarType(key);
+            PlotProperty.HistogramBar barType = snapshot.barTypes[series];
+            Color color = new Color(null, snapshot.colors[series]);
             switch (barType) {
             case Solid:
                 graphics.setLineWidth(1);
                 graphics.setForegroundColor(ColorFactory.BLACK);
-                graphics.setBackgroundColor(getHistogramColor(series));
+                graphics.setBackgroundColor(color);
 
                 graphics.setAlpha(128);
                 graphics.setLineStyle(SWT.LINE_DOT);
@@ -245,7 +286,7 @@ class Histograms {
                 break;
             case Outline:
                 graphics.setLineWidth(2);
-                graphics.setForegroundColor(getHistogramColor(series));
+                graphics.setForegroundColor(color);
                 graphics.setAlpha(192);
 
                 long baselineY = coordsMapping.toCanvasY(transformedBaseline);
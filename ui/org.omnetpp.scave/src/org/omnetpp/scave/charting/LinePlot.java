@@ -34,6 +34,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.eclipse.core.runtime.Assert;
@@ -47,7 +48,9 @@ import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.omnetpp.common.Debug;
+import org.omnetpp.common.canvas.ICachableLayerPainter;
 import org.omnetpp.common.canvas.ICoordsMapping;
 import org.omnetpp.common.canvas.RectangularArea;
 import org.omnetpp.common.color.ColorFactory;
@@ -109,6 +112,10 @@ public class LinePlot extends PlotBase {
     private CrossHair crosshair;
     private Lines lines;
 
+    // set by the cachable layer painters (possibly on background threads) if drawing the lines timed out;
+    // replaced on every cache clear, so that painters of earlier drawings cannot set it
+    private AtomicBoolean linesIncomplete = new AtomicBoolean();
+
     // plot-wide line properties, individual line may override
     private boolean defaultDisplayLine;
     private SymbolType defaultSymbolType;
@@ -180,11 +187,7 @@ public class LinePlot extends PlotBase {
         }
 
         public ILinePlotter getLinePlotter() {
-            if (getEffectiveLineStyle()==LineStyle.None)
-                return new NoLinePlotter();
-            DrawStyle type = getEffectiveDrawStyle();
-            ILinePlotter plotter = LinePlotterFactory.createVectorPlotter(type);
-            return plotter;
+            return createLinePlotter(getEffectiveLineStyle(), getEffectiveDrawStyle());
         }
 
         public IPlotSymbol getSymbolPlotter() {
@@ -194,6 +197,13 @@ public class LinePlot extends PlotBase {
         }
     }
 
+    static ILinePlotter createLinePlotter(LineStyle lineStyle, DrawStyle drawStyle) {
+        if (lineStyle==LineStyle.None)
+            return new NoLinePlotter();
+        ILinePlotter plotter = LinePlotterFactory.createVectorPlotter(drawStyle);
+        return plotter;
+    }
+
     public LinePlot(Composite parent, int style) {
         super(parent, style);
         // important: add the CrossHair to the chart AFTER the ZoomableCanvasMouseSupport added
@@ -620,22 +630,47 @@ public class LinePlot extends PlotBase {
     }
 
     @Override
-    protected void doPaintCachableLayer(Graphics graphics, ICoordsMapping coordsMapping) {
-        graphics.fillRectangle(GraphicsUtils.getClip(graphics));
-        xAxis.drawGrid(graphics, coordsMapping);
-        yAxis.drawGrid(graphics, coordsMapping);
+    protected ICachableLayerPainter doCreateCachableLayerPainter(ICoordsMapping coordsMapping) {
+        final LinearAxis xGrid = xAxis.getCopy();
+        final LinearAxis yGrid = yAxis.getCopy();
+
+        int seriesCount = dataset != null ? dataset.getSeriesCount() : 0;
+        Lines.SeriesStyle[] seriesStyles = new Lines.SeriesStyle[seriesCount];
+        for (int series = 0; series < seriesCount; series++)
+            seriesStyles[series] = new Lines.SeriesStyle(getLineProperties(series));
+        final Lines.Snapshot snapshot = new Lines.Snapshot(dataset, xGrid, yGrid, lines.getPlotRectangle(), seriesStyles, antialias, backgroundColor);
 
         IPreferenceStore store = ScavePlugin.getDefault().getPreferenceStore();
-        int totalTimeLimitMillis = store.getInt(ScavePreferenceConstants.TOTAL_DRAW_TIME_LIMIT_MILLIS);
-        int perLineTimeLimitMillis = store.getInt(ScavePreferenceConstants.PER_LINE_DRAW_TIME_LIMIT_MILLIS);
+        final int totalTimeLimitMillis = store.getInt(ScavePreferenceConstants.TOTAL_DRAW_TIME_LIMIT_MILLIS);
+        final int perLineTimeLimitMillis = store.getInt(ScavePreferenceConstants.PER_LINE_DRAW_TIME_LIMIT_MILLIS);
 
-        boolean completed = lines.draw(graphics, coordsMapping, totalTimeLimitMillis, perLineTimeLimitMillis);
+        // the timeout message is drawn in the noncachable layer on the UI thread, because
+        // drawing text is not safe on background threads (it goes through Pango on GTK)
+        final AtomicBoolean incomplete = linesIncomplete;
+        final Display display = getDisplay();
 
-        if (!completed) {
-            Rectangle clip = GraphicsUtils.getClip(graphics);
-            graphics.setForegroundColor(ColorFactory.BLACK);
-            graphics.drawText("Drawing operation timed out, lines is incomplete! Change zoom level to refresh.", clip.x+2, clip.y+2);
-        }
+        return new ICachableLayerPainter() {
+            @Override
+            public void paint(Graphics graphics) {
+                graphics.fillRectangle(GraphicsUtils.getClip(graphics));
+                xGrid.drawGrid(graphics, coordsMapping);
+                yGrid.drawGrid(graphics, coordsMapping);
+
+                boolean completed = Lines.draw(graphics, coordsMapping, snapshot, totalTimeLimitMillis, perLineTimeLimitMillis);
+
+                if (!completed && incomplete.compareAndSet(false, true))
+                    display.asyncExec(() -> {
+                        if (!isDisposed() && incomplete == linesIncomplete)
+                            redraw();
+                    });
+            }
+        };
+    }
+
+    @Override
+    public void clearCanvasCache() {
+        super.clearCanvasCache();
+        linesIncomplete = new AtomicBoolean();
     }
 
     @Override
@@ -647,6 +682,12 @@ public class LinePlot extends PlotBase {
         yAxis.drawAxis(graphics, coordsMapping);
         legendTooltip.draw(graphics);
         drawStatusText(graphics);
+        if (linesIncomplete.get()) {
+            Rectangle plotArea = lines.getPlotRectangle();
+            resetDrawingStylesAndColors(graphics);
+            graphics.setForegroundColor(ColorFactory.BLACK);
+            graphics.drawText("Drawing operation timed out, lines is incomplete! Change zoom level to refresh.", plotArea.x+2, plotArea.y+2);
+        }
         if (getSelection() != null)
             getSelection().draw(graphics, coordsMapping);
         drawRubberband(graphics);
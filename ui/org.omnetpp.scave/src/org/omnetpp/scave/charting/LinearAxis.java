@@ -29,7 +29,7 @@ import org.omnetpp.scave.charting.properties.PlotProperty.ShowGrid;
  *
  * @author andras
  */
-public class LinearAxis {
+public class LinearAxis implements Cloneable {
     /* Properties */
     private boolean vertical;    // horizontal or vertical axis
     private boolean logarithmic; // logarithmic axis
@@ -56,6 +56,19 @@ public class LinearAxis {
         this.drawAxisToPlot = drawAxisToPlot;
     }
 
+    /**
+     * Returns a copy of this axis, for drawing the grid on a background thread
+     * while this axis may be changed.
+     */
+    public LinearAxis getCopy() {
+        try {
+            return (LinearAxis)clone();
+        }
+        catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     public double transform(double coord) {
         return logarithmic ? Math.log10(coord) : coord;
     }
@@ -9,17 +9,19 @@ package org.omnetpp.scave.charting;
 
 import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.geometry.Rectangle;
-import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.graphics.Cursor;
-import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.graphics.RGB;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.canvas.ICoordsMapping;
 import org.omnetpp.common.canvas.RectangularArea;
 import org.omnetpp.scave.charting.LinePlot.LineProperties;
 import org.omnetpp.scave.charting.dataset.IXYDataset;
+import org.omnetpp.scave.charting.plotter.ChartSymbolFactory;
 import org.omnetpp.scave.charting.plotter.IPlotSymbol;
 import org.omnetpp.scave.charting.plotter.ILinePlotter;
+import org.omnetpp.scave.charting.properties.PlotProperty.DrawStyle;
+import org.omnetpp.scave.charting.properties.PlotProperty.LineStyle;
+import org.omnetpp.scave.charting.properties.PlotProperty.SymbolType;
 
 /**
  * The content area of a line plot.
@@ -91,7 +93,17 @@ class Lines implements ILinePlot {
 
                 for (int series = 0; series < dataset.getSeriesCount(); series++) {
                     int n = dataset.getItemCount(series);
-                    if (n > 0) {
+
+                    // use the precomputed extents of the series if they can be transformed
+                    RectangularArea seriesArea = parent.transformArea(new RectangularArea(
+                            dataset.getMinX(series), dataset.getMinY(series), dataset.getMaxX(series), dataset.getMaxY(series)));
+                    if (n > 0 && seriesArea.isFinite()) {
+                        area.minX = Math.min(area.minX, seriesArea.minX);
+                        area.minY = Math.min(area.minY, seriesArea.minY);
+                        area.maxX = Math.max(area.maxX, seriesArea.maxX);
+                        area.maxY = Math.max(area.maxY, seriesArea.maxY);
+                    }
+                    else if (n > 0) {
                         // X must be increasing
                         for (int i = 0; i < n; i++) {
                             double x = parent.transformX(dataset.getX(series,i));
@@ -149,42 +161,107 @@ class Lines implements ILinePlot {
         return area;
     }
 
-    protected boolean draw(Graphics graphics, ICoordsMapping coordsMapping, int totalTimeLimitMillis, int perLineTimeLimitMillis) {
-        if (getDataset() != null) {
-            IXYDataset dataset = getDataset();
+    /**
+     * The effective drawing properties of one series, captured on the UI thread.
+     */
+    static class SeriesStyle {
+        final boolean displayLine;
+        final DrawStyle drawStyle;
+        final LineStyle lineStyle;
+        final float lineWidth;
+        final RGB lineColor;
+        final SymbolType symbolType;
+        final int symbolSize;
+
+        SeriesStyle(LineProperties props) {
+            displayLine = props.getEffectiveDisplayLine();
+            drawStyle = props.getEffectiveDrawStyle();
+            lineStyle = props.getEffectiveLineStyle();
+            lineWidth = props.getEffectiveLineWidth();
+            lineColor = props.getEffectiveLineColor().getRGB();
+            symbolType = props.getEffectiveSymbolType();
+            symbolSize = props.getEffectiveSymbolSize();
+        }
+    }
+
+    /**
+     * Everything draw() needs, captured on the UI thread, so that the lines can be drawn
+     * on background threads while the plot is being changed. The axes are copies; the
+     * dataset is never modified, only replaced by the plot.
+     */
+    static class Snapshot implements ILinePlot {
+        private final IXYDataset dataset;
+        private final LinearAxis xAxis;
+        private final LinearAxis yAxis;
+        private final Rectangle rect;
+        private final SeriesStyle[] seriesStyles;
+        private final boolean antialias;
+        private final Color backgroundColor;
+
+        Snapshot(IXYDataset dataset, LinearAxis xAxis, LinearAxis yAxis, Rectangle rect, SeriesStyle[] seriesStyles, boolean antialias, Color backgroundColor) {
+            this.dataset = dataset;
+            this.xAxis = xAxis;
+            this.yAxis = yAxis;
+            this.rect = rect.getCopy();
+            this.seriesStyles = seriesStyles;
+            this.antialias = antialias;
+            this.backgroundColor = backgroundColor;
+        }
 
+        public IXYDataset getDataset() {
+            return dataset;
+        }
+
+        public Rectangle getPlotRectangle() {
+            return rect;
+        }
+
+        public double transformX(double x) {
+            return xAxis.transform(x);
+        }
+
+        public double transformY(double y) {
+            return yAxis.transform(y);
+        }
+
+        public double inverseTransformX(double x) {
+            return xAxis.inverseTransform(x);
+        }
+
+        public double inverseTransformY(double y) {
+            return yAxis.inverseTransform(y);
+        }
+    }
+
+    /**
+     * Draws the lines of the snapshot. May be called on a background thread.
+     */
+    static boolean draw(Graphics graphics, ICoordsMapping coordsMapping, Snapshot snapshot, int totalTimeLimitMillis, int perLineTimeLimitMillis) {
+        IXYDataset dataset = snapshot.getDataset();
+        if (dataset != null) {
             long startTime = System.currentTimeMillis();
             boolean ok = true;
 
-            for (int series = 0; series < dataset.getSeriesCount(); series++) {
-                LineProperties props = parent.getLineProperties(series);
-                if (props.getEffectiveDisplayLine()) {
+            for (int series = 0; series < snapshot.seriesStyles.length; series++) {
+                SeriesStyle style = snapshot.seriesStyles[series];
+                if (style.displayLine) {
 
-                    ILinePlotter plotter = props.getLinePlotter();
-                    IPlotSymbol symbol = props.getSymbolPlotter();
-                    Color color = props.getEffectiveLineColor();
-                    parent.resetDrawingStylesAndColors(graphics);
-                    graphics.setAntialias(parent.antialias ? SWT.ON : SWT.OFF);
+                    ILinePlotter plotter = LinePlot.createLinePlotter(style.lineStyle, style.drawStyle);
+                    IPlotSymbol symbol = ChartSymbolFactory.createChartSymbol(style.symbolType, style.symbolSize);
+                    Color color = new Color(null, style.lineColor);
+                    PlotBase.resetDrawingStylesAndColors(graphics, snapshot.antialias, snapshot.backgroundColor);
                     graphics.setForegroundColor(color);
                     graphics.setBackgroundColor(color);
-                    graphics.setLineStyle(props.getEffectiveLineStyle().getDraw2DConstant());
-                    graphics.setLineWidthFloat(props.getEffectiveLineWidth());
+                    graphics.setLineStyle(style.lineStyle.getDraw2DConstant());
+                    graphics.setLineWidthFloat(style.lineWidth);
 
                     int remainingTime = totalTimeLimitMillis - (int)(System.currentTimeMillis() - startTime);
                     int lineTimeout = Math.min(Math.max(100, remainingTime), perLineTimeLimitMillis); // give it at least 100ms, even if time is over
 
-                    boolean lineOK = plotter.plot(this, series, graphics, coordsMapping, symbol, lineTimeout);
+                    boolean lineOK = plotter.plot(snapshot, series, graphics, coordsMapping, symbol, lineTimeout);
                     ok = ok && lineOK; // do NOT merge with previous line! shortcutting would prevent lines after 1st timeout to be drawn
-
-                    // if drawing is taking too long, display busy cursor
-                    if (System.currentTimeMillis() - startTime > 1000) {
-                        Cursor cursor = Display.getCurrent().getSystemCursor(SWT.CURSOR_WAIT);
-                        parent.getShell().setCursor(cursor);
-                        parent.setCursor(null); // crosshair cursor would override shell's busy cursor
-                    }
                 }
             }
-            parent.getShell().setCursor(null);
             if (debug) Debug.println("plotting: "+(System.currentTimeMillis()-startTime)+" ms");
             return ok;
         }
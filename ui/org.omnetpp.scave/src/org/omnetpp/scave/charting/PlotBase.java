@@ -41,6 +41,7 @@ import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Composite;
 import org.omnetpp.common.Debug;
+import org.omnetpp.common.canvas.ICachableLayerPainter;
 import org.omnetpp.common.canvas.ICoordsMapping;
 import org.omnetpp.common.canvas.RectangularArea;
 import org.omnetpp.common.canvas.ZoomableCachingCanvas;
@@ -62,6 +63,7 @@ import org.omnetpp.scave.charting.properties.PlotProperty.LegendPosition;
  */
 public abstract class PlotBase extends ZoomableCachingCanvas implements IPlotViewer {
     private static final boolean debug = false;
+    private static final int BUSY_CURSOR_DELAY_MILLIS = 1000;
 
     protected static final PlotProperty[] PLOTBASE_PROPERTIES = new PlotProperty[] {
             PROP_PLOT_TITLE,
@@ -113,6 +115,9 @@ public abstract class PlotBase extends ZoomableCachingCanvas implements IPlotVie
     private int layoutDepth = 0; // how many layoutChart() calls are on the stack
     private IDataset dataset;
 
+    private boolean busyCursorShown = false;
+    private Runnable busyCursorShower = () -> showBusyCursor();
+
     public PlotBase(Composite parent, int style) {
         super(parent, style);
         setToolTipText(null); // prevents "Close" tooltip of the TabItem from coming up (Linux only)
@@ -121,6 +126,8 @@ public abstract class PlotBase extends ZoomableCachingCanvas implements IPlotVie
 
         mouseSupport = new ZoomableCanvasMouseSupport(this); // add mouse handling; may be made optional
 
+        setBackgroundRendering(true); // see createCachableLayerPainter()
+
         addControlListener(new ControlAdapter() {
             @Override
             public void controlResized(ControlEvent e) {
@@ -234,8 +241,50 @@ public abstract class PlotBase extends ZoomableCachingCanvas implements IPlotVie
             return;
 
         coordsMapping = getOptimizedCoordinateMapper();
-        resetDrawingStylesAndColors(graphics);
-        doPaintCachableLayer(graphics, coordsMapping);
+        createCachableLayerPainter(coordsMapping).paint(graphics);
+    }
+
+    @Override
+    protected ICachableLayerPainter createCachableLayerPainter() {
+        if (getClientArea().isEmpty())
+            return null;
+        return createCachableLayerPainter(getOptimizedCoordinateMapper());
+    }
+
+    private ICachableLayerPainter createCachableLayerPainter(ICoordsMapping mapping) {
+        final boolean antialias = this.antialias;
+        final Color backgroundColor = this.backgroundColor;
+        final ICachableLayerPainter contentPainter = doCreateCachableLayerPainter(mapping);
+        return new ICachableLayerPainter() {
+            @Override
+            public void paint(Graphics graphics) {
+                resetDrawingStylesAndColors(graphics, antialias, backgroundColor);
+                contentPainter.paint(graphics);
+            }
+        };
+    }
+
+    @Override
+    protected void backgroundRenderingStarted() {
+        // if drawing is taking too long, display busy cursor
+        getDisplay().timerExec(BUSY_CURSOR_DELAY_MILLIS, busyCursorShower);
+    }
+
+    @Override
+    protected void backgroundRenderingFinished() {
+        getDisplay().timerExec(-1, busyCursorShower);
+        if (busyCursorShown) {
+            busyCursorShown = false;
+            getShell().setCursor(null);
+        }
+    }
+
+    private void showBusyCursor() {
+        if (isDisposed())
+            return;
+        busyCursorShown = true;
+        getShell().setCursor(getDisplay().getSystemCursor(SWT.CURSOR_WAIT));
+        setCursor(null); // crosshair cursor would override shell's busy cursor
     }
 
     @Override
@@ -253,7 +302,14 @@ public abstract class PlotBase extends ZoomableCachingCanvas implements IPlotVie
         coordsMapping = null;
     }
 
-    abstract protected void doPaintCachableLayer(Graphics graphics, ICoordsMapping coordsMapping);
+    /**
+     * Returns a painter for the cachable layer (background, grid and the plot content).
+     * It is called on the UI thread, but the painter runs on background threads while
+     * the plot may be changed, so it must capture everything it needs at this time:
+     * the dataset, copies of the axes, the effective per-series properties, etc.
+     * The painter must not access the mutable state of the plot, nor call widget methods.
+     */
+    abstract protected ICachableLayerPainter doCreateCachableLayerPainter(ICoordsMapping coordsMapping);
     abstract protected void doPaintNoncachableLayer(Graphics graphics, ICoordsMapping coordsMapping);
 
     /**
@@ -580,6 +636,14 @@ public abstract class PlotBase extends ZoomableCachingCanvas implements IPlotVie
      * Resets all graphics settings except clipping and transform.
      */
     public void resetDrawingStylesAndColors(Graphics graphics) {
+        resetDrawingStylesAndColors(graphics, antialias, backgroundColor);
+    }
+
+    /**
+     * Same as resetDrawingStylesAndColors(Graphics), with the given plot settings.
+     * For use by painters running on background threads.
+     */
+    static void resetDrawingStylesAndColors(Graphics graphics, boolean antialias, Color backgroundColor) {
         graphics.setAntialias(antialias ? SWT.ON : SWT.OFF);
         graphics.setAlpha(255);
         graphics.setBackgroundColor(backgroundColor);
@@ -105,6 +105,18 @@ public interface IXYDataset extends IDataset {
      */
     public double getMaxX();
 
+    /**
+     * Returns the minimum value of the x coordinates in the given series,
+     * or +Infinity if the series is empty. Should not require scanning the data.
+     */
+    public double getMinX(int series);
+
+    /**
+     * Returns the maximum value of the x coordinates in the given series,
+     * or -Infinity if the series is empty. Should not require scanning the data.
+     */
+    public double getMaxX(int series);
+
     /**
      * Returns the y-value for an item within a series.
      * It may return NaN if the corresponding x does not
@@ -139,4 +151,25 @@ public interface IXYDataset extends IDataset {
      * Returns the maximum value of the y coordinates.
      */
     public double getMaxY();
+
+    /**
+     * Returns the minimum value of the y coordinates in the given series,
+     * ignoring NaNs, or +Infinity if there are none. Should not require
+     * scanning the data.
+     */
+    public double getMinY(int series);
+
+    /**
+     * Returns the maximum value of the y coordinates in the given series,
+     * ignoring NaNs, or -Infinity if there are none. Should not require
+     * scanning the data.
+     */
+    public double getMaxY(int series);
+
+    /**
+     * Returns a min/max pyramid of the y values of the given series, which
+     * plotters can use to draw long series column by column. Returns null
+     * if the dataset does not provide one for the series (e.g. it is short).
+     */
+    public MinMaxPyramid getMinMaxPyramid(int series);
 }
@@ -0,0 +1,139 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.charting.dataset;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Multi-resolution summary of the y values of a series, for drawing series
+ * with far more points than pixels. Level 0 stores the minimum and maximum
+ * of each bucket of BUCKET_SIZE consecutive points, and each further level
+ * combines pairs of buckets of the previous one. The minimum and maximum of
+ * any index range can then be computed by visiting O(log n) buckets, plus
+ * scanning at most 2*BUCKET_SIZE points at the ends of the range.
+ * (The first and last values of a range are not stored, as they can be read
+ * directly from the data.)
+ *
+ * NaNs are ignored in the minimum/maximum, but recorded by containsNaN().
+ */
+public class MinMaxPyramid {
+    public static final int BUCKET_SIZE_LOG2 = 6;
+    public static final int BUCKET_SIZE = 1 << BUCKET_SIZE_LOG2;
+
+    private DoubleBuffer ys;
+    private int n;
+    private boolean containsNaN;
+    private double[][] mins;
+    private double[][] maxs;
+
+    /**
+     * Builds the pyramid for the given values. The buffer is retained,
+     * and is accessed with absolute indices.
+     */
+    public MinMaxPyramid(DoubleBuffer ys) {
+        this.ys = ys;
+        this.n = ys.limit();
+
+        int numLevels = 1;
+        for (int size = (n >> BUCKET_SIZE_LOG2) / 2; size > 0; size /= 2)
+            numLevels++;
+        mins = new double[numLevels][];
+        maxs = new double[numLevels][];
+
+        // level 0: scan the data in chunks
+        int numBuckets = n >> BUCKET_SIZE_LOG2;
+        double[] min0 = mins[0] = new double[numBuckets];
+        double[] max0 = maxs[0] = new double[numBuckets];
+        double[] chunk = new double[BUCKET_SIZE];
+        DoubleBuffer buf = ys.duplicate();
+        buf.clear();
+        for (int b = 0; b < numBuckets; b++) {
+            buf.get(chunk);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < BUCKET_SIZE; i++) {
+                double y = chunk[i];
+                if (y < min)
+                    min = y;
+                if (y > max)
+                    max = y;
+                if (y != y)
+                    containsNaN = true;
+            }
+            min0[b] = min;
+            max0[b] = max;
+        }
+        for (int i = numBuckets << BUCKET_SIZE_LOG2; i < n && !containsNaN; i++)
+            if (Double.isNaN(ys.get(i)))
+                containsNaN = true;
+
+        // higher levels
+        for (int level = 1; level < numLevels; level++) {
+            double[] prevMin = mins[level-1], prevMax = maxs[level-1];
+            int size = prevMin.length / 2;
+            double[] min = mins[level] = new double[size];
+            double[] max = maxs[level] = new double[size];
+            for (int b = 0; b < size; b++) {
+                min[b] = Math.min(prevMin[2*b], prevMin[2*b+1]);
+                max[b] = Math.max(prevMax[2*b], prevMax[2*b+1]);
+            }
+        }
+    }
+
+    public int getItemCount() {
+        return n;
+    }
+
+    public boolean containsNaN() {
+        return containsNaN;
+    }
+
+    /**
+     * Stores the minimum and maximum of the values in the index range [from, to)
+     * into result[0] and result[1], and returns result. For an empty range (or one
+     * with only NaNs), they are +Infinity and -Infinity.
+     */
+    public double[] getMinMax(int from, int to, double[] result) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        // scan the unaligned ends
+        while (from < to && (from & (BUCKET_SIZE-1)) != 0) {
+            double y = ys.get(from++);
+            if (y < min) min = y;
+            if (y > max) max = y;
+        }
+        while (to > from && (to & (BUCKET_SIZE-1)) != 0) {
+            double y = ys.get(--to);
+            if (y < min) min = y;
+            if (y > max) max = y;
+        }
+
+        // walk up the pyramid; at each level, consume the buckets at the ends whose parent is not fully within the range
+        int b0 = from >> BUCKET_SIZE_LOG2, b1 = to >> BUCKET_SIZE_LOG2;
+        for (int level = 0; b0 < b1; level++) {
+            double[] levelMin = mins[level], levelMax = maxs[level];
+            if ((b0 & 1) != 0) {
+                min = Math.min(min, levelMin[b0]);
+                max = Math.max(max, levelMax[b0]);
+                b0++;
+            }
+            if ((b1 & 1) != 0) {
+                b1--;
+                min = Math.min(min, levelMin[b1]);
+                max = Math.max(max, levelMax[b1]);
+            }
+            b0 >>= 1;
+            b1 >>= 1;
+        }
+
+        result[0] = min;
+        result[1] = max;
+        return result;
+    }
+}
@@ -7,6 +7,8 @@
 
 package org.omnetpp.scave.charting.plotter;
 
+import static org.omnetpp.common.canvas.ICoordsMapping.NAN_PIX;
+
 import java.util.HashSet;
 
 import org.eclipse.draw2d.Graphics;
@@ -16,6 +18,7 @@ import org.omnetpp.common.util.GraphicsUtils;
 import org.omnetpp.scave.charting.ILinePlot;
 import org.omnetpp.scave.charting.dataset.DatasetUtils;
 import org.omnetpp.scave.charting.dataset.IXYDataset;
+import org.omnetpp.scave.charting.dataset.MinMaxPyramid;
 
 
 /**
@@ -54,6 +57,90 @@ public abstract class LinePlotter implements ILinePlotter {
         return new double[] {lo, hi};
     }
 
+    /**
+     * Returns the min/max pyramid of the series if the points in the given index
+     * range should be drawn column by column using it, and null otherwise. This is
+     * the case if there are many more points than pixel columns, and the result is
+     * guaranteed to be the same as drawing each point: there are no NaNs in the
+     * series (they would break the line), and the coordinate transformations
+     * (which are monotonic) are defined for the whole range.
+     */
+    protected MinMaxPyramid getPyramidFor(ILinePlot plot, int series, Graphics graphics, int first, int last) {
+        IXYDataset dataset = plot.getDataset();
+        MinMaxPyramid pyramid = dataset.getMinMaxPyramid(series);
+        if (pyramid == null || pyramid.containsNaN())
+            return null;
+        Rectangle clip = GraphicsUtils.getClip(graphics);
+        if (last - first + 1 < 4L * Math.max(clip.width, 1))
+            return null;
+        if (Double.isNaN(plot.transformX(dataset.getX(series, first))) || Double.isNaN(plot.transformX(dataset.getX(series, last))))
+            return null;
+        if (Double.isNaN(plot.transformY(dataset.getMinY(series))) || Double.isNaN(plot.transformY(dataset.getMaxY(series))))
+            return null;
+        return pyramid;
+    }
+
+    /**
+     * Returns the index of the first point after index i (but at most last+1) whose
+     * canvas x coordinate is greater than canvasX, which must be that of point i.
+     * That is, returns the end of the pixel column starting at point i.
+     */
+    protected int findColumnEnd(ILinePlot plot, int series, ICoordsMapping mapping, long canvasX, int i, int last) {
+        IXYDataset dataset = plot.getDataset();
+        int low = i, high = last + 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (mapping.toCanvasX(plot.transformX(dataset.getX(series, mid))) > canvasX)
+                high = mid;
+            else
+                low = mid;
+        }
+        return high;
+    }
+
+    /**
+     * Variant of plotSymbols() for series where points are far denser than pixels:
+     * in each pixel column, only the symbols of the first, last, lowest and highest
+     * points are drawn, so the envelope of the symbols is the same as with drawing
+     * all of them.
+     */
+    protected boolean plotSymbolsInColumns(ILinePlot plot, int series, Graphics graphics, ICoordsMapping mapping, IPlotSymbol symbol, MinMaxPyramid pyramid, int first, int last, int timeLimitMillis) {
+        IXYDataset dataset = plot.getDataset();
+        int[] canvasYRange = canvasYRange(graphics, symbol);
+        long top = canvasYRange[0], bottom = canvasYRange[1];
+
+        graphics.setLineWidth(1);
+        graphics.setLineStyle(Graphics.LINE_SOLID);
+
+        long startTime = System.currentTimeMillis();
+        double[] minMax = new double[2];
+        long[] ys = new long[4];
+        int i = first;
+        while (i <= last) {
+            if (System.currentTimeMillis() - startTime > timeLimitMillis)
+                return false; // timed out
+
+            long canvasX = mapping.toCanvasX(plot.transformX(dataset.getX(series, i)));
+            int end = findColumnEnd(plot, series, mapping, canvasX, i, last);
+            pyramid.getMinMax(i, end, minMax);
+            ys[0] = mapping.toCanvasY(plot.transformY(dataset.getY(series, i)));
+            ys[1] = mapping.toCanvasY(plot.transformY(dataset.getY(series, end-1)));
+            ys[2] = mapping.toCanvasY(plot.transformY(minMax[0]));
+            ys[3] = mapping.toCanvasY(plot.transformY(minMax[1]));
+            for (int k = 0; k < ys.length; k++) {
+                long canvasY = ys[k];
+                boolean drawn = false;
+                for (int j = 0; j < k; j++)
+                    if (ys[j] == canvasY)
+                        drawn = true;
+                if (!drawn && canvasY != NAN_PIX && canvasY >= top && canvasY <= bottom)
+                    symbol.drawSymbol(graphics, canvasX, canvasY);
+            }
+            i = end;
+        }
+        return true;
+    }
+
     /**
      * Utility function to plot the symbols
      */
@@ -66,6 +153,10 @@ public abstract class LinePlotter implements ILinePlotter {
         int[] range = indexRange(plot, series, graphics, mapping);
         int first = range[0], last = range[1];
 
+        MinMaxPyramid pyramid = getPyramidFor(plot, series, graphics, first, last);
+        if (pyramid != null)
+            return plotSymbolsInColumns(plot, series, graphics, mapping, symbol, pyramid, first, last, timeLimitMillis);
+
         // value range on the chart
         double[] valueRange = valueRange(graphics, mapping, symbol);
         double lo = valueRange[0], hi = valueRange[1];
@@ -39,6 +39,7 @@ import org.omnetpp.scave.model.IModelChangeListener;
 import org.omnetpp.scave.model.InputFile;
 import org.omnetpp.scave.model.Inputs;
 import org.omnetpp.scave.model2.ScaveModelUtil;
+import org.omnetpp.scave.preferences.ScavePreferenceConstants;
 
 /**
  * This class is responsible for loading/unloading result files
@@ -62,6 +63,7 @@ public class ResultFilesTracker implements IResourceChangeListener, IModelChange
         this.inputs = inputs;
         this.baseDir = baseDir;
         this.updaterJob = new ResultFileManagerUpdaterJob(manager);
+        this.updaterJob.setParallelism(ScavePlugin.getDefault().getPreferenceStore().getInt(ScavePreferenceConstants.INDEXING_PARALLELISM));
     }
 
     public boolean deactivate()
@@ -13,98 +13,125 @@ import org.omnetpp.scave.python.IterVarsPickler;
 import org.omnetpp.scave.python.ParamAssignmentsPickler;
 import org.omnetpp.scave.python.ParamValuesPickler;
 import org.omnetpp.scave.python.ResultPicklingUtils;
+import org.omnetpp.scave.python.ResultQueryCache;
 import org.omnetpp.scave.python.RunAttrsPickler;
 import org.omnetpp.scave.python.RunsPickler;
 import org.omnetpp.scave.python.ScalarResultsPickler;
 import org.omnetpp.scave.python.StatisticsResultsPickler;
 import org.omnetpp.scave.python.VectorResultsPickler;
 
+import net.razorvine.pickle.IObjectPickler;
 import net.razorvine.pickle.PickleException;
 
 public class ResultsProvider implements IScaveResultsPickleProvider {
     ResultFileManager rfm;
     InterruptedFlag interruptedFlag;
+    ResultQueryCache cache;
 
     public ResultsProvider(ResultFileManager rfm, InterruptedFlag interruptedFlag) {
         this.rfm = rfm;
         this.interruptedFlag = interruptedFlag;
+        this.cache = ResultQueryCache.getInstance(rfm);
+    }
+
+    /**
+     * Returns the pickle from the cache if possible, otherwise produces it using the
+     * given pickler, and caches it. Not to be used for pickles referring to vector
+     * data in shared memory, because the receiver releases the shared memory.
+     */
+    protected byte[] pickleCached(IObjectPickler pickler, String method, Object... args) throws PickleException, IOException {
+        if (cache == null)
+            return ResultPicklingUtils.pickleResultsUsing(rfm, pickler);
+
+        String key = ResultQueryCache.makeKey(method, args);
+        long generation = cache.getGeneration();
+        byte[] pickle = cache.getPickle(key);
+        if (pickle == null) {
+            pickle = ResultPicklingUtils.pickleResultsUsing(rfm, pickler);
+            cache.putPickle(key, generation, pickle);
+        }
+        return pickle;
     }
 
     @Override
     public byte[] getRunsPickle(String filterExpression) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new RunsPickler(filterExpression, interruptedFlag));
+        return pickleCached(new RunsPickler(filterExpression, interruptedFlag), "getRunsPickle", filterExpression);
     }
 
     @Override
     public byte[] getResultsPickle(String filterExpression, List<String> rowTypes, boolean omitUnusedColumns, double simTimeStart, double simTimeEnd) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new CsvResultsPickler(filterExpression, rowTypes, omitUnusedColumns, simTimeStart, simTimeEnd, interruptedFlag));
+        CsvResultsPickler pickler = new CsvResultsPickler(filterExpression, rowTypes, omitUnusedColumns, simTimeStart, simTimeEnd, interruptedFlag);
+        if (rowTypes.contains("vector"))
+            return ResultPicklingUtils.pickleResultsUsing(rfm, pickler); // refers to shared memory, see pickleCached()
+        return pickleCached(pickler, "getResultsPickle", filterExpression, rowTypes, omitUnusedColumns, simTimeStart, simTimeEnd);
     }
 
     @Override
     public byte[] getRunAttrsPickle(String filter) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new RunAttrsPickler(filter, interruptedFlag));
+        return pickleCached(new RunAttrsPickler(filter, interruptedFlag), "getRunAttrsPickle", filter);
     }
 
     @Override
     public byte[] getItervarsPickle(String filter) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new IterVarsPickler(filter, interruptedFlag));
+        return pickleCached(new IterVarsPickler(filter, interruptedFlag), "getItervarsPickle", filter);
     }
 
     @Override
     public byte[] getItervarsForRunsPickle(List<String> runIDs) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new IterVarsPickler(runIDs, interruptedFlag));
+        return pickleCached(new IterVarsPickler(runIDs, interruptedFlag), "getItervarsForRunsPickle", runIDs);
     }
 
     @Override
     public byte[] getRunAttrsForRunsPickle(List<String> runIDs) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new RunAttrsPickler(runIDs, interruptedFlag));
+        return pickleCached(new RunAttrsPickler(runIDs, interruptedFlag), "getRunAttrsForRunsPickle", runIDs);
     }
 
     @Override
     public byte[] getParamAssignmentsForRunsPickle(List<String> runIDs) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new ParamAssignmentsPickler(runIDs, interruptedFlag));
+        return pickleCached(new ParamAssignmentsPickler(runIDs, interruptedFlag), "getParamAssignmentsForRunsPickle", runIDs);
     }
 
     @Override
     public byte[] getConfigEntriesForRunsPickle(List<String> runIDs) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new ConfigEntriesPickler(runIDs, interruptedFlag));
+        return pickleCached(new ConfigEntriesPickler(runIDs, interruptedFlag), "getConfigEntriesForRunsPickle", runIDs);
     }
 
 
     @Override
     public byte[] getScalarsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new ScalarResultsPickler(filterExpression, includeAttrs, interruptedFlag));
+        return pickleCached(new ScalarResultsPickler(filterExpression, includeAttrs, interruptedFlag), "getScalarsPickle", filterExpression, includeAttrs);
     }
 
     @Override
     public byte[] getVectorsPickle(String filterExpression, boolean includeAttrs, double simTimeStart, double simTimeEnd) throws PickleException, IOException {
+        // not cached, because it refers to shared memory; the filtering is cached by VectorResultsPickler
         return ResultPicklingUtils.pickleResultsUsing(rfm, new VectorResultsPickler(filterExpression, includeAttrs, simTimeStart, simTimeEnd, interruptedFlag));
     }
 
     @Override
     public byte[] getStatisticsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new StatisticsResultsPickler(filterExpression, includeAttrs, interruptedFlag));
+        return pickleCached(new StatisticsResultsPickler(filterExpression, includeAttrs, interruptedFlag), "getStatisticsPickle", filterExpression, includeAttrs);
     }
 
     @Override
     public byte[] getHistogramsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new HistogramResultsPickler(filterExpression, includeAttrs, interruptedFlag));
+        return pickleCached(new HistogramResultsPickler(filterExpression, includeAttrs, interruptedFlag), "getHistogramsPickle", filterExpression, includeAttrs);
     }
 
     @Override
     public byte[] getConfigEntriesPickle(String filter) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new ConfigEntriesPickler(filter, interruptedFlag));
+        return pickleCached(new ConfigEntriesPickler(filter, interruptedFlag), "getConfigEntriesPickle", filter);
     }
 
 
     @Override
     public byte[] getParamAssignmentsPickle(String filter) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new ParamAssignmentsPickler(filter, interruptedFlag));
+        return pickleCached(new ParamAssignmentsPickler(filter, interruptedFlag), "getParamAssignmentsPickle", filter);
     }
 
 
     @Override
     public byte[] getParamValuesPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
-        return ResultPicklingUtils.pickleResultsUsing(rfm, new ParamValuesPickler(filterExpression, includeAttrs, interruptedFlag));
+        return pickleCached(new ParamValuesPickler(filterExpression, includeAttrs, interruptedFlag), "getParamValuesPickle", filterExpression, includeAttrs);
     }
 }
\ No newline at end of file
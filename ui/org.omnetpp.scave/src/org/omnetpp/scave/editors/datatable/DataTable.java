@@ -87,7 +87,7 @@ public class DataTable extends Table implements IDataControl {
 
     private static final String NA = "-"; // "not applicable"
 
-    static class Column {
+    public static class Column {
 
         private String text;
         private String fieldName;
@@ -119,7 +119,7 @@ public class DataTable extends Table implements IDataControl {
         }
     }
 
-    private static final Column
+    public static final Column
         COL_DIRECTORY = new Column("Folder", null, 60, false, false),
         COL_FILE = new Column("File", FILE, 120, false, false),
         COL_CONFIG = new Column("Config", CONFIGNAME, 120, false, false),
@@ -183,6 +183,7 @@ public class DataTable extends Table implements IDataControl {
     private int minColumnWidth = 5; // for usability
     private List<Column> visibleColumns; // list of visible columns, this list will be saved and restored
     private IPreferenceStore preferences = ScavePlugin.getDefault().getPreferenceStore();
+    private IDListSortFilterService sortService; // for sorting large lists in the background
 
     // holds actions for the context menu for this data table
     private MenuManager contextMenuManager = new MenuManager("#PopupMenu");
@@ -200,6 +201,7 @@ public class DataTable extends Table implements IDataControl {
         setLinesVisible(true);
         initDefaultState();
         initColumns();
+        sortService = new IDListSortFilterService(this);
 
         addListener(SWT.SetData, new Listener() {
             public void handleEvent(final Event e) {
@@ -263,6 +265,7 @@ public class DataTable extends Table implements IDataControl {
         if (this.idList != null)
             selectedIDs = getSelectedIDs();
         this.idList = idlist;
+        sortService.cancel();
         restoreSortOrder();
         refresh();
         if (selectedIDs != null)
@@ -406,11 +409,12 @@ public class DataTable extends Table implements IDataControl {
                     int sortDirection = (getSortColumn() == tableColumn && getSortDirection() == SWT.UP ? SWT.DOWN : SWT.UP);
                     setSortColumn(tableColumn);
                     setSortDirection(sortDirection);
-                    sortBy(column, sortDirection);
-                    refresh();
-                    if (selectedIDs != null)
-                        setSelectedIDs(selectedIDs);
-                    fireContentChangedEvent();
+                    if (sort(column, sortDirection)) {
+                        refresh();
+                        if (selectedIDs != null)
+                            setSelectedIDs(selectedIDs);
+                        fireContentChangedEvent();
+                    }
                 }
             }
         });
@@ -437,91 +441,39 @@ public class DataTable extends Table implements IDataControl {
         if (sortColumn != null && sortDirection != SWT.NONE) {
             Column column = (Column)sortColumn.getData(COLUMN_KEY);
             if (column != null)
-                sortBy(column, sortDirection);
+                sort(column, sortDirection);
         }
     }
 
-    private void sortBy(Column column, int direction) {
-        if (manager == null)
-            return;
-
+    /**
+     * Sorts the table contents by the given column. Large lists are sorted in the
+     * background, and the sorted list replaces the current one when done; until then
+     * the table shows the items in the previous order. Returns true if the list has
+     * been sorted synchronously, and false if sorting is in progress.
+     */
+    private boolean sort(Column column, int direction) {
+        sortService.cancel();
+        if (manager == null || !IDListSortFilterService.isSortable(column, type))
+            return true; // the list cannot be sorted by this column
         boolean ascending = direction == SWT.UP;
-        if (COL_DIRECTORY.equals(column))
-            idList.sortByDirectory(manager, ascending);
-        else if (COL_FILE.equals(column))
-            idList.sortByFileName(manager, ascending);
-        else if (COL_CONFIG.equals(column))
-            idList.sortByRunAttribute(manager, CONFIGNAME, ascending);
-        else if (COL_RUNNUMBER.equals(column))
-            idList.sortByRunAttribute(manager, RUNNUMBER, ascending);
-        else if (COL_RUN_ID.equals(column))
-            idList.sortByRun(manager, ascending);
-        else if (COL_MODULE.equals(column))
-            idList.sortByModule(manager, ascending);
-        else if (COL_NAME.equals(column))
-            idList.sortByName(manager, ascending);
-        else if (COL_VALUE.equals(column)) {
-            if (idList.areAllScalars())
-                idList.sortScalarsByValue(manager, ascending);
-            else if (idList.areAllParameters())
-                idList.sortParametersByValue(manager, ascending);
-        }
-        else if (COL_VECTOR_ID.equals(column))
-            idList.sortVectorsByVectorId(manager, ascending);
-        else if (COL_KIND.equals(column))
-            ; //TODO
-        else if (COL_COUNT.equals(column)) {
-            if (idList.areAllHistograms())
-                idList.sortHistogramsByLength(manager, ascending);
-            else if (idList.areAllVectors())
-                idList.sortVectorsByLength(manager, ascending);
-        }
-        else if (COL_SUMWEIGHTS.equals(column))
-            ; //TODO
-        else if (COL_MEAN.equals(column)) {
-            if (idList.areAllHistograms()) //TODO
-                idList.sortHistogramsByMean(manager, ascending);
-            else if (idList.areAllVectors())
-                idList.sortVectorsByMean(manager, ascending);
-        }
-        else if (COL_STDDEV.equals(column)) {
-            if (idList.areAllHistograms()) //TODO
-                idList.sortHistogramsByStdDev(manager, ascending);
-            else if (idList.areAllVectors())
-                idList.sortVectorsByStdDev(manager, ascending);
-        }
-        else if (COL_MIN.equals(column)) {
-            if (idList.areAllHistograms()) //TODO
-                idList.sortHistogramsByMin(manager, ascending);
-            else if (idList.areAllVectors())
-                idList.sortVectorsByMin(manager, ascending);
+        if (idList.size() < IDListSortFilterService.PARALLEL_THRESHOLD) {
+            idList = IDListSortFilterService.sortNow(idList, column, type, ascending, manager);
+            return true;
         }
-        else if (COL_MAX.equals(column)) {
-            if (idList.areAllHistograms()) //TODO
-                idList.sortHistogramsByMax(manager, ascending);
-            else if (idList.areAllVectors())
-                idList.sortVectorsByMax(manager, ascending);
-        }
-        else if (COL_VARIANCE.equals(column)) {
-            if (idList.areAllHistograms()) //TODO
-                idList.sortHistogramsByVariance(manager, ascending);
-            else if (idList.areAllVectors())
-                idList.sortVectorsByVariance(manager, ascending);
-        }
-        else if (COL_NUMBINS.equals(column))
-            ; //TODO
-        else if (COL_HISTOGRAMRANGE.equals(column))
-            ; //TODO
-        else if (COL_EXPERIMENT.equals(column))
-            idList.sortByRunAttribute(manager, EXPERIMENT, ascending);
-        else if (COL_MEASUREMENT.equals(column))
-            idList.sortByRunAttribute(manager, MEASUREMENT, ascending);
-        else if (COL_REPLICATION.equals(column))
-            idList.sortByRunAttribute(manager, REPLICATION, ascending);
-        else if (COL_MIN_TIME.equals(column))
-            idList.sortVectorsByStartTime(manager, ascending);
-        else if (COL_MAX_TIME.equals(column))
-            idList.sortVectorsByEndTime(manager, ascending);
+        sortService.sort(idList, column, type, ascending, manager, (IDList sortedIDList) -> {
+            if (!isDisposed())
+                setSortedIDList(sortedIDList);
+        });
+        return false;
+    }
+
+    private void setSortedIDList(IDList sortedIDList) {
+        IDList selectedIDs = getSelectedIDs();
+        idList = sortedIDList;
+        refresh();
+        if (selectedIDs != null)
+            setSelectedIDs(selectedIDs);
+        fireContentChangedEvent();
     }
 
     protected void fillTableLine(TableItem item, int lineNumber) {
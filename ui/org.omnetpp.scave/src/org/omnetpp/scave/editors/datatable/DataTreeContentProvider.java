@@ -73,6 +73,8 @@ public class DataTreeContentProvider {
 
     protected Node[] rootNodes;
 
+    protected DataTreeIndex index; // built on demand
+
     public DataTreeContentProvider() {
         setDefaultLevels();
     }
@@ -80,11 +82,13 @@ public class DataTreeContentProvider {
     public void setResultFileManager(ResultFileManagerEx manager) {
         this.manager = manager;
         rootNodes = null;
+        index = null;
     }
 
     public void setIDList(IDList idList) {
         this.idList = idList;
         rootNodes = null;
+        index = null;
     }
 
     public Class<? extends Node>[] getLevels() {
@@ -148,134 +152,113 @@ public class DataTreeContentProvider {
                         collector = true;
                 Class<? extends Node> nextLevelClass = nextLevelIndex < levels.length ? levels[nextLevelIndex] : null;
                 boolean shouldSort = true;
+                List<Node> groupNodes = null;
                 if (nextLevelClass != null) {
-                    int idCount = firstNode == null ? idList.size() : firstNode.ids.length;
-                    for (int i = 0; i < idCount; i++) {
-                        long id = firstNode == null ? idList.get(i) : firstNode.ids[i];
-                        MatchContext matchContext = new MatchContext(manager, id);
-                        if (matchesPath(path, id, matchContext)) {
-                            if (nextLevelClass.equals(ExperimentNode.class))
-                                nodeIdsMap.put(new ExperimentNode(matchContext.getRunAttribute(RunAttribute.EXPERIMENT)), id);
-                            else if (nextLevelClass.equals(MeasurementNode.class))
-                                nodeIdsMap.put(new MeasurementNode(matchContext.getRunAttribute(RunAttribute.MEASUREMENT)), id);
-                            else if (nextLevelClass.equals(ReplicationNode.class))
-                                nodeIdsMap.put(new ReplicationNode(matchContext.getRunAttribute(RunAttribute.REPLICATION)), id);
-                            else if (nextLevelClass.equals(ExperimentMeasurementReplicationNode.class))
-                                nodeIdsMap.put(new ExperimentMeasurementReplicationNode(matchContext.getRunAttribute(RunAttribute.EXPERIMENT), matchContext.getRunAttribute(RunAttribute.MEASUREMENT), matchContext.getRunAttribute(RunAttribute.REPLICATION)), id);
-                            else if (nextLevelClass.equals(ConfigNode.class))
-                                nodeIdsMap.put(new ConfigNode(matchContext.getRunAttribute(RunAttribute.CONFIGNAME)), id);
-                            else if (nextLevelClass.equals(RunNumberNode.class))
-                                nodeIdsMap.put(new RunNumberNode(matchContext.getRun().getAttribute(RunAttribute.RUNNUMBER)), id);
-                            else if (nextLevelClass.equals(ConfigRunNumberNode.class))
-                                nodeIdsMap.put(new ConfigRunNumberNode(matchContext.getRunAttribute(RunAttribute.CONFIGNAME), matchContext.getRun().getAttribute(RunAttribute.RUNNUMBER)), id);
-                            else if (nextLevelClass.equals(FileNameNode.class))
-                                nodeIdsMap.put(new FileNameNode(matchContext.getResultFile().getFileName()), id);
-                            else if (nextLevelClass.equals(RunIdNode.class))
-                                nodeIdsMap.put(new RunIdNode(matchContext.getRun().getRunName()), id);
-                            else if (nextLevelClass.equals(FileNameRunIdNode.class))
-                                nodeIdsMap.put(new FileNameRunIdNode(matchContext.getResultFile().getFileName(), matchContext.getRun().getRunName()), id);
-                            else if (nextLevelClass.equals(ModuleNameNode.class)) {
-                                String moduleName = matchContext.getResultItem().getModuleName();
-                                String modulePrefix = getModulePrefix(path, null);
-                                if (moduleName.startsWith(modulePrefix)) {
-                                    String remainingName = StringUtils.removeStart(StringUtils.removeStart(moduleName, modulePrefix), ".");
-                                    String name = StringUtils.substringBefore(remainingName, ".");
-                                    nodeIdsMap.put(new ModuleNameNode(StringUtils.isEmpty(name) ? "." : name, !remainingName.contains(".")), id);
-                                }
+                    if (index == null)
+                        index = new DataTreeIndex(manager, idList);
+                    // note: all items of the parent node match the path, no need to check them
+                    int[] positions = firstNode == null ? index.getAllPositions() : firstNode.positions;
+                    String constraint = firstNode == null ? "" : firstNode.constraint;
+                    if (nextLevelClass.equals(ResultItemNode.class) && !collector) {
+                        for (int position : positions) {
+                            long id = index.getID(position);
+                            nodeIdsMap.put(new ResultItemNode(manager, id, null), position);
+                        }
+                    }
+                    else if (nextLevelClass.equals(ResultItemAttributeNode.class)) {
+                        shouldSort = false;  // retain insertion order
+                        for (int position : positions) {
+                            long id = index.getID(position);
+                            ResultItem resultItem = manager.getItem(id);
+                            ResultItem.DataType type = resultItem.getDataType();
+                            boolean isIntegerType = type == ResultItem.DataType.TYPE_INT;
+                            nodeIdsMap.put(new ResultItemAttributeNode("Module name", resultItem.getModuleName()), position);
+                            nodeIdsMap.put(new ResultItemAttributeNode("Type", type.toString().replaceAll("TYPE_", "").toLowerCase()), position);
+                            if (resultItem instanceof ScalarResult) {
+                                ScalarResult scalar = (ScalarResult)resultItem;
+                                nodeIdsMap.put(new ResultItemAttributeNode("Value", toIntegerAwareString(scalar.getValue(), isIntegerType)), position);
                             }
-                            else if (nextLevelClass.equals(ModulePathNode.class))
-                                nodeIdsMap.put(new ModulePathNode(matchContext.getResultItem().getModuleName()), id);
-                            else if (nextLevelClass.equals(ResultItemNode.class)) {
-                                if (collector)
-                                    nodeIdsMap.put(new ResultItemNode(manager, -1, matchContext.getResultItem().getName()), id);
-                                else
-                                    nodeIdsMap.put(new ResultItemNode(manager, id, null), id);
+                            else if (resultItem instanceof VectorResult) {
+                                VectorResult vector = (VectorResult)resultItem;
+                                Statistics stat = vector.getStatistics();
+                                nodeIdsMap.put(new ResultItemAttributeNode("Count", String.valueOf(stat.getCount())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Mean", formatNumber(stat.getMean())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("StdDev", formatNumber(stat.getStddev())), position);
+                                //nodeIdsMap.put(new ResultItemAttributeNode("Variance", formatNumber(stat.getVariance())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Min", toIntegerAwareString(stat.getMin(), isIntegerType)), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Max", toIntegerAwareString(stat.getMax(), isIntegerType)), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Start event number", String.valueOf(vector.getStartEventNum())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("End event number", String.valueOf(vector.getEndEventNum())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Start time", formatNumber(vector.getStartTime())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("End time", formatNumber(vector.getEndTime())), position);
                             }
-                            else if (nextLevelClass.equals(ResultItemAttributeNode.class)) {
-                                shouldSort = false;  // retain insertion order
-                                ResultItem resultItem = matchContext.getResultItem();
-                                ResultItem.DataType type = resultItem.getDataType();
-                                boolean isIntegerType = type == ResultItem.DataType.TYPE_INT;
-                                nodeIdsMap.put(new ResultItemAttributeNode("Module name", resultItem.getModuleName()), id);
-                                nodeIdsMap.put(new ResultItemAttributeNode("Type", type.toString().replaceAll("TYPE_", "").toLowerCase()), id);
-                                if (resultItem instanceof ScalarResult) {
-                                    ScalarResult scalar = (ScalarResult)resultItem;
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Value", toIntegerAwareString(scalar.getValue(), isIntegerType)), id);
-                                }
-                                else if (resultItem instanceof VectorResult) {
-                                    VectorResult vector = (VectorResult)resultItem;
-                                    Statistics stat = vector.getStatistics();
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Count", String.valueOf(stat.getCount())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Mean", formatNumber(stat.getMean())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("StdDev", formatNumber(stat.getStddev())), id);
-                                    //nodeIdsMap.put(new ResultItemAttributeNode("Variance", formatNumber(stat.getVariance())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Min", toIntegerAwareString(stat.getMin(), isIntegerType)), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Max", toIntegerAwareString(stat.getMax(), isIntegerType)), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Start event number", String.valueOf(vector.getStartEventNum())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("End event number", String.valueOf(vector.getEndEventNum())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Start time", formatNumber(vector.getStartTime())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("End time", formatNumber(vector.getEndTime())), id);
-                                }
-                                else if (resultItem instanceof StatisticsResult) {
-                                    StatisticsResult statistics = (StatisticsResult)resultItem;
-                                    Statistics stat = statistics.getStatistics();
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Kind", (stat.isWeighted() ? "weighted" : "unweighted")), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Count", String.valueOf(stat.getCount())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Sum of weights", formatNumber(stat.getSumWeights())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Mean", formatNumber(stat.getMean())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("StdDev", formatNumber(stat.getStddev())), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Min", toIntegerAwareString(stat.getMin(), isIntegerType)), id);
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Max", toIntegerAwareString(stat.getMax(), isIntegerType)), id);
-
-                                    if (resultItem instanceof HistogramResult) {
-                                        HistogramResult histogram = (HistogramResult)resultItem;
-                                        Histogram hist = histogram.getHistogram();
-
-                                        nodeIdsMap.put(new ResultItemAttributeNode("Underflows", toIntegerAwareString(hist.getUnderflows(), isIntegerType)), id);
-                                        nodeIdsMap.put(new ResultItemAttributeNode("Overflows", toIntegerAwareString(hist.getOverflows(), isIntegerType)), id);
-
-                                        DoubleVector binEdges = hist.getBinEdges();
-                                        DoubleVector binValues = hist.getBinValues();
-                                        if (binEdges.size() > 0 && binValues.size() > 0) {
-                                            int numBins = hist.getNumBins();
-                                            ResultItemAttributeNode binsNode = new ResultItemAttributeNode("Bins", String.valueOf(numBins));
-                                            List<Node> list = new ArrayList<Node>();
-                                            for (int j = 0; j < numBins; j++) {
-                                                double lowerBound = binEdges.get(j);
-                                                double upperBound = binEdges.get(j+1);
-                                                double value = binValues.get(j);
-                                                String name = "[" + toIntegerAwareString(lowerBound, isIntegerType) + ", ";
-                                                if (isIntegerType)
-                                                    name += toIntegerAwareString(upperBound-1, isIntegerType) + "]";
-                                                else
-                                                    name += formatNumber(upperBound) + ")";
-                                                list.add(new NameValueNode(name, toIntegerAwareString(value, true)));
-                                            }
-                                            binsNode.children = list.toArray(new Node[0]);
-                                            nodeIdsMap.put(binsNode, id);
+                            else if (resultItem instanceof StatisticsResult) {
+                                StatisticsResult statistics = (StatisticsResult)resultItem;
+                                Statistics stat = statistics.getStatistics();
+                                nodeIdsMap.put(new ResultItemAttributeNode("Kind", (stat.isWeighted() ? "weighted" : "unweighted")), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Count", String.valueOf(stat.getCount())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Sum of weights", formatNumber(stat.getSumWeights())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Mean", formatNumber(stat.getMean())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("StdDev", formatNumber(stat.getStddev())), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Min", toIntegerAwareString(stat.getMin(), isIntegerType)), position);
+                                nodeIdsMap.put(new ResultItemAttributeNode("Max", toIntegerAwareString(stat.getMax(), isIntegerType)), position);
+
+                                if (resultItem instanceof HistogramResult) {
+                                    HistogramResult histogram = (HistogramResult)resultItem;
+                                    Histogram hist = histogram.getHistogram();
+
+                                    nodeIdsMap.put(new ResultItemAttributeNode("Underflows", toIntegerAwareString(hist.getUnderflows(), isIntegerType)), position);
+                                    nodeIdsMap.put(new ResultItemAttributeNode("Overflows", toIntegerAwareString(hist.getOverflows(), isIntegerType)), position);
+
+                                    DoubleVector binEdges = hist.getBinEdges();
+                                    DoubleVector binValues = hist.getBinValues();
+                                    if (binEdges.size() > 0 && binValues.size() > 0) {
+                                        int numBins = hist.getNumBins();
+                                        ResultItemAttributeNode binsNode = new ResultItemAttributeNode("Bins", String.valueOf(numBins));
+                                        List<Node> list = new ArrayList<Node>();
+                                        for (int j = 0; j < numBins; j++) {
+                                            double lowerBound = binEdges.get(j);
+                                            double upperBound = binEdges.get(j+1);
+                                            double value = binValues.get(j);
+                                            String name = "[" + toIntegerAwareString(lowerBound, isIntegerType) + ", ";
+                                            if (isIntegerType)
+                                                name += toIntegerAwareString(upperBound-1, isIntegerType) + "]";
+                                            else
+                                                name += formatNumber(upperBound) + ")";
+                                            list.add(new NameValueNode(name, toIntegerAwareString(value, true)));
                                         }
+                                        binsNode.children = list.toArray(new Node[0]);
+                                        nodeIdsMap.put(binsNode, position);
                                     }
                                 }
-                                else if (resultItem instanceof ParameterResult) {
-                                    ParameterResult parameter = (ParameterResult)resultItem;
-                                    nodeIdsMap.put(new ResultItemAttributeNode("Value", parameter.getValue()), id);
-                                }
-                                else {
-                                    throw new IllegalArgumentException();
-                                }
-                                StringMap attributes = resultItem.getAttributes();
-                                StringVector keys = attributes.keys();
-                                for (int j = 0; j < keys.size(); j++) {
-                                    String key = keys.get(j);
-                                    nodeIdsMap.put(new ResultItemAttributeNode(StringUtils.capitalize(key), attributes.get(key)), id);
-                                }
                             }
-                            else
+                            else if (resultItem instanceof ParameterResult) {
+                                ParameterResult parameter = (ParameterResult)resultItem;
+                                nodeIdsMap.put(new ResultItemAttributeNode("Value", parameter.getValue()), position);
+                            }
+                            else {
                                 throw new IllegalArgumentException();
+                            }
+                            StringMap attributes = resultItem.getAttributes();
+                            StringVector keys = attributes.keys();
+                            for (int j = 0; j < keys.size(); j++) {
+                                String key = keys.get(j);
+                                nodeIdsMap.put(new ResultItemAttributeNode(StringUtils.capitalize(key), attributes.get(key)), position);
+                            }
+                        }
+                    }
+                    else {
+                        DataTreeIndex.Grouping grouping = groupBy(nextLevelClass, constraint, positions, path);
+                        groupNodes = new ArrayList<Node>();
+                        for (int i = 0; i < grouping.positions.length; i++) {
+                            Node node = createGroupNode(nextLevelClass, grouping.labels[i]);
+                            node.positions = grouping.positions[i];
+                            node.constraint = DataTreeIndex.makeConstraint(constraint, grouping, i);
+                            groupNodes.add(node);
                         }
                     }
                 }
-                Node[] nodes = (Node[])nodeIdsMap.keySet().toArray(new Node[0]);
+                Node[] nodes = groupNodes != null ? groupNodes.toArray(new Node[0]) : (Node[])nodeIdsMap.keySet().toArray(new Node[0]);
                 if (shouldSort) {
                     Arrays.sort(nodes, new Comparator<Node>() {
                         public int compare(Node o1, Node o2) {
@@ -284,7 +267,11 @@ public class DataTreeContentProvider {
                     });
                 }
                 for (Node node : nodes) {
-                    node.ids = toLongArray((Collection<Long>)nodeIdsMap.getCollection(node));
+                    if (node.positions == null) {
+                        node.positions = toIntArray((Collection<Integer>)nodeIdsMap.getCollection(node));
+                        node.constraint = null; // not a group; its items are not cached in the index
+                    }
+                    node.ids = index.getIDs(node.positions);
                     // add quick value if applicable
                     if (node.ids.length == 1 && !collector && StringUtils.isEmpty(node.value) &&
                         (!(node instanceof ModuleNameNode) || ((ModuleNameNode)node).leaf))
@@ -301,11 +288,11 @@ public class DataTreeContentProvider {
                 return nodes;
             }
 
-            private long[] toLongArray(Collection<Long> c) {
-                long[] a = new long[c.size()];
-                Iterator<Long> it = c.iterator();
+            private int[] toIntArray(Collection<Integer> c) {
+                int[] a = new int[c.size()];
+                Iterator<Integer> it = c.iterator();
                 for (int i = 0; i < c.size(); i++)
-                    a[i] = (Long)it.next();
+                    a[i] = it.next();
                 return a;
             }
 
@@ -326,6 +313,74 @@ public class DataTreeContentProvider {
         return nodes;
     }
 
+    /**
+     * Groups the given items by the key of the given level.
+     */
+    protected DataTreeIndex.Grouping groupBy(Class<? extends Node> levelClass, String constraint, int[] positions, List<Node> path) {
+        if (levelClass.equals(ExperimentNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.EXPERIMENT);
+        else if (levelClass.equals(MeasurementNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.MEASUREMENT);
+        else if (levelClass.equals(ReplicationNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.REPLICATION);
+        else if (levelClass.equals(ExperimentMeasurementReplicationNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.EXPERIMENT, DataTreeIndex.MEASUREMENT, DataTreeIndex.REPLICATION);
+        else if (levelClass.equals(ConfigNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.CONFIGNAME);
+        else if (levelClass.equals(RunNumberNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.RUNNUMBER);
+        else if (levelClass.equals(ConfigRunNumberNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.CONFIGNAME, DataTreeIndex.RUNNUMBER);
+        else if (levelClass.equals(FileNameNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.FILENAME);
+        else if (levelClass.equals(RunIdNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.RUNNAME);
+        else if (levelClass.equals(FileNameRunIdNode.class))
+            return index.groupByRunKeys(constraint, positions, DataTreeIndex.FILENAME, DataTreeIndex.RUNNAME);
+        else if (levelClass.equals(ModuleNameNode.class))
+            return index.groupByModuleNameSegment(constraint, positions, getModulePrefix(path, null));
+        else if (levelClass.equals(ModulePathNode.class))
+            return index.groupByModuleName(constraint, positions);
+        else if (levelClass.equals(ResultItemNode.class))
+            return index.groupByResultName(constraint, positions);
+        else
+            throw new IllegalArgumentException();
+    }
+
+    /**
+     * Creates the node of the given level for a group, from the labels returned by groupBy().
+     */
+    protected Node createGroupNode(Class<? extends Node> levelClass, String[] labels) {
+        if (levelClass.equals(ExperimentNode.class))
+            return new ExperimentNode(labels[0]);
+        else if (levelClass.equals(MeasurementNode.class))
+            return new MeasurementNode(labels[0]);
+        else if (levelClass.equals(ReplicationNode.class))
+            return new ReplicationNode(labels[0]);
+        else if (levelClass.equals(ExperimentMeasurementReplicationNode.class))
+            return new ExperimentMeasurementReplicationNode(labels[0], labels[1], labels[2]);
+        else if (levelClass.equals(ConfigNode.class))
+            return new ConfigNode(labels[0]);
+        else if (levelClass.equals(RunNumberNode.class))
+            return new RunNumberNode(labels[0]);
+        else if (levelClass.equals(ConfigRunNumberNode.class))
+            return new ConfigRunNumberNode(labels[0], labels[1]);
+        else if (levelClass.equals(FileNameNode.class))
+            return new FileNameNode(labels[0]);
+        else if (levelClass.equals(RunIdNode.class))
+            return new RunIdNode(labels[0]);
+        else if (levelClass.equals(FileNameRunIdNode.class))
+            return new FileNameRunIdNode(labels[0], labels[1]);
+        else if (levelClass.equals(ModuleNameNode.class))
+            return new ModuleNameNode(labels[0], Boolean.parseBoolean(labels[1]));
+        else if (levelClass.equals(ModulePathNode.class))
+            return new ModulePathNode(labels[0]);
+        else if (levelClass.equals(ResultItemNode.class))
+            return new ResultItemNode(manager, -1, labels[0]);
+        else
+            throw new IllegalArgumentException();
+    }
+
     protected String formatNumber(double d) {
         return ScaveUtil.formatNumber(d, getNumericPrecision());
     }
@@ -482,6 +537,10 @@ public class DataTreeContentProvider {
     protected static abstract class Node {
         public long[] ids;
 
+        // positions of the items in the DataTreeIndex, and the key of that set of items in its cache (or null)
+        int[] positions;
+        String constraint;
+
         public Node[] children;
 
         public String value = "";
@@ -0,0 +1,355 @@
+package org.omnetpp.scave.editors.datatable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.omnetpp.common.Debug;
+import org.omnetpp.common.util.StringUtils;
+import org.omnetpp.scave.engine.FileRun;
+import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engine.ResultItem;
+import org.omnetpp.scave.engine.RunAttribute;
+
+/**
+ * Columnar index of the result items of an IDList, used by DataTreeContentProvider
+ * to group items into tree nodes.
+ *
+ * The keys the tree levels group by (run attributes, file name, module name,
+ * result name) are extracted from the result file manager once, into int columns
+ * that refer to interned strings. Run-level keys are stored per FileRun, since all
+ * items of a FileRun share them. Grouping a set of items (given by their positions
+ * in the IDList) is then a counting sort over the int columns, in O(n) and without
+ * accessing the native objects.
+ *
+ * Groupings are cached by the set of constraints that select the items and the
+ * level they are grouped by, so they can be reused when nodes are re-expanded,
+ * and when the levels of the tree are reconfigured.
+ *
+ * Must be built with the read lock of the result file manager held. The index
+ * does not track changes in the manager or the IDList; a new one must be built.
+ */
+class DataTreeIndex {
+    private static boolean debug = false;
+
+    // run-level keys, indices into the arrays in fileRunKeys
+    public static final int EXPERIMENT = 0;
+    public static final int MEASUREMENT = 1;
+    public static final int REPLICATION = 2;
+    public static final int CONFIGNAME = 3;
+    public static final int RUNNUMBER = 4;
+    public static final int FILENAME = 5;
+    public static final int RUNNAME = 6;
+    private static final int NUM_RUN_KEYS = 7;
+
+    private long[] ids;
+    private int[] allPositions;
+
+    // columns, indexed by position
+    private int[] fileRunColumn;
+    private int[] moduleColumn;
+    private int[] nameColumn;
+
+    // dictionaries of the columns
+    private List<String[]> fileRunKeys = new ArrayList<String[]>();
+    private List<String> moduleNames = new ArrayList<String>();
+    private List<String> names = new ArrayList<String>();
+
+    // cached groupings, least recently used first
+    private LinkedHashMap<String,Grouping> groupingCache = new LinkedHashMap<String,Grouping>(16, 0.75f, true);
+    private long groupingCacheSize = 0; // number of positions in the cached groupings
+
+    /**
+     * The result of grouping a set of items. Groups are in the order of their
+     * first item, and the items within a group keep their original order.
+     */
+    public static class Grouping {
+        public int[][] positions; // items of the groups
+        public String[][] labels; // key values of the groups, e.g. {experiment, measurement, replication}
+        public String[] keys; // unique key of the groups, for use in constraints
+
+        int size() {
+            int size = 0;
+            for (int[] group : positions)
+                size += group.length;
+            return size;
+        }
+    }
+
+    /**
+     * Maps dictionary codes of a column (file runs, modules or names) to group
+     * codes; -1 means the item is not part of any group.
+     */
+    private static class GroupMapping {
+        int[] column;
+        int[] groupOfCode;
+        List<String[]> groupLabels = new ArrayList<String[]>();
+        Map<String,Integer> groupCodes = new HashMap<String,Integer>();
+
+        GroupMapping(int[] column, int numCodes) {
+            this.column = column;
+            this.groupOfCode = new int[numCodes];
+        }
+
+        void map(int code, String... labels) {
+            String key = StringUtils.join(labels, "\u0000");
+            Integer groupCode = groupCodes.get(key);
+            if (groupCode == null) {
+                groupCodes.put(key, groupCode = groupLabels.size());
+                groupLabels.add(labels);
+            }
+            groupOfCode[code] = groupCode;
+        }
+    }
+
+    public DataTreeIndex(ResultFileManager manager, IDList idList) {
+        long startTime = System.currentTimeMillis();
+        int n = idList.size();
+        ids = new long[n];
+        allPositions = new int[n];
+        fileRunColumn = new int[n];
+        moduleColumn = new int[n];
+        nameColumn = new int[n];
+
+        Map<FileRun,Integer> fileRunCodes = new HashMap<FileRun,Integer>();
+        Map<String,Integer> moduleCodes = new HashMap<String,Integer>();
+        Map<String,Integer> nameCodes = new HashMap<String,Integer>();
+
+        for (int i = 0; i < n; i++) {
+            long id = idList.get(i);
+            ids[i] = id;
+            allPositions[i] = i;
+            ResultItem item = manager.getItem(id);
+
+            FileRun fileRun = item.getFileRun();
+            Integer fileRunCode = fileRunCodes.get(fileRun);
+            if (fileRunCode == null) {
+                fileRunCodes.put(fileRun, fileRunCode = fileRunKeys.size());
+                fileRunKeys.add(extractRunKeys(manager, id, fileRun));
+            }
+            fileRunColumn[i] = fileRunCode;
+            moduleColumn[i] = intern(item.getModuleName(), moduleCodes, moduleNames);
+            nameColumn[i] = intern(item.getName(), nameCodes, names);
+        }
+
+        if (debug)
+            Debug.println("DataTreeIndex: indexed " + n + " items (" + fileRunKeys.size() + " file runs, " + moduleNames.size() + " modules, " + names.size() + " names) in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    private static String[] extractRunKeys(ResultFileManager manager, long id, FileRun fileRun) {
+        String[] keys = new String[NUM_RUN_KEYS];
+        keys[EXPERIMENT] = StringUtils.defaultString(manager.getRunAttribute(id, RunAttribute.EXPERIMENT), "?");
+        keys[MEASUREMENT] = StringUtils.defaultString(manager.getRunAttribute(id, RunAttribute.MEASUREMENT), "?");
+        keys[REPLICATION] = StringUtils.defaultString(manager.getRunAttribute(id, RunAttribute.REPLICATION), "?");
+        keys[CONFIGNAME] = StringUtils.defaultString(manager.getRunAttribute(id, RunAttribute.CONFIGNAME), "?");
+        keys[RUNNUMBER] = fileRun.getRun().getAttribute(RunAttribute.RUNNUMBER);
+        keys[FILENAME] = fileRun.getFile().getFileName();
+        keys[RUNNAME] = fileRun.getRun().getRunName();
+        return keys;
+    }
+
+    private static int intern(String value, Map<String,Integer> codes, List<String> values) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            codes.put(value, code = values.size());
+            values.add(value);
+        }
+        return code;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long getID(int position) {
+        return ids[position];
+    }
+
+    public long[] getIDs(int[] positions) {
+        long[] result = new long[positions.length];
+        for (int i = 0; i < positions.length; i++)
+            result[i] = ids[positions[i]];
+        return result;
+    }
+
+    /**
+     * Returns the positions of all items. The array must not be modified.
+     */
+    public int[] getAllPositions() {
+        return allPositions;
+    }
+
+    /**
+     * Groups the given items by the given run-level keys (see EXPERIMENT, etc.)
+     * The constraint identifies the set of items in the grouping cache; it must
+     * be the same for the same set. If it is null, the grouping is not cached.
+     */
+    public Grouping groupByRunKeys(String constraint, int[] positions, int... runKeys) {
+        String cacheKey = constraint == null ? null : constraint + "|run:" + Arrays.toString(runKeys);
+        Grouping grouping = getCachedGrouping(cacheKey);
+        if (grouping == null) {
+            GroupMapping mapping = new GroupMapping(fileRunColumn, fileRunKeys.size());
+            for (int code = 0; code < fileRunKeys.size(); code++) {
+                String[] keys = fileRunKeys.get(code);
+                String[] labels = new String[runKeys.length];
+                for (int i = 0; i < runKeys.length; i++)
+                    labels[i] = keys[runKeys[i]];
+                mapping.map(code, labels);
+            }
+            grouping = group(positions, mapping, "run:" + Arrays.toString(runKeys));
+            putCachedGrouping(cacheKey, grouping);
+        }
+        return grouping;
+    }
+
+    /**
+     * Groups the given items by their full module name.
+     */
+    public Grouping groupByModuleName(String constraint, int[] positions) {
+        String cacheKey = constraint == null ? null : constraint + "|module";
+        Grouping grouping = getCachedGrouping(cacheKey);
+        if (grouping == null) {
+            GroupMapping mapping = new GroupMapping(moduleColumn, moduleNames.size());
+            for (int code = 0; code < moduleNames.size(); code++)
+                mapping.map(code, moduleNames.get(code));
+            grouping = group(positions, mapping, "module");
+            putCachedGrouping(cacheKey, grouping);
+        }
+        return grouping;
+    }
+
+    /**
+     * Groups the given items by the next segment of their module name after
+     * modulePrefix, see DataTreeContentProvider.ModuleNameNode. Labels are
+     * {segment, leaf}, where leaf is "true" if the module name ends with the
+     * segment. Items whose module name does not start with the prefix are left out.
+     */
+    public Grouping groupByModuleNameSegment(String constraint, int[] positions, String modulePrefix) {
+        String cacheKey = constraint == null ? null : constraint + "|modulesegment:" + modulePrefix;
+        Grouping grouping = getCachedGrouping(cacheKey);
+        if (grouping == null) {
+            GroupMapping mapping = new GroupMapping(moduleColumn, moduleNames.size());
+            // group by segment only, but remember the leaf flag of each module so that
+            // the group can report that of its first item (like the tree did originally)
+            String[] leafOfModule = new String[moduleNames.size()];
+            for (int code = 0; code < moduleNames.size(); code++) {
+                String moduleName = moduleNames.get(code);
+                if (!moduleName.startsWith(modulePrefix))
+                    mapping.groupOfCode[code] = -1;
+                else {
+                    String remainingName = StringUtils.removeStart(StringUtils.removeStart(moduleName, modulePrefix), ".");
+                    String segment = StringUtils.substringBefore(remainingName, ".");
+                    mapping.map(code, StringUtils.isEmpty(segment) ? "." : segment);
+                    leafOfModule[code] = String.valueOf(!remainingName.contains("."));
+                }
+            }
+            grouping = group(positions, mapping, "modulesegment:" + modulePrefix);
+            for (int i = 0; i < grouping.labels.length; i++)
+                grouping.labels[i] = new String[] { grouping.labels[i][0], leafOfModule[moduleColumn[grouping.positions[i][0]]] };
+            putCachedGrouping(cacheKey, grouping);
+        }
+        return grouping;
+    }
+
+    /**
+     * Groups the given items by result name.
+     */
+    public Grouping groupByResultName(String constraint, int[] positions) {
+        String cacheKey = constraint == null ? null : constraint + "|name";
+        Grouping grouping = getCachedGrouping(cacheKey);
+        if (grouping == null) {
+            GroupMapping mapping = new GroupMapping(nameColumn, names.size());
+            for (int code = 0; code < names.size(); code++)
+                mapping.map(code, names.get(code));
+            grouping = group(positions, mapping, "name");
+            putCachedGrouping(cacheKey, grouping);
+        }
+        return grouping;
+    }
+
+    /**
+     * Creates a constraint string for the items of a group of the given grouping,
+     * within the set of items identified by parentConstraint. Constraints are
+     * kept sorted, so that the same set of items gets the same constraint
+     * regardless of the order of the tree levels that selected them.
+     */
+    public static String makeConstraint(String parentConstraint, Grouping grouping, int groupIndex) {
+        if (parentConstraint == null)
+            return null;
+        List<String> parts = new ArrayList<String>();
+        if (!parentConstraint.isEmpty())
+            for (String part : parentConstraint.split("\u0001"))
+                parts.add(part);
+        parts.add(grouping.keys[groupIndex]);
+        Collections.sort(parts);
+        return StringUtils.join(parts, "\u0001");
+    }
+
+    /**
+     * Partitions the given items according to the mapping (counting sort).
+     */
+    private Grouping group(int[] positions, GroupMapping mapping, String keyPrefix) {
+        int numGroups = mapping.groupLabels.size();
+        int[] column = mapping.column;
+        int[] groupOfCode = mapping.groupOfCode;
+
+        // count items per group, and record the order in which groups first occur
+        int[] counts = new int[numGroups];
+        int[] groupOrder = new int[numGroups];
+        int numGroupsSeen = 0;
+        for (int position : positions) {
+            int group = groupOfCode[column[position]];
+            if (group >= 0 && counts[group]++ == 0)
+                groupOrder[numGroupsSeen++] = group;
+        }
+
+        // distribute items
+        Grouping grouping = new Grouping();
+        grouping.positions = new int[numGroupsSeen][];
+        grouping.labels = new String[numGroupsSeen][];
+        grouping.keys = new String[numGroupsSeen];
+        int[] indexOfGroup = new int[numGroups];
+        for (int i = 0; i < numGroupsSeen; i++) {
+            int group = groupOrder[i];
+            indexOfGroup[group] = i;
+            grouping.positions[i] = new int[counts[group]];
+            grouping.labels[i] = mapping.groupLabels.get(group);
+            grouping.keys[i] = keyPrefix + "=" + StringUtils.join(grouping.labels[i], "\u0000");
+        }
+        int[] fill = new int[numGroups];
+        for (int position : positions) {
+            int group = groupOfCode[column[position]];
+            if (group >= 0)
+                grouping.positions[indexOfGroup[group]][fill[group]++] = position;
+        }
+        return grouping;
+    }
+
+    private Grouping getCachedGrouping(String key) {
+        return key == null ? null : groupingCache.get(key);
+    }
+
+    private void putCachedGrouping(String key, Grouping grouping) {
+        if (key == null)
+            return;
+        groupingCache.put(key, grouping);
+        groupingCacheSize += grouping.size();
+
+        // keep at most a few times the number of items
+        long limit = 8L * Math.max(ids.length, 1000);
+        Iterator<Grouping> it = groupingCache.values().iterator();
+        while (groupingCacheSize > limit && it.hasNext()) {
+            Grouping eldest = it.next();
+            if (eldest == grouping)
+                break;
+            groupingCacheSize -= eldest.size();
+            it.remove();
+        }
+    }
+}
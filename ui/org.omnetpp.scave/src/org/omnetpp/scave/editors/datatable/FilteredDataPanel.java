@@ -50,12 +50,19 @@ public class FilteredDataPanel extends Composite implements IHasFocusManager {
     private IDList idlist; // the unfiltered data list
     private ResultType type;
     private FocusManager focusManager;
+    private IDListSortFilterService filterService; // for filtering large lists in the background
+    private FilterHints filterHints; // hints for the unfiltered list, as passed to the filter panel
 
     public FilteredDataPanel(Composite parent, int style, ResultType type) {
         super(parent, style);
         this.type = type;
         initialize(type);
         configureFilterPanel();
+        filterService = new IDListSortFilterService(this);
+        addDisposeListener(e -> {
+            if (filterHints != null)
+                filterHints.dispose();
+        });
     }
 
     public FilteringPanel getFilterPanel() {
@@ -146,8 +153,12 @@ public class FilteredDataPanel extends Composite implements IHasFocusManager {
     }
 
     protected void updateFilterCombos() {
-        if (!filterPanel.isDisposed())
-            filterPanel.setFilterHints(getFilterHints());
+        if (!filterPanel.isDisposed()) {
+            if (filterHints != null)
+                filterHints.dispose();
+            filterHints = getFilterHints();
+            filterPanel.setFilterHints(filterHints);
+        }
     }
 
     protected void updateFilterCombosExcept(Combo except)
@@ -178,10 +189,28 @@ public class FilteredDataPanel extends Composite implements IHasFocusManager {
             return new FilterHints();
     }
 
+    /**
+     * Filters the list, and shows the result in the data control. Large lists
+     * are filtered in the background, and the control is updated when done.
+     */
     protected void runFilter() {
         Assert.isTrue(idlist!=null);
 
-        IDList filteredIDList = computeFilteredIDList(filterPanel.getFilterIfValid());
+        Filter filter = filterPanel.getFilterIfValid();
+        ResultFileManagerEx manager = data.getResultFileManager();
+        if (manager != null && filter != null && idlist.size() >= IDListSortFilterService.PARALLEL_THRESHOLD) {
+            filterService.filter(idlist, filter.getFilterPattern(), manager, (IDList filteredIDList) -> {
+                if (!isDisposed())
+                    setFilteredIDList(filteredIDList);
+            });
+        }
+        else {
+            filterService.cancel();
+            setFilteredIDList(computeFilteredIDList(filter));
+        }
+    }
+
+    protected void setFilteredIDList(IDList filteredIDList) {
         data.setIDList(filteredIDList);
 
         if (getParent() instanceof FilteredDataTabFolder)
@@ -26,6 +26,7 @@ import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Text;
 import org.omnetpp.common.contentassist.ContentAssistUtil;
 import org.omnetpp.common.ui.FilterCombo;
@@ -56,6 +57,7 @@ public class FilteringPanel extends Composite {
     private Composite advancedFilterPanel;
     private Text advancedFilterText;
     private FilterContentProposalProvider filterProposalProvider;
+    private FilterHints filterHints; // the last hints set; combos are filled from it asynchronously
 
     // Combo boxes for the "Simple" mode
     private Composite simpleFilterPanel;
@@ -117,13 +119,36 @@ public class FilteringPanel extends Composite {
         return toggleFilterTypeButton;
     }
 
-    public void setFilterHints(FilterHints hints) {
-        setFilterHints(experimentCombo, hints.getHints(EXPERIMENT));
-        setFilterHints(measurementCombo, hints.getHints(MEASUREMENT));
-        setFilterHints(replicationCombo, hints.getHints(REPLICATION));
-        setFilterHints(moduleCombo, hints.getHints(MODULE));
-        setFilterHints(nameCombo, hints.getHints(NAME));
+    /**
+     * Sets the hints for the combos and the content assist of the advanced filter.
+     * Hints for the combos are computed in the background, and filled in when ready;
+     * content assist queries the hints when invoked.
+     */
+    public void setFilterHints(final FilterHints hints) {
+        filterHints = hints;
         filterProposalProvider.setFilterHints(hints);
+        final FilterField[] comboFields = simpleFilterFields.toArray(new FilterField[simpleFilterFields.size()]);
+        final Display display = getDisplay();
+        hints.prefetch(comboFields, new Runnable() {
+            @Override
+            public void run() {
+                if (!display.isDisposed()) {
+                    display.asyncExec(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!isDisposed() && filterHints == hints) {
+                                for (FilterField field : comboFields) {
+                                    // don't wait in the UI thread if the hints were dropped meanwhile
+                                    String[] fieldHints = hints.getHintsIfReady(field);
+                                    if (fieldHints != null)
+                                        setFilterHints(getFilterCombo(field), fieldHints);
+                                }
+                            }
+                        }
+                    });
+                }
+            }
+        });
     }
 
     public void setFilterHintsOfCombos(FilterHints hints) {
@@ -0,0 +1,686 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.editors.datatable;
+
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_CONFIG;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_COUNT;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_DIRECTORY;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_EXPERIMENT;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_FILE;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_MAX;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_MAX_TIME;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_MEAN;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_MEASUREMENT;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_MIN;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_MIN_TIME;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_MODULE;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_NAME;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_REPLICATION;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_RUNNUMBER;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_RUN_ID;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_STDDEV;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_VALUE;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_VARIANCE;
+import static org.omnetpp.scave.editors.datatable.DataTable.COL_VECTOR_ID;
+import static org.omnetpp.scave.engine.RunAttribute.CONFIGNAME;
+import static org.omnetpp.scave.engine.RunAttribute.EXPERIMENT;
+import static org.omnetpp.scave.engine.RunAttribute.MEASUREMENT;
+import static org.omnetpp.scave.engine.RunAttribute.REPLICATION;
+import static org.omnetpp.scave.engine.RunAttribute.RUNNUMBER;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.omnetpp.common.Debug;
+import org.omnetpp.common.engine.BigDecimal;
+import org.omnetpp.common.util.StringUtils;
+import org.omnetpp.scave.ScavePlugin;
+import org.omnetpp.scave.editors.datatable.DataTable.Column;
+import org.omnetpp.scave.engine.FileRun;
+import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.InterruptedFlag;
+import org.omnetpp.scave.engine.ParameterResult;
+import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engine.ResultItem;
+import org.omnetpp.scave.engine.ScalarResult;
+import org.omnetpp.scave.engine.Statistics;
+import org.omnetpp.scave.engine.StatisticsResult;
+import org.omnetpp.scave.engine.VectorResult;
+import org.omnetpp.scave.engineext.IResultFilesChangeListener;
+import org.omnetpp.scave.engineext.ResultFileManagerEx;
+import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
+import org.omnetpp.scave.model.ResultType;
+
+/**
+ * Sorts and filters large IDLists for the Browse Data page on background threads,
+ * so that clicking a column header or editing the filter does not block the UI.
+ *
+ * The list is cut into chunks that are processed in parallel in a fork-join pool.
+ * Filtering runs the filter expression on each chunk, and concatenates the results.
+ * Sorting extracts the sort keys of each chunk, sorts the chunks, and combines them
+ * with a k-way merge. Small lists are sorted with sortNow() on the calling thread,
+ * which produces the same order: the sort is stable; string keys are ordered with
+ * StringUtils.dictionaryCompare(); missing values (NaN, or items that have no such
+ * field, e.g. statistics without a histogram in a mixed list) are ordered after all
+ * other values, i.e. last when ascending and first when descending.
+ *
+ * Extracted keys are cached per column (for the most recently sorted columns),
+ * so reversing the sort order, or re-sorting after the filter has changed, does
+ * not need to access the result items again. The cache is dropped when the
+ * result files change.
+ *
+ * Each instance serves one control: a new request supersedes (cancels) the
+ * previous one, and only the result of the last request is delivered, via the
+ * callback, on the UI thread. All methods must be called on the UI thread.
+ */
+public class IDListSortFilterService {
+    public static final int PARALLEL_THRESHOLD = 50000; // smaller lists should be sorted/filtered synchronously
+    private static final int MIN_CHUNK_SIZE = 8192;
+    private static final int MAX_CACHED_COLUMNS = 2;
+
+    private static final boolean debug = Debug.isChannelEnabled("idlistsortfilter");
+
+    private static ForkJoinPool pool;
+
+    private Display display;
+    private Request currentRequest; // the last request, or null
+    private ResultFileManagerEx cachedManager; // the manager the cached keys are from
+    private Map<Column,ColumnKeys> keyCache = new LinkedHashMap<>(16, 0.75f, true); // guarded by "this"
+    private IResultFilesChangeListener changeListener = (ResultFileManagerChangeEvent event) -> clearKeyCache();
+
+    /**
+     * A sort or filter operation in progress.
+     */
+    private static class Request {
+        volatile boolean cancelled = false;
+        final InterruptedFlag interruptedFlag = new InterruptedFlag(); // for the native filter
+
+        void cancel() {
+            cancelled = true;
+            interruptedFlag.setFlag(true);
+        }
+
+        void checkCancelled() {
+            if (cancelled)
+                throw new CancelledException();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class CancelledException extends RuntimeException {
+    }
+
+    /**
+     * Sort keys of the items of an IDList, extracted for a column. Keys can be looked up
+     * by ID; the IDs are stored in increasing order, and the keys in the same order.
+     */
+    private static class ColumnKeys {
+        final long[] sortedIds;
+        final double[] numericKeys; // for numeric columns
+        final String[] stringKeys; // for string columns
+
+        /**
+         * Takes the IDs and keys in IDList order, and reorders them. (IDs in an IDList are unique.)
+         */
+        ColumnKeys(long[] ids, double[] numericKeys, String[] stringKeys, int[] bounds) {
+            sortedIds = ids.clone();
+            Arrays.parallelSort(sortedIds);
+            this.numericKeys = numericKeys == null ? null : new double[ids.length];
+            this.stringKeys = stringKeys == null ? null : new String[ids.length];
+            forEachChunk(bounds, (Integer chunk) -> {
+                for (int i = bounds[chunk]; i < bounds[chunk+1]; i++) {
+                    int index = Arrays.binarySearch(sortedIds, ids[i]);
+                    if (numericKeys != null)
+                        this.numericKeys[index] = numericKeys[i];
+                    else
+                        this.stringKeys[index] = stringKeys[i];
+                }
+            });
+        }
+
+        int indexOf(long id) {
+            int index = Arrays.binarySearch(sortedIds, id);
+            return index >= 0 ? index : -1;
+        }
+    }
+
+    public IDListSortFilterService(Control control) {
+        this.display = control.getDisplay();
+        control.addDisposeListener(e -> dispose());
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            // leave one core for the UI thread
+            int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            pool = new ForkJoinPool(parallelism, (ForkJoinPool p) -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("IDList sort/filter " + thread.getPoolIndex());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+
+    /**
+     * Returns true if IDLists of the given result type can be sorted by the column.
+     * (For the other columns, sorting leaves the order unchanged.)
+     */
+    public static boolean isSortable(Column column, ResultType type) {
+        return isStringColumn(column, type) || isNumericColumn(column, type);
+    }
+
+    private static boolean isStringColumn(Column column, ResultType type) {
+        return COL_DIRECTORY.equals(column) || COL_FILE.equals(column) || COL_RUN_ID.equals(column) ||
+                COL_CONFIG.equals(column) || COL_RUNNUMBER.equals(column) || COL_EXPERIMENT.equals(column) ||
+                COL_MEASUREMENT.equals(column) || COL_REPLICATION.equals(column) ||
+                COL_MODULE.equals(column) || COL_NAME.equals(column) ||
+                (COL_VALUE.equals(column) && type == ResultType.PARAMETER);
+    }
+
+    private static boolean isNumericColumn(Column column, ResultType type) {
+        return (COL_VALUE.equals(column) && type == ResultType.SCALAR) ||
+                COL_COUNT.equals(column) || COL_MEAN.equals(column) || COL_STDDEV.equals(column) ||
+                COL_VARIANCE.equals(column) || COL_MIN.equals(column) || COL_MAX.equals(column) ||
+                (type == ResultType.VECTOR && (COL_VECTOR_ID.equals(column) || COL_MIN_TIME.equals(column) || COL_MAX_TIME.equals(column)));
+    }
+
+    /**
+     * Starts sorting the IDList by the given column, and cancels the previous
+     * request. The sorted list (a new IDList) will be passed to the callback on the
+     * UI thread, unless the request gets superseded or cancelled. The IDList must
+     * not be modified until then.
+     */
+    public void sort(IDList idList, Column column, ResultType type, boolean ascending, ResultFileManagerEx manager, Consumer<IDList> callback) {
+        Request request = newRequest(manager);
+        getPool().execute(() -> run(request, "sorting", () -> doSort(request, idList, column, type, ascending, manager), callback));
+    }
+
+    /**
+     * Starts filtering the IDList with the given filter expression, and cancels the
+     * previous request. The result, in the original order, will be passed to the
+     * callback on the UI thread, unless the request gets superseded or cancelled.
+     * The IDList must not be modified until then.
+     */
+    public void filter(IDList idList, String filterPattern, ResultFileManagerEx manager, Consumer<IDList> callback) {
+        Request request = newRequest(manager);
+        getPool().execute(() -> run(request, "filtering", () -> doFilter(request, idList, filterPattern, manager), callback));
+    }
+
+    /**
+     * Cancels the request in progress, if any.
+     */
+    public void cancel() {
+        if (currentRequest != null) {
+            currentRequest.cancel();
+            currentRequest = null;
+        }
+    }
+
+    /**
+     * Returns true if there is a request in progress.
+     */
+    public boolean isBusy() {
+        return currentRequest != null;
+    }
+
+    public void dispose() {
+        cancel();
+        setCachedManager(null);
+    }
+
+    private Request newRequest(ResultFileManagerEx manager) {
+        cancel();
+        setCachedManager(manager);
+        currentRequest = new Request();
+        return currentRequest;
+    }
+
+    private void setCachedManager(ResultFileManagerEx manager) {
+        if (manager != cachedManager) {
+            if (cachedManager != null && !cachedManager.isDisposed())
+                cachedManager.removeChangeListener(changeListener);
+            clearKeyCache();
+            cachedManager = manager;
+            if (cachedManager != null)
+                cachedManager.addChangeListener(changeListener);
+        }
+    }
+
+    private synchronized void clearKeyCache() {
+        keyCache.clear();
+    }
+
+    private interface Operation {
+        IDList run();
+    }
+
+    /**
+     * Runs the operation on a worker thread, and hands over its result to the UI thread.
+     */
+    private void run(Request request, String what, Operation operation, Consumer<IDList> callback) {
+        long startTime = System.currentTimeMillis();
+        IDList result;
+        try {
+            request.checkCancelled();
+            result = operation.run();
+        }
+        catch (CancelledException e) {
+            return;
+        }
+        catch (RuntimeException e) {
+            if (!request.cancelled) // if it was cancelled, the filter may have been interrupted, or files unloaded
+                ScavePlugin.logError("Error " + what + " results", e);
+            return;
+        }
+        if (debug)
+            Debug.println("IDListSortFilterService: " + what + " " + (request.cancelled ? "cancelled" : "done") + " in " + (System.currentTimeMillis() - startTime) + "ms");
+        if (!display.isDisposed()) {
+            display.asyncExec(() -> {
+                if (request == currentRequest) {
+                    currentRequest = null;
+                    callback.accept(result);
+                }
+            });
+        }
+    }
+
+    /**
+     * Splits [0,n) into ranges that can be processed in parallel. Returns the
+     * boundaries: range i is [result[i], result[i+1]).
+     */
+    private static int[] makeChunks(int n) {
+        int numChunks = Math.max(1, Math.min(getPool().getParallelism() * 4, n / MIN_CHUNK_SIZE));
+        int[] bounds = new int[numChunks + 1];
+        for (int i = 0; i <= numChunks; i++)
+            bounds[i] = (int)((long)n * i / numChunks);
+        return bounds;
+    }
+
+    /**
+     * Runs body(i) for each chunk in parallel, and waits for all of them to finish,
+     * even if some of them fail, so that no chunk is still accessing the IDList when
+     * this method returns. The first exception is rethrown afterwards. Must be called
+     * from a thread of the pool.
+     */
+    private static void forEachChunk(int[] bounds, Consumer<Integer> body) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < bounds.length - 1; i++) {
+            final int chunk = i;
+            tasks.add(ForkJoinTask.adapt(() -> body.accept(chunk)).fork());
+        }
+        Throwable exception = null;
+        for (ForkJoinTask<?> task : tasks) {
+            task.quietlyJoin();
+            if (exception == null && task.isCompletedAbnormally())
+                exception = task.getException();
+        }
+        if (exception instanceof RuntimeException)
+            throw (RuntimeException)exception;
+        if (exception instanceof Error)
+            throw (Error)exception;
+    }
+
+    private static IDList doFilter(Request request, IDList idList, String filterPattern, ResultFileManagerEx manager) {
+        int n = idList.size();
+        int[] bounds = makeChunks(n);
+        int[][] matchingPositions = new int[bounds.length - 1][];
+
+        forEachChunk(bounds, (Integer chunk) -> {
+            int start = bounds[chunk], end = bounds[chunk+1];
+            int[] indices = new int[end - start];
+            for (int i = 0; i < indices.length; i++)
+                indices[i] = start + i;
+            IDList chunkIDs = idList.getSubsetByIndices(indices);
+            IDList matching = null;
+            try {
+                matching = manager.filterIDList(chunkIDs, filterPattern, request.interruptedFlag);
+                request.checkCancelled();
+
+                // the filter keeps the order of the items, so we can find their positions by scanning both lists
+                int numMatching = matching.size();
+                int[] positions = new int[numMatching];
+                for (int i = 0, j = 0; i < numMatching; i++, j++) {
+                    long id = matching.get(i);
+                    while (chunkIDs.get(j) != id)
+                        j++;
+                    positions[i] = start + j;
+                }
+                matchingPositions[chunk] = positions;
+            }
+            finally {
+                // free the native lists also when cancelled
+                chunkIDs.delete();
+                if (matching != null)
+                    matching.delete();
+            }
+        });
+        request.checkCancelled();
+
+        int total = 0;
+        for (int[] positions : matchingPositions)
+            total += positions.length;
+        int[] allPositions = new int[total];
+        int k = 0;
+        for (int[] positions : matchingPositions) {
+            System.arraycopy(positions, 0, allPositions, k, positions.length);
+            k += positions.length;
+        }
+        return idList.getSubsetByIndices(allPositions);
+    }
+
+    /**
+     * Sorts the IDList by the given column on the calling thread, and returns the result
+     * as a new IDList. The order is the same as the one produced by sort(). Meant for
+     * lists below PARALLEL_THRESHOLD.
+     */
+    public static IDList sortNow(IDList idList, Column column, ResultType type, boolean ascending, ResultFileManagerEx manager) {
+        boolean isString = isStringColumn(column, type);
+        if (!isString && !isNumericColumn(column, type))
+            return idList.dup();
+
+        int n = idList.size();
+        double[] numericKeys = isString ? null : new double[n];
+        String[] stringKeys = isString ? new String[n] : null;
+        Request request = new Request(); // never cancelled
+        extractKeys(request, idList, 0, n, column, isString, manager, null, new long[n], numericKeys, stringKeys);
+
+        double[] keys = isString ? rankStrings(stringKeys) : numericKeys;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        mergeSort(order, 0, n, keys, ascending, request);
+        return idList.getSubsetByIndices(order);
+    }
+
+    private IDList doSort(Request request, IDList idList, Column column, ResultType type, boolean ascending, ResultFileManagerEx manager) {
+        int n = idList.size();
+        int[] bounds = makeChunks(n);
+        boolean isString = isStringColumn(column, type);
+        if (!isString && !isNumericColumn(column, type))
+            return idList.dup();
+
+        long[] ids = new long[n];
+        double[] numericKeys = isString ? null : new double[n];
+        String[] stringKeys = isString ? new String[n] : null;
+        ColumnKeys cachedKeys;
+        synchronized (this) {
+            cachedKeys = keyCache.get(column);
+        }
+
+        // extract the keys, or look them up in the cache
+        forEachChunk(bounds, (Integer chunk) ->
+            extractKeys(request, idList, bounds[chunk], bounds[chunk+1], column, isString, manager, cachedKeys, ids, numericKeys, stringKeys));
+        request.checkCancelled();
+
+        ColumnKeys newKeys = new ColumnKeys(ids, numericKeys, stringKeys, bounds);
+        synchronized (this) {
+            keyCache.put(column, newKeys);
+            for (Iterator<Column> it = keyCache.keySet().iterator(); keyCache.size() > MAX_CACHED_COLUMNS; ) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        // sort: replace strings with their ranks, so that all keys can be compared as numbers
+        double[] keys = isString ? rankStrings(stringKeys) : numericKeys;
+        request.checkCancelled();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        forEachChunk(bounds, (Integer chunk) -> mergeSort(order, bounds[chunk], bounds[chunk+1], keys, ascending, request));
+        request.checkCancelled();
+        int[] sortedOrder = mergeChunks(order, bounds, keys, ascending);
+        request.checkCancelled();
+
+        return idList.getSubsetByIndices(sortedOrder);
+    }
+
+    /**
+     * Fills in ids[], and numericKeys[] or stringKeys[] for the positions [from,to) of the IDList,
+     * taking the keys from cachedKeys (may be null) if possible.
+     */
+    private static void extractKeys(Request request, IDList idList, int from, int to, Column column, boolean isString, ResultFileManagerEx manager,
+            ColumnKeys cachedKeys, long[] ids, double[] numericKeys, String[] stringKeys) {
+        ResultFileManager.callWithReadLock(manager, () -> {
+            Map<FileRun,String> fileRunKeys = new HashMap<>(); // for string keys that depend on the run or file only
+            for (int i = from; i < to; i++) {
+                if ((i & 1023) == 0)
+                    request.checkCancelled();
+                long id = ids[i] = idList.get(i);
+                int cachedIndex = cachedKeys == null ? -1 : cachedKeys.indexOf(id);
+                if (isString)
+                    stringKeys[i] = cachedIndex != -1 ? cachedKeys.stringKeys[cachedIndex] : getStringKey(manager.getItem(id), column, fileRunKeys);
+                else
+                    numericKeys[i] = cachedIndex != -1 ? cachedKeys.numericKeys[cachedIndex] : getNumericKey(manager.getItem(id), column);
+            }
+            return null;
+        });
+    }
+
+    private static String getStringKey(ResultItem item, Column column, Map<FileRun,String> fileRunKeys) {
+        if (COL_MODULE.equals(column))
+            return item.getModuleName();
+        else if (COL_NAME.equals(column))
+            return item.getName();
+        else if (COL_VALUE.equals(column))
+            return item instanceof ParameterResult ? ((ParameterResult)item).getValue() : null;
+
+        // the rest only depend on the file and run
+        FileRun fileRun = item.getFileRun();
+        if (fileRunKeys.containsKey(fileRun))
+            return fileRunKeys.get(fileRun);
+        String key;
+        if (COL_DIRECTORY.equals(column))
+            key = fileRun.getFile().getDirectory();
+        else if (COL_FILE.equals(column))
+            key = fileRun.getFile().getFileName();
+        else if (COL_RUN_ID.equals(column))
+            key = fileRun.getRun().getRunName();
+        else if (COL_CONFIG.equals(column))
+            key = fileRun.getRun().getAttribute(CONFIGNAME);
+        else if (COL_RUNNUMBER.equals(column))
+            key = fileRun.getRun().getAttribute(RUNNUMBER);
+        else if (COL_EXPERIMENT.equals(column))
+            key = fileRun.getRun().getAttribute(EXPERIMENT);
+        else if (COL_MEASUREMENT.equals(column))
+            key = fileRun.getRun().getAttribute(MEASUREMENT);
+        else if (COL_REPLICATION.equals(column))
+            key = fileRun.getRun().getAttribute(REPLICATION);
+        else
+            key = null;
+        fileRunKeys.put(fileRun, key);
+        return key;
+    }
+
+    private static double getNumericKey(ResultItem item, Column column) {
+        if (COL_VALUE.equals(column))
+            return item instanceof ScalarResult ? ((ScalarResult)item).getValue() : Double.NaN;
+
+        if (item instanceof VectorResult) {
+            VectorResult vector = (VectorResult)item;
+            if (COL_VECTOR_ID.equals(column))
+                return vector.getVectorId();
+            else if (COL_MIN_TIME.equals(column))
+                return toDouble(vector.getStartTime());
+            else if (COL_MAX_TIME.equals(column))
+                return toDouble(vector.getEndTime());
+        }
+
+        Statistics stats;
+        if (item instanceof VectorResult)
+            stats = ((VectorResult)item).getStatistics();
+        else if (item instanceof StatisticsResult)
+            stats = ((StatisticsResult)item).getStatistics();
+        else
+            return Double.NaN;
+
+        if (COL_COUNT.equals(column))
+            return stats.getCount();
+        else if (COL_MEAN.equals(column))
+            return stats.getMean();
+        else if (COL_STDDEV.equals(column))
+            return stats.getStddev();
+        else if (COL_VARIANCE.equals(column))
+            return stats.getVariance();
+        else if (COL_MIN.equals(column))
+            return stats.getMin();
+        else if (COL_MAX.equals(column))
+            return stats.getMax();
+        else
+            return Double.NaN;
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value == null ? Double.NaN : value.dbl();
+    }
+
+    /**
+     * Returns the rank of each string among the distinct values, in dictionary order.
+     * Nulls (missing values) are ranked last.
+     */
+    private static double[] rankStrings(String[] strings) {
+        Map<String,Integer> ranks = new HashMap<>();
+        for (String s : strings)
+            if (s != null)
+                ranks.put(s, 0);
+        String[] distinct = ranks.keySet().toArray(new String[ranks.size()]);
+        Arrays.parallelSort(distinct, StringUtils.dictionaryComparator);
+        for (int i = 0; i < distinct.length; i++)
+            ranks.put(distinct[i], i);
+
+        double[] result = new double[strings.length];
+        for (int i = 0; i < strings.length; i++)
+            result[i] = strings[i] == null ? distinct.length : ranks.get(strings[i]);
+        return result;
+    }
+
+    /**
+     * The order of the sort. Double.compare() orders NaN after all other values (and
+     * rankStrings() ranks nulls last); ties are broken by the original position.
+     */
+    private static int compare(int a, int b, double[] keys, boolean ascending) {
+        int c = ascending ? Double.compare(keys[a], keys[b]) : Double.compare(keys[b], keys[a]);
+        return c != 0 ? c : Integer.compare(a, b); // stable
+    }
+
+    /**
+     * Sorts order[from..to) by the keys, with a bottom-up merge sort.
+     */
+    private static void mergeSort(int[] order, int from, int to, double[] keys, boolean ascending, Request request) {
+        final int RUN_LENGTH = 32;
+
+        // insertion sort for short runs
+        for (int runStart = from; runStart < to; runStart += RUN_LENGTH) {
+            int runEnd = Math.min(runStart + RUN_LENGTH, to);
+            for (int i = runStart + 1; i < runEnd; i++) {
+                int x = order[i];
+                int j = i - 1;
+                while (j >= runStart && compare(order[j], x, keys, ascending) > 0) {
+                    order[j+1] = order[j];
+                    j--;
+                }
+                order[j+1] = x;
+            }
+        }
+
+        // merge runs of doubling lengths, alternating between the two arrays
+        int[] src = order, dest = new int[to - from];
+        int offset = from; // where the range starts in src
+        int destOffset = 0;
+        for (int width = RUN_LENGTH; width < to - from; width *= 2) {
+            request.checkCancelled();
+            for (int left = 0; left < to - from; left += 2 * width) {
+                int mid = Math.min(left + width, to - from), right = Math.min(left + 2 * width, to - from);
+                int i = left, j = mid, k = left;
+                while (i < mid && j < right)
+                    dest[destOffset + k++] = compare(src[offset + i], src[offset + j], keys, ascending) <= 0 ? src[offset + i++] : src[offset + j++];
+                while (i < mid)
+                    dest[destOffset + k++] = src[offset + i++];
+                while (j < right)
+                    dest[destOffset + k++] = src[offset + j++];
+            }
+            int[] tmp = src; src = dest; dest = tmp;
+            int tmpOffset = offset; offset = destOffset; destOffset = tmpOffset;
+        }
+        if (src != order)
+            System.arraycopy(src, offset, order, from, to - from);
+    }
+
+    /**
+     * Merges the sorted chunks of the array (see makeChunks()) into a new one,
+     * using a binary heap of the chunk heads.
+     */
+    private static int[] mergeChunks(int[] order, int[] bounds, double[] keys, boolean ascending) {
+        int numChunks = bounds.length - 1;
+        if (numChunks == 1)
+            return order;
+
+        int[] heads = Arrays.copyOf(bounds, numChunks); // next position in each chunk
+        int[] heap = new int[numChunks]; // chunk indices
+        int heapSize = 0;
+        for (int chunk = 0; chunk < numChunks; chunk++)
+            if (heads[chunk] < bounds[chunk+1])
+                heapSize = heapPush(heap, heapSize, chunk, heads, order, keys, ascending);
+
+        int[] result = new int[order.length];
+        for (int k = 0; heapSize > 0; k++) {
+            int chunk = heap[0];
+            result[k] = order[heads[chunk]++];
+            if (heads[chunk] < bounds[chunk+1])
+                siftDown(heap, heapSize, 0, heads, order, keys, ascending);
+            else {
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, 0, heads, order, keys, ascending);
+            }
+        }
+        return result;
+    }
+
+    // since positions are unique, comparing chunk heads with compare() also keeps the merge stable
+    private static boolean heapLess(int chunkA, int chunkB, int[] heads, int[] order, double[] keys, boolean ascending) {
+        return compare(order[heads[chunkA]], order[heads[chunkB]], keys, ascending) < 0;
+    }
+
+    private static int heapPush(int[] heap, int heapSize, int chunk, int[] heads, int[] order, double[] keys, boolean ascending) {
+        int i = heapSize;
+        heap[i] = chunk;
+        while (i > 0 && heapLess(heap[i], heap[(i-1)/2], heads, order, keys, ascending)) {
+            int parent = (i-1)/2;
+            int tmp = heap[i]; heap[i] = heap[parent]; heap[parent] = tmp;
+            i = parent;
+        }
+        return heapSize + 1;
+    }
+
+    private static void siftDown(int[] heap, int heapSize, int i, int[] heads, int[] order, double[] keys, boolean ascending) {
+        while (true) {
+            int smallest = i, left = 2*i + 1, right = 2*i + 2;
+            if (left < heapSize && heapLess(heap[left], heap[smallest], heads, order, keys, ascending))
+                smallest = left;
+            if (right < heapSize && heapLess(heap[right], heap[smallest], heads, order, keys, ascending))
+                smallest = right;
+            if (smallest == i)
+                return;
+            int tmp = heap[i]; heap[i] = heap[smallest]; heap[smallest] = tmp;
+            i = smallest;
+        }
+    }
+}
@@ -44,6 +44,10 @@ public class ChartExport {
 
     private static final String CONSOLE_MARKER_ATTRIBUTE_KEY = "FOR_CHART_EXPORT";
 
+    // shared by all export jobs, so that processes are started ahead of time instead of once per chart
+    private static PythonProcessPool processPool = null;
+    private static int numConcurrentProcessesRequested = 0;
+
     private static class Context {
         public Context(Map<String, String> extraProperties, File chartsDir, ResultFileManager manager, boolean stopOnError, int numConcurrentProcesses) {
             this.extraProperties = extraProperties;
@@ -75,9 +79,7 @@ public class ChartExport {
                 ResultFileManager.callWithReadLock(context.manager, new Callable<Object>() {
                     @Override
                     public Object call() throws Exception {
-                        PythonProcessPool processPool = new PythonProcessPool(1);
-                        processPool.setShouldSetOmnetppMplBackend(false);
-                        runChartScript(chart, processPool, context, monitor);
+                        runChartScript(chart, getProcessPool(), context, monitor);
                         return null;
                     }
                 });
@@ -110,6 +112,7 @@ public class ChartExport {
                     return numberOfCanceledJobs > 0 || (context.stopOnError && numberOfFailedJobs > 0);
                 }
             };
+            reserveProcesses(context.numConcurrentProcesses);
             for (Chart chart : charts) {
                 Job job1 = new ChartExportJob(chart, context);
                 job1.setJobGroup(jobGroup);
@@ -125,11 +128,55 @@ public class ChartExport {
                 jobGroup.cancel();
                 return Status.CANCEL_STATUS;
             }
+            finally {
+                releaseProcesses(context.numConcurrentProcesses);
+            }
             return Status.OK_STATUS;
         }
 
     };
 
+    /**
+     * Returns the process pool used by chart export jobs. It keeps no process
+     * alive while no batch export is running, and as many ready as the running
+     * batch exports need otherwise.
+     */
+    public static synchronized PythonProcessPool getProcessPool() {
+        if (processPool == null) {
+            processPool = new PythonProcessPool(0, 1);
+            processPool.setShouldSetOmnetppMplBackend(false);
+            processPool.setPreloadedModules("omnetpp.scave.utils", "omnetpp.scave.vectorops");
+        }
+        return processPool;
+    }
+
+    private static synchronized void reserveProcesses(int numProcesses) {
+        numConcurrentProcessesRequested += numProcesses;
+        updateProcessPoolSize();
+    }
+
+    private static synchronized void releaseProcesses(int numProcesses) {
+        numConcurrentProcessesRequested -= numProcesses;
+        updateProcessPoolSize();
+        if (PythonProcess.debug)
+            Debug.println("Chart export process pool: " + processPool.getStatistics());
+    }
+
+    private static synchronized void updateProcessPoolSize() {
+        int size = numConcurrentProcessesRequested;
+        getProcessPool().setSize(size, Math.max(1, size)); // releasing the last reservation kills the ready processes
+    }
+
+    /**
+     * Kills the processes of the export process pool. To be called on plugin shutdown.
+     */
+    public static synchronized void disposeProcessPool() {
+        if (processPool != null) {
+            processPool.dispose();
+            processPool = null;
+        }
+    }
+
     protected static void startExportJob(Chart chart, Context context) {
         chart = (Chart)chart.dup(); // since job runs in another thread, and we don't want locking
         Job job = new ChartExportJob(chart, context);
@@ -259,7 +306,6 @@ public class ChartExport {
         }
 
         proc.kill();
-        processPool.dispose();
     }
 
 }
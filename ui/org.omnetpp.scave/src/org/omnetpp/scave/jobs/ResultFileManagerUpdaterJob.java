@@ -6,15 +6,24 @@ import static org.omnetpp.scave.common.ScaveMarkers.setMarker;
 import static org.omnetpp.scave.engineext.IndexFileUtils.isIndexFileUpToDate;
 import static org.omnetpp.scave.engineext.IndexFileUtils.isExistingVectorFile;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
@@ -28,6 +37,16 @@ import org.omnetpp.scave.engine.ResultFileManager;
 import org.omnetpp.scave.engineext.IndexFileUtils;
 import org.omnetpp.scave.engineext.ResultFileFormatException;
 
+/**
+ * Loads and unloads result files into/from a ResultFileManager in the background.
+ * Vector files whose index is missing or out of date are indexed first.
+ *
+ * When the parallelism is greater than one, consecutive load requests are
+ * processed by a pool of worker threads: indexing, which is the expensive part
+ * for vector files, runs concurrently for different files. Each file is processed
+ * under its own scheduling rule. Loading the files into the ResultFileManager
+ * is serialized by the manager's write lock.
+ */
 public class ResultFileManagerUpdaterJob extends Job {
 
     private static final boolean debug = true;
@@ -49,12 +68,25 @@ public class ResultFileManagerUpdaterJob extends Job {
 
     private ResultFileManager manager;
     private Queue<Task> tasks = new ConcurrentLinkedQueue<Task>();
+    private int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), 8);
 
     public ResultFileManagerUpdaterJob(ResultFileManager manager) {
         super("Loading files");
         this.manager = manager;
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of files that may be indexed and loaded concurrently.
+     * With 1, files are processed one by one, in the job's own thread.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
     public void load(IFile file) {
         tasks.offer(new Task(Operation.Load, file));
         if (getState() == NONE)
@@ -77,6 +109,16 @@ public class ResultFileManagerUpdaterJob extends Job {
 //              if (isInterrupted())
 //                  break;
 
+                if (parallelism > 1 && task.operation == Operation.Load) {
+                    // process consecutive load requests in parallel
+                    List<IFile> files = new ArrayList<IFile>();
+                    while ((task = tasks.peek()) != null && task.operation == Operation.Load)
+                        files.add(tasks.poll().file);
+                    if (!loadInParallel(files, monitor))
+                        return Status.CANCEL_STATUS;
+                    continue;
+                }
+
                 task = tasks.poll();
                 IFile file = task.file;
                 ISchedulingRule rule = getSchedulingRuleFor(file);
@@ -138,6 +180,98 @@ public class ResultFileManagerUpdaterJob extends Job {
         }
     }
 
+    /**
+     * Indexes (if needed) and loads the given files using a pool of worker threads.
+     * Returns false if the operation was canceled; files not yet processed at that
+     * time are skipped.
+     */
+    protected boolean loadInParallel(List<IFile> files, final IProgressMonitor monitor) {
+        int numThreads = Math.min(parallelism, files.size());
+        if (debug) Debug.format("loading %d files using %d threads%n", files.size(), numThreads);
+
+        SubMonitor progress = SubMonitor.convert(monitor, "Loading " + files.size() + " files", files.size());
+        ExecutorService executor = WorkerThreads.createThreadPool(numThreads, "Result file loader");
+        List<Future<IFile>> futures = new ArrayList<Future<IFile>>();
+        try {
+            CompletionService<IFile> completionService = new ExecutorCompletionService<IFile>(executor);
+            for (final IFile file : files) {
+                futures.add(completionService.submit(new Callable<IFile>() {
+                    public IFile call() throws Exception {
+                        if (!monitor.isCanceled())
+                            indexAndLoad(file, monitor);
+                        return file;
+                    }
+                }));
+            }
+
+            for (int i = 0; i < files.size(); i++) {
+                while (completionService.poll(100, TimeUnit.MILLISECONDS) == null) {
+                    if (monitor.isCanceled())
+                        return false;
+                }
+                progress.subTask("Loaded " + (i+1) + " of " + files.size() + " files");
+                progress.worked(1);
+            }
+            return !monitor.isCanceled();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        finally {
+            // workers that are already indexing or loading a file stop at their next
+            // cancellation check; wait for them, so they do not hold scheduling rules
+            // or modify the manager after this job has finished
+            WorkerThreads.cancelAndAwaitTermination(executor, futures);
+        }
+    }
+
+    /**
+     * The worker thread counterpart of doLoad(): performs indexing in the calling
+     * thread instead of in a separate job, and holds the scheduling rule of the file
+     * throughout. The manager is not locked during indexing, only by loadFile()
+     * itself, so workers only wait for each other while actually loading.
+     */
+    private void indexAndLoad(final IFile file, final IProgressMonitor monitor) {
+        ISchedulingRule rule = getSchedulingRuleFor(file);
+        try {
+            Job.getJobManager().beginRule(rule, null);
+            if (!file.getLocation().toFile().exists())
+                return;
+
+            if (isExistingVectorFile(file) && !isIndexFileUpToDate(file)) {
+                if (debug) Debug.format("indexing: %s%n", file);
+                IndexFileUtils.performIndexing(file, new NullProgressMonitor() {
+                    @Override
+                    public boolean isCanceled() {
+                        return monitor.isCanceled();
+                    }
+                });
+                if (!isIndexFileUpToDate(file)) {
+                    // indexing failed (markers are already set) or was canceled
+                    doUnload(file);
+                    return;
+                }
+            }
+
+            Exception exception = null;
+            try {
+                if (debug) Debug.format("  loadFile: %s ", file);
+                loadInternal(file);
+            }
+            catch (Exception e) {
+                exception = e;
+            }
+            updateMarkers(file, exception);
+        }
+        catch (Exception e) {
+            Activator.logError(e);
+        }
+        finally {
+            Job.getJobManager().endRule(rule);
+        }
+    }
+
     public void doUnload(final IFile file) {
         if (debug) Debug.format("  unloadFile: %s%n ", file);
         ResultFileManager.callWithReadLock(manager, new Callable<Object>() {
@@ -9,67 +9,90 @@ package org.omnetpp.scave.jobs;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.WorkspaceJob;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.MultiRule;
+import org.omnetpp.scave.ScavePlugin;
 import org.omnetpp.scave.engineext.IndexFileUtils;
+import org.omnetpp.scave.preferences.ScavePreferenceConstants;
 
 /**
  * This job generates index files for vector files in the workspace.
  *
+ * Several files may be indexed concurrently, see the INDEXING_PARALLELISM
+ * preference. The job itself has no scheduling rule; instead, the rule of
+ * each vector file (the file and its index file) is held only while that
+ * file is being indexed, so loading unrelated files is not blocked.
+ *
  * @author tomi
  */
 public class VectorFileIndexerJob extends WorkspaceJob {
 
     private List<IFile> filesToBeIndexed;
+    private int parallelism;
 
     public VectorFileIndexerJob(String name, IFile[] filesToBeIndexed) {
         super(name);
 
-        ArrayList<ISchedulingRule> rule = new ArrayList<ISchedulingRule>();
         this.filesToBeIndexed = new ArrayList<IFile>();
         for (IFile file : filesToBeIndexed)
-            if (IndexFileUtils.isExistingVectorFile(file)) {
+            if (IndexFileUtils.isExistingVectorFile(file))
                 this.filesToBeIndexed.add(file);
-                rule.add(file);
-                rule.add(IndexFileUtils.getIndexFileFor(file));
-            }
 
-        setRule(MultiRule.combine(rule.toArray(new ISchedulingRule[rule.size()])));
+        this.parallelism = ScavePlugin.getDefault().getPreferenceStore().getInt(ScavePreferenceConstants.INDEXING_PARALLELISM);
         setPriority(Job.LONG);
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     /**
      * Generate indeces for files in the queue.
      */
     @Override
-    public IStatus runInWorkspace(IProgressMonitor monitor)
+    public IStatus runInWorkspace(final IProgressMonitor monitor)
             throws CoreException {
 
         if (!filesToBeIndexed.isEmpty()) {
             try {
                 monitor.beginTask(getName(), filesToBeIndexed.size());
 
-                for (IFile file : filesToBeIndexed) {
-                    if (monitor.isCanceled())
-                        return Status.CANCEL_STATUS;
+                int numThreads = Math.min(Math.max(parallelism, 1), filesToBeIndexed.size());
+                if (numThreads == 1) {
+                    for (IFile file : filesToBeIndexed) {
+                        if (monitor.isCanceled())
+                            return Status.CANCEL_STATUS;
 
-                    monitor.subTask("Indexing "+file.getName());
-                    if (file.exists() && IndexFileUtils.isExistingVectorFile(file) && !IndexFileUtils.isIndexFileUpToDate(file)) {
+                        monitor.subTask("Indexing "+file.getName());
                         IProgressMonitor subMonitor = new SubProgressMonitor(monitor, 1);
-                        IndexFileUtils.performIndexing(file, subMonitor);
+                        indexFile(file, subMonitor);
                         if (subMonitor.isCanceled())
                             return Status.CANCEL_STATUS;
                     }
                 }
+                else {
+                    return indexInParallel(numThreads, monitor);
+                }
             }
             finally {
                 monitor.done();
@@ -77,4 +100,72 @@ public class VectorFileIndexerJob extends WorkspaceJob {
         }
         return Status.OK_STATUS;
     }
+
+    /**
+     * Indexes the files using a pool of worker threads. If indexing a file throws
+     * an exception, the remaining files are skipped, and the exception is rethrown
+     * once the running workers have finished.
+     */
+    protected IStatus indexInParallel(int numThreads, final IProgressMonitor monitor) throws CoreException {
+        // the progress monitor may only be used from the job's thread, so workers only check for cancellation
+        final IProgressMonitor workerMonitor = new NullProgressMonitor() {
+            @Override
+            public boolean isCanceled() {
+                return monitor.isCanceled();
+            }
+        };
+
+        ExecutorService executor = WorkerThreads.createThreadPool(numThreads, "Vector file indexer");
+        List<Future<IFile>> futures = new ArrayList<Future<IFile>>();
+        try {
+            CompletionService<IFile> completionService = new ExecutorCompletionService<IFile>(executor);
+            for (final IFile file : filesToBeIndexed) {
+                futures.add(completionService.submit(new Callable<IFile>() {
+                    public IFile call() {
+                        if (!workerMonitor.isCanceled())
+                            indexFile(file, workerMonitor);
+                        return file;
+                    }
+                }));
+            }
+
+            monitor.subTask("Indexing " + filesToBeIndexed.size() + " files using " + numThreads + " threads");
+            for (int i = 0; i < filesToBeIndexed.size(); i++) {
+                Future<IFile> future;
+                while ((future = completionService.poll(100, TimeUnit.MILLISECONDS)) == null)
+                    if (monitor.isCanceled())
+                        return Status.CANCEL_STATUS;
+                WorkerThreads.getResult(future);
+                monitor.worked(1);
+                monitor.subTask("Indexed " + (i+1) + " of " + filesToBeIndexed.size() + " files");
+            }
+            return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Status.CANCEL_STATUS;
+        }
+        finally {
+            // workers that are already indexing a file stop at their next cancellation check;
+            // wait for them, so they do not hold scheduling rules or write index files after
+            // this job has finished
+            WorkerThreads.cancelAndAwaitTermination(executor, futures);
+        }
+    }
+
+    /**
+     * Indexes the given file if its index is missing or out of date, holding
+     * the scheduling rule of the file and its index file meanwhile.
+     */
+    protected void indexFile(IFile file, IProgressMonitor monitor) {
+        ISchedulingRule rule = MultiRule.combine(file, IndexFileUtils.getIndexFileFor(file));
+        try {
+            Job.getJobManager().beginRule(rule, null);
+            if (file.exists() && IndexFileUtils.isExistingVectorFile(file) && !IndexFileUtils.isIndexFileUpToDate(file))
+                IndexFileUtils.performIndexing(file, monitor);
+        }
+        finally {
+            Job.getJobManager().endRule(rule);
+        }
+    }
 }
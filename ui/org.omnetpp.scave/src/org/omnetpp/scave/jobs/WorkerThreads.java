@@ -0,0 +1,85 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.jobs;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.CoreException;
+import org.omnetpp.scave.ScavePlugin;
+
+/**
+ * Utilities for jobs that process files using a pool of worker threads.
+ */
+class WorkerThreads {
+
+    /**
+     * Creates a fixed size pool of daemon threads, named threadName followed by a number.
+     */
+    static ExecutorService createThreadPool(int numThreads, final String threadName) {
+        return Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, threadName + " " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the result of a completed task. If the task threw an exception,
+     * it is rethrown; checked exceptions other than CoreException are wrapped
+     * into a CoreException.
+     */
+    static <T> T getResult(Future<T> future) throws CoreException, InterruptedException {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CoreException)
+                throw (CoreException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw ScavePlugin.wrapIntoCoreException(cause);
+        }
+    }
+
+    /**
+     * Cancels the tasks that have not started yet, and waits until the running
+     * ones have completed. Running tasks are not interrupted; they are expected
+     * to stop at their next cancellation check. If the calling thread is
+     * interrupted, it keeps waiting, and restores the interrupted status afterwards.
+     */
+    static void cancelAndAwaitTermination(ExecutorService executor, List<? extends Future<?>> futures) {
+        for (Future<?> future : futures)
+            future.cancel(false);
+        executor.shutdown();
+        boolean interrupted = Thread.interrupted();
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS))
+                    break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -63,6 +63,20 @@ public class FilterField implements Comparable<FilterField> {
         return name;
     }
 
+    /**
+     * The inverse of getFullName().
+     */
+    public static FilterField fromFullName(String fullName) {
+        if (fullName.startsWith("attr:"))
+            return new FilterField(Kind.RunAttribute, fullName.substring(5));
+        else if (fullName.startsWith("itervar:"))
+            return new FilterField(Kind.IterationVariable, fullName.substring(8));
+        else if (fullName.startsWith("param:"))
+            return new FilterField(Kind.ParamAssignment, fullName.substring(6));
+        else
+            return new FilterField(Kind.ItemField, fullName);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -12,16 +12,30 @@ import static org.omnetpp.scave.model2.FilterField.MODULE;
 import static org.omnetpp.scave.model2.FilterField.NAME;
 import static org.omnetpp.scave.model2.FilterField.RUN;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.omnetpp.common.Debug;
 import org.omnetpp.scave.engine.IDList;
 import org.omnetpp.scave.engine.ResultFileList;
 import org.omnetpp.scave.engine.ResultFileManager;
 import org.omnetpp.scave.engine.RunList;
+import org.omnetpp.scave.engineext.IResultFilesChangeListener;
+import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
+import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent.ChangeType;
+import org.omnetpp.scave.engineext.ResultFileManagerEx;
 import org.omnetpp.scave.model.ResultType;
 import org.omnetpp.scave.model2.FilterField.Kind;
 
@@ -29,119 +43,554 @@ import org.omnetpp.scave.model2.FilterField.Kind;
  * Given an IDList, produces hints for different filter fields such as
  * module name, statistic name, run attributes etc.
  *
+ * Hints created for an IDList or result type are computed lazily, one field
+ * at a time, when first asked for; prefetch() can be used to compute them in
+ * the background. Computed hints are cached up to a limit on the total number
+ * of hint strings; the least recently used fields are dropped beyond that, and
+ * recomputed when needed again. Hints added with addHints() are always kept.
+ * At most one computation is in progress per field: a query that finds one
+ * waits for it instead of starting another.
+ *
+ * getFields() and getHints() wait for the result, and are meant for background
+ * threads; on the UI thread, use getFieldsIfReady() and getHintsIfReady(), which
+ * return null instead of waiting, and start the computation in the background.
+ *
+ * When result files are loaded or unloaded, hints for a result type are
+ * recomputed (lazily, on the next query). Hints for an IDList remain valid
+ * when files are loaded; when files are unloaded, they become empty, because
+ * the IDList may contain stale IDs (the owner is expected to create new hints
+ * for the new IDList). Call dispose() when no longer needed.
+ *
  * @author tomi
  */
 public class FilterHints {
+    private static final boolean debug = Debug.isChannelEnabled("filterhints");
 
     private static final String[] EMPTY = new String[0];
+    private static final int MAX_CACHED_HINTS = 1000000; // total number of lazily computed hint strings kept in memory
+
+    /**
+     * The hints of a field, with an index for prefix search.
+     */
+    private static class FieldHints {
+        final String[] hints;
+        String[] sortedHints; // a sorted copy of hints; created lazily
+
+        FieldHints(String[] hints) {
+            this.hints = hints;
+        }
+
+        synchronized String[] getSortedHints() {
+            if (sortedHints == null) {
+                sortedHints = hints.clone();
+                Arrays.sort(sortedHints);
+            }
+            return sortedHints;
+        }
+
+        String[] getHintsWithPrefix(String prefix) {
+            if (prefix.isEmpty())
+                return hints;
+            String[] sorted = getSortedHints();
+
+            // binary search for the first hint not less than the prefix
+            int low = 0, high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid].compareTo(prefix) < 0)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            int end = low;
+            while (end < sorted.length && sorted[end].startsWith(prefix))
+                end++;
+            return Arrays.copyOfRange(sorted, low, end);
+        }
+    }
 
-    private Map<FilterField,String[]> hints = new HashMap<FilterField, String[]>();
+    private final ResultFileManager manager; // null if hints are only added explicitly
+    private final ResultType type; // null if created for a fixed IDList
+    private IDList idlist; // for a result type: computed lazily
+    private boolean stale = false; // whether idlist may contain IDs of unloaded files
+    private FilterField[] fields; // computed lazily
+    private int generation = 0; // incremented when cached hints are dropped because of a change
+
+    private Map<FilterField,FieldHints> fixedHints = new HashMap<FilterField, FieldHints>(); // added via addHints()
+    private Map<FilterField,FieldHints> cachedHints = new LinkedHashMap<FilterField, FieldHints>(16, 0.75f, true); // LRU order
+    private int numCachedHints = 0;
+    private Map<FilterField,FutureTask<FieldHints>> pendingHints = new HashMap<FilterField, FutureTask<FieldHints>>(); // computations in progress
+    private FutureTask<FilterField[]> pendingFields; // computation of fields in progress, or null
+    private Job prefetchJob;
+
+    private IResultFilesChangeListener changeListener = new IResultFilesChangeListener() {
+        @Override
+        public void resultFileManagerChanged(ResultFileManagerChangeEvent event) {
+            FilterHints.this.resultFileManagerChanged(event);
+        }
+    };
 
     public FilterHints() {
+        this.manager = null;
+        this.type = null;
     }
 
     public FilterHints(final ResultFileManager manager, final ResultType type) {
-        ResultFileManager.callWithReadLock(manager, new Callable<Object>() {
+        this.manager = manager;
+        this.type = type;
+        addChangeListener();
+    }
+
+    public FilterHints(final ResultFileManager manager, final IDList idlist) {
+        this.manager = manager;
+        this.type = null;
+        this.idlist = idlist;
+        addChangeListener();
+    }
+
+    private void addChangeListener() {
+        if (manager instanceof ResultFileManagerEx)
+            ((ResultFileManagerEx)manager).addChangeListener(changeListener);
+    }
+
+    /**
+     * Stops the background computation, and stops following changes of the result files.
+     */
+    public void dispose() {
+        if (manager instanceof ResultFileManagerEx)
+            ((ResultFileManagerEx)manager).removeChangeListener(changeListener);
+        Job job;
+        synchronized (this) {
+            job = prefetchJob;
+            prefetchJob = null;
+        }
+        if (job != null)
+            job.cancel();
+    }
+
+    protected synchronized void resultFileManagerChanged(ResultFileManagerChangeEvent event) {
+        if (type == null && (event.getChangeType() == ChangeType.LOAD || event.getChangeType() == ChangeType.COMPUTED_ITEM_ADDED))
+            return; // the IDList did not change, and its IDs are still valid
+
+        if (type != null)
+            idlist = null;
+        else
+            stale = true;
+        fields = null;
+        generation++;
+        cachedHints.clear();
+        numCachedHints = 0;
+        pendingHints.clear(); // computations in progress complete, but their results are not cached
+        pendingFields = null;
+        if (debug)
+            Debug.println("FilterHints: dropped cached hints because of " + event.getChangeType() + " " + event.getFilename());
+    }
+
+    public void addHints(final FilterField field, final ResultFileManager manager, final IDList idlist)
+    {
+        String[] hints = ResultFileManager.callWithReadLock(manager, new Callable<String[]>() {
             @Override
-            public Object call() throws Exception {
-                fillAllFields(manager, ScaveModelUtil.getAllIDs(manager, type));
-                return null;
+            public String[] call() throws Exception {
+                return computeHints(manager, idlist, field);
             }
         });
+        synchronized (this) {
+            fixedHints.put(field, new FieldHints(hints));
+        }
     }
 
-    public FilterHints(final ResultFileManager manager, final IDList idlist) {
-        ResultFileManager.callWithReadLock(manager, new Callable<Object>() {
+    /**
+     * Computes hints for the given fields (and then the rest of the fields while
+     * the cache limit allows) in a background job. The runnable is called in the
+     * job's thread after the given fields are done, unless the job is cancelled.
+     * A new call cancels the previous background computation.
+     */
+    public void prefetch(final FilterField[] priorityFields, final Runnable priorityFieldsDone) {
+        if (manager == null) {
+            if (priorityFieldsDone != null)
+                priorityFieldsDone.run();
+            return;
+        }
+        Job job = new Job("Collecting filter hints") {
             @Override
-            public Object call() throws Exception {
-                fillAllFields(manager, idlist);
-                return null;
+            protected IStatus run(IProgressMonitor monitor) {
+                long startTime = System.currentTimeMillis();
+                for (FilterField field : priorityFields) {
+                    if (monitor.isCanceled())
+                        return Status.CANCEL_STATUS;
+                    getFieldHints(field);
+                }
+                if (priorityFieldsDone != null)
+                    priorityFieldsDone.run();
+                for (FilterField field : getFields()) {
+                    if (monitor.isCanceled())
+                        return Status.CANCEL_STATUS;
+                    synchronized (FilterHints.this) {
+                        if (numCachedHints >= MAX_CACHED_HINTS)
+                            break;
+                    }
+                    getFieldHints(field);
+                }
+                if (debug)
+                    Debug.println("FilterHints: prefetch took " + (System.currentTimeMillis() - startTime) + "ms, " + numCachedHints + " hints cached");
+                return Status.OK_STATUS;
             }
-        });
+        };
+        job.setSystem(true);
+        job.setPriority(Job.DECORATE);
+        Job previousJob;
+        synchronized (this) {
+            previousJob = prefetchJob;
+            prefetchJob = job;
+        }
+        if (previousJob != null)
+            previousJob.cancel();
+        job.schedule();
     }
 
-    public void addHints(final FilterField field, final ResultFileManager manager, final IDList idlist)
-    {
-        ResultFileManager.callWithReadLock(manager, new Callable<Object>() {
+    /**
+     * Runs the computation in a background job, unless it has already been run
+     * (or is running) elsewhere.
+     */
+    private static void runInBackground(final FutureTask<?> task) {
+        Job job = new Job("Collecting filter hints") {
             @Override
-            public Object call() throws Exception {
-                fillOneField(manager, idlist, field);
-                return null;
+            protected IStatus run(IProgressMonitor monitor) {
+                task.run();
+                return Status.OK_STATUS;
             }
-        });
+        };
+        job.setSystem(true);
+        job.setPriority(Job.SHORT);
+        job.schedule();
     }
 
-    private void fillAllFields(ResultFileManager manager, IDList idlist) {
-        manager.checkReadLock();
-        ResultFileList fileList = manager.getUniqueFiles(idlist);
-        RunList runList = manager.getUniqueRuns(idlist);
+    /**
+     * Runs the computation in the calling thread, or waits for it if it is
+     * already running in another thread, and returns its result. Returns null
+     * if the thread is interrupted while waiting.
+     */
+    private static <T> T runAndGet(FutureTask<T> task) {
+        task.run();
+        return getResult(task);
+    }
 
-        setHints(FILE, manager.getFilePathFilterHints(fileList).toArray());
-        setHints(RUN, manager.getRunNameFilterHints(runList).toArray());
-        setHints(MODULE, manager.getModuleFilterHints(idlist).toArray());
-        setHints(NAME, manager.getNameFilterHints(idlist).toArray());
-        for (String attrName : manager.getUniqueAttributeNames(idlist).keys().toArray())
-            setHints(Kind.ItemField, attrName, manager.getResultItemAttributeFilterHints(idlist, attrName).toArray());
-        for (String attrName : manager.getUniqueRunAttributeNames(runList).keys().toArray())
-            setHints(Kind.RunAttribute, attrName, manager.getRunAttributeFilterHints(runList, attrName).toArray());
-        for (String varName : manager.getUniqueIterationVariableNames(runList).keys().toArray())
-            setHints(Kind.IterationVariable, varName, manager.getIterationVariableFilterHints(runList, varName).toArray());
-        for (String key : manager.getUniqueParamAssignmentKeys(runList).keys().toArray())
-            setHints(Kind.ParamAssignment, key, manager.getParamAssignmentFilterHints(runList, key).toArray());
+    /**
+     * Returns the result of the computation, waiting for it if necessary.
+     * Returns null if the thread is interrupted while waiting.
+     */
+    private static <T> T getResult(FutureTask<T> task) {
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
     }
 
-    private void fillOneField(ResultFileManager manager, IDList idlist, FilterField field) {
+    private static String[] computeHints(ResultFileManager manager, IDList idlist, FilterField field) {
         manager.checkReadLock();
         if (field.equals(RUN)) {
             RunList runList = manager.getUniqueRuns(idlist);
-            setHints(RUN, manager.getRunNameFilterHints(runList).toArray());
+            return manager.getRunNameFilterHints(runList).toArray();
         }
         else if (field.equals(FILE)) {
             ResultFileList fileList = manager.getUniqueFiles(idlist);
-            setHints(FILE, manager.getFilePathFilterHints(fileList).toArray());
+            return manager.getFilePathFilterHints(fileList).toArray();
         }
         else if (field.equals(MODULE)) {
-            setHints(MODULE, manager.getModuleFilterHints(idlist).toArray());
+            return manager.getModuleFilterHints(idlist).toArray();
         }
         else if (field.equals(NAME)) {
-            setHints(NAME, manager.getNameFilterHints(idlist).toArray());
+            return manager.getNameFilterHints(idlist).toArray();
         }
         else if (field.getKind() == Kind.ItemField) {
-            setHints(Kind.ItemField, field.getName(), manager.getResultItemAttributeFilterHints(idlist, field.getName()).toArray());
+            return manager.getResultItemAttributeFilterHints(idlist, field.getName()).toArray();
         }
         else if (field.getKind() == Kind.RunAttribute) {
             RunList runList = manager.getUniqueRuns(idlist);
-            setHints(Kind.RunAttribute, field.getName(), manager.getRunAttributeFilterHints(runList, field.getName()).toArray());
+            return manager.getRunAttributeFilterHints(runList, field.getName()).toArray();
         }
         else if (field.getKind() == Kind.IterationVariable) {
             RunList runList = manager.getUniqueRuns(idlist);
-            setHints(Kind.RunAttribute, field.getName(), manager.getIterationVariableFilterHints(runList, field.getName()).toArray());
+            return manager.getIterationVariableFilterHints(runList, field.getName()).toArray();
         }
         else if (field.getKind() == Kind.ParamAssignment) {
             RunList runList = manager.getUniqueRuns(idlist);
-            setHints(Kind.ParamAssignment, field.getName(), manager.getParamAssignmentFilterHints(runList, field.getName()).toArray());
+            return manager.getParamAssignmentFilterHints(runList, field.getName()).toArray();
         }
+        return EMPTY;
     }
 
+    private static FilterField[] computeFields(ResultFileManager manager, IDList idlist) {
+        manager.checkReadLock();
+        RunList runList = manager.getUniqueRuns(idlist);
+        List<FilterField> fields = new ArrayList<FilterField>();
+        fields.add(FILE);
+        fields.add(RUN);
+        fields.add(MODULE);
+        fields.add(NAME);
+        for (String attrName : manager.getUniqueAttributeNames(idlist).keys().toArray())
+            fields.add(new FilterField(Kind.ItemField, attrName));
+        for (String attrName : manager.getUniqueRunAttributeNames(runList).keys().toArray())
+            fields.add(new FilterField(Kind.RunAttribute, attrName));
+        for (String varName : manager.getUniqueIterationVariableNames(runList).keys().toArray())
+            fields.add(new FilterField(Kind.IterationVariable, varName));
+        for (String key : manager.getUniqueParamAssignmentKeys(runList).keys().toArray())
+            fields.add(new FilterField(Kind.ParamAssignment, key));
+        return fields.toArray(new FilterField[fields.size()]);
+    }
+
+    /**
+     * Returns the IDList to compute the hints from, or null if there is none.
+     * Must be called with the read lock held.
+     */
+    private IDList getIDList() {
+        synchronized (this) {
+            if (idlist != null || type == null)
+                return stale ? null : idlist;
+        }
+        IDList allIDs = ScaveModelUtil.getAllIDs(manager, type);
+        synchronized (this) {
+            if (idlist == null)
+                idlist = allIDs;
+            return idlist;
+        }
+    }
+
+    /**
+     * Returns the fields, waiting for them to be computed if needed.
+     */
     public FilterField[] getFields() {
-        Set<FilterField> keys = hints.keySet();
-        FilterField[] fields = keys.toArray(new FilterField[keys.size()]);
-        Arrays.sort(fields);
-        return fields;
+        FutureTask<FilterField[]> task;
+        synchronized (this) {
+            if (manager == null || fields != null)
+                return mergeWithFixedFields(fields);
+            task = getFieldsTask();
+        }
+        FilterField[] computedFields = runAndGet(task);
+        synchronized (this) {
+            // if result files changed meanwhile, the result was not cached
+            return mergeWithFixedFields(fields != null ? fields : computedFields);
+        }
+    }
+
+    /**
+     * Returns the fields if they are available without waiting; otherwise starts
+     * computing them in the background (if not in progress already), and returns null.
+     */
+    public FilterField[] getFieldsIfReady() {
+        FutureTask<FilterField[]> task;
+        synchronized (this) {
+            if (manager == null || fields != null)
+                return mergeWithFixedFields(fields);
+            task = getFieldsTask();
+        }
+        if (!task.isDone()) {
+            runInBackground(task);
+            return null;
+        }
+        FilterField[] computedFields = getResult(task);
+        synchronized (this) {
+            return mergeWithFixedFields(fields != null ? fields : computedFields);
+        }
+    }
+
+    private FilterField[] mergeWithFixedFields(FilterField[] fields) {
+        List<FilterField> result = new ArrayList<FilterField>(fixedHints.keySet());
+        if (fields != null)
+            for (FilterField field : fields)
+                if (!fixedHints.containsKey(field))
+                    result.add(field);
+        FilterField[] array = result.toArray(new FilterField[result.size()]);
+        Arrays.sort(array);
+        return array;
+    }
+
+    /**
+     * Returns the computation of the fields in progress, or creates a new one.
+     * The caller is responsible for running it.
+     */
+    private synchronized FutureTask<FilterField[]> getFieldsTask() {
+        if (pendingFields == null) {
+            final int generationBefore = generation;
+            pendingFields = new FutureTask<FilterField[]>(new Callable<FilterField[]>() {
+                @Override
+                public FilterField[] call() throws Exception {
+                    return computeAndCacheFields(generationBefore);
+                }
+            });
+        }
+        return pendingFields;
+    }
+
+    private FilterField[] computeAndCacheFields(int generationBefore) {
+        FilterField[] computedFields = null;
+        try {
+            computedFields = ResultFileManager.callWithReadLock(manager, new Callable<FilterField[]>() {
+                @Override
+                public FilterField[] call() throws Exception {
+                    IDList idlist = getIDList();
+                    return idlist == null ? new FilterField[0] : computeFields(manager, idlist);
+                }
+            });
+            return computedFields;
+        }
+        finally {
+            synchronized (this) {
+                if (generation == generationBefore) { // otherwise result files changed meanwhile, don't cache
+                    if (fields == null)
+                        fields = computedFields;
+                    pendingFields = null;
+                }
+            }
+        }
+    }
+
+    private synchronized FieldHints getCachedFieldHints(FilterField field) {
+        FieldHints fieldHints = fixedHints.get(field);
+        if (fieldHints == null)
+            fieldHints = cachedHints.get(field);
+        return fieldHints;
+    }
+
+    /**
+     * Returns the hints of the field, waiting for them to be computed if needed.
+     */
+    private FieldHints getFieldHints(FilterField field) {
+        FieldHints fieldHints = getCachedFieldHints(field);
+        if (fieldHints != null || manager == null)
+            return fieldHints;
+        return runAndGet(getFieldHintsTask(field));
+    }
+
+    /**
+     * Returns the hints of the field if they are available without waiting; otherwise
+     * starts computing them in the background (if not in progress already), and returns null.
+     */
+    private FieldHints getFieldHintsIfReady(FilterField field) {
+        FieldHints fieldHints = getCachedFieldHints(field);
+        if (fieldHints != null || manager == null)
+            return fieldHints;
+        FutureTask<FieldHints> task = getFieldHintsTask(field);
+        if (!task.isDone()) {
+            runInBackground(task);
+            return null;
+        }
+        return getResult(task);
+    }
+
+    /**
+     * Returns the computation of the hints of the field in progress, or creates
+     * a new one. The caller is responsible for running it.
+     */
+    private synchronized FutureTask<FieldHints> getFieldHintsTask(final FilterField field) {
+        FutureTask<FieldHints> task = pendingHints.get(field);
+        if (task == null) {
+            final int generationBefore = generation;
+            task = new FutureTask<FieldHints>(new Callable<FieldHints>() {
+                @Override
+                public FieldHints call() throws Exception {
+                    return computeAndCacheFieldHints(field, generationBefore);
+                }
+            });
+            pendingHints.put(field, task);
+        }
+        return task;
+    }
+
+    private FieldHints computeAndCacheFieldHints(final FilterField field, int generationBefore) {
+        String[] hints = null;
+        try {
+            // compute without holding the lock, so that other fields can be queried meanwhile
+            long startTime = System.currentTimeMillis();
+            hints = ResultFileManager.callWithReadLock(manager, new Callable<String[]>() {
+                @Override
+                public String[] call() throws Exception {
+                    IDList idlist = getIDList();
+                    return idlist == null ? EMPTY : computeHints(manager, idlist, field);
+                }
+            });
+            if (debug)
+                Debug.println("FilterHints: computing hints for " + field.getFullName() + " took " + (System.currentTimeMillis() - startTime) + "ms");
+        }
+        finally {
+            synchronized (this) {
+                if (generation == generationBefore) // otherwise result files changed meanwhile, and the task is no longer pending
+                    pendingHints.remove(field);
+            }
+        }
+
+        synchronized (this) {
+            if (generation != generationBefore)
+                return new FieldHints(hints); // result files changed meanwhile, don't cache
+            FieldHints fieldHints = cachedHints.get(field);
+            if (fieldHints == null) {
+                fieldHints = new FieldHints(hints);
+                cachedHints.put(field, fieldHints);
+                numCachedHints += hints.length;
+                evictLeastRecentlyUsed(field);
+            }
+            return fieldHints;
+        }
     }
 
+    private void evictLeastRecentlyUsed(FilterField fieldToKeep) {
+        Iterator<Map.Entry<FilterField,FieldHints>> iterator = cachedHints.entrySet().iterator();
+        while (numCachedHints > MAX_CACHED_HINTS && iterator.hasNext()) {
+            Map.Entry<FilterField,FieldHints> entry = iterator.next();
+            if (!entry.getKey().equals(fieldToKeep)) {
+                numCachedHints -= entry.getValue().hints.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the hints of the field, waiting for them to be computed if needed.
+     */
     public String[] getHints(FilterField field) {
-        if (hints.containsKey(field))
-            return hints.get(field);
-        else
-            return EMPTY;
+        FieldHints fieldHints = getFieldHints(field);
+        return fieldHints != null ? fieldHints.hints : EMPTY;
+    }
+
+    /**
+     * Returns the hints of the field that start with the given prefix, in
+     * alphabetical order, waiting for them to be computed if needed.
+     */
+    public String[] getHints(FilterField field, String prefix) {
+        FieldHints fieldHints = getFieldHints(field);
+        return fieldHints != null ? fieldHints.getHintsWithPrefix(prefix) : EMPTY;
     }
 
-    private void setHints(FilterField field, String[] value) {
-        this.hints.put(field, value);
+    /**
+     * Like getHints(field), but returns null instead of waiting if the hints are
+     * not available yet; their computation is then started in the background.
+     */
+    public String[] getHintsIfReady(FilterField field) {
+        if (manager == null)
+            return getHints(field);
+        FieldHints fieldHints = getFieldHintsIfReady(field);
+        return fieldHints != null ? fieldHints.hints : null;
     }
 
-    private void setHints(Kind kind, String name, String[] value) {
-        this.hints.put(new FilterField(kind, name), value);
+    /**
+     * Like getHints(field, prefix), but returns null instead of waiting if the hints
+     * are not available yet; their computation is then started in the background.
+     */
+    public String[] getHintsIfReady(FilterField field, String prefix) {
+        if (manager == null)
+            return getHints(field, prefix);
+        FieldHints fieldHints = getFieldHintsIfReady(field);
+        return fieldHints != null ? fieldHints.getHintsWithPrefix(prefix) : null;
     }
 }
@@ -9,4 +9,6 @@ public class ScavePreferenceConstants {
 
     public final static String PER_LINE_DRAW_TIME_LIMIT_MILLIS = "perLineDrawTimeLimitMillis";
 
+    public final static String INDEXING_PARALLELISM = "indexingParallelism";
+
 }
@@ -22,5 +22,6 @@ public class ScavePreferenceInitializer extends AbstractPreferenceInitializer {
         IPreferenceStore store = ScavePlugin.getDefault().getPreferenceStore();
         store.setDefault(ScavePreferenceConstants.TOTAL_DRAW_TIME_LIMIT_MILLIS, 10000);
         store.setDefault(ScavePreferenceConstants.PER_LINE_DRAW_TIME_LIMIT_MILLIS, 2000);
+        store.setDefault(ScavePreferenceConstants.INDEXING_PARALLELISM, Math.min(Runtime.getRuntime().availableProcessors(), 8));
     }
 }
@@ -28,6 +28,10 @@ public class ScavePreferencePage extends FieldEditorPreferencePage implements IW
         IntegerFieldEditor perLineLimitEditor = new IntegerFieldEditor(ScavePreferenceConstants.PER_LINE_DRAW_TIME_LIMIT_MILLIS, "Per-line drawing time limit (ms):", getFieldEditorParent());
         perLineLimitEditor.setValidRange(1, 99999);
         addField(perLineLimitEditor);
+
+        IntegerFieldEditor indexingParallelismEditor = new IntegerFieldEditor(ScavePreferenceConstants.INDEXING_PARALLELISM, "Number of files to index/load in parallel:", getFieldEditorParent());
+        indexingParallelismEditor.setValidRange(1, 256);
+        addField(indexingParallelismEditor);
     }
 
     /* (non-Javadoc)
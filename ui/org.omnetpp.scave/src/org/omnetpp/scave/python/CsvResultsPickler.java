@@ -5,7 +5,6 @@ import java.io.OutputStream;
 import java.util.List;
 
 import org.omnetpp.common.Debug;
-import org.omnetpp.scave.charting.dataset.VectorDataLoader;
 import org.omnetpp.scave.engine.Histogram;
 import org.omnetpp.scave.engine.HistogramResult;
 import org.omnetpp.scave.engine.IDList;
@@ -17,14 +16,12 @@ import org.omnetpp.scave.engine.ResultItem;
 import org.omnetpp.scave.engine.Run;
 import org.omnetpp.scave.engine.RunList;
 import org.omnetpp.scave.engine.ScalarResult;
-import org.omnetpp.scave.engine.ScaveEngine;
 import org.omnetpp.scave.engine.Statistics;
 import org.omnetpp.scave.engine.StatisticsResult;
 import org.omnetpp.scave.engine.StringMap;
 import org.omnetpp.scave.engine.StringPair;
 import org.omnetpp.scave.engine.StringVector;
 import org.omnetpp.scave.engine.VectorResult;
-import org.omnetpp.scave.engine.XYArray;
 
 import net.razorvine.pickle.IObjectPickler;
 import net.razorvine.pickle.Opcodes;
@@ -211,16 +208,14 @@ public class CsvResultsPickler implements IObjectPickler {
             pickleResultAttributes(result, pickler, out);
     }
 
-    protected void pickleVectorResult(ResultFileManager resultManager, long ID, Pickler pickler,
+    /**
+     * The arena is null if vector data is not requested (only their attributes).
+     */
+    protected void pickleVectorResult(ResultFileManager resultManager, long ID, SharedMemoryArena arena, int index, Pickler pickler,
             OutputStream out) throws PickleException, IOException {
         VectorResult result = resultManager.getVector(ID);
 
         if (addVectors) {
-            IDList idAsList = new IDList();
-            idAsList.add(ID);
-            // TODO optimize: load all the vectors at once
-            XYArray data = VectorDataLoader.getDataOfVectors(resultManager, idAsList, simTimeStart, simTimeEnd, interruptedFlag).get(0);
-
             out.write(Opcodes.MARK);
             {
                 pickler.save(result.getRun().getRunName());
@@ -231,14 +226,9 @@ public class CsvResultsPickler implements IObjectPickler {
                 for (int j = 0; j < 13; ++j)
                     pickler.save(null);
 
-                ResultPicklingUtils.pickleXYArray(data, out);
+                arena.pickleXYArray(index, out);
             }
             out.write(Opcodes.TUPLE);
-
-            data.delete();
-            data = null;
-            //System.gc(); // NOT NEEDED, SLOW, and actually BREAKS some internal parts of Py4J...
-            ScaveEngine.malloc_trim(); // so the std::vector buffers (in data) are released to the operating system
         }
 
         if (addAttrs)
@@ -329,53 +319,67 @@ public class CsvResultsPickler implements IObjectPickler {
         // TODO: omitUnusedColumns is currently ignored here, dropping them is done in Python.
         out.write(Opcodes.MARK);
         if (filterExpression != null && !filterExpression.trim().isEmpty()) {
-            IDList results = resultManager.getAllItems(false, false);
-            results = resultManager.filterIDList(results, filterExpression, interruptedFlag);
-
-            if (ResultPicklingUtils.debug)
-                Debug.println("pickling " + results.size() + " items");
-
-            pickleRunsOfResults(resultManager, results, pickler, out);
-
-            if (addScalars || addAttrs)
-                for (int i = 0; i < results.size(); ++i) {
-                    if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.SCALAR)
-                        pickleScalarResult(resultManager, results.get(i), pickler, out);
-                    if (i % 10 == 0 && interruptedFlag.getFlag())
-                        throw new RuntimeException("Result pickling interrupted");
-                }
+            IDList results = ResultQueryCache.filterIDList(resultManager, ResultQueryCache.ALL_ITEMS, () -> resultManager.getAllItems(false, false), filterExpression, interruptedFlag);
+            try {
+                if (ResultPicklingUtils.debug)
+                    Debug.println("pickling " + results.size() + " items");
+
+                pickleRunsOfResults(resultManager, results, pickler, out);
+
+                if (addScalars || addAttrs)
+                    for (int i = 0; i < results.size(); ++i) {
+                        if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.SCALAR)
+                            pickleScalarResult(resultManager, results.get(i), pickler, out);
+                        if (i % 10 == 0 && interruptedFlag.getFlag())
+                            throw new RuntimeException("Result pickling interrupted");
+                    }
 
-            if (addVectors || addAttrs)
-                for (int i = 0; i < results.size(); ++i) {
-                    if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.VECTOR)
-                        pickleVectorResult(resultManager, results.get(i), pickler, out);
-                    if (i % 10 == 0 && interruptedFlag.getFlag())
-                        throw new RuntimeException("Result pickling interrupted");
+                if (addVectors) {
+                    // vector data is loaded and transferred in batches, one shared memory segment per batch
+                    IDList vectors = results.filterByTypes(ResultFileManager.VECTOR);
+                    try {
+                        ResultPicklingUtils.pickleVectorsInBatches(resultManager, vectors, simTimeStart, simTimeEnd, interruptedFlag,
+                                (id, arena, index) -> pickleVectorResult(resultManager, id, arena, index, pickler, out));
+                    }
+                    finally {
+                        vectors.delete();
+                    }
                 }
+                else if (addAttrs)
+                    for (int i = 0; i < results.size(); ++i) {
+                        if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.VECTOR)
+                            pickleVectorResult(resultManager, results.get(i), null, -1, pickler, out);
+                        if (i % 10 == 0 && interruptedFlag.getFlag())
+                            throw new RuntimeException("Result pickling interrupted");
+                    }
 
-            if (addStatistics || addAttrs)
-                for (int i = 0; i < results.size(); ++i) {
-                    if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.STATISTICS)
-                        pickleStatisticsResult(resultManager, results.get(i), pickler, out);
-                    if (i % 10 == 0 && interruptedFlag.getFlag())
-                        throw new RuntimeException("Result pickling interrupted");
-                }
+                if (addStatistics || addAttrs)
+                    for (int i = 0; i < results.size(); ++i) {
+                        if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.STATISTICS)
+                            pickleStatisticsResult(resultManager, results.get(i), pickler, out);
+                        if (i % 10 == 0 && interruptedFlag.getFlag())
+                            throw new RuntimeException("Result pickling interrupted");
+                    }
 
-            if (addHistograms || addAttrs)
-                for (int i = 0; i < results.size(); ++i) {
-                    if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.HISTOGRAM)
-                        pickleHistogramResult(resultManager, results.get(i), pickler, out);
-                    if (i % 10 == 0 && interruptedFlag.getFlag())
-                        throw new RuntimeException("Result pickling interrupted");
-                }
+                if (addHistograms || addAttrs)
+                    for (int i = 0; i < results.size(); ++i) {
+                        if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.HISTOGRAM)
+                            pickleHistogramResult(resultManager, results.get(i), pickler, out);
+                        if (i % 10 == 0 && interruptedFlag.getFlag())
+                            throw new RuntimeException("Result pickling interrupted");
+                    }
 
-            if (addParams || addAttrs)
-                for (int i = 0; i < results.size(); ++i) {
-                    if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.PARAMETER)
-                        pickleParameterResult(resultManager, results.get(i), pickler, out);
-                    if (i % 10 == 0 && interruptedFlag.getFlag())
-                        throw new RuntimeException("Result pickling interrupted");
-                }
+                if (addParams || addAttrs)
+                    for (int i = 0; i < results.size(); ++i) {
+                        if (ResultFileManager.getTypeOf(results.get(i)) == ResultFileManager.PARAMETER)
+                            pickleParameterResult(resultManager, results.get(i), pickler, out);
+                        if (i % 10 == 0 && interruptedFlag.getFlag())
+                            throw new RuntimeException("Result pickling interrupted");
+                    }
+            }
+            finally {
+                results.delete();
+            }
         }
         out.write(Opcodes.LIST);
     }
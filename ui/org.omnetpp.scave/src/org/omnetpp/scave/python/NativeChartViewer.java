@@ -119,6 +119,7 @@ public class NativeChartViewer extends ChartViewerBase {
         }
 
         public void reset() {
+            plot.cancelBackgroundRendering(); // it might be reading the shared memory we are about to unmap
             if (xyDataset != null)
                 xyDataset.dispose();
 
@@ -128,6 +129,8 @@ public class NativeChartViewer extends ChartViewerBase {
         }
 
         public void dispose() {
+            if (plot != null && !plot.isDisposed())
+                plot.cancelBackgroundRendering(); // see reset()
             if (xyDataset != null)
                 xyDataset.dispose();
         }
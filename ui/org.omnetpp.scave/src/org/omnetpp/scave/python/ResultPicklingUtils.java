@@ -7,9 +7,12 @@ import java.nio.ByteBuffer;
 
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.engine.ILock;
+import org.omnetpp.scave.charting.dataset.VectorDataLoader;
+import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.InterruptedFlag;
 import org.omnetpp.scave.engine.ResultFileManager;
 import org.omnetpp.scave.engine.ScaveEngine;
-import org.omnetpp.scave.engine.XYArray;
+import org.omnetpp.scave.engine.XYArrayVector;
 
 import net.razorvine.pickle.IObjectPickler;
 import net.razorvine.pickle.Opcodes;
@@ -34,55 +37,77 @@ public class ResultPicklingUtils {
         return byteBuffer.array();
     }
 
-    static int shmSerial = 0;
-
-    private static void writeString(String s, OutputStream out) throws IOException {
+    static void writeString(String s, OutputStream out) throws IOException {
         byte[] encodedX = s.getBytes("UTF-8");
         out.write(Opcodes.BINUNICODE);
         out.write(PickleUtils.integer_to_bytes(encodedX.length));
         out.write(encodedX);
     }
 
-    public static void pickleXYArray(XYArray array, OutputStream out) throws IOException {
-        int l = array.length();
-        // number of bytes
-        long s = l * 8;
-
-        if (s == 0) {
-            writeString("<EMPTY> 0", out);
-            writeString("<EMPTY> 0", out);
-            return;
-        }
-
-        // The & 0xFFFF thingies are there to limit the length of the decimal numbers, because on macOS,
-        // the max SHM name length (SHM_NAME_MAX) is 31 - which is... quite a bit less than NAME_MAX (255).
-        // The fixed part is 15 characters, and both numbers should be limited to 5 characters, so we are well #under30
-        String nameX = "/vectordata-" + (System.nanoTime() & 0xFFFF) + "-" + (shmSerial & 0xFFFF) + "-x";
-        String nameY = "/vectordata-" + (System.nanoTime() & 0xFFFF) + "-" + (shmSerial & 0xFFFF) + "-y";
-        shmSerial += 1;
-
-        // X
-        writeString(nameX + " " + s, out);
-        ScaveEngine.createSharedMemory(nameX, s);
-
-        ByteBuffer shmX = ScaveEngine.mapSharedMemory(nameX, s);
-
-        // actual data
-        for (int i = 0; i < l; ++i)
-            shmX.putDouble(array.getX(i));
-
-        ScaveEngine.unmapSharedMemory(shmX);
-        // Y
-        writeString(nameY + " " + s, out);
+    /**
+     * Callback for pickleVectorsInBatches(): pickles the vector with the given ID,
+     * whose data is the index-th array in the shared memory segment of the batch.
+     */
+    public interface IVectorBatchPickler {
+        void pickleVector(long id, SharedMemoryArena arena, int index) throws IOException;
+    }
 
-        ScaveEngine.createSharedMemory(nameY, s);
-        ByteBuffer shmY = ScaveEngine.mapSharedMemory(nameY, s);
+    /**
+     * Returns the number of data points to load and pickle at once. Each point
+     * takes up about 32 bytes: the x and y values in the loaded native arrays,
+     * and their copies in the shared memory segment of the batch. We allow one batch to use 1/8 of the
+     * available memory.
+     */
+    public static long getMaxVectorPointsPerBatch() {
+        return Math.max(1, ScaveEngine.getAvailableMemoryBytes() / 8 / 32);
+    }
 
-        // actual data
-        for (int i = 0; i < l; ++i)
-            shmY.putDouble(array.getY(i));
+    /**
+     * Loads the data of the given vectors, copies them into shared memory and
+     * calls the pickler for each vector, in order, in batches. Each batch goes
+     * into a single shared memory segment, so peak memory usage is bounded by
+     * the batch size instead of the total amount of data, and native buffers
+     * are released after each batch.
+     */
+    public static void pickleVectorsInBatches(ResultFileManager resultManager, IDList vectors, double simTimeStart, double simTimeEnd, InterruptedFlag interruptedFlag, IVectorBatchPickler vectorPickler) throws IOException {
+        long maxPointsPerBatch = getMaxVectorPointsPerBatch();
+        int numVectors = vectors.size();
+        int batchStart = 0;
+        while (batchStart < numVectors) {
+            int batchEnd = batchStart;
+            long numPoints = 0;
+            while (batchEnd < numVectors) {
+                long count = resultManager.getVector(vectors.get(batchEnd)).getStatistics().getCount();
+                if (batchEnd > batchStart && numPoints + count > maxPointsPerBatch)
+                    break;
+                numPoints += count;
+                batchEnd++;
+            }
 
-        ScaveEngine.unmapSharedMemory(shmY);
+            if (debug)
+                Debug.println("pickling vectors " + batchStart + ".." + (batchEnd-1) + ", " + numPoints + " points");
+
+            int[] indices = new int[batchEnd - batchStart];
+            for (int i = 0; i < indices.length; ++i)
+                indices[i] = batchStart + i;
+            IDList batch = vectors.getSubsetByIndices(indices);
+            XYArrayVector batchData = VectorDataLoader.getDataOfVectors(resultManager, batch, simTimeStart, simTimeEnd, interruptedFlag);
+            try {
+                SharedMemoryArena arena = SharedMemoryArena.create(batchData);
+                for (int i = 0; i < batch.size(); ++i) {
+                    vectorPickler.pickleVector(batch.get(i), arena, i);
+                    if (interruptedFlag.getFlag())
+                        throw new RuntimeException("Result pickling interrupted");
+                }
+            }
+            finally {
+                batchData.delete();
+                batch.delete();
+                //System.gc(); // NOT NEEDED, SLOW, and actually BREAKS some internal parts of Py4J...
+                ScaveEngine.malloc_trim(); // so the std::vector buffers (in batchData) are released to the operating system
+            }
+            batchStart = batchEnd;
+        }
     }
 
     public static void pickleDoubleArray(double[] array, OutputStream out) throws IOException {
@@ -0,0 +1,223 @@
+package org.omnetpp.scave.python;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.omnetpp.common.Debug;
+import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.InterruptedFlag;
+import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engineext.IResultFileManagerDisposeListener;
+import org.omnetpp.scave.engineext.IResultFilesChangeListener;
+import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
+import org.omnetpp.scave.engineext.ResultFileManagerEx;
+
+/**
+ * Caches the results of queries issued by charts against a ResultFileManager:
+ * filtered IDLists, and pickles produced by ResultsProvider. Charts in the same
+ * analysis often use the same filters, and they are refreshed much more often
+ * than the set of loaded files changes.
+ *
+ * There is one cache per ResultFileManagerEx; other managers cannot notify
+ * us about changes, so their queries are not cached. Any change event of the
+ * manager (files loaded or unloaded, computed items added, etc.) empties the
+ * cache and increments its generation. Entries computed concurrently with a
+ * change carry the old generation, and are not stored.
+ *
+ * The cache is bounded by an estimate of its memory usage; least recently
+ * used entries are evicted first. The cache owns the IDLists it stores, and
+ * deletes them when they are evicted or the cache is emptied; callers only
+ * get copies.
+ */
+public class ResultQueryCache {
+
+    public static boolean debug = Debug.isChannelEnabled("resultquerycache");
+
+    // keys for filterIDList()
+    public static final String ALL_VECTORS = "vectors";
+    public static final String ALL_ITEMS = "items";
+
+    private static Map<ResultFileManager, ResultQueryCache> instances = new IdentityHashMap<>();
+
+    private long generation = 0;
+    private long sizeLimit;
+    private long size = 0;
+    private int hits = 0;
+    private int misses = 0;
+
+    // values are byte[] (pickles) or IDList; in access order, for LRU eviction
+    private LinkedHashMap<String, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private ResultQueryCache(long sizeLimit) {
+        this.sizeLimit = sizeLimit;
+    }
+
+    /**
+     * Returns the cache for the given result file manager, or null if results
+     * from this manager should not be cached.
+     */
+    public static synchronized ResultQueryCache getInstance(ResultFileManager manager) {
+        if (!(manager instanceof ResultFileManagerEx))
+            return null;
+
+        ResultQueryCache cache = instances.get(manager);
+        if (cache == null) {
+            // pickles are on the Java heap, IDLists are on the native heap; limit both by the Java heap size
+            cache = new ResultQueryCache(Runtime.getRuntime().maxMemory() / 16);
+            ResultFileManagerEx managerEx = (ResultFileManagerEx)manager;
+            ResultQueryCache finalCache = cache;
+            managerEx.addChangeListener(new IResultFilesChangeListener() {
+                @Override
+                public void resultFileManagerChanged(ResultFileManagerChangeEvent event) {
+                    finalCache.invalidate();
+                }
+            });
+            managerEx.addDisposeListener(new IResultFileManagerDisposeListener() {
+                @Override
+                public void resultFileManagerDisposed(ResultFileManager manager) {
+                    finalCache.invalidate();
+                    synchronized (ResultQueryCache.class) {
+                        instances.remove(manager);
+                    }
+                }
+            });
+            instances.put(manager, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Convenience method: returns the items selected by the filter expression
+     * from the items provided by allItems, using the cache of the manager if
+     * it has one. The key identifies allItems, see ALL_VECTORS and ALL_ITEMS.
+     * The returned IDList is owned by the caller, who should delete() it when
+     * no longer needed.
+     */
+    public static IDList filterIDList(ResultFileManager manager, String key, Supplier<IDList> allItems, String filterExpression, InterruptedFlag interruptedFlag) {
+        ResultQueryCache cache = getInstance(manager);
+        String cacheKey = makeKey("filterIDList", key, filterExpression);
+        long generation = cache == null ? 0 : cache.getGeneration();
+        IDList result = cache == null ? null : cache.getIDList(cacheKey);
+        if (result == null) {
+            IDList items = allItems.get();
+            try {
+                result = manager.filterIDList(items, filterExpression, interruptedFlag);
+            }
+            finally {
+                items.delete();
+            }
+            if (cache != null)
+                cache.putIDList(cacheKey, generation, result);
+        }
+        return result;
+    }
+
+    /**
+     * Builds a cache key from the name of the query and its arguments.
+     */
+    public static String makeKey(String method, Object... args) {
+        StringBuilder sb = new StringBuilder(method);
+        for (Object arg : args)
+            sb.append('\0').append(arg);
+        return sb.toString();
+    }
+
+    /**
+     * Returns the current generation. Must be queried before computing an
+     * entry, and passed to put().
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized byte[] getPickle(String key) {
+        return (byte[])get(key);
+    }
+
+    public synchronized void putPickle(String key, long generation, byte[] pickle) {
+        put(key, generation, pickle, pickle.length);
+    }
+
+    /**
+     * Returns a copy of the cached IDList, or null if it is not in the cache.
+     * The copy is owned by the caller.
+     */
+    public synchronized IDList getIDList(String key) {
+        IDList idlist = (IDList)get(key);
+        return idlist == null ? null : idlist.dup(); // copied under the lock, because it may be evicted and deleted as soon as we return
+    }
+
+    /**
+     * Stores a copy of the IDList; the caller keeps the ownership of the original.
+     */
+    public synchronized void putIDList(String key, long generation, IDList idlist) {
+        if (generation == this.generation)
+            put(key, generation, idlist.dup(), 8L * idlist.size());
+    }
+
+    protected synchronized Object get(String key) {
+        Object value = entries.get(key);
+        if (value != null)
+            hits++;
+        else
+            misses++;
+        return value;
+    }
+
+    protected synchronized void put(String key, long generation, Object value, long valueSize) {
+        if (generation != this.generation)
+            return; // computed from data that has changed since
+        long entrySize = estimateSize(key, valueSize);
+        if (entrySize > sizeLimit / 4) {
+            dispose(value);
+            return; // would evict too much
+        }
+
+        Object old = entries.put(key, value);
+        if (old != null) {
+            size -= estimateSize(key, sizeOf(old));
+            dispose(old);
+        }
+        size += entrySize;
+
+        Iterator<Map.Entry<String, Object>> it = entries.entrySet().iterator();
+        while (size > sizeLimit && it.hasNext()) {
+            Map.Entry<String, Object> entry = it.next();
+            size -= estimateSize(entry.getKey(), sizeOf(entry.getValue()));
+            dispose(entry.getValue());
+            it.remove();
+        }
+    }
+
+    /**
+     * Removes all entries. Called when the contents of the result file manager change.
+     */
+    public synchronized void invalidate() {
+        if (debug)
+            Debug.println("ResultQueryCache: invalidating " + entries.size() + " entries, " + size + " bytes; hits: " + hits + ", misses: " + misses);
+        generation++;
+        for (Object value : entries.values())
+            dispose(value);
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Frees the native memory of an entry that has been removed from the cache.
+     */
+    private static void dispose(Object value) {
+        if (value instanceof IDList)
+            ((IDList)value).delete();
+    }
+
+    private static long sizeOf(Object value) {
+        return value instanceof byte[] ? ((byte[])value).length : 8L * ((IDList)value).size();
+    }
+
+    private static long estimateSize(String key, long valueSize) {
+        return 2L * key.length() + valueSize + 64;
+    }
+}
@@ -0,0 +1,95 @@
+package org.omnetpp.scave.python;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.omnetpp.scave.engine.ScaveEngine;
+import org.omnetpp.scave.engine.XYArray;
+import org.omnetpp.scave.engine.XYArrayVector;
+
+/**
+ * A single shared memory segment that holds the data of several XYArrays,
+ * for transferring them to the Python process. For each array, the x values
+ * are immediately followed by the y values, all stored as doubles in native
+ * byte order. The data is copied into the segment by native code in bulk,
+ * without going through JNI for every element.
+ *
+ * In the pickle, each column is referred to with a "<name> <size> <offset> <count>"
+ * string, where the offset is in bytes. These strings together form the offset
+ * table of the segment; see _get_array_from_shm() in results.py.
+ */
+public class SharedMemoryArena {
+
+    static int shmSerial = 0;
+
+    private String name;
+    private long size;
+    private long[] offsets;
+    private int[] lengths;
+
+    private SharedMemoryArena(int numArrays) {
+        offsets = new long[numArrays];
+        lengths = new int[numArrays];
+    }
+
+    /**
+     * Creates a new shared memory segment, and copies all arrays in the given
+     * vector into it. If all arrays are empty, no segment is created.
+     */
+    public static SharedMemoryArena create(XYArrayVector arrays) {
+        int n = (int)arrays.size();
+        SharedMemoryArena arena = new SharedMemoryArena(n);
+        long offset = 0;
+        for (int i = 0; i < n; ++i) {
+            arena.offsets[i] = offset;
+            arena.lengths[i] = arrays.get(i).length();
+            offset += 2L * arena.lengths[i] * 8;
+        }
+        arena.size = offset;
+
+        if (arena.size != 0) {
+            ByteBuffer shm = arena.createAndMap();
+            try {
+                for (int i = 0; i < n; ++i)
+                    ScaveEngine.copyXYArrayToBuffer(XYArray.getCPtr(arrays.get(i)), shm, arena.offsets[i]);
+            }
+            finally {
+                ScaveEngine.unmapSharedMemory(shm);
+            }
+        }
+        return arena;
+    }
+
+    private ByteBuffer createAndMap() {
+        // The & 0xFFFF thingies are there to limit the length of the decimal numbers, because on macOS,
+        // the max SHM name length (SHM_NAME_MAX) is 31. The fixed part is 13 characters.
+        name = "/vectordata-" + (System.nanoTime() & 0xFFFF) + "-" + (shmSerial & 0xFFFF);
+        shmSerial += 1;
+
+        ScaveEngine.createSharedMemory(name, size);
+        return ScaveEngine.mapSharedMemory(name, size);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Pickles references to the x and y values of the i-th array, as two strings.
+     */
+    public void pickleXYArray(int i, OutputStream out) throws IOException {
+        if (lengths[i] == 0) {
+            ResultPicklingUtils.writeString("<EMPTY> 0", out);
+            ResultPicklingUtils.writeString("<EMPTY> 0", out);
+        }
+        else {
+            ResultPicklingUtils.writeString(name + " " + size + " " + offsets[i] + " " + lengths[i], out);
+            ResultPicklingUtils.writeString(name + " " + size + " " + (offsets[i] + lengths[i] * 8L) + " " + lengths[i], out);
+        }
+    }
+}
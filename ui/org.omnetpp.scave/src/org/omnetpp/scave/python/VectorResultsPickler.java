@@ -4,14 +4,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import org.omnetpp.common.Debug;
-import org.omnetpp.scave.charting.dataset.VectorDataLoader;
 import org.omnetpp.scave.engine.IDList;
 import org.omnetpp.scave.engine.InterruptedFlag;
 import org.omnetpp.scave.engine.ResultFileManager;
-import org.omnetpp.scave.engine.ScaveEngine;
 import org.omnetpp.scave.engine.VectorResult;
-import org.omnetpp.scave.engine.XYArray;
-import org.omnetpp.scave.engine.XYArrayVector;
 
 import net.razorvine.pickle.IObjectPickler;
 import net.razorvine.pickle.Opcodes;
@@ -20,7 +16,7 @@ import net.razorvine.pickle.Pickler;
 
 public class VectorResultsPickler implements IObjectPickler {
 
-    void pickleVectorResult(ResultFileManager resultManager, long ID, XYArray data, Pickler pickler,
+    void pickleVectorResult(ResultFileManager resultManager, long ID, SharedMemoryArena arena, int index, Pickler pickler,
             OutputStream out) throws PickleException, IOException {
         VectorResult result = resultManager.getVector(ID);
 
@@ -31,7 +27,7 @@ public class VectorResultsPickler implements IObjectPickler {
             pickler.save(result.getModuleName());
             pickler.save(result.getName());
 
-            ResultPicklingUtils.pickleXYArray(data, out);
+            arena.pickleXYArray(index, out);
         }
         out.write(Opcodes.TUPLE);
     }
@@ -57,42 +53,34 @@ public class VectorResultsPickler implements IObjectPickler {
         out.write(Opcodes.MARK);
         {
             IDList vectors = null;
+            try {
+                out.write(Opcodes.MARK);
+                if (filterExpression != null && !filterExpression.trim().isEmpty()) {
+                    if (ResultPicklingUtils.debug)
+                        Debug.println("vector pickling start");
 
-            out.write(Opcodes.MARK);
-            if (filterExpression != null && !filterExpression.trim().isEmpty()) {
-                if (ResultPicklingUtils.debug)
-                    Debug.println("vector pickling start");
+                    vectors = ResultQueryCache.filterIDList(resultManager, ResultQueryCache.ALL_VECTORS, () -> resultManager.getAllVectors(), filterExpression, interruptedFlag);
 
-                vectors = resultManager.getAllVectors();
-                vectors = resultManager.filterIDList(vectors, filterExpression, interruptedFlag);
+                    if (ResultPicklingUtils.debug)
+                        Debug.println("pickling " + vectors.size() + " vectors");
 
-                if (ResultPicklingUtils.debug)
-                    Debug.println("pickling " + vectors.size() + " vectors");
+                    ResultPicklingUtils.pickleVectorsInBatches(resultManager, vectors, simTimeStart, simTimeEnd, interruptedFlag,
+                            (id, arena, index) -> pickleVectorResult(resultManager, id, arena, index, pickler, out));
 
-                XYArrayVector vectorsData = VectorDataLoader.getDataOfVectors(resultManager, vectors, simTimeStart, simTimeEnd, interruptedFlag);
-
-                for (int i = 0; i < vectors.size(); ++i) {
-                    pickleVectorResult(resultManager, vectors.get(i), vectorsData.get(i), pickler, out);
-                    if (interruptedFlag.getFlag())
-                        throw new RuntimeException("Result pickling interrupted");
+                    if (ResultPicklingUtils.debug)
+                        Debug.println("vector pickling done");
                 }
-                if (ResultPicklingUtils.debug)
-                    Debug.println("vector pickling done, cleaning up memory");
-
-                vectorsData.delete();
-                vectorsData = null;
-                //System.gc(); // NOT NEEDED, SLOW, and actually BREAKS some internal parts of Py4J...
-                ScaveEngine.malloc_trim(); // so the std::vector buffers (in vectorsData) are released to the operating system
+                out.write(Opcodes.LIST);
 
-                if (ResultPicklingUtils.debug)
-                    Debug.println("vector data cleanup done");
+                if (vectors != null && includeAttrs)
+                    new ResultAttrsPickler(vectors, interruptedFlag).pickle(resultManager, out, pickler);
+                else
+                    out.write(Opcodes.NONE);
+            }
+            finally {
+                if (vectors != null)
+                    vectors.delete();
             }
-            out.write(Opcodes.LIST);
-
-            if (vectors != null && includeAttrs)
-                new ResultAttrsPickler(vectors, interruptedFlag).pickle(resultManager, out, pickler);
-            else
-                out.write(Opcodes.NONE);
         }
         out.write(Opcodes.TUPLE);
     }
@@ -2,6 +2,7 @@ package org.omnetpp.scave.python;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -9,6 +10,7 @@ import java.util.Map;
 import org.omnetpp.common.engine.BigDecimal;
 import org.omnetpp.scave.ScavePlugin;
 import org.omnetpp.scave.charting.dataset.IXYDataset;
+import org.omnetpp.scave.charting.dataset.MinMaxPyramid;
 import org.omnetpp.scave.engine.ScaveEngine;
 
 import net.razorvine.pickle.PickleException;
@@ -23,6 +25,30 @@ public class XYDataset implements IXYDataset {
         ByteBuffer xs;
         ByteBuffer ys;
 
+        // extents, computed once when the data is mapped
+        double minX, maxX, minY, maxY;
+
+        // only for long series, see MIN_PYRAMID_ITEM_COUNT
+        MinMaxPyramid pyramid;
+
+        public void buildPyramid() {
+            if (ys.capacity() / 8 >= MIN_PYRAMID_ITEM_COUNT) {
+                ByteBuffer whole = ys.duplicate().order(ys.order());
+                whole.clear();
+                pyramid = new MinMaxPyramid(whole.asDoubleBuffer());
+            }
+        }
+
+        public void computeExtents() {
+            double[] range = new double[2];
+            computeRange(xs, range);
+            minX = range[0];
+            maxX = range[1];
+            computeRange(ys, range);
+            minY = range[0];
+            maxY = range[1];
+        }
+
         public void dispose() {
             if (xs != null && xs.capacity() != 0)
                 ScaveEngine.unmapSharedMemory(xs);
@@ -46,8 +72,40 @@ public class XYDataset implements IXYDataset {
         return Integer.toString(maxKey + 1);
     }
 
+    // series shorter than this are drawn point by point anyway
+    public static final int MIN_PYRAMID_ITEM_COUNT = 100000;
+
     ArrayList<SeriesData> series = new ArrayList<SeriesData>();
 
+    /**
+     * Stores the minimum and maximum of the doubles in the buffer into range[0]
+     * and range[1]; NaNs are ignored. The values are read in chunks through
+     * a DoubleBuffer view, so the loop runs on a plain array.
+     */
+    protected static void computeRange(ByteBuffer buffer, double[] range) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        ByteBuffer whole = buffer.duplicate().order(buffer.order()); // duplicate() does not keep the byte order
+        whole.clear();
+        DoubleBuffer doubles = whole.asDoubleBuffer();
+        double[] chunk = new double[Math.min(doubles.remaining(), 64*1024)];
+        while (doubles.hasRemaining()) {
+            int n = Math.min(doubles.remaining(), chunk.length);
+            doubles.get(chunk, 0, n);
+            for (int i = 0; i < n; ++i) {
+                double d = chunk[i];
+                if (d < min)
+                    min = d;
+                if (d > max)
+                    max = d;
+            }
+        }
+
+        range[0] = min;
+        range[1] = max;
+    }
+
     public void dispose() {
         for (SeriesData sd : series)
             sd.dispose();
@@ -99,6 +157,8 @@ public class XYDataset implements IXYDataset {
 
                 seriesData.xs = map(xName);
                 seriesData.ys = map(yName);
+                seriesData.computeExtents();
+                seriesData.buildPyramid();
 
                 series.add(seriesData);
             }
@@ -159,31 +219,29 @@ public class XYDataset implements IXYDataset {
     @Override
     public double getMinX() {
         double min = Double.POSITIVE_INFINITY;
-
         for (SeriesData sd : series)
-            for (int i = 0; i < sd.xs.capacity() / 8; ++i) {
-                double x = sd.xs.getDouble(i*8);
-                if (x < min)
-                    min = x;
-            }
-
+            min = Math.min(min, sd.minX);
         return min;
     }
 
     @Override
     public double getMaxX() {
         double max = Double.NEGATIVE_INFINITY;
-
         for (SeriesData sd : series)
-            for (int i = 0; i < sd.xs.capacity() / 8; ++i) {
-                double x = sd.xs.getDouble(i*8);
-                if (x > max)
-                    max = x;
-            }
-
+            max = Math.max(max, sd.maxX);
         return max;
     }
 
+    @Override
+    public double getMinX(int series) {
+        return this.series.get(series).minX;
+    }
+
+    @Override
+    public double getMaxX(int series) {
+        return this.series.get(series).maxX;
+    }
+
     @Override
     public double getY(int series, int item) {
         return this.series.get(series).ys.getDouble(item*8);
@@ -197,31 +255,34 @@ public class XYDataset implements IXYDataset {
     @Override
     public double getMinY() {
         double min = Double.POSITIVE_INFINITY;
-
         for (SeriesData sd : series)
-            for (int i = 0; i < sd.ys.capacity() / 8; ++i) {
-                double y = sd.ys.getDouble(i*8);
-                if (y < min)
-                    min = y;
-            }
-
+            min = Math.min(min, sd.minY);
         return min;
     }
 
     @Override
     public double getMaxY() {
         double max = Double.NEGATIVE_INFINITY;
-
         for (SeriesData sd : series)
-            for (int i = 0; i < sd.ys.capacity() / 8; ++i) {
-                double y = sd.ys.getDouble(i*8);
-                if (y > max)
-                    max = y;
-            }
-
+            max = Math.max(max, sd.maxY);
         return max;
     }
 
+    @Override
+    public double getMinY(int series) {
+        return this.series.get(series).minY;
+    }
+
+    @Override
+    public double getMaxY(int series) {
+        return this.series.get(series).maxY;
+    }
+
+    @Override
+    public MinMaxPyramid getMinMaxPyramid(int series) {
+        return this.series.get(series).pyramid;
+    }
+
     @Override
     public String getXAsString(int series, int item) {
         BigDecimal xp = getPreciseX(series, item);
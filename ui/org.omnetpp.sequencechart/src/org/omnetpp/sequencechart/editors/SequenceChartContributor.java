@@ -638,6 +638,7 @@ public class SequenceChartContributor extends EditorActionBarContributor impleme
                         addSubMenuItem(menu, "Module Id", SequenceChart.AxisOrderingMode.MODULE_ID);
                         addSubMenuItem(menu, "Module Name", SequenceChart.AxisOrderingMode.MODULE_FULL_PATH);
                         addSubMenuItem(menu, "Minimize Crossings", SequenceChart.AxisOrderingMode.MINIMIZE_CROSSINGS);
+                        addSubMenuItem(menu, "Minimize Crossings (Large Models)", SequenceChart.AxisOrderingMode.MINIMIZE_CROSSINGS_SPECTRAL);
                     }
 
                     private void addSubMenuItem(Menu menu, String text, final SequenceChart.AxisOrderingMode axisOrderingMode) {
@@ -111,6 +111,7 @@ import org.omnetpp.sequencechart.widgets.axisorder.AxisOrderByModuleId;
 import org.omnetpp.sequencechart.widgets.axisorder.AxisOrderByModuleName;
 import org.omnetpp.sequencechart.widgets.axisorder.FlatAxisOrderByMinimizingCost;
 import org.omnetpp.sequencechart.widgets.axisorder.ManualAxisOrder;
+import org.omnetpp.sequencechart.widgets.axisorder.SpectralAxisOrderByMinimizingCost;
 import org.omnetpp.sequencechart.widgets.axisrenderer.AxisLineRenderer;
 import org.omnetpp.sequencechart.widgets.axisrenderer.AxisVectorBarRenderer;
 import org.omnetpp.sequencechart.widgets.axisrenderer.IAxisRenderer;
@@ -299,7 +300,8 @@ public class SequenceChart
         MANUAL,
         MODULE_ID,
         MODULE_FULL_PATH,
-        MINIMIZE_CROSSINGS
+        MINIMIZE_CROSSINGS,
+        MINIMIZE_CROSSINGS_SPECTRAL // scales to thousands of axes
     }
 
     /*************************************************************************************
@@ -1955,6 +1957,10 @@ public class SequenceChart
                         axisModulesArray = manualAxisOrder.getCurrentAxisModuleOrder(axisModulesArray).toArray(new ModuleTreeItem[0]);
                         axisModulePositions = new FlatAxisOrderByMinimizingCost(eventLogInput).calculateOrdering(axisModulesArray, getModuleIdToAxisModuleIndexMap());
                         break;
+                    case MINIMIZE_CROSSINGS_SPECTRAL:
+                        int[] initialPositions = manualAxisOrder.calculateOrdering(axisModulesArray);
+                        axisModulePositions = new SpectralAxisOrderByMinimizingCost(eventLogInput).calculateOrdering(axisModulesArray, getModuleIdToAxisModuleIndexMap(), initialPositions);
+                        break;
                     default:
                         throw new RuntimeException("Unknown axis ordering mode");
                 }
@@ -0,0 +1,360 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.sequencechart.widgets.axisorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.omnetpp.common.eventlog.EventLogInput;
+import org.omnetpp.common.eventlog.ModuleTreeItem;
+import org.omnetpp.eventlog.engine.IntIntMap;
+import org.omnetpp.eventlog.engine.IntVector;
+
+/**
+ * This class implements a sort method that minimizes the same cost as FlatAxisOrderByMinimizingCost
+ * (the sum of squared axis distances of the sampled message dependencies, weighted by their counts),
+ * but scales to thousands of axes.
+ *
+ * The sampled dependencies are stored as a sparse weighted graph. Each connected component of the graph
+ * gets an initial ordering from the Fiedler vector of its Laplacian (computed with power iteration),
+ * which is the optimum of the continuous relaxation of the cost. Components are placed in the order
+ * of their first axis in the initial ordering. The result is then refined by swapping axes that
+ * are close to each other whenever that lowers the cost; the cost change of a swap is computed from
+ * the edges of the two axes only. Power iteration and refinement share a single time limit.
+ */
+public class SpectralAxisOrderByMinimizingCost {
+    private EventLogInput eventLogInput;
+
+    private static final int TIME_LIMIT = 1000; // in milliseconds, for the whole calculation
+    private static final int MAX_POWER_ITERATIONS = 2000;
+    private static final double POWER_ITERATION_EPSILON = 1E-9;
+    private static final int SWAP_DISTANCE = 8; // axes at most this far from each other are tried to be swapped
+    private static final int PARALLEL_THRESHOLD = 1000; // number of axes above which computations are parallelized
+
+    // the sparse symmetric adjacency matrix: the neighbors of axis i are neighbors[offsets[i]..offsets[i+1])
+    private int[] offsets;
+    private int[] neighbors;
+    private double[] weights;
+
+    public SpectralAxisOrderByMinimizingCost(EventLogInput eventLogInput) {
+        this.eventLogInput = eventLogInput;
+    }
+
+    /**
+     * Returns the position of each axis module. Indices in moduleIdToAxisModuleIndexMap refer to the
+     * axisModules array, and initialPositions (indexed the same way) is the ordering to start from.
+     */
+    public int[] calculateOrdering(ModuleTreeItem[] axisModules, Map<Integer, Integer> moduleIdToAxisModuleIndexMap, int[] initialPositions) {
+        int numberOfAxes = axisModules.length;
+        if (numberOfAxes < 3)
+            return initialPositions.clone();
+
+        long deadline = System.currentTimeMillis() + TIME_LIMIT;
+        IntIntMap cppModuleIdToAxisModuleIndexMap = getCppModuleIdToAxisModuleIndexMap(moduleIdToAxisModuleIndexMap);
+        IntVector cppAxisMessageDependecyWeightMatrix = eventLogInput.getSequenceChartFacade().getApproximateMessageDependencyCountAdjacencyMatrix(cppModuleIdToAxisModuleIndexMap, 100, 1, 0);
+        buildAdjacency(cppAxisMessageDependecyWeightMatrix, numberOfAxes);
+
+        int[] order = calculateSpectralOrder(initialPositions, deadline);
+        refineOrder(order, deadline);
+
+        int[] axisModulePositions = new int[numberOfAxes];
+        for (int position = 0; position < numberOfAxes; position++)
+            axisModulePositions[order[position]] = position;
+        return axisModulePositions;
+    }
+
+    /**
+     * Converts the dense matrix returned by the C++ code into the sparse symmetric form.
+     * Rows are scanned in parallel for large matrices.
+     */
+    private void buildAdjacency(IntVector cppAxisMessageDependecyWeightMatrix, int numberOfAxes) {
+        // the matrix may be smaller if some axes have no modules mapped to them
+        int matrixSize = (int)Math.round(Math.sqrt(cppAxisMessageDependecyWeightMatrix.size()));
+        int size = Math.min(matrixSize, numberOfAxes);
+        int[][] rowColumns = new int[size][];
+        int[][] rowWeights = new int[size][];
+
+        IntStream rows = IntStream.range(0, size);
+        if (size >= PARALLEL_THRESHOLD)
+            rows = rows.parallel();
+        rows.forEach(i -> {
+            int count = 0;
+            int[] columns = new int[8];
+            int[] values = new int[8];
+            for (int j = 0; j < size; j++) {
+                int weight = cppAxisMessageDependecyWeightMatrix.get(matrixSize * i + j);
+                if (weight != 0 && i != j) {
+                    if (count == columns.length) {
+                        columns = Arrays.copyOf(columns, 2 * count);
+                        values = Arrays.copyOf(values, 2 * count);
+                    }
+                    columns[count] = j;
+                    values[count] = weight;
+                    count++;
+                }
+            }
+            rowColumns[i] = Arrays.copyOf(columns, count);
+            rowWeights[i] = Arrays.copyOf(values, count);
+        });
+
+        // symmetrize: the weight between i and j is the count of dependencies in both directions
+        List<Map<Integer, Double>> adjacency = new ArrayList<Map<Integer, Double>>(numberOfAxes);
+        for (int i = 0; i < numberOfAxes; i++)
+            adjacency.add(new HashMap<Integer, Double>());
+        for (int i = 0; i < size; i++) {
+            for (int k = 0; k < rowColumns[i].length; k++) {
+                int j = rowColumns[i][k];
+                double weight = rowWeights[i][k];
+                adjacency.get(i).merge(j, weight, Double::sum);
+                adjacency.get(j).merge(i, weight, Double::sum);
+            }
+        }
+
+        offsets = new int[numberOfAxes + 1];
+        for (int i = 0; i < numberOfAxes; i++)
+            offsets[i + 1] = offsets[i] + adjacency.get(i).size();
+        neighbors = new int[offsets[numberOfAxes]];
+        weights = new double[offsets[numberOfAxes]];
+        for (int i = 0; i < numberOfAxes; i++) {
+            int k = offsets[i];
+            for (Map.Entry<Integer, Double> entry : adjacency.get(i).entrySet()) {
+                neighbors[k] = entry.getKey();
+                weights[k] = entry.getValue();
+                k++;
+            }
+        }
+    }
+
+    /**
+     * Returns the axes in the order given by the Fiedler vectors of the connected components.
+     */
+    private int[] calculateSpectralOrder(final int[] initialPositions, long deadline) {
+        int numberOfAxes = initialPositions.length;
+        List<int[]> components = findConnectedComponents(initialPositions);
+
+        int[] order = new int[numberOfAxes];
+        int position = 0;
+        for (int[] component : components) {
+            if (component.length > 2)
+                component = orderComponent(component, deadline);
+            for (int axis : component)
+                order[position++] = axis;
+        }
+        return order;
+    }
+
+    /**
+     * Returns the connected components, each sorted by the initial positions,
+     * and ordered by the initial position of their first axis.
+     */
+    private List<int[]> findConnectedComponents(final int[] initialPositions) {
+        int numberOfAxes = initialPositions.length;
+        Integer[] axesByInitialPosition = new Integer[numberOfAxes];
+        for (int i = 0; i < numberOfAxes; i++)
+            axesByInitialPosition[i] = i;
+        Arrays.sort(axesByInitialPosition, Comparator.comparingInt(axis -> initialPositions[axis]));
+
+        boolean[] visited = new boolean[numberOfAxes];
+        int[] stack = new int[numberOfAxes];
+        int[] component = new int[numberOfAxes];
+        List<int[]> components = new ArrayList<int[]>();
+        for (int start : axesByInitialPosition) {
+            if (visited[start])
+                continue;
+            int count = 0;
+            int stackSize = 0;
+            stack[stackSize++] = start;
+            visited[start] = true;
+            while (stackSize > 0) {
+                int axis = stack[--stackSize];
+                component[count++] = axis;
+                for (int k = offsets[axis]; k < offsets[axis + 1]; k++) {
+                    if (!visited[neighbors[k]]) {
+                        visited[neighbors[k]] = true;
+                        stack[stackSize++] = neighbors[k];
+                    }
+                }
+            }
+            Integer[] sorted = new Integer[count];
+            for (int i = 0; i < count; i++)
+                sorted[i] = component[i];
+            Arrays.sort(sorted, Comparator.comparingInt(axis -> initialPositions[axis]));
+            components.add(ArrayUtils.toPrimitive(sorted));
+        }
+        return components;
+    }
+
+    /**
+     * Orders the axes of a connected component by their values in the Fiedler vector
+     * (the eigenvector of the second smallest eigenvalue of the Laplacian). It is computed
+     * with power iteration on (c*I - L), projecting out the constant eigenvector, starting
+     * from the initial ordering. Iteration stops early at the deadline.
+     */
+    private int[] orderComponent(final int[] component, long deadline) {
+        final int size = component.length;
+        final Map<Integer, Integer> localIndex = new HashMap<Integer, Integer>();
+        for (int i = 0; i < size; i++)
+            localIndex.put(component[i], i);
+
+        // local copy of the adjacency of the component, and the weighted degrees
+        final int[][] localNeighbors = new int[size][];
+        final double[][] localWeights = new double[size][];
+        final double[] degrees = new double[size];
+        double maxDegree = 0;
+        for (int i = 0; i < size; i++) {
+            int axis = component[i];
+            int degree = offsets[axis + 1] - offsets[axis];
+            localNeighbors[i] = new int[degree];
+            localWeights[i] = new double[degree];
+            for (int k = 0; k < degree; k++) {
+                localNeighbors[i][k] = localIndex.get(neighbors[offsets[axis] + k]);
+                localWeights[i][k] = weights[offsets[axis] + k];
+                degrees[i] += localWeights[i][k];
+            }
+            maxDegree = Math.max(maxDegree, degrees[i]);
+        }
+        final double shift = 2 * maxDegree; // makes (shift*I - L) positive semidefinite
+
+        // the component is sorted by the initial positions, so start from its rank
+        double[] x = new double[size];
+        for (int i = 0; i < size; i++)
+            x[i] = i;
+        normalize(x);
+
+        for (int iteration = 0; iteration < MAX_POWER_ITERATIONS && System.currentTimeMillis() < deadline; iteration++) {
+            final double[] current = x;
+            final double[] next = new double[size];
+            IntStream indices = IntStream.range(0, size);
+            if (size >= PARALLEL_THRESHOLD)
+                indices = indices.parallel();
+            indices.forEach(i -> {
+                double sum = (shift - degrees[i]) * current[i];
+                for (int k = 0; k < localNeighbors[i].length; k++)
+                    sum += localWeights[i][k] * current[localNeighbors[i][k]];
+                next[i] = sum;
+            });
+            normalize(next);
+            double difference = 0;
+            for (int i = 0; i < size; i++)
+                difference += (next[i] - current[i]) * (next[i] - current[i]);
+            x = next;
+            if (difference < POWER_ITERATION_EPSILON)
+                break;
+        }
+
+        // the sign of the eigenvector is arbitrary: keep the direction of the initial ordering
+        double correlation = 0;
+        for (int i = 0; i < size; i++)
+            correlation += x[i] * i;
+        final double[] fiedler = x;
+        final double sign = correlation < 0 ? -1 : 1;
+        Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++)
+            sorted[i] = i;
+        Arrays.sort(sorted, (a, b) -> {
+            int result = Double.compare(sign * fiedler[a], sign * fiedler[b]);
+            return result != 0 ? result : Integer.compare(a, b);
+        });
+
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++)
+            result[i] = component[sorted[i]];
+        return result;
+    }
+
+    /**
+     * Subtracts the mean (the projection on the constant eigenvector), and scales to unit length.
+     */
+    private static void normalize(double[] x) {
+        double mean = 0;
+        for (double value : x)
+            mean += value;
+        mean /= x.length;
+        double length = 0;
+        for (int i = 0; i < x.length; i++) {
+            x[i] -= mean;
+            length += x[i] * x[i];
+        }
+        length = Math.sqrt(length);
+        if (length > 0)
+            for (int i = 0; i < x.length; i++)
+                x[i] /= length;
+    }
+
+    /**
+     * Swaps nearby axes as long as it lowers the cost, or until the deadline.
+     */
+    private void refineOrder(int[] order, long deadline) {
+        int numberOfAxes = order.length;
+        int[] positions = new int[numberOfAxes];
+        for (int position = 0; position < numberOfAxes; position++)
+            positions[order[position]] = position;
+
+        boolean swapped = true;
+        while (swapped && System.currentTimeMillis() < deadline) {
+            swapped = false;
+            for (int position1 = 0; position1 < numberOfAxes; position1++) {
+                for (int position2 = position1 + 1; position2 < numberOfAxes && position2 <= position1 + SWAP_DISTANCE; position2++) {
+                    int axis1 = order[position1];
+                    int axis2 = order[position2];
+                    if (calculateSwapCostDelta(positions, axis1, axis2) < 0) {
+                        order[position1] = axis2;
+                        order[position2] = axis1;
+                        positions[axis1] = position2;
+                        positions[axis2] = position1;
+                        swapped = true;
+                    }
+                }
+                if ((position1 & 255) == 0 && System.currentTimeMillis() >= deadline)
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Returns how the cost would change if the two axes were swapped. Only the edges of the two
+     * axes are affected, except for the edge between them whose length does not change.
+     */
+    private double calculateSwapCostDelta(int[] positions, int axis1, int axis2) {
+        int position1 = positions[axis1];
+        int position2 = positions[axis2];
+        double delta = 0;
+        for (int k = offsets[axis1]; k < offsets[axis1 + 1]; k++) {
+            if (neighbors[k] != axis2) {
+                int position = positions[neighbors[k]];
+                delta += weights[k] * (square(position2 - position) - square(position1 - position));
+            }
+        }
+        for (int k = offsets[axis2]; k < offsets[axis2 + 1]; k++) {
+            if (neighbors[k] != axis1) {
+                int position = positions[neighbors[k]];
+                delta += weights[k] * (square(position1 - position) - square(position2 - position));
+            }
+        }
+        return delta;
+    }
+
+    private static double square(int x) {
+        return (double)x * x;
+    }
+
+    private IntIntMap getCppModuleIdToAxisModuleIndexMap(Map<Integer, Integer> moduleIdToAxisModuleIndexMap) {
+        IntIntMap cppModuleIdToAxisModuleIndexMap = new IntIntMap();
+
+        for (Integer key : moduleIdToAxisModuleIndexMap.keySet())
+            cppModuleIdToAxisModuleIndexMap.set(key, moduleIdToAxisModuleIndexMap.get(key));
+
+        return cppModuleIdToAxisModuleIndexMap;
+    }
+}
@@ -0,0 +1,206 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.ned;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.junit.Test;
+import org.omnetpp.common.project.ProjectUtils;
+import org.omnetpp.ned.core.NedResources;
+import org.omnetpp.ned.model.AbstractNedErrorStore;
+import org.omnetpp.ned.model.INedElement;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
+import org.omnetpp.ned.model.interfaces.INedTypeInfo;
+
+/**
+ * Checks that the type tables and type infos after an incremental rehash
+ * (triggered by changing, adding and removing NED files) are the same as
+ * after a full rehash.
+ */
+public class IncrementalRehashTest extends TestCase {
+    private static final String PROJECT_NAME = "incremental-rehash-test";
+
+    private IProject project;
+
+    /**
+     * Collects duplicate type errors as strings.
+     */
+    private static class ErrorCollector extends AbstractNedErrorStore {
+        List<String> errors = new ArrayList<String>();
+
+        public void setFile(IFile file) {
+        }
+
+        public void add(int severity, INedElement context, int line, String message) {
+            errors.add(context + ": " + message);
+        }
+
+        public int getNumProblems() {
+            return errors.size();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME);
+        ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+            public void run(IProgressMonitor monitor) throws CoreException {
+                if (project.exists())
+                    project.delete(true, true, monitor);
+                project.create(monitor);
+                project.open(monitor);
+                ProjectUtils.addOmnetppNature(project, monitor);
+                project.getFolder("base").create(true, true, monitor);
+                project.getFolder("derived").create(true, true, monitor);
+                project.getFolder("other").create(true, true, monitor);
+                writeFile("base/Base.ned", "package base;\nsimple Base {\n  parameters:\n    int a;\n  gates:\n    input in;\n}\nmoduleinterface IApp {\n}\n");
+                writeFile("derived/Derived.ned", "package derived;\nimport base.Base;\nimport base.IApp;\nsimple Derived extends Base like IApp {\n  parameters:\n    int b;\n}\n");
+                writeFile("derived/Net.ned", "package derived;\nnetwork Net {\n  submodules:\n    d: Derived;\n    e: <> like base.IApp;\n}\n");
+                writeFile("other/Unrelated.ned", "package other;\nsimple Unrelated {\n  parameters:\n    int c;\n}\n");
+            }
+        }, null);
+        waitUntilLoaded();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (project != null && project.exists())
+            project.delete(true, true, null);
+        waitUntilLoaded();
+    }
+
+    protected void writeFile(String path, String content) throws CoreException {
+        IFile file = project.getFile(path);
+        ByteArrayInputStream stream = new ByteArrayInputStream(content.getBytes());
+        if (file.exists())
+            file.setContents(stream, true, false, null);
+        else
+            file.create(stream, true, null);
+    }
+
+    protected void waitUntilLoaded() throws InterruptedException {
+        NedResources nedResources = NedResources.getInstance();
+        while (nedResources.isLoadingInProgress() || nedResources.isReadMissingNedFilesJobScheduled())
+            Thread.sleep(50);
+    }
+
+    /**
+     * Returns a textual dump of everything a rehash affects: the type tables, duplicate
+     * errors, and the inherited members of all types. This also makes all type infos
+     * compute their inherited members, so that stale ones show up after the next change.
+     */
+    protected Map<String,String> takeSnapshot() {
+        NedResources nedResources = NedResources.getInstance();
+        Map<String,String> result = new TreeMap<String, String>();
+        result.put("types", sorted(nedResources.getToplevelNedTypeQNames(project)));
+        result.put("reserved", sorted(nedResources.getReservedQNames(project)));
+        ErrorCollector errorCollector = new ErrorCollector();
+        nedResources.addErrorsForDuplicates(errorCollector);
+        result.put("duplicates", sorted(errorCollector.errors));
+        for (INedTypeInfo typeInfo : nedResources.getToplevelNedTypes(project)) {
+            List<String> chain = new ArrayList<String>();
+            for (INedTypeInfo ancestor : typeInfo.getInheritanceChain())
+                chain.add(ancestor.getFullyQualifiedName());
+            result.put(typeInfo.getFullyQualifiedName(),
+                    "chain=" + chain +
+                    " interfaces=" + sorted(qnamesOf(typeInfo.getInterfaces())) +
+                    " params=" + sorted(typeInfo.getParamDeclarations().keySet()) +
+                    " gates=" + sorted(typeInfo.getGateDeclarations().keySet()) +
+                    " submodules=" + sorted(typeInfo.getSubmodules().keySet()) +
+                    " usedTypes=" + sorted(qnamesOf(typeInfo.getUsedTypes())));
+        }
+        return result;
+    }
+
+    protected static List<String> qnamesOf(Collection<INedTypeElement> elements) {
+        List<String> result = new ArrayList<String>();
+        for (INedTypeElement element : elements)
+            result.add(element.getNedTypeInfo().getFullyQualifiedName());
+        return result;
+    }
+
+    protected static String sorted(Collection<String> strings) {
+        List<String> list = new ArrayList<String>(strings);
+        Collections.sort(list);
+        return list.toString();
+    }
+
+    /**
+     * Compares the state after the incremental rehash that followed the last change
+     * with the state after a full rehash.
+     */
+    protected void assertSameAsFullRehash() {
+        Map<String,String> incremental = takeSnapshot();
+        NedResources nedResources = NedResources.getInstance();
+        nedResources.invalidate();
+        nedResources.rehashIfNeeded();
+        Map<String,String> full = takeSnapshot();
+        assertEquals(full, incremental);
+    }
+
+    @Test
+    public void testChangeBaseType() throws CoreException {
+        takeSnapshot();
+        writeFile("base/Base.ned", "package base;\nsimple Base {\n  parameters:\n    int a;\n    int a2;\n  gates:\n    input in;\n    output out;\n}\nmoduleinterface IApp {\n}\n");
+        Map<String,String> snapshot = takeSnapshot();
+        assertTrue(snapshot.get("derived.Derived").contains("params=[a, a2, b]"));
+        assertSameAsFullRehash();
+    }
+
+    @Test
+    public void testRenameBaseType() throws CoreException {
+        takeSnapshot();
+        writeFile("base/Base.ned", "package base;\nsimple Base2 {\n  parameters:\n    int a;\n}\nmoduleinterface IApp {\n}\n");
+        assertSameAsFullRehash();
+    }
+
+    @Test
+    public void testAddDuplicateType() throws CoreException {
+        takeSnapshot();
+        writeFile("other/Dup.ned", "package other;\nsimple Unrelated {\n}\n");
+        Map<String,String> snapshot = takeSnapshot();
+        assertFalse(snapshot.containsKey("other.Unrelated"));
+        assertSameAsFullRehash();
+
+        project.getFile("other/Dup.ned").delete(true, null);
+        snapshot = takeSnapshot();
+        assertTrue(snapshot.containsKey("other.Unrelated"));
+        assertSameAsFullRehash();
+    }
+
+    @Test
+    public void testRemoveBaseType() throws CoreException {
+        takeSnapshot();
+        project.getFile("base/Base.ned").delete(true, null);
+        assertSameAsFullRehash();
+
+        writeFile("base/Base.ned", "package base;\nsimple Base {\n  parameters:\n    int a;\n}\nmoduleinterface IApp {\n}\n");
+        assertSameAsFullRehash();
+    }
+
+    @Test
+    public void testChangePackage() throws CoreException {
+        takeSnapshot();
+        writeFile("other/Unrelated.ned", "package other.sub;\nsimple Unrelated {\n  parameters:\n    int c;\n}\nsimple Derived {\n}\n");
+        assertSameAsFullRehash();
+    }
+}
@@ -0,0 +1,197 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.ned;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.omnetpp.common.Debug;
+import org.omnetpp.common.project.ProjectUtils;
+import org.omnetpp.ned.core.NedAstCache;
+import org.omnetpp.ned.core.NedResources;
+import org.omnetpp.ned.core.NedResourcesPlugin;
+import org.omnetpp.ned.model.NedTreeUtil;
+import org.omnetpp.ned.model.SysoutNedErrorStore;
+import org.omnetpp.ned.model.ex.NedFileElementEx;
+
+/**
+ * Measures the time it takes for NedResources to become ready (all files parsed
+ * and the type tables rebuilt) on a large synthetic NED corpus, and compares
+ * serial and parallel parsing of the same files. Results are printed with
+ * Debug.println().
+ *
+ * The benchmark takes long, so it is not part of the normal unit test run:
+ * it is skipped unless the JVM is started with -Dorg.omnetpp.test.benchmark=true.
+ */
+public class NedLoadingBenchmark {
+    public static final String BENCHMARK_PROPERTY = "org.omnetpp.test.benchmark";
+
+    private static final String PROJECT_NAME = "ned-loading-benchmark";
+    private static final int NUM_PACKAGES = 20;
+    private static final int NUM_FILES_PER_PACKAGE = 50;
+    private static final int NUM_SIMPLE_MODULES_PER_FILE = 4;
+
+    private IProject project;
+    private List<IFile> files = new ArrayList<IFile>();
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME);
+        ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+            public void run(IProgressMonitor monitor) throws CoreException {
+                if (project.exists())
+                    project.delete(true, true, monitor);
+                project.create(monitor);
+                project.open(monitor);
+                ProjectUtils.addOmnetppNature(project, monitor);
+                generateCorpus(monitor);
+            }
+        }, null);
+        waitUntilLoaded();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (project != null && project.exists()) {
+            project.delete(true, true, null);
+            waitUntilLoaded();
+        }
+    }
+
+    protected void generateCorpus(IProgressMonitor monitor) throws CoreException {
+        for (int p = 0; p < NUM_PACKAGES; p++) {
+            IFolder folder = project.getFolder("pkg" + p);
+            folder.create(true, true, monitor);
+            for (int f = 0; f < NUM_FILES_PER_PACKAGE; f++) {
+                IFile file = folder.getFile("Node" + f + ".ned");
+                file.create(new ByteArrayInputStream(generateNedFile(p, f).getBytes()), true, monitor);
+                files.add(file);
+            }
+        }
+    }
+
+    protected String generateNedFile(int p, int f) {
+        StringBuilder text = new StringBuilder();
+        text.append("package pkg" + p + ";\n\n");
+        if (p > 0)
+            text.append("import pkg" + (p-1) + ".*;\n\n");
+        for (int i = 0; i < NUM_SIMPLE_MODULES_PER_FILE; i++) {
+            text.append("simple Node" + f + "_" + i + "\n{\n");
+            text.append("    parameters:\n");
+            text.append("        double delay @unit(s) = default(uniform(1s, 2s));\n");
+            text.append("        int queueLength = default(" + (i+10) + ");\n");
+            text.append("        @display(\"i=block/routing\");\n");
+            text.append("    gates:\n");
+            text.append("        inout port[];\n");
+            text.append("}\n\n");
+        }
+        String baseType = p > 0 ? "Net" + f + "_" + (p-1) : null;
+        text.append("network Net" + f + "_" + p + (baseType != null ? " extends " + baseType : "") + "\n{\n");
+        text.append("    parameters:\n");
+        text.append("        int n = default(" + (f+2) + ");\n");
+        text.append("    submodules:\n");
+        for (int i = 0; i < NUM_SIMPLE_MODULES_PER_FILE; i++)
+            text.append("        node" + p + "_" + i + "[n]: Node" + f + "_" + i + ";\n");
+        text.append("    connections allowunconnected:\n");
+        for (int i = 0; i < NUM_SIMPLE_MODULES_PER_FILE-1; i++)
+            text.append("        for k=0..n-1 {\n            node" + p + "_" + i + "[k].port++ <--> { delay = 10ms; } <--> node" + p + "_" + (i+1) + "[k].port++;\n        }\n");
+        text.append("}\n");
+        return text.toString();
+    }
+
+    protected void waitUntilLoaded() throws InterruptedException {
+        NedResources nedResources = NedResources.getInstance();
+        while (nedResources.isLoadingInProgress() || nedResources.isReadMissingNedFilesJobScheduled())
+            Thread.sleep(50);
+    }
+
+    protected int getNumExpectedTypes() {
+        return files.size() * (NUM_SIMPLE_MODULES_PER_FILE + 1);
+    }
+
+    @Test
+    public void testTimeToReady() {
+        NedResources nedResources = NedResources.getInstance();
+        NedAstCache cache = NedResourcesPlugin.getNedAstCache();
+        for (IFile file : files) {
+            nedResources.forgetNedFile(file);
+            if (cache != null)
+                cache.invalidate(file.getLocation().toOSString()); // measure parsing, not cache hits
+        }
+
+        long startTime = System.currentTimeMillis();
+        nedResources.readMissingNedFiles();
+        int numTypes = nedResources.getToplevelNedTypeQNames(project).size(); // involves rehash
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        Debug.println("NedLoadingBenchmark: time-to-ready for " + files.size() + " NED files: " + elapsed + "ms");
+        assertEquals(getNumExpectedTypes(), numTypes);
+    }
+
+    @Test
+    public void testSerialVsParallelParsing() throws Exception {
+        final NedResources nedResources = NedResources.getInstance();
+
+        long startTime = System.currentTimeMillis();
+        int serialCount = 0;
+        for (IFile file : files)
+            serialCount += parse(file, nedResources).getTopLevelTypeNodes().size();
+        long serialTime = System.currentTimeMillis() - startTime;
+
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        int parallelCount = 0;
+        startTime = System.currentTimeMillis();
+        try {
+            List<Future<NedFileElementEx>> futures = new ArrayList<Future<NedFileElementEx>>();
+            for (final IFile file : files) {
+                futures.add(executor.submit(new Callable<NedFileElementEx>() {
+                    public NedFileElementEx call() {
+                        return parse(file, nedResources);
+                    }
+                }));
+            }
+            for (Future<NedFileElementEx> future : futures)
+                parallelCount += future.get().getTopLevelTypeNodes().size();
+        }
+        finally {
+            executor.shutdown();
+        }
+        long parallelTime = System.currentTimeMillis() - startTime;
+
+        Debug.println("NedLoadingBenchmark: parsing " + files.size() + " NED files: serial " + serialTime + "ms, parallel (" + numThreads + " threads) " + parallelTime + "ms");
+        assertEquals(getNumExpectedTypes(), serialCount);
+        assertEquals(serialCount, parallelCount);
+    }
+
+    protected NedFileElementEx parse(IFile file, NedResources resolver) {
+        SysoutNedErrorStore errors = new SysoutNedErrorStore();
+        NedFileElementEx tree = NedTreeUtil.parseNedFile(file.getLocation().toOSString(), errors, file.getFullPath().toString(), resolver);
+        assertEquals("syntax errors in " + file, 0, errors.getNumProblems());
+        return tree;
+    }
+}
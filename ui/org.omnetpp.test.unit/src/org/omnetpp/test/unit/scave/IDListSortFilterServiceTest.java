@@ -0,0 +1,190 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.scave;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import junit.framework.TestCase;
+
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.junit.Test;
+import org.omnetpp.common.util.StringUtils;
+import org.omnetpp.scave.editors.datatable.DataTable;
+import org.omnetpp.scave.editors.datatable.DataTable.Column;
+import org.omnetpp.scave.editors.datatable.IDListSortFilterService;
+import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.InterruptedFlag;
+import org.omnetpp.scave.engine.ResultItem;
+import org.omnetpp.scave.engine.ScalarResult;
+import org.omnetpp.scave.engineext.ResultFileManagerEx;
+import org.omnetpp.scave.model.ResultType;
+
+/**
+ * Checks that the parallel sorting and filtering of IDListSortFilterService gives
+ * the same result as sorting small lists synchronously (IDListSortFilterService.sortNow())
+ * and as filtering with ResultFileManager.filterIDList(), and that the sort order is
+ * the documented one: stable, NaN last when ascending, strings in dictionary order.
+ * The list is large enough to be processed in several chunks. Must be run on the UI thread.
+ */
+public class IDListSortFilterServiceTest extends TestCase {
+    private static final int NUM_RUNS = 3;
+    private static final int NUM_SCALARS_PER_RUN = 20000;
+
+    private Shell shell;
+    private File file;
+    private ResultFileManagerEx manager;
+    private IDList scalars;
+
+    @Override
+    protected void setUp() throws Exception {
+        shell = new Shell(Display.getDefault());
+        file = File.createTempFile("sortfilter", ".sca");
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            out.println("version 3");
+            for (int run = 0; run < NUM_RUNS; run++) {
+                out.println("run run-" + run);
+                out.println("attr configname General");
+                out.println("attr runnumber " + run);
+                out.println();
+                for (int i = 0; i < NUM_SCALARS_PER_RUN; i++) {
+                    // many equal values (for checking stability), and some NaNs and infinities
+                    String value = i % 11 == 0 ? "nan" : i % 13 == 0 ? "inf" : String.valueOf((i * 7919 % 1000) / 4.0 - 50);
+                    out.println("scalar net.host" + (i / 7) + " s" + (i % 7) + " " + value);
+                }
+            }
+        }
+        finally {
+            out.close();
+        }
+        manager = new ResultFileManagerEx();
+        manager.loadFile("/sortfilter.sca", file.getAbsolutePath());
+        scalars = manager.getAllScalars();
+        assertEquals(NUM_RUNS * NUM_SCALARS_PER_RUN, scalars.size());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (shell != null)
+            shell.dispose();
+        if (manager != null)
+            manager.dispose();
+        if (file != null)
+            file.delete();
+    }
+
+    @Test
+    public void testSort() throws Exception {
+        IDListSortFilterService service = new IDListSortFilterService(shell);
+        Column[] columns = { DataTable.COL_VALUE, DataTable.COL_MODULE, DataTable.COL_NAME, DataTable.COL_RUN_ID };
+        String[] columnNames = { "value", "module", "name", "run" };
+        for (int i = 0; i < columns.length; i++) {
+            Column column = columns[i];
+            // sorting the same column twice also exercises the key cache
+            for (boolean ascending : new boolean[] { true, false, true }) {
+                String what = "sorting by " + columnNames[i] + (ascending ? " ascending" : " descending");
+                IDList expected = expectedSortResult(column, ascending);
+                assertSameIDs(what + " synchronously", expected, IDListSortFilterService.sortNow(scalars, column, ResultType.SCALAR, ascending, manager));
+                assertSameIDs(what + " in parallel", expected, sortInParallel(service, column, ascending));
+            }
+        }
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        IDListSortFilterService service = new IDListSortFilterService(shell);
+        String[] patterns = { "name =~ s3", "module =~ net.host1* AND name =~ s2", "run =~ run-2 OR name =~ s0", "name =~ nonexistent" };
+        for (String pattern : patterns) {
+            IDList expected = manager.filterIDList(scalars, pattern, new InterruptedFlag());
+            assertSameIDs("filtering with " + pattern, expected, filterInParallel(service, pattern));
+        }
+    }
+
+    /**
+     * Sorts the scalars with Collections.sort() (which is stable), using the documented order.
+     */
+    private IDList expectedSortResult(final Column column, final boolean ascending) {
+        final int n = scalars.size();
+        List<Integer> positions = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++)
+            positions.add(i);
+        Collections.sort(positions, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                ResultItem itemA = manager.getItem(scalars.get(a)), itemB = manager.getItem(scalars.get(b));
+                int c;
+                if (column == DataTable.COL_VALUE)
+                    c = Double.compare(((ScalarResult)itemA).getValue(), ((ScalarResult)itemB).getValue()); // NaN is the largest
+                else
+                    c = StringUtils.dictionaryCompare(getString(itemA, column), getString(itemB, column));
+                return ascending ? c : -c;
+            }
+        });
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++)
+            indices[i] = positions.get(i);
+        return scalars.getSubsetByIndices(indices);
+    }
+
+    private static String getString(ResultItem item, Column column) {
+        if (column == DataTable.COL_MODULE)
+            return item.getModuleName();
+        else if (column == DataTable.COL_NAME)
+            return item.getName();
+        else
+            return item.getFileRun().getRun().getRunName();
+    }
+
+    private IDList sortInParallel(IDListSortFilterService service, Column column, boolean ascending) throws InterruptedException {
+        final IDList[] result = new IDList[1];
+        service.sort(scalars, column, ResultType.SCALAR, ascending, manager, new Consumer<IDList>() {
+            public void accept(IDList sorted) {
+                result[0] = sorted;
+            }
+        });
+        return waitForResult(service, result);
+    }
+
+    private IDList filterInParallel(IDListSortFilterService service, String pattern) throws InterruptedException {
+        final IDList[] result = new IDList[1];
+        service.filter(scalars, pattern, manager, new Consumer<IDList>() {
+            public void accept(IDList filtered) {
+                result[0] = filtered;
+            }
+        });
+        return waitForResult(service, result);
+    }
+
+    /**
+     * Runs the event loop until the service delivers the result (on the UI thread).
+     */
+    private IDList waitForResult(IDListSortFilterService service, IDList[] result) throws InterruptedException {
+        Display display = shell.getDisplay();
+        long deadline = System.currentTimeMillis() + 60000;
+        while (result[0] == null && System.currentTimeMillis() < deadline)
+            if (!display.readAndDispatch())
+                Thread.sleep(10);
+        assertNotNull("no result was delivered", result[0]);
+        assertFalse(service.isBusy());
+        return result[0];
+    }
+
+    private static void assertSameIDs(String what, IDList expected, IDList actual) {
+        assertEquals(what + ": size", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            if (expected.get(i) != actual.get(i))
+                fail(what + ": lists differ at position " + i);
+    }
+}
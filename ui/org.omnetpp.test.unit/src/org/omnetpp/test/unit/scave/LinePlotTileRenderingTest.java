@@ -0,0 +1,182 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.scave;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.SWTGraphics;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.junit.Test;
+import org.omnetpp.common.canvas.ICachableLayerPainter;
+import org.omnetpp.common.engine.BigDecimal;
+import org.omnetpp.scave.charting.LinePlot;
+import org.omnetpp.scave.charting.dataset.IXYDataset;
+import org.omnetpp.scave.charting.dataset.MinMaxPyramid;
+
+/**
+ * Checks that the cachable layer of a line plot (grid and lines) can be painted
+ * from a thread other than the UI thread, the way the background tile renderer
+ * of CachingCanvas does it, and that the painter is not affected by changes
+ * made to the plot after it was created. Must be run on the UI thread.
+ */
+public class LinePlotTileRenderingTest extends TestCase {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+    private static final int NUM_SERIES = 3;
+    private static final int NUM_ITEMS = 1000;
+
+    private Shell shell;
+
+    /**
+     * Makes the painter accessible to the test.
+     */
+    private static class TestLinePlot extends LinePlot {
+        public TestLinePlot(Composite parent, int style) {
+            super(parent, style);
+        }
+
+        public ICachableLayerPainter getCachableLayerPainter() {
+            return createCachableLayerPainter();
+        }
+    }
+
+    /**
+     * Sine waves with different phases, in memory.
+     */
+    private static class SineDataset implements IXYDataset {
+        public String getTitle(String format) { return "sine"; }
+        public int getSeriesCount() { return NUM_SERIES; }
+        public String getSeriesKey(int series) { return "series" + series; }
+        public String getSeriesTitle(int series) { return "series " + series; }
+        public Type getSeriesType(int series) { return Type.Double; }
+        public InterpolationMode getSeriesInterpolationMode(int series) { return InterpolationMode.Linear; }
+        public int getItemCount(int series) { return NUM_ITEMS; }
+        public double getX(int series, int item) { return item; }
+        public String getXAsString(int series, int item) { return String.valueOf(getX(series, item)); }
+        public BigDecimal getPreciseX(int series, int item) { return null; }
+        public double getMinX() { return 0; }
+        public double getMaxX() { return NUM_ITEMS - 1; }
+        public double getMinX(int series) { return getMinX(); }
+        public double getMaxX(int series) { return getMaxX(); }
+        public double getY(int series, int item) { return Math.sin(item / 50.0 + series); }
+        public String getYAsString(int series, int item) { return String.valueOf(getY(series, item)); }
+        public BigDecimal getPreciseY(int series, int item) { return null; }
+        public double getMinY() { return -1; }
+        public double getMaxY() { return 1; }
+        public double getMinY(int series) { return getMinY(); }
+        public double getMaxY(int series) { return getMaxY(); }
+        public MinMaxPyramid getMinMaxPyramid(int series) { return null; }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        shell = new Shell(Display.getDefault());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (shell != null)
+            shell.dispose();
+    }
+
+    @Test
+    public void testPaintOffUIThread() throws Exception {
+        TestLinePlot plot = createPlot();
+        ImageData imageData = paintOffUIThread(plot.getCachableLayerPainter());
+
+        // the tile must not be empty (grid and lines are drawn on the background)
+        Set<Integer> pixels = new HashSet<Integer>();
+        for (int y = 0; y < HEIGHT; y += 5)
+            for (int x = 0; x < WIDTH; x++)
+                pixels.add(imageData.getPixel(x, y));
+        assertTrue("nothing was drawn", pixels.size() > 1);
+    }
+
+    /**
+     * The painter must draw the plot as it was when the painter was created,
+     * even if the plot is changed or cleared before the painting starts.
+     */
+    @Test
+    public void testPlotChangedBeforePainting() throws Exception {
+        TestLinePlot plot = createPlot();
+        ImageData expected = paintOffUIThread(plot.getCachableLayerPainter());
+
+        ICachableLayerPainter painter = plot.getCachableLayerPainter();
+        plot.setLineColor("series0", new RGB(255, 0, 0));
+        plot.setLineWidth("series1", 5.0f);
+        plot.setDisplayLine("series2", false);
+        plot.setLogarithmicY(true);
+        plot.setDataset(null);
+        plot.clear();
+        ImageData actual = paintOffUIThread(painter);
+
+        for (int y = 0; y < HEIGHT; y++)
+            for (int x = 0; x < WIDTH; x++)
+                if (expected.getPixel(x, y) != actual.getPixel(x, y))
+                    fail("tile differs at (" + x + "," + y + ") after the plot was changed");
+    }
+
+    private TestLinePlot createPlot() {
+        assertSame("test must run on the UI thread", shell.getDisplay().getThread(), Thread.currentThread());
+        TestLinePlot plot = new TestLinePlot(shell, SWT.NONE);
+        plot.setSize(WIDTH, HEIGHT);
+        plot.setDataset(new SineDataset());
+        return plot;
+    }
+
+    /**
+     * Paints with the painter on a worker thread, like the background tile renderer
+     * does: the image is created and read back on the UI thread, and the UI thread
+     * is blocked while painting, so the painter must not need it.
+     */
+    private ImageData paintOffUIThread(final ICachableLayerPainter painter) throws Exception {
+        assertNotNull(painter);
+        Image image = new Image(shell.getDisplay(), WIDTH, HEIGHT);
+        GC gc = new GC(image);
+        final SWTGraphics graphics = new SWTGraphics(gc);
+        try {
+            final Throwable[] error = new Throwable[1];
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        painter.paint(graphics);
+                    }
+                    catch (Throwable e) {
+                        error[0] = e;
+                    }
+                }
+            }, "Tile renderer test");
+            thread.start();
+            thread.join(60000);
+
+            assertFalse("painting did not finish", thread.isAlive());
+            if (error[0] != null) {
+                AssertionError e = new AssertionError("painting failed off the UI thread: " + error[0]);
+                e.initCause(error[0]);
+                throw e;
+            }
+        }
+        finally {
+            graphics.dispose();
+            gc.dispose();
+        }
+        ImageData imageData = image.getImageData();
+        image.dispose();
+        return imageData;
+    }
+}